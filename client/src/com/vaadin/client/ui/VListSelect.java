@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import com.google.gwt.event.dom.client.ChangeEvent;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.user.client.ui.ListBox;
 import com.vaadin.client.UIDL;
 
@@ -39,6 +41,12 @@ public class VListSelect extends VOptionGroupBase {
         select.addChangeHandler(this);
         select.addClickHandler(this);
         select.setVisibleItemCount(VISIBLE_COUNT);
+        select.addDomHandler(new ScrollHandler() {
+            @Override
+            public void onScroll(ScrollEvent event) {
+                requestMoreOptionsIfScrolledToEnd(select.getElement());
+            }
+        }, ScrollEvent.getType());
         setStyleName(CLASSNAME);
 
         updateEnabledState();
@@ -95,6 +103,7 @@ public class VListSelect extends VOptionGroupBase {
         if (rowCount == getRows()) {
             select.getElement().setScrollTop(scrollTop);
         }
+        requestMoreOptionsIfScrolledToEnd(select.getElement());
     }
 
     @Override
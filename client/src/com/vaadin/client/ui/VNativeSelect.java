@@ -28,10 +28,18 @@ public class VNativeSelect extends VOptionGroupBase implements Field {
 
     public static final String CLASSNAME = "v-select";
 
+    /**
+     * Caption of the item shown after the options when the server has more
+     * options, selecting it requests them.
+     */
+    private static final String MORE_OPTIONS_CAPTION = "\u2026";
+
     protected ListBox select;
 
     private boolean firstValueIsTemporaryNullItem = false;
 
+    private int lastSelectedIndex = -1;
+
     public VNativeSelect() {
         super(new ListBox(false), CLASSNAME);
         select = getOptionsContainer();
@@ -72,6 +80,15 @@ public class VNativeSelect extends VOptionGroupBase implements Field {
             select.setItemSelected(0, true);
             firstValueIsTemporaryNullItem = true;
         }
+        if (hasMoreOptions()) {
+            select.addItem(MORE_OPTIONS_CAPTION, (String) null);
+        }
+        lastSelectedIndex = select.getSelectedIndex();
+    }
+
+    private boolean isMoreOptionsItemSelected() {
+        return hasMoreOptions()
+                && select.getSelectedIndex() == select.getItemCount() - 1;
     }
 
     @Override
@@ -88,6 +105,13 @@ public class VNativeSelect extends VOptionGroupBase implements Field {
     @Override
     public void onChange(ChangeEvent event) {
 
+        if (isMoreOptionsItemSelected()) {
+            // Keep the previous value until the options have been loaded
+            select.setSelectedIndex(lastSelectedIndex);
+            requestMoreOptions();
+            return;
+        }
+
         if (select.isMultipleSelect()) {
             client.updateVariable(paintableId, "selected", getSelectedItems(),
                     isImmediate());
@@ -115,6 +139,7 @@ public class VNativeSelect extends VOptionGroupBase implements Field {
             }
 
         }
+        lastSelectedIndex = select.getSelectedIndex();
     }
 
     @Override
@@ -90,6 +90,11 @@ public class VOptionGroup extends VOptionGroupBase implements FocusHandler,
     private boolean wasHtmlContentAllowed = false;
     private boolean wasMultiselect = false;
 
+    /**
+     * Button shown after the options when the server has more options.
+     */
+    private VNativeButton moreOptionsButton;
+
     public VOptionGroup() {
         super(CLASSNAME);
         panel = (Panel) optionsContainer;
@@ -186,6 +191,17 @@ public class VOptionGroup extends VOptionGroupBase implements FocusHandler,
             newwidgets.add(op);
         }
 
+        if (hasMoreOptions()) {
+            if (moreOptionsButton == null) {
+                moreOptionsButton = new VNativeButton();
+                moreOptionsButton.setText("\u2026");
+                moreOptionsButton.addStyleName(CLASSNAME_OPTION + "-more");
+                moreOptionsButton.addClickHandler(this);
+            }
+            moreOptionsButton.setEnabled(isEnabled() && !isReadonly());
+            newwidgets.add(moreOptionsButton);
+        }
+
         if (!newwidgets.equals(existingwidgets)) {
             // Rebuild the panel, losing focus
             panel.clear();
@@ -206,7 +222,9 @@ public class VOptionGroup extends VOptionGroupBase implements FocusHandler,
     @Override
     public void onClick(ClickEvent event) {
         super.onClick(event);
-        if (event.getSource() instanceof CheckBox) {
+        if (event.getSource() == moreOptionsButton) {
+            requestMoreOptions();
+        } else if (event.getSource() instanceof CheckBox) {
             CheckBox source = (CheckBox) event.getSource();
 
             if (BrowserInfo.get().isWebkit()) {
@@ -245,7 +263,9 @@ public class VOptionGroup extends VOptionGroupBase implements FocusHandler,
         // sets options enabled according to the widget's enabled,
         // readonly and each options own enabled
         for (Widget w : panel) {
-            if (w instanceof HasEnabled) {
+            if (w == moreOptionsButton) {
+                moreOptionsButton.setEnabled(optionGroupEnabled);
+            } else if (w instanceof HasEnabled) {
                 ((HasEnabled) w).setEnabled(optionsEnabled.get(i)
                         && optionGroupEnabled);
                 setStyleName(w.getElement(),
@@ -18,6 +18,7 @@ package com.vaadin.client.ui;
 
 import java.util.Set;
 
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ChangeHandler;
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -33,12 +34,19 @@ import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.Focusable;
 import com.vaadin.client.UIDL;
+import com.vaadin.shared.ui.optiongroup.OptionGroupConstants;
 
 public abstract class VOptionGroupBase extends Composite implements Field,
         ClickHandler, ChangeHandler, KeyPressHandler, Focusable, HasEnabled {
 
     public static final String CLASSNAME_OPTION = "v-select-option";
 
+    /**
+     * Distance in pixels from the end of a list of options at which more
+     * options are requested.
+     */
+    private static final int MORE_OPTIONS_SCROLL_MARGIN = 20;
+
     /** For internal use only. May be removed or replaced in the future. */
     public ApplicationConnection client;
 
@@ -91,6 +99,10 @@ public abstract class VOptionGroupBase extends Composite implements Field,
     /** For internal use only. May be removed or replaced in the future. */
     public VNativeButton newItemButton;
 
+    private boolean moreOptions = false;
+
+    private boolean moreOptionsRequested = false;
+
     public VOptionGroupBase(String classname) {
         container = new FlowPanel();
         initWidget(container);
@@ -153,6 +165,54 @@ public abstract class VOptionGroupBase extends Composite implements Field,
         return rows;
     }
 
+    /**
+     * For internal use only. May be removed or replaced in the future.
+     * 
+     * @param moreOptions
+     *            true if the server has options that have not been sent yet
+     */
+    public void setMoreOptions(boolean moreOptions) {
+        this.moreOptions = moreOptions;
+        moreOptionsRequested = false;
+    }
+
+    /**
+     * Checks whether the server has options that have not been sent yet.
+     * 
+     * @return true if more options can be requested
+     */
+    protected boolean hasMoreOptions() {
+        return moreOptions;
+    }
+
+    /**
+     * Requests the next page of options from the server, unless there are no
+     * more options or they have already been requested.
+     */
+    protected void requestMoreOptions() {
+        if (moreOptions && !moreOptionsRequested) {
+            moreOptionsRequested = true;
+            client.updateVariable(paintableId,
+                    OptionGroupConstants.VARIABLE_LOAD_MORE_OPTIONS, true,
+                    true);
+        }
+    }
+
+    /**
+     * Requests more options if the given scrollable list of options has been
+     * scrolled to the end, or is not tall enough to be scrolled.
+     * 
+     * @param list
+     *            the element listing the options
+     */
+    protected void requestMoreOptionsIfScrolledToEnd(Element list) {
+        if (moreOptions && list.getClientHeight() > 0
+                && list.getScrollTop() + list.getClientHeight() >= list
+                        .getScrollHeight() - MORE_OPTIONS_SCROLL_MARGIN) {
+            requestMoreOptions();
+        }
+    }
+
     public abstract void setTabIndex(int tabIndex);
 
     @Override
@@ -166,6 +166,9 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
     /** For internal use only. May be removed or replaced in the future. */
     public TreeConnector connector;
 
+    /** Placeholder for root nodes that have not been loaded, or null. */
+    private Element moreRootNodesElement;
+
     public VLazyExecutor iconLoaded = new VLazyExecutor(50,
             new ScheduledCommand() {
 
@@ -214,7 +217,8 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
          * time we catch the mouse down and up events so we can apply the text
          * selection patch in IE
          */
-        sinkEvents(Event.ONMOUSEDOWN | Event.ONMOUSEUP | Event.ONKEYUP);
+        sinkEvents(Event.ONMOUSEDOWN | Event.ONMOUSEUP | Event.ONKEYUP
+                | Event.ONCLICK);
 
         /*
          * Re-set the tab index to make sure that the FocusElementPanel's
@@ -234,7 +238,13 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
     @Override
     public void onBrowserEvent(Event event) {
         super.onBrowserEvent(event);
-        if (event.getTypeInt() == Event.ONMOUSEDOWN) {
+        if (event.getTypeInt() == Event.ONCLICK) {
+            if (moreRootNodesElement != null
+                    && moreRootNodesElement.isOrHasChild((Node) event
+                            .getEventTarget().cast())) {
+                requestMoreNodes("", moreRootNodesElement);
+            }
+        } else if (event.getTypeInt() == Event.ONMOUSEDOWN) {
             // Prevent default text selection in IE
             if (BrowserInfo.get().isIE()) {
                 ((Element) event.getEventTarget().cast()).setPropertyJSO(
@@ -503,6 +513,59 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
         return selectedIds.contains(treeNode.key);
     }
 
+    /**
+     * Shows or hides the placeholder after the root nodes telling that there
+     * are more root nodes to load.
+     * <p>
+     * For internal use only. May be removed or replaced in the future.
+     * 
+     * @param moreRootNodes
+     *            true if there are root nodes that have not been loaded
+     */
+    public void setMoreRootNodes(boolean moreRootNodes) {
+        moreRootNodesElement = updateMoreNodesElement(moreRootNodesElement,
+                body.getElement(), moreRootNodes);
+    }
+
+    /**
+     * Removes a placeholder for nodes that have not been loaded, and adds a
+     * new one at the end of the given parent if needed.
+     */
+    private Element updateMoreNodesElement(Element moreNodesElement,
+            Element parent, boolean moreNodes) {
+        if (moreNodesElement != null) {
+            moreNodesElement.removeFromParent();
+        }
+        if (!moreNodes) {
+            return null;
+        }
+        moreNodesElement = DOM.createDiv();
+        moreNodesElement.setClassName(TreeNode.CLASSNAME + "-more");
+        moreNodesElement.setInnerText("...");
+        parent.appendChild(moreNodesElement);
+        return moreNodesElement;
+    }
+
+    /**
+     * Requests the next page of child nodes from the server.
+     * 
+     * @param key
+     *            the key of the parent node, or an empty string for the root
+     *            nodes
+     * @param moreNodesElement
+     *            the placeholder that was clicked
+     */
+    private void requestMoreNodes(String key, Element moreNodesElement) {
+        String loadingClassName = TreeNode.CLASSNAME + "-more-loading";
+        if (disabled
+                || moreNodesElement.getClassName().contains(loadingClassName)) {
+            return;
+        }
+        moreNodesElement.addClassName(loadingClassName);
+        client.updateVariable(paintableId, TreeConstants.VARIABLE_LOAD_MORE,
+                key, true);
+    }
+
     public class TreeNode extends SimplePanel implements ActionOwner {
 
         public static final String CLASSNAME = "v-tree-node";
@@ -533,6 +596,9 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
 
         private boolean focused = false;
 
+        /** Placeholder for children that have not been loaded, or null. */
+        private Element moreChildrenElement;
+
         public TreeNode() {
             constructDom();
             sinkEvents(Event.ONCLICK | Event.ONDBLCLICK | Event.MOUSEEVENTS
@@ -701,6 +767,13 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
                 return;
             }
 
+            if (type == Event.ONCLICK && moreChildrenElement != null
+                    && moreChildrenElement.isOrHasChild(target)) {
+                requestMoreNodes(key, moreChildrenElement);
+                event.stopPropagation();
+                return;
+            }
+
             final boolean inCaption = isCaptionElement(target);
             if (inCaption
                     && client.hasEventListeners(VTree.this,
@@ -974,6 +1047,20 @@ public class VTree extends FocusElementPanel implements VHasDropHandler,
             return childrenLoaded;
         }
 
+        /**
+         * Shows or hides the placeholder after the child nodes telling that
+         * there are more children to load.
+         * <p>
+         * For internal use only. May be removed or replaced in the future.
+         * 
+         * @param moreChildren
+         *            true if there are children that have not been loaded
+         */
+        public void setMoreChildren(boolean moreChildren) {
+            moreChildrenElement = updateMoreNodesElement(moreChildrenElement,
+                    childNodeContainer.getElement(), moreChildren);
+        }
+
         /**
          * Returns the children of the node
          * 
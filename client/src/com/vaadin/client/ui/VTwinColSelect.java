@@ -31,6 +31,8 @@ import com.google.gwt.event.dom.client.KeyDownEvent;
 import com.google.gwt.event.dom.client.KeyDownHandler;
 import com.google.gwt.event.dom.client.MouseDownEvent;
 import com.google.gwt.event.dom.client.MouseDownHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Element;
@@ -101,6 +103,12 @@ public class VTwinColSelect extends VOptionGroupBase implements KeyDownHandler,
         options.addClickHandler(this);
         options.addDoubleClickHandler(this);
         options.setVisibleItemCount(VISIBLE_COUNT);
+        options.addDomHandler(new ScrollHandler() {
+            @Override
+            public void onScroll(ScrollEvent event) {
+                requestMoreOptionsIfScrolledToEnd(options.getElement());
+            }
+        }, ScrollEvent.getType());
         options.setStyleName(CLASSNAME + "-options");
 
         selections = new DoubleClickListBox();
@@ -243,6 +251,7 @@ public class VTwinColSelect extends VOptionGroupBase implements KeyDownHandler,
             selections.setVisibleItemCount(getRows());
 
         }
+        requestMoreOptionsIfScrolledToEnd(options.getElement());
     }
 
     @Override
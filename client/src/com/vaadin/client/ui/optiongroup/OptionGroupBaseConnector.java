@@ -24,6 +24,7 @@ import com.vaadin.client.ui.AbstractFieldConnector;
 import com.vaadin.client.ui.VNativeButton;
 import com.vaadin.client.ui.VOptionGroupBase;
 import com.vaadin.client.ui.VTextField;
+import com.vaadin.shared.ui.optiongroup.OptionGroupConstants;
 
 public abstract class OptionGroupBaseConnector extends AbstractFieldConnector
         implements Paintable {
@@ -66,6 +67,8 @@ public abstract class OptionGroupBaseConnector extends AbstractFieldConnector
             }
         }
 
+        getWidget().setMoreOptions(ops
+                .getBooleanAttribute(OptionGroupConstants.ATTRIBUTE_MORE_OPTIONS));
         getWidget().buildOptions(ops);
 
         if (uidl.getBooleanAttribute("allownewitem")) {
@@ -17,10 +17,12 @@ package com.vaadin.client.ui.tree;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import com.google.gwt.aria.client.Roles;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.FlowPanel;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.BrowserInfo;
 import com.vaadin.client.Paintable;
@@ -87,29 +89,7 @@ public class TreeConnector extends AbstractComponentConnector implements
         getWidget().clearNodeToKeyMap();
         tooltipMap.clear();
 
-        TreeNode childTree = null;
-        UIDL childUidl = null;
-        for (final Iterator<?> i = uidl.getChildIterator(); i.hasNext();) {
-            childUidl = (UIDL) i.next();
-            if ("actions".equals(childUidl.getTag())) {
-                updateActionMap(childUidl);
-                continue;
-            } else if ("-ac".equals(childUidl.getTag())) {
-                getWidget().updateDropHandler(childUidl);
-                continue;
-            }
-            childTree = getWidget().new TreeNode();
-            getConnection().getVTooltip().connectHandlersToWidget(childTree);
-            updateNodeFromUIDL(childTree, childUidl, 1);
-            getWidget().body.add(childTree);
-            childTree.addStyleDependentName("root");
-            childTree.childNodeContainer.addStyleDependentName("root");
-        }
-        if (childTree != null && childUidl != null) {
-            boolean leaf = !childUidl.getTag().equals("node");
-            childTree.addStyleDependentName(leaf ? "leaf-last" : "last");
-            childTree.childNodeContainer.addStyleDependentName("last");
-        }
+        renderRootNodes(uidl);
         final String selectMode = uidl.getStringAttribute("selectmode");
         getWidget().selectable = !"none".equals(selectMode);
         getWidget().isMultiselect = "multi".equals(selectMode);
@@ -174,7 +154,61 @@ public class TreeConnector extends AbstractComponentConnector implements
         return (VTree) super.getWidget();
     }
 
+    /**
+     * Renders the root nodes, appending them to the existing ones in an append
+     * update.
+     */
+    private void renderRootNodes(UIDL uidl) {
+        FlowPanel body = getWidget().body;
+        if (uidl.hasAttribute(TreeConstants.ATTRIBUTE_APPEND_CHILDREN)
+                && body.getWidgetCount() > 0) {
+            removeLastStyle((TreeNode) body.getWidget(body
+                    .getWidgetCount() - 1));
+        }
+        TreeNode childTree = null;
+        UIDL childUidl = null;
+        for (final Iterator<?> i = uidl.getChildIterator(); i.hasNext();) {
+            childUidl = (UIDL) i.next();
+            if ("actions".equals(childUidl.getTag())) {
+                updateActionMap(childUidl);
+                continue;
+            } else if ("-ac".equals(childUidl.getTag())) {
+                getWidget().updateDropHandler(childUidl);
+                continue;
+            }
+            childTree = getWidget().new TreeNode();
+            getConnection().getVTooltip().connectHandlersToWidget(childTree);
+            updateNodeFromUIDL(childTree, childUidl, 1);
+            body.add(childTree);
+            childTree.addStyleDependentName("root");
+            childTree.childNodeContainer.addStyleDependentName("root");
+        }
+        if (childTree != null && childUidl != null) {
+            boolean leaf = !childUidl.getTag().equals("node");
+            childTree.addStyleDependentName(leaf ? "leaf-last" : "last");
+            childTree.childNodeContainer.addStyleDependentName("last");
+        }
+        getWidget().setMoreRootNodes(
+                uidl.getBooleanAttribute(TreeConstants.ATTRIBUTE_MORE_CHILDREN));
+    }
+
+    /**
+     * Removes the styles of the last node from a node that is no longer the
+     * last one after more nodes have been loaded.
+     */
+    private void removeLastStyle(TreeNode node) {
+        node.removeStyleDependentName("last");
+        node.removeStyleDependentName("leaf-last");
+        node.childNodeContainer.removeStyleDependentName("last");
+    }
+
     private void handleUpdate(UIDL uidl) {
+        if (!uidl.hasAttribute("rootKey")) {
+            if (uidl.hasAttribute(TreeConstants.ATTRIBUTE_APPEND_CHILDREN)) {
+                renderRootNodes(uidl);
+            }
+            return;
+        }
         final TreeNode rootNode = getWidget().getNodeByKey(
                 uidl.getStringAttribute("rootKey"));
         if (rootNode != null) {
@@ -192,8 +226,19 @@ public class TreeConnector extends AbstractComponentConnector implements
                 VConsole.error(e);
             }
 
-            renderChildNodes(rootNode, (Iterator) uidl.getChildIterator(),
-                    levelProperty + 1);
+            if (uidl.hasAttribute(TreeConstants.ATTRIBUTE_APPEND_CHILDREN)) {
+                List<TreeNode> children = rootNode.getChildren();
+                if (!children.isEmpty()) {
+                    removeLastStyle(children.get(children.size() - 1));
+                }
+                appendChildNodes(rootNode,
+                        (Iterator) uidl.getChildIterator(), levelProperty + 1);
+            } else {
+                renderChildNodes(rootNode, (Iterator) uidl.getChildIterator(),
+                        levelProperty + 1);
+            }
+            rootNode.setMoreChildren(uidl
+                    .getBooleanAttribute(TreeConstants.ATTRIBUTE_MORE_CHILDREN));
         }
     }
 
@@ -236,13 +281,16 @@ public class TreeConnector extends AbstractComponentConnector implements
         }
 
         if (uidl.getTag().equals("node")) {
-            if (uidl.getChildCount() == 0) {
+            boolean moreChildren = uidl
+                    .getBooleanAttribute(TreeConstants.ATTRIBUTE_MORE_CHILDREN);
+            if (uidl.getChildCount() == 0 && !moreChildren) {
                 treeNode.childNodeContainer.setVisible(false);
             } else {
                 renderChildNodes(treeNode, (Iterator) uidl.getChildIterator(),
                         level + 1);
                 treeNode.childrenLoaded = true;
             }
+            treeNode.setMoreChildren(moreChildren);
         } else {
             treeNode.addStyleName(TreeNode.CLASSNAME + "-leaf");
         }
@@ -276,6 +324,11 @@ public class TreeConnector extends AbstractComponentConnector implements
 
     void renderChildNodes(TreeNode containerNode, Iterator<UIDL> i, int level) {
         containerNode.childNodeContainer.clear();
+        appendChildNodes(containerNode, i, level);
+    }
+
+    private void appendChildNodes(TreeNode containerNode, Iterator<UIDL> i,
+            int level) {
         containerNode.childNodeContainer.setVisible(true);
         while (i.hasNext()) {
             final UIDL childUidl = i.next();
@@ -56,4 +56,17 @@ public @interface Push {
      */
     public Transport transport() default Transport.WEBSOCKET;
 
+    /**
+     * Returns the minimum time in milliseconds between two messages pushed to
+     * the client for the annotated UI. Changes made during the interval are
+     * combined into a single message. The default is 0, i.e. changes are pushed
+     * right away.
+     * 
+     * @see com.vaadin.ui.PushConfiguration#setCoalescingInterval(int)
+     * 
+     * @since 7.2
+     * @return the push coalescing interval in milliseconds
+     */
+    public int coalescingInterval() default 0;
+
 }
@@ -25,6 +25,7 @@ import java.lang.annotation.Target;
 import com.vaadin.server.Constants;
 import com.vaadin.server.DefaultDeploymentConfiguration;
 import com.vaadin.server.DeploymentConfiguration;
+import com.vaadin.server.DeploymentConfiguration.AccessQueueOverflowPolicy;
 import com.vaadin.server.DeploymentConfiguration.LegacyProperyToStringMode;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.server.VaadinSession;
@@ -119,6 +120,72 @@ public @interface VaadinServletConfiguration {
     @InitParameterName(Constants.SERVLET_PARAMETER_CLOSE_IDLE_SESSIONS)
     public boolean closeIdleSessions() default DefaultDeploymentConfiguration.DEFAULT_CLOSE_IDLE_SESSIONS;
 
+    /**
+     * Whether each UI should be protected by a lock of its own instead of the
+     * session lock. The default value is <code>false</code>.
+     * 
+     * @return true if UIs are locked separately, false if all UIs in a session
+     *         share the session lock
+     * 
+     * @see DeploymentConfiguration#isPerUiLocking()
+     * 
+     * @since 7.2
+     */
+    @InitParameterName(Constants.SERVLET_PARAMETER_PER_UI_LOCKING)
+    public boolean perUiLocking() default DefaultDeploymentConfiguration.DEFAULT_PER_UI_LOCKING;
+
+    /**
+     * The maximum number of tasks that can be pending in an access queue. The
+     * default value is 0, i.e. the queue is not bounded.
+     * 
+     * @return the maximum number of pending access tasks
+     * 
+     * @see DeploymentConfiguration#getAccessQueueCapacity()
+     * 
+     * @since 7.2
+     */
+    @InitParameterName(Constants.SERVLET_PARAMETER_ACCESS_QUEUE_CAPACITY)
+    public int accessQueueCapacity() default DefaultDeploymentConfiguration.DEFAULT_ACCESS_QUEUE_CAPACITY;
+
+    /**
+     * The maximum number of pending access tasks to run in one batch. The
+     * default value is 0, i.e. all pending tasks are run at once.
+     * 
+     * @return the maximum number of tasks to run while holding the lock
+     * 
+     * @see DeploymentConfiguration#getAccessQueueDrainLimit()
+     * 
+     * @since 7.2
+     */
+    @InitParameterName(Constants.SERVLET_PARAMETER_ACCESS_QUEUE_DRAIN_LIMIT)
+    public int accessQueueDrainLimit() default DefaultDeploymentConfiguration.DEFAULT_ACCESS_QUEUE_DRAIN_LIMIT;
+
+    /**
+     * What to do when a task is submitted while the access queue is full. The
+     * default is {@link AccessQueueOverflowPolicy#REJECT}.
+     * 
+     * @return the overflow policy of the access queue
+     * 
+     * @see DeploymentConfiguration#getAccessQueueOverflowPolicy()
+     * 
+     * @since 7.2
+     */
+    @InitParameterName(Constants.SERVLET_PARAMETER_ACCESS_QUEUE_OVERFLOW)
+    public AccessQueueOverflowPolicy accessQueueOverflow() default AccessQueueOverflowPolicy.REJECT;
+
+    /**
+     * The maximum number of bytes of static resources to keep in memory in
+     * production mode. The default value is 16MB.
+     * 
+     * @return the maximum size of the static resource cache in bytes
+     * 
+     * @see DeploymentConfiguration#getStaticResourceCacheSize()
+     * 
+     * @since 7.2
+     */
+    @InitParameterName(Constants.SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE)
+    public int staticResourceCacheSize() default DefaultDeploymentConfiguration.DEFAULT_STATIC_RESOURCE_CACHE_SIZE;
+
     /**
      * The default widgetset to use for the servlet. The default value is
      * <code>com.vaadin.DefaultWidgetSet</code>.
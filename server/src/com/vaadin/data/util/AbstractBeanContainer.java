@@ -154,6 +154,14 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
      */
     private LinkedHashMap<String, VaadinPropertyDescriptor<BEANTYPE>> model;
 
+    /**
+     * True if the result of the previous filtering pass can be reused when the
+     * filters are narrowed down.
+     * 
+     * @see #setFilterRefinementEnabled(boolean)
+     */
+    private boolean filterRefinementEnabled = false;
+
     /**
      * Constructs a {@code AbstractBeanContainer} for beans of the given type.
      * 
@@ -314,12 +322,59 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         }
     }
 
+    /**
+     * Sets whether a filtering pass with filters narrower than those of the
+     * previous pass only checks the items that passed the previous pass, see
+     * {@link AbstractInMemoryContainer#doFilterContainer(boolean)}.
+     * This also applies when the previous filters have been removed in
+     * between, as {@link com.vaadin.ui.ComboBox} does with its filter on every
+     * request.
+     * <p>
+     * This is disabled by default, because the container is not notified when
+     * a bean is changed directly through its setters, nor when a property is
+     * changed while it is not used by any filter. Only enable this when the
+     * filtered properties of the beans do not change, or call this method
+     * again after changing them to discard the previous result.
+     * 
+     * @param filterRefinementEnabled
+     *            true to reuse the result of the previous filtering pass,
+     *            false to always check all items
+     * @since 7.2
+     */
+    public void setFilterRefinementEnabled(boolean filterRefinementEnabled) {
+        this.filterRefinementEnabled = filterRefinementEnabled;
+        discardPreviousFiltering();
+    }
+
+    /**
+     * Checks whether a filtering pass with narrower filters only checks the
+     * items that passed the previous pass.
+     * 
+     * @see #setFilterRefinementEnabled(boolean)
+     * @return true if the result of the previous filtering pass is reused,
+     *         false if all items are always checked
+     * @since 7.2
+     */
+    public boolean isFilterRefinementEnabled() {
+        return filterRefinementEnabled;
+    }
+
+    @Override
+    protected boolean doFilterContainer(boolean hasFilters) {
+        if (!filterRefinementEnabled) {
+            // Bean changes may have gone unnoticed since the previous pass
+            discardPreviousFiltering();
+        }
+        return super.doFilterContainer(hasFilters);
+    }
+
     /**
      * Re-filter the container when one of the monitored properties changes.
      */
     @Override
     public void valueChange(ValueChangeEvent event) {
         // if a property that is used in a filter is changed, refresh filtering
+        discardPreviousFiltering();
         filterAll();
     }
 
@@ -16,6 +16,7 @@
 package com.vaadin.data.util;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EventObject;
@@ -24,10 +25,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.ItemSetChangeNotifier;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Or;
 import com.vaadin.data.util.filter.SimpleStringFilter;
 import com.vaadin.data.util.filter.UnsupportedFilterException;
 
@@ -127,6 +132,43 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      */
     private ItemSorter itemSorter = new DefaultItemSorter();
 
+    /**
+     * The item identifiers that passed the filters of the latest filtering
+     * pass, kept also after the filters have been removed. Null if the items
+     * have changed since, so that the next filtering pass must check all
+     * items.
+     */
+    private List<ITEMIDTYPE> previouslyFilteredItemIds;
+
+    /**
+     * The filters used for producing {@link #previouslyFilteredItemIds}.
+     */
+    private Set<Filter> previousFilters;
+
+    /**
+     * The minimum number of items to check in a filtering pass for the pass to
+     * be split between several threads, or 0 to always filter in the calling
+     * thread.
+     */
+    private int parallelFilteringThreshold = 0;
+
+    /**
+     * The number of {@link #beginBatch()} calls not yet matched by
+     * {@link #endBatch()}.
+     */
+    private int batchDepth = 0;
+
+    /**
+     * True if filtering has been requested while a batch was open.
+     */
+    private boolean batchFilteringPending = false;
+
+    /**
+     * The item set change events recorded while a batch is open, to be
+     * consolidated when the batch ends.
+     */
+    private List<ItemSetChangeEvent> batchEvents;
+
     // Constructors
 
     /**
@@ -480,8 +522,14 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      * Filter the view to recreate the visible item list from the unfiltered
      * items, and send a notification if the set of visible items changed in any
      * way.
+     * 
+     * If a batch is open, filtering is postponed until the batch ends.
      */
     protected void filterAll() {
+        if (isBatchOpen()) {
+            batchFilteringPending = true;
+            return;
+        }
         if (doFilterContainer(!getFilters().isEmpty())) {
             fireItemSetChange();
         }
@@ -493,6 +541,12 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      * them so {@link #getItemIds()} and other methods only return the filtered
      * items.
      * 
+     * If the current filters are a refinement of the filters used in the
+     * previous filtering pass (see {@link #isRefinementOf(Filter, Filter)}) and
+     * the items have not changed since, only the items that were visible after
+     * the previous pass are checked. Large containers can also be filtered in
+     * several threads, see {@link #setParallelFilteringThreshold(int)}.
+     * 
      * @param hasFilters
      *            true if filters has been set for the container, false
      *            otherwise
@@ -502,7 +556,13 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         if (!hasFilters) {
             boolean changed = getAllItemIds().size() != getVisibleItemIds()
                     .size();
+            // Keep the previous result for filters typed anew, e.g. after
+            // removeAllContainerFilters() and addContainerFilter()
+            List<ITEMIDTYPE> previousItemIds = previouslyFilteredItemIds;
+            Set<Filter> previous = previousFilters;
             setFilteredItemIds(null);
+            previouslyFilteredItemIds = previousItemIds;
+            previousFilters = previous;
             return changed;
         }
 
@@ -513,25 +573,288 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
             originalFilteredItemIds = Collections.emptyList();
             wasUnfiltered = true;
         }
+
+        // Only the previously visible items can pass narrower filters
+        List<ITEMIDTYPE> candidates = getAllItemIds();
+        if (previouslyFilteredItemIds != null
+                && refinesAll(getFilters(), previousFilters)) {
+            candidates = previouslyFilteredItemIds;
+        }
+
         setFilteredItemIds(new ListSet<ITEMIDTYPE>());
 
         // Filter
+        if (isParallelFilteringEnabled(candidates.size())) {
+            getFilteredItemIds().addAll(filterInParallel(candidates));
+        } else {
+            getFilteredItemIds().addAll(filterItemIds(candidates));
+        }
+        previouslyFilteredItemIds = getFilteredItemIds();
+        previousFilters = new HashSet<Filter>(getFilters());
+
+        // filtered list comes from the full list, can use ==
         boolean equal = true;
         Iterator<ITEMIDTYPE> origIt = originalFilteredItemIds.iterator();
-        for (final Iterator<ITEMIDTYPE> i = getAllItemIds().iterator(); i
-                .hasNext();) {
-            final ITEMIDTYPE id = i.next();
-            if (passesFilters(id)) {
-                // filtered list comes from the full list, can use ==
-                equal = equal && origIt.hasNext() && origIt.next() == id;
-                getFilteredItemIds().add(id);
-            }
+        for (final Iterator<ITEMIDTYPE> i = getFilteredItemIds().iterator(); equal
+                && i.hasNext();) {
+            equal = origIt.hasNext() && origIt.next() == i.next();
         }
 
         return (wasUnfiltered && !getAllItemIds().isEmpty()) || !equal
                 || origIt.hasNext();
     }
 
+    /**
+     * Makes the next filtering pass check all items instead of only the items
+     * that passed the previous filters. This must be called when the value of
+     * a property of an item changes in a way that might affect filtering,
+     * unless the container is refiltered with the same filters right away.
+     * 
+     * @since 7.2
+     */
+    protected void discardPreviousFiltering() {
+        previouslyFilteredItemIds = null;
+        previousFilters = null;
+    }
+
+    /**
+     * Checks if every item that passes all the given filters would also have
+     * passed all the previously applied filters.
+     * 
+     * @param filters
+     *            the current filters
+     * @param previousFilters
+     *            the filters of the previous filtering pass, or null if
+     *            unknown
+     * @return true if the filters are a strict refinement of the previous
+     *         filters, false if they are the same or might let through
+     *         additional items
+     */
+    private boolean refinesAll(Set<Filter> filters,
+            Set<Filter> previousFilters) {
+        if (previousFilters == null || previousFilters.equals(filters)) {
+            // The items may have changed between two passes with the same
+            // filters, so the full list needs to be checked again
+            return false;
+        }
+        for (Filter previous : previousFilters) {
+            boolean refined = false;
+            for (Iterator<Filter> i = filters.iterator(); !refined
+                    && i.hasNext();) {
+                refined = isRefinementOf(i.next(), previous);
+            }
+            if (!refined) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if every item that passes a filter also passes another filter.
+     * This is used to only check the previously visible items when the filters
+     * of the container are narrowed down, e.g. when a {@link SimpleStringFilter}
+     * is extended by one more character or a filter is added to an {@link And}
+     * filter.
+     * 
+     * The default implementation recognizes equal filters,
+     * {@link SimpleStringFilter} and {@link And} and {@link Or} combinations of
+     * filters. Subclasses can override this to recognize other filters. When
+     * in doubt, return false.
+     * 
+     * @param filter
+     *            the new filter
+     * @param previous
+     *            a filter of the previous filtering pass
+     * @return true if all items passing <code>filter</code> are known to pass
+     *         <code>previous</code>, false otherwise
+     * @since 7.2
+     */
+    protected boolean isRefinementOf(Filter filter, Filter previous) {
+        if (filter.equals(previous)) {
+            return true;
+        }
+        if (filter instanceof And) {
+            // Passing one of the terms is required
+            for (Filter term : ((And) filter).getFilters()) {
+                if (isRefinementOf(term, previous)) {
+                    return true;
+                }
+            }
+        } else if (filter instanceof Or) {
+            // Passing any of the terms is sufficient
+            for (Filter term : ((Or) filter).getFilters()) {
+                if (!isRefinementOf(term, previous)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (previous instanceof And) {
+            for (Filter term : ((And) previous).getFilters()) {
+                if (!isRefinementOf(filter, term)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (previous instanceof Or) {
+            for (Filter term : ((Or) previous).getFilters()) {
+                if (isRefinementOf(filter, term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (filter instanceof SimpleStringFilter
+                && previous instanceof SimpleStringFilter) {
+            SimpleStringFilter f = (SimpleStringFilter) filter;
+            SimpleStringFilter p = (SimpleStringFilter) previous;
+            if (f.getPropertyId() == null || p.getFilterString() == null
+                    || f.getFilterString() == null
+                    || !f.getPropertyId().equals(p.getPropertyId())
+                    || f.isIgnoreCase() != p.isIgnoreCase()) {
+                return false;
+            }
+            if (p.isOnlyMatchPrefix()) {
+                return f.isOnlyMatchPrefix()
+                        && f.getFilterString().startsWith(p.getFilterString());
+            } else {
+                return f.getFilterString().contains(p.getFilterString());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the minimum number of items that must be checked in a filtering
+     * pass for the pass to be split between several threads. The resulting
+     * item order is the same as when filtering in a single thread.
+     * 
+     * Parallel filtering is disabled by default. It should only be enabled if
+     * the filters, items and properties of the container can safely be read
+     * from several threads at the same time, and the container is not modified
+     * while it is being filtered.
+     * 
+     * @param parallelFilteringThreshold
+     *            the minimum number of items to filter in parallel, or 0 to
+     *            always filter in the calling thread
+     * @since 7.2
+     */
+    public void setParallelFilteringThreshold(int parallelFilteringThreshold) {
+        if (parallelFilteringThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "Parallel filtering threshold cannot be negative");
+        }
+        this.parallelFilteringThreshold = parallelFilteringThreshold;
+    }
+
+    /**
+     * Gets the minimum number of items that must be checked in a filtering
+     * pass for the pass to be split between several threads.
+     * 
+     * @see #setParallelFilteringThreshold(int)
+     * 
+     * @return the minimum number of items to filter in parallel, or 0 if
+     *         parallel filtering is disabled
+     * @since 7.2
+     */
+    public int getParallelFilteringThreshold() {
+        return parallelFilteringThreshold;
+    }
+
+    /**
+     * Stops the worker threads shared by all containers for parallel filtering
+     * and sorting, so that they do not keep the web application class loader
+     * alive after undeployment. New threads are started if parallel filtering
+     * or sorting is used after this. This method is automatically run by the
+     * framework when a {@link com.vaadin.server.VaadinService} is destroyed.
+     * 
+     * @since 7.2
+     */
+    public static void shutdownWorkerThreads() {
+        ContainerWorkerPool.shutdown();
+    }
+
+    /**
+     * Checks if {@link #passesFilters(Object)} can be called from several
+     * threads at the same time. Subclasses that keep unsynchronized state
+     * while filtering should override this to return false, disabling
+     * {@link #setParallelFilteringThreshold(int) parallel filtering}.
+     * 
+     * @return true if filtering can be done in parallel, false otherwise
+     * @since 7.2
+     */
+    protected boolean isParallelFilteringSupported() {
+        return true;
+    }
+
+    private boolean isParallelFilteringEnabled(int itemCount) {
+        return parallelFilteringThreshold > 0
+                && itemCount >= parallelFilteringThreshold
+                && ContainerWorkerPool.getParallelism() > 1
+                && isParallelFilteringSupported();
+    }
+
+    /**
+     * Filters the given item ids in the shared worker threads, one chunk
+     * per thread.
+     * 
+     * @param itemIds
+     *            the item ids to check
+     * @return the item ids that pass the filters, in their original order
+     */
+    private List<ITEMIDTYPE> filterInParallel(List<ITEMIDTYPE> itemIds) {
+        int chunks = ContainerWorkerPool.getParallelism();
+        int chunkSize = (itemIds.size() + chunks - 1) / chunks;
+
+        List<Callable<List<ITEMIDTYPE>>> tasks = new ArrayList<Callable<List<ITEMIDTYPE>>>(
+                chunks);
+        for (int start = 0; start < itemIds.size(); start += chunkSize) {
+            tasks.add(new FilterTask(itemIds.subList(start,
+                    Math.min(start + chunkSize, itemIds.size()))));
+        }
+
+        try {
+            List<ITEMIDTYPE> passed = new ArrayList<ITEMIDTYPE>();
+            for (List<ITEMIDTYPE> chunk : ContainerWorkerPool
+                    .invokeAll(tasks)) {
+                passed.addAll(chunk);
+            }
+            return passed;
+        } catch (InterruptedException e) {
+            // Finish in this thread and leave the interrupt to the caller
+            Thread.currentThread().interrupt();
+            return filterItemIds(itemIds);
+        } catch (RejectedExecutionException e) {
+            // The pool was shut down while the tasks were being submitted
+            return filterItemIds(itemIds);
+        }
+    }
+
+    private class FilterTask implements Callable<List<ITEMIDTYPE>>,
+            Serializable {
+        private final List<ITEMIDTYPE> itemIds;
+
+        private FilterTask(List<ITEMIDTYPE> itemIds) {
+            this.itemIds = itemIds;
+        }
+
+        @Override
+        public List<ITEMIDTYPE> call() {
+            return filterItemIds(itemIds);
+        }
+    }
+
+    private List<ITEMIDTYPE> filterItemIds(List<ITEMIDTYPE> itemIds) {
+        List<ITEMIDTYPE> passed = new ArrayList<ITEMIDTYPE>();
+        for (ITEMIDTYPE id : itemIds) {
+            if (passesFilters(id)) {
+                passed.add(id);
+            }
+        }
+        return passed;
+    }
+
     /**
      * Checks if the given itemId passes the filters set for the container. The
      * caller should make sure the itemId exists in the container. For
@@ -731,6 +1054,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
 
         // Perform the actual sort
         doSort();
+        discardPreviousFiltering();
 
         // Post sort updates
         if (isFiltered()) {
@@ -744,13 +1068,30 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
     /**
      * Perform the sorting of the data structures in the container. This is
      * invoked when the <code>itemSorter</code> has been prepared for the sort
-     * operation. Typically this method calls
-     * <code>Collections.sort(aCollection, getItemSorter())</code> on all arrays
-     * (containing item ids) that need to be sorted.
+     * operation. Typically this method calls {@link #sortItemIds(List)} on all
+     * lists (containing item ids) that need to be sorted.
      * 
      */
     protected void doSort() {
-        Collections.sort(getAllItemIds(), getItemSorter());
+        sortItemIds(getAllItemIds());
+    }
+
+    /**
+     * Sorts a list of item ids using the current {@link ItemSorter}. A
+     * {@link DefaultItemSorter} reads the sort property values of each item
+     * only once, other item sorters are used as comparators.
+     * 
+     * @param itemIds
+     *            the item ids to sort
+     * @since 7.2
+     */
+    protected <T> void sortItemIds(List<T> itemIds) {
+        ItemSorter sorter = getItemSorter();
+        if (sorter instanceof DefaultItemSorter) {
+            ((DefaultItemSorter) sorter).sort(itemIds);
+        } else {
+            Collections.sort(itemIds, sorter);
+        }
     }
 
     /**
@@ -784,6 +1125,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         if (isFiltered()) {
             getFilteredItemIds().clear();
         }
+        discardPreviousFiltering();
     }
 
     /**
@@ -804,8 +1146,11 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         }
 
         boolean result = getAllItemIds().remove(itemId);
-        if (result && isFiltered()) {
-            getFilteredItemIds().remove(itemId);
+        if (result) {
+            if (isFiltered()) {
+                getFilteredItemIds().remove(itemId);
+            }
+            discardPreviousFiltering();
         }
 
         return result;
@@ -851,6 +1196,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         // "filteredList" will be updated in filterAll() which should be invoked
         // by the caller after calling this method.
         getAllItemIds().add(position, itemId);
+        discardPreviousFiltering();
         registerNewItem(position, itemId, item);
 
         return item;
@@ -1044,6 +1390,171 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         fireItemSetChange(removeEvent);
     }
 
+    @Override
+    protected void fireItemSetChange(ItemSetChangeEvent event) {
+        if (isBatchOpen()) {
+            batchEvents.add(event);
+        } else {
+            super.fireItemSetChange(event);
+        }
+    }
+
+    // batch updates
+
+    /**
+     * Starts a batch of changes to the container. Until the batch is ended
+     * with {@link #endBatch()}, the container is filtered only once and item
+     * set change listeners are not notified. When the batch ends, the
+     * container is filtered if needed and a single event describing all the
+     * changes is sent.
+     * 
+     * If the added and removed items form a single contiguous range of the
+     * view, the event is an {@link Container.Indexed.ItemAddEvent} or an
+     * {@link Container.Indexed.ItemRemoveEvent} for the whole range. Otherwise
+     * a plain item set change event is sent.
+     * 
+     * Items added to a filtered container during a batch only become visible
+     * when the batch ends. Batches can be nested, in which case only the
+     * outermost batch sends an event. Every call should be matched by a call
+     * to {@link #endBatch()} in a finally block.
+     * 
+     * @since 7.2
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batchFilteringPending = false;
+            batchEvents = new ArrayList<ItemSetChangeEvent>();
+        }
+    }
+
+    /**
+     * Ends a batch of changes started with {@link #beginBatch()}. If this ends
+     * the outermost batch, filters the container if needed and notifies item
+     * set change listeners of the changes made during the batch.
+     * 
+     * @throws IllegalStateException
+     *             if no batch is open
+     * @since 7.2
+     */
+    public void endBatch() throws IllegalStateException {
+        if (!isBatchOpen()) {
+            throw new IllegalStateException("No batch to end");
+        }
+        if (--batchDepth > 0) {
+            return;
+        }
+        List<ItemSetChangeEvent> events = batchEvents;
+        batchEvents = null;
+
+        if (batchFilteringPending) {
+            batchFilteringPending = false;
+            // the indexes of the recorded events do not take the postponed
+            // filtering into account
+            if (doFilterContainer(!getFilters().isEmpty()) || !events.isEmpty()) {
+                fireItemSetChange();
+            }
+        } else if (events.size() == 1) {
+            fireItemSetChange(events.get(0));
+        } else if (!events.isEmpty()) {
+            ItemSetChangeEvent event = consolidateEvents(events);
+            if (event != null) {
+                fireItemSetChange(event);
+            } else {
+                fireItemSetChange();
+            }
+        }
+    }
+
+    /**
+     * Checks whether a batch started with {@link #beginBatch()} is open.
+     * 
+     * @return true if changes are currently being batched
+     * @since 7.2
+     */
+    public boolean isBatchOpen() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Combines the events recorded during a batch into a single event. Events
+     * adding or removing items in one contiguous range of the view are combined
+     * into one add or remove event for the range.
+     * 
+     * @param events
+     *            the events in the order they were fired, at least two
+     * @return an event describing all the changes, or null if the changes do
+     *         not form a single range
+     */
+    private ItemSetChangeEvent consolidateEvents(
+            List<ItemSetChangeEvent> events) {
+        boolean adding = events.get(0) instanceof BaseItemAddEvent;
+        boolean removing = events.get(0) instanceof BaseItemRemoveEvent;
+        if (!adding && !removing) {
+            return null;
+        }
+
+        BaseItemAddOrRemoveEvent first = (BaseItemAddOrRemoveEvent) events
+                .get(0);
+        int start = first.getFirstIndex();
+        int count = first.getAffectedItemsCount();
+        Object firstRemovedItemId = first.getFirstItemId();
+        for (ItemSetChangeEvent e : events.subList(1, events.size())) {
+            if (adding ? !(e instanceof BaseItemAddEvent)
+                    : !(e instanceof BaseItemRemoveEvent)) {
+                return null;
+            }
+            BaseItemAddOrRemoveEvent event = (BaseItemAddOrRemoveEvent) e;
+            int index = event.getFirstIndex();
+            if (adding && index >= start && index <= start + count) {
+                // inserted inside or right next to the range added so far
+            } else if (removing && index == start) {
+                // removed the items following the range removed so far
+            } else if (removing
+                    && index + event.getAffectedItemsCount() == start) {
+                // removed the items preceding the range removed so far
+                start = index;
+                firstRemovedItemId = event.getFirstItemId();
+            } else {
+                return null;
+            }
+            count += event.getAffectedItemsCount();
+        }
+
+        if (adding) {
+            return new BaseItemAddEvent(this, getIdByIndex(start), start, count);
+        } else {
+            return new BaseItemRemoveEvent(this, firstRemovedItemId, start,
+                    count);
+        }
+    }
+
+    /**
+     * Removes the items with the given identifiers from the container, sending
+     * a single item set change event.
+     * 
+     * @param itemIds
+     *            the identifiers of the items to remove
+     * @return true if at least one item was removed
+     * @throws UnsupportedOperationException
+     *             if the container does not support removing items
+     * @since 7.2
+     */
+    public boolean removeItems(Collection<?> itemIds)
+            throws UnsupportedOperationException {
+        boolean removed = false;
+        beginBatch();
+        try {
+            for (Object itemId : itemIds) {
+                if (removeItem(itemId)) {
+                    removed = true;
+                }
+            }
+        } finally {
+            endBatch();
+        }
+        return removed;
+    }
+
     // visible and filtered item identifier lists
 
     /**
@@ -1093,6 +1604,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
     @Deprecated
     protected void setFilteredItemIds(List<ITEMIDTYPE> filteredItemIds) {
         this.filteredItemIds = filteredItemIds;
+        discardPreviousFiltering();
     }
 
     /**
@@ -1117,6 +1629,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
     @Deprecated
     protected void setAllItemIds(List<ITEMIDTYPE> allItemIds) {
         this.allItemIds = allItemIds;
+        discardPreviousFiltering();
     }
 
     /**
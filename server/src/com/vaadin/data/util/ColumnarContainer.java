@@ -0,0 +1,1635 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.DefaultItemSorter.DefaultPropertyValueComparator;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.Compare.Operation;
+import com.vaadin.data.util.filter.IsNull;
+import com.vaadin.data.util.filter.Not;
+import com.vaadin.data.util.filter.Or;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
+
+/**
+ * An in-memory {@link Container.Indexed} that stores the values of each
+ * property in a separate column instead of storing a map of values for each
+ * item.
+ * <p>
+ * Properties of the types <code>int</code>, <code>long</code>,
+ * <code>double</code> and <code>boolean</code> and their wrapper classes are
+ * stored in primitive arrays, and <code>String</code> properties are stored as
+ * indexes into a dictionary of the distinct values of the column. Values of
+ * other types are stored as object references. This makes the container use a
+ * fraction of the memory of an {@link IndexedContainer} for large amounts of
+ * numeric or repetitive data.
+ * </p>
+ * <p>
+ * {@link Item} and {@link Property} instances are created on demand as views
+ * to the columns. When the default item sorter is used, sorting compares the
+ * column values directly. {@link Compare}, {@link IsNull} and
+ * {@link SimpleStringFilter} filters, also when combined with {@link And},
+ * {@link Or} and {@link Not}, are evaluated directly on the columns; other
+ * filters are given an item view.
+ * </p>
+ * <p>
+ * Features:
+ * <ul>
+ * <li> {@link Container.Indexed}
+ * <li> {@link Container.Ordered}
+ * <li> {@link Container.Sortable}
+ * <li> {@link Container.Filterable}
+ * <li>Sends all needed events on content changes.
+ * </ul>
+ * </p>
+ * 
+ * @see IndexedContainer
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+@SuppressWarnings("serial")
+public class ColumnarContainer extends
+        AbstractInMemoryContainer<Object, Object, Item> implements
+        Container.PropertySetChangeNotifier, Property.ValueChangeNotifier,
+        Container.Sortable, Container.Filterable, Container.SimpleFilterable {
+
+    /**
+     * Property IDs mapped to the columns, in property order.
+     */
+    private final LinkedHashMap<Object, Column> columns = new LinkedHashMap<Object, Column>();
+
+    /**
+     * Item IDs mapped to the rows where their values are stored.
+     */
+    private final HashMap<Object, Integer> rows = new HashMap<Object, Integer>();
+
+    /**
+     * The item ID of each row, up to {@link #rowCount}.
+     */
+    private Object[] rowItemIds = new Object[16];
+
+    private int rowCount = 0;
+
+    /**
+     * Properties that are read-only.
+     */
+    private final HashSet<Property<?>> readOnlyProperties = new HashSet<Property<?>>();
+
+    private LinkedList<Property.ValueChangeListener> propertyValueChangeListeners = null;
+
+    /**
+     * Property IDs mapped to item IDs mapped to the value change listeners of
+     * a single property.
+     */
+    private HashMap<Object, Map<Object, List<Property.ValueChangeListener>>> singlePropertyValueChangeListeners = null;
+
+    /**
+     * The properties and directions of the current sort, or <code>null</code>
+     * if the item sorter should be used.
+     */
+    private Object[] sortPropertyIds;
+    private boolean[] sortAscending;
+
+    private boolean customItemSorter = false;
+
+    private int nextGeneratedItemId = 1;
+
+    public ColumnarContainer() {
+        super();
+    }
+
+    public ColumnarContainer(Collection<?> itemIds) {
+        this();
+        for (Object itemId : itemIds) {
+            internalAddItemAtEnd(itemId, new ColumnarItem(itemId), false);
+        }
+        filterAll();
+    }
+
+    /* Container methods */
+
+    @Override
+    protected Item getUnfilteredItem(Object itemId) {
+        if (itemId != null && rows.containsKey(itemId)) {
+            return new ColumnarItem(itemId);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return Collections.unmodifiableCollection(columns.keySet());
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        Column column = columns.get(propertyId);
+        return column == null ? null : column.type;
+    }
+
+    @Override
+    public Property getContainerProperty(Object itemId, Object propertyId) {
+        if (!containsId(itemId) || propertyId == null
+                || !columns.containsKey(propertyId)) {
+            return null;
+        }
+        return new ColumnarProperty(itemId, propertyId);
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type,
+            Object defaultValue) {
+        if (propertyId == null || type == null
+                || columns.containsKey(propertyId)) {
+            return false;
+        }
+        if (defaultValue != null
+                && !getWrapperType(type).isInstance(defaultValue)) {
+            throw new IllegalArgumentException(
+                    "Default value is of invalid type, got "
+                            + defaultValue.getClass().getName() + " but "
+                            + type.getName() + " was expected");
+        }
+
+        Column column = createColumn(type);
+        column.defaultValue = defaultValue;
+        column.ensureCapacity(rowItemIds.length);
+        for (int row = 0; row < rowCount; row++) {
+            column.set(row, defaultValue);
+        }
+        columns.put(propertyId, column);
+
+        fireContainerPropertySetChange();
+
+        return true;
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId) {
+        if (columns.remove(propertyId) == null) {
+            return false;
+        }
+
+        fireContainerPropertySetChange();
+
+        return true;
+    }
+
+    @Override
+    public boolean removeAllItems() {
+        int origSize = size();
+        Object firstItem = getFirstVisibleItem();
+
+        internalRemoveAllItems();
+
+        rows.clear();
+        rowItemIds = new Object[16];
+        rowCount = 0;
+        for (Column column : columns.values()) {
+            column.clear();
+            column.ensureCapacity(rowItemIds.length);
+        }
+
+        // fire event only if the visible view changed, regardless of whether
+        // filtered out items were removed or not
+        if (origSize != 0) {
+            fireItemsRemoved(0, firstItem, origSize);
+        }
+
+        return true;
+    }
+
+    @Override
+    public Object addItem() {
+        final Object id = generateId();
+        addItem(id);
+        return id;
+    }
+
+    @Override
+    public Item addItem(Object itemId) {
+        Item item = internalAddItemAtEnd(itemId, new ColumnarItem(itemId),
+                false);
+        if (item == null) {
+            return null;
+        } else if (!isFiltered()) {
+            // always the last item
+            fireItemAdded(size() - 1, itemId, item);
+        } else if (passesFilters(itemId) && !containsId(itemId)) {
+            getFilteredItemIds().add(itemId);
+            // always the last item
+            fireItemAdded(size() - 1, itemId, item);
+        }
+        return item;
+    }
+
+    @Override
+    public boolean removeItem(Object itemId) {
+        if (itemId == null || !rows.containsKey(itemId)) {
+            return false;
+        }
+        int origSize = size();
+        int position = indexOfId(itemId);
+        if (internalRemoveItem(itemId)) {
+            removeRow(itemId);
+            // fire event only if the visible view changed, regardless of
+            // whether filtered out items were removed or not
+            if (size() != origSize) {
+                fireItemRemoved(position, itemId);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /* Container.Ordered methods */
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId) {
+        return internalAddItemAfter(previousItemId, newItemId,
+                new ColumnarItem(newItemId), true);
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId) {
+        final Object id = generateId();
+        if (addItemAfter(previousItemId, id) != null) {
+            return id;
+        } else {
+            return null;
+        }
+    }
+
+    /* Container.Indexed methods */
+
+    @Override
+    public Item addItemAt(int index, Object newItemId) {
+        return internalAddItemAt(index, newItemId, new ColumnarItem(newItemId),
+                true);
+    }
+
+    @Override
+    public Object addItemAt(int index) {
+        final Object id = generateId();
+        addItemAt(index, id);
+        return id;
+    }
+
+    private Serializable generateId() {
+        Serializable id;
+        do {
+            id = Integer.valueOf(nextGeneratedItemId++);
+        } while (rows.containsKey(id));
+
+        return id;
+    }
+
+    @Override
+    protected void registerNewItem(int position, Object itemId, Item item) {
+        if (rowCount == rowItemIds.length) {
+            rowItemIds = Arrays.copyOf(rowItemIds, rowCount + (rowCount >> 1));
+            for (Column column : columns.values()) {
+                column.ensureCapacity(rowItemIds.length);
+            }
+        }
+        int row = rowCount++;
+        rowItemIds[row] = itemId;
+        rows.put(itemId, Integer.valueOf(row));
+        for (Column column : columns.values()) {
+            column.set(row, column.defaultValue);
+        }
+    }
+
+    /**
+     * Frees the row of a removed item by moving the values of the last row to
+     * it.
+     */
+    private void removeRow(Object itemId) {
+        int row = rows.remove(itemId).intValue();
+        int last = --rowCount;
+        if (row != last) {
+            Object movedItemId = rowItemIds[last];
+            rowItemIds[row] = movedItemId;
+            rows.put(movedItemId, Integer.valueOf(row));
+            for (Column column : columns.values()) {
+                column.move(last, row);
+            }
+        }
+        rowItemIds[last] = null;
+        for (Column column : columns.values()) {
+            // Release references held by object columns
+            column.set(last, null);
+        }
+    }
+
+    private int getRow(Object itemId) {
+        Integer row = rows.get(itemId);
+        if (row == null) {
+            throw new IllegalStateException("Item " + itemId
+                    + " is not in the container");
+        }
+        return row.intValue();
+    }
+
+    /* Sorting */
+
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        if (!customItemSorter) {
+            // Use the same properties as DefaultItemSorter would
+            List<Object> ids = new ArrayList<Object>();
+            List<Boolean> orders = new ArrayList<Boolean>();
+            Collection<?> sortable = getSortableContainerPropertyIds();
+            for (int i = 0; i < propertyId.length; i++) {
+                if (sortable.contains(propertyId[i])) {
+                    ids.add(propertyId[i]);
+                    orders.add(Boolean.valueOf(i < ascending.length ? ascending[i]
+                            : true));
+                }
+            }
+            sortPropertyIds = ids.toArray();
+            sortAscending = new boolean[orders.size()];
+            for (int i = 0; i < sortAscending.length; i++) {
+                sortAscending[i] = orders.get(i).booleanValue();
+            }
+        }
+        try {
+            sortContainer(propertyId, ascending);
+        } finally {
+            sortPropertyIds = null;
+            sortAscending = null;
+        }
+    }
+
+    @Override
+    protected void doSort() {
+        if (sortPropertyIds == null) {
+            super.doSort();
+            return;
+        }
+
+        final Column[] sortColumns = new Column[sortPropertyIds.length];
+        for (int i = 0; i < sortColumns.length; i++) {
+            sortColumns[i] = columns.get(sortPropertyIds[i]);
+            sortColumns[i].prepareSort();
+        }
+
+        List<Object> itemIds = getAllItemIds();
+        int[] sortedRows = new int[itemIds.size()];
+        final BitSet hidden = new BitSet();
+        int i = 0;
+        for (Object itemId : itemIds) {
+            sortedRows[i] = getRow(itemId);
+            // Like DefaultItemSorter, put filtered out items last
+            if (isFiltered() && !getFilteredItemIds().contains(itemId)) {
+                hidden.set(sortedRows[i]);
+            }
+            i++;
+        }
+
+        sortRows(sortedRows, new RowComparator() {
+            @Override
+            public int compare(int row1, int row2) {
+                boolean hidden1 = hidden.get(row1);
+                if (hidden1 != hidden.get(row2)) {
+                    return hidden1 ? 1 : -1;
+                } else if (hidden1) {
+                    return 0;
+                }
+                for (int i = 0; i < sortColumns.length; i++) {
+                    int result = sortColumns[i].compareRows(row1, row2);
+                    if (result != 0) {
+                        return sortAscending[i] ? result : -result;
+                    }
+                }
+                return 0;
+            }
+        });
+
+        ListIterator<Object> iterator = itemIds.listIterator();
+        for (int row : sortedRows) {
+            iterator.next();
+            iterator.set(rowItemIds[row]);
+        }
+    }
+
+    @Override
+    public Collection<?> getSortableContainerPropertyIds() {
+        return getSortablePropertyIds();
+    }
+
+    @Override
+    public ItemSorter getItemSorter() {
+        return super.getItemSorter();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When a custom item sorter is set, sorting uses item views instead of
+     * comparing the column values directly.
+     * </p>
+     */
+    @Override
+    public void setItemSorter(ItemSorter itemSorter) {
+        super.setItemSorter(itemSorter);
+        customItemSorter = true;
+    }
+
+    private interface RowComparator extends Serializable {
+        public int compare(int row1, int row2);
+    }
+
+    /**
+     * Sorts rows with a stable merge sort, like
+     * {@link Collections#sort(List, java.util.Comparator)}.
+     */
+    private static void sortRows(int[] rows, RowComparator comparator) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                int middle = Math.min(start + width, rows.length);
+                int end = Math.min(start + 2 * width, rows.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (left < middle
+                            && (right >= end || comparator.compare(rows[left],
+                                    rows[right]) <= 0)) {
+                        buffer[i] = rows[left++];
+                    } else {
+                        buffer[i] = rows[right++];
+                    }
+                }
+            }
+            System.arraycopy(buffer, 0, rows, 0, rows.length);
+        }
+    }
+
+    /* Filtering */
+
+    @Override
+    protected boolean isParallelFilteringSupported() {
+        // String columns cache filter results without synchronization
+        return false;
+    }
+
+    @Override
+    protected boolean passesFilters(Object itemId) {
+        if (getFilters().isEmpty()) {
+            return true;
+        }
+        Integer row = rows.get(itemId);
+        if (row == null) {
+            return super.passesFilters(itemId);
+        }
+        for (Filter filter : getFilters()) {
+            if (!passesFilter(filter, itemId, row.intValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if an item passes a filter, using the column values directly for
+     * the filters that are known to the container.
+     */
+    private boolean passesFilter(Filter filter, Object itemId, int row) {
+        Class<?> filterClass = filter.getClass();
+        if (filter instanceof Compare) {
+            Compare compare = (Compare) filter;
+            Column column = columns.get(compare.getPropertyId());
+            Object value = compare.getValue();
+            if (column != null
+                    && column.getValueClass() != null
+                    && (value == null || value.getClass() == column
+                            .getValueClass())) {
+                return passesCompare(compare.getOperation(), column, row, value);
+            }
+        } else if (filterClass == IsNull.class) {
+            Column column = columns.get(((IsNull) filter).getPropertyId());
+            if (column != null) {
+                return column.isNull(row);
+            }
+        } else if (filterClass == SimpleStringFilter.class) {
+            SimpleStringFilter stringFilter = (SimpleStringFilter) filter;
+            Column column = columns.get(stringFilter.getPropertyId());
+            if (column instanceof StringColumn) {
+                return ((StringColumn) column).matches(stringFilter, row);
+            }
+        } else if (filterClass == And.class) {
+            for (Filter subFilter : ((And) filter).getFilters()) {
+                if (!passesFilter(subFilter, itemId, row)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (filterClass == Or.class) {
+            for (Filter subFilter : ((Or) filter).getFilters()) {
+                if (passesFilter(subFilter, itemId, row)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (filterClass == Not.class) {
+            return !passesFilter(((Not) filter).getFilter(), itemId, row);
+        }
+        return filter.passesFilter(itemId, new ColumnarItem(itemId));
+    }
+
+    /**
+     * Evaluates a {@link Compare} filter with the same semantics as
+     * {@link Compare#passesFilter(Object, Item)}. The value must be null or of
+     * the value class of the column.
+     */
+    private static boolean passesCompare(Operation operation, Column column,
+            int row, Object value) {
+        boolean rowIsNull = column.isNull(row);
+        int result;
+        if (value == null) {
+            if (operation == Operation.EQUAL) {
+                return rowIsNull;
+            }
+            result = rowIsNull ? 0 : -1;
+        } else if (rowIsNull) {
+            if (operation == Operation.EQUAL) {
+                return false;
+            }
+            result = 1;
+        } else {
+            result = column.compareToValue(row, value);
+        }
+
+        switch (operation) {
+        case EQUAL:
+            return result == 0;
+        case GREATER:
+            return result > 0;
+        case LESS:
+            return result < 0;
+        case GREATER_OR_EQUAL:
+            return result >= 0;
+        case LESS_OR_EQUAL:
+            return result <= 0;
+        }
+        return false;
+    }
+
+    @Override
+    public void addContainerFilter(Object propertyId, String filterString,
+            boolean ignoreCase, boolean onlyMatchPrefix) {
+        try {
+            addFilter(new SimpleStringFilter(propertyId, filterString,
+                    ignoreCase, onlyMatchPrefix));
+        } catch (UnsupportedFilterException e) {
+            // the filter instance created here is always valid for in-memory
+            // containers
+        }
+    }
+
+    @Override
+    public void removeAllContainerFilters() {
+        removeAllFilters();
+    }
+
+    @Override
+    public void removeContainerFilters(Object propertyId) {
+        removeFilters(propertyId);
+    }
+
+    @Override
+    public void addContainerFilter(Filter filter)
+            throws UnsupportedFilterException {
+        addFilter(filter);
+    }
+
+    @Override
+    public void removeContainerFilter(Filter filter) {
+        removeFilter(filter);
+    }
+
+    @Override
+    public boolean hasContainerFilters() {
+        return super.hasContainerFilters();
+    }
+
+    @Override
+    public Collection<Filter> getContainerFilters() {
+        return super.getContainerFilters();
+    }
+
+    /* Events */
+
+    private static class PropertyValueChangeEvent extends EventObject implements
+            Property.ValueChangeEvent {
+
+        private PropertyValueChangeEvent(Property source) {
+            super(source);
+        }
+
+        @Override
+        public Property getProperty() {
+            return (Property) getSource();
+        }
+    }
+
+    @Override
+    public void addPropertySetChangeListener(
+            Container.PropertySetChangeListener listener) {
+        super.addPropertySetChangeListener(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #addPropertySetChangeListener(com.vaadin.data.Container.PropertySetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void addListener(Container.PropertySetChangeListener listener) {
+        addPropertySetChangeListener(listener);
+    }
+
+    @Override
+    public void removePropertySetChangeListener(
+            Container.PropertySetChangeListener listener) {
+        super.removePropertySetChangeListener(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #removePropertySetChangeListener(com.vaadin.data.Container.PropertySetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void removeListener(Container.PropertySetChangeListener listener) {
+        removePropertySetChangeListener(listener);
+    }
+
+    @Override
+    public void addValueChangeListener(Property.ValueChangeListener listener) {
+        if (propertyValueChangeListeners == null) {
+            propertyValueChangeListeners = new LinkedList<Property.ValueChangeListener>();
+        }
+        propertyValueChangeListeners.add(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #addValueChangeListener(com.vaadin.data.Property.ValueChangeListener)}
+     **/
+    @Override
+    @Deprecated
+    public void addListener(Property.ValueChangeListener listener) {
+        addValueChangeListener(listener);
+    }
+
+    @Override
+    public void removeValueChangeListener(Property.ValueChangeListener listener) {
+        if (propertyValueChangeListeners != null) {
+            propertyValueChangeListeners.remove(listener);
+        }
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #removeValueChangeListener(com.vaadin.data.Property.ValueChangeListener)}
+     **/
+    @Override
+    @Deprecated
+    public void removeListener(Property.ValueChangeListener listener) {
+        removeValueChangeListener(listener);
+    }
+
+    @Override
+    public Collection<?> getListeners(Class<?> eventType) {
+        if (Property.ValueChangeEvent.class.isAssignableFrom(eventType)) {
+            if (propertyValueChangeListeners == null) {
+                return Collections.EMPTY_LIST;
+            } else {
+                return Collections
+                        .unmodifiableCollection(propertyValueChangeListeners);
+            }
+        }
+        return super.getListeners(eventType);
+    }
+
+    private void firePropertyValueChange(ColumnarProperty source) {
+        if (propertyValueChangeListeners != null) {
+            final Object[] l = propertyValueChangeListeners.toArray();
+            final Property.ValueChangeEvent event = new PropertyValueChangeEvent(
+                    source);
+            for (int i = 0; i < l.length; i++) {
+                ((Property.ValueChangeListener) l[i]).valueChange(event);
+            }
+        }
+
+        if (singlePropertyValueChangeListeners != null) {
+            final Map<Object, List<Property.ValueChangeListener>> itemIdToListeners = singlePropertyValueChangeListeners
+                    .get(source.propertyId);
+            if (itemIdToListeners != null) {
+                final List<Property.ValueChangeListener> listenerList = itemIdToListeners
+                        .get(source.itemId);
+                if (listenerList != null) {
+                    final Property.ValueChangeEvent event = new PropertyValueChangeEvent(
+                            source);
+                    Object[] listeners = listenerList.toArray();
+                    for (int i = 0; i < listeners.length; i++) {
+                        ((Property.ValueChangeListener) listeners[i])
+                                .valueChange(event);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addSinglePropertyChangeListener(Object propertyId,
+            Object itemId, Property.ValueChangeListener listener) {
+        if (listener == null) {
+            return;
+        }
+        if (singlePropertyValueChangeListeners == null) {
+            singlePropertyValueChangeListeners = new HashMap<Object, Map<Object, List<Property.ValueChangeListener>>>();
+        }
+        Map<Object, List<Property.ValueChangeListener>> itemIdToListeners = singlePropertyValueChangeListeners
+                .get(propertyId);
+        if (itemIdToListeners == null) {
+            itemIdToListeners = new HashMap<Object, List<Property.ValueChangeListener>>();
+            singlePropertyValueChangeListeners.put(propertyId,
+                    itemIdToListeners);
+        }
+        List<Property.ValueChangeListener> listenerList = itemIdToListeners
+                .get(itemId);
+        if (listenerList == null) {
+            listenerList = new LinkedList<Property.ValueChangeListener>();
+            itemIdToListeners.put(itemId, listenerList);
+        }
+        listenerList.add(listener);
+    }
+
+    private void removeSinglePropertyChangeListener(Object propertyId,
+            Object itemId, Property.ValueChangeListener listener) {
+        if (listener == null || singlePropertyValueChangeListeners == null) {
+            return;
+        }
+        final Map<Object, List<Property.ValueChangeListener>> itemIdToListeners = singlePropertyValueChangeListeners
+                .get(propertyId);
+        if (itemIdToListeners != null) {
+            final List<Property.ValueChangeListener> listenerList = itemIdToListeners
+                    .get(itemId);
+            if (listenerList != null) {
+                listenerList.remove(listener);
+                if (listenerList.isEmpty()) {
+                    itemIdToListeners.remove(itemId);
+                }
+            }
+            if (itemIdToListeners.isEmpty()) {
+                singlePropertyValueChangeListeners.remove(propertyId);
+            }
+        }
+        if (singlePropertyValueChangeListeners.isEmpty()) {
+            singlePropertyValueChangeListeners = null;
+        }
+    }
+
+    /* Item and Property views */
+
+    /**
+     * An item view to a row of the container.
+     */
+    private class ColumnarItem implements Item {
+
+        private final Object itemId;
+
+        private ColumnarItem(Object itemId) {
+            if (itemId == null) {
+                throw new NullPointerException();
+            }
+            this.itemId = itemId;
+        }
+
+        @Override
+        public Property getItemProperty(Object id) {
+            if (!columns.containsKey(id)) {
+                return null;
+            }
+            return new ColumnarProperty(itemId, id);
+        }
+
+        @Override
+        public Collection<?> getItemPropertyIds() {
+            return getContainerPropertyIds();
+        }
+
+        @Override
+        public boolean addItemProperty(Object id, Property property)
+                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException("Columnar container item "
+                    + "does not support adding new properties");
+        }
+
+        @Override
+        public boolean removeItemProperty(Object id)
+                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException(
+                    "Columnar container item does not support property removal");
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder retValue = new StringBuilder();
+            for (final Iterator<?> i = columns.keySet().iterator(); i
+                    .hasNext();) {
+                retValue.append(getItemProperty(i.next()).getValue());
+                if (i.hasNext()) {
+                    retValue.append(' ');
+                }
+            }
+            return retValue.toString();
+        }
+
+        @Override
+        public int hashCode() {
+            return itemId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || obj.getClass() != ColumnarItem.class) {
+                return false;
+            }
+            final ColumnarItem other = (ColumnarItem) obj;
+            return getHost() == other.getHost() && itemId.equals(other.itemId);
+        }
+
+        private ColumnarContainer getHost() {
+            return ColumnarContainer.this;
+        }
+    }
+
+    /**
+     * A property view to a value in a column.
+     */
+    private class ColumnarProperty implements Property<Object>,
+            Property.ValueChangeNotifier {
+
+        private final Object itemId;
+
+        private final Object propertyId;
+
+        private ColumnarProperty(Object itemId, Object propertyId) {
+            if (itemId == null || propertyId == null) {
+                // Null ids are not accepted
+                throw new NullPointerException(
+                        "Container item or property ids can not be null");
+            }
+            this.itemId = itemId;
+            this.propertyId = propertyId;
+        }
+
+        private Column getColumn() {
+            Column column = columns.get(propertyId);
+            if (column == null) {
+                throw new IllegalStateException("Property " + propertyId
+                        + " has been removed from the container");
+            }
+            return column;
+        }
+
+        @Override
+        public Class<? extends Object> getType() {
+            return getColumn().type;
+        }
+
+        @Override
+        public Object getValue() {
+            return getColumn().get(getRow(itemId));
+        }
+
+        @Override
+        public void setValue(Object newValue) throws ReadOnlyException {
+            if (isReadOnly()) {
+                throw new ReadOnlyException();
+            }
+            Column column = getColumn();
+            if (newValue != null
+                    && !getWrapperType(column.type).isInstance(newValue)) {
+                throw new IllegalArgumentException(
+                        "Value is of invalid type, got "
+                                + newValue.getClass().getName() + " but "
+                                + column.type.getName() + " was expected");
+            }
+            column.set(getRow(itemId), newValue);
+
+            // update the container filtering if this property is being filtered
+            discardPreviousFiltering();
+            if (isPropertyFiltered(propertyId)) {
+                filterAll();
+            }
+
+            firePropertyValueChange(this);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return readOnlyProperties.contains(this);
+        }
+
+        @Override
+        public void setReadOnly(boolean newStatus) {
+            if (newStatus) {
+                readOnlyProperties.add(this);
+            } else {
+                readOnlyProperties.remove(this);
+            }
+        }
+
+        @Override
+        public void addValueChangeListener(Property.ValueChangeListener listener) {
+            addSinglePropertyChangeListener(propertyId, itemId, listener);
+        }
+
+        /**
+         * @deprecated As of 7.0, replaced by
+         *             {@link #addValueChangeListener(com.vaadin.data.Property.ValueChangeListener)}
+         **/
+        @Override
+        @Deprecated
+        public void addListener(Property.ValueChangeListener listener) {
+            addValueChangeListener(listener);
+        }
+
+        @Override
+        public void removeValueChangeListener(
+                Property.ValueChangeListener listener) {
+            removeSinglePropertyChangeListener(propertyId, itemId, listener);
+        }
+
+        /**
+         * @deprecated As of 7.0, replaced by
+         *             {@link #removeValueChangeListener(com.vaadin.data.Property.ValueChangeListener)}
+         **/
+        @Override
+        @Deprecated
+        public void removeListener(Property.ValueChangeListener listener) {
+            removeValueChangeListener(listener);
+        }
+
+        /**
+         * @deprecated As of 7.0. To get the property value, use
+         *             {@link #getValue()} instead (and possibly toString on
+         *             that)
+         */
+        @Deprecated
+        @Override
+        public String toString() {
+            if (!LegacyPropertyHelper.isLegacyToStringEnabled()) {
+                return super.toString();
+            } else {
+                return LegacyPropertyHelper.legacyPropertyToString(this);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return itemId.hashCode() ^ propertyId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || obj.getClass() != ColumnarProperty.class) {
+                return false;
+            }
+            final ColumnarProperty other = (ColumnarProperty) obj;
+            return other.getHost() == getHost()
+                    && other.propertyId.equals(propertyId)
+                    && other.itemId.equals(itemId);
+        }
+
+        private ColumnarContainer getHost() {
+            return ColumnarContainer.this;
+        }
+    }
+
+    /* Column storage */
+
+    /**
+     * Gets the wrapper class for a primitive type, or the type itself for
+     * other types.
+     */
+    private static Class<?> getWrapperType(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        }
+        return type;
+    }
+
+    private static Column createColumn(Class<?> type) {
+        Class<?> valueType = getWrapperType(type);
+        if (valueType == Integer.class) {
+            return new IntColumn(type);
+        } else if (valueType == Long.class) {
+            return new LongColumn(type);
+        } else if (valueType == Double.class) {
+            return new DoubleColumn(type);
+        } else if (valueType == Boolean.class) {
+            return new BooleanColumn(type);
+        } else if (valueType == String.class) {
+            return new StringColumn(type);
+        }
+        return new ObjectColumn(type);
+    }
+
+    /**
+     * Storage for the values of one property. Values passed to a column have
+     * already been checked to be of the type of the column.
+     */
+    private static abstract class Column implements Serializable {
+
+        protected final Class<?> type;
+
+        protected Object defaultValue;
+
+        protected Column(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Gets the class of the values in this column if the values are
+         * compared by the column, or <code>null</code> if values are compared
+         * through {@link Comparable}.
+         */
+        public Class<?> getValueClass() {
+            return getWrapperType(type);
+        }
+
+        public abstract Object get(int row);
+
+        public abstract void set(int row, Object value);
+
+        public abstract boolean isNull(int row);
+
+        /**
+         * Copies the value of a row to another row.
+         */
+        public abstract void move(int from, int to);
+
+        public abstract void ensureCapacity(int capacity);
+
+        /**
+         * Removes all values.
+         */
+        public abstract void clear();
+
+        /**
+         * Called before {@link #compareRows(int, int)} is used for sorting.
+         */
+        public void prepareSort() {
+        }
+
+        /**
+         * Compares the values of two rows like
+         * {@link DefaultPropertyValueComparator}, with null less than any
+         * other value.
+         */
+        public abstract int compareRows(int row1, int row2);
+
+        /**
+         * Compares the non-null value of a row to a non-null value of the
+         * value class of the column.
+         */
+        public abstract int compareToValue(int row, Object value);
+    }
+
+    /**
+     * Base class for columns of primitive values, with a bit set for nulls.
+     */
+    private static abstract class PrimitiveColumn extends Column {
+
+        protected BitSet nulls = new BitSet();
+
+        protected PrimitiveColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : getValue(row);
+        }
+
+        @Override
+        public void set(int row, Object value) {
+            nulls.set(row, value == null);
+            if (value != null) {
+                setValue(row, value);
+            }
+        }
+
+        @Override
+        public void move(int from, int to) {
+            nulls.set(to, nulls.get(from));
+            moveValue(from, to);
+        }
+
+        @Override
+        public void clear() {
+            nulls = new BitSet();
+        }
+
+        @Override
+        public int compareRows(int row1, int row2) {
+            boolean null1 = nulls.get(row1);
+            if (null1 || nulls.get(row2)) {
+                return null1 == nulls.get(row2) ? 0 : (null1 ? -1 : 1);
+            }
+            return compareValues(row1, row2);
+        }
+
+        protected abstract Object getValue(int row);
+
+        protected abstract void setValue(int row, Object value);
+
+        protected abstract void moveValue(int from, int to);
+
+        protected abstract int compareValues(int row1, int row2);
+    }
+
+    private static class IntColumn extends PrimitiveColumn {
+
+        private int[] values = new int[0];
+
+        private IntColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Integer.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Integer) value).intValue();
+        }
+
+        @Override
+        protected void moveValue(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            values = new int[0];
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            return compare(values[row1], values[row2]);
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            return compare(values[row], ((Integer) value).intValue());
+        }
+
+        private static int compare(int value1, int value2) {
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+
+        private long[] values = new long[0];
+
+        private LongColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Long.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Long) value).longValue();
+        }
+
+        @Override
+        protected void moveValue(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            values = new long[0];
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            return compare(values[row1], values[row2]);
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            return compare(values[row], ((Long) value).longValue());
+        }
+
+        private static int compare(long value1, long value2) {
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+
+        private double[] values = new double[0];
+
+        private DoubleColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Double.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Double) value).doubleValue();
+        }
+
+        @Override
+        protected void moveValue(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            values = new double[0];
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            // Same ordering as Double.compareTo()
+            return Double.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            return Double.compare(values[row], ((Double) value).doubleValue());
+        }
+    }
+
+    private static class BooleanColumn extends PrimitiveColumn {
+
+        private BitSet values = new BitSet();
+
+        private BooleanColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Boolean.valueOf(values.get(row));
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values.set(row, ((Boolean) value).booleanValue());
+        }
+
+        @Override
+        protected void moveValue(int from, int to) {
+            values.set(to, values.get(from));
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            // BitSet grows as needed
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            values = new BitSet();
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            return compare(values.get(row1), values.get(row2));
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            return compare(values.get(row), ((Boolean) value).booleanValue());
+        }
+
+        private static int compare(boolean value1, boolean value2) {
+            // false is less than true, as in Boolean.compareTo()
+            return value1 == value2 ? 0 : (value1 ? 1 : -1);
+        }
+    }
+
+    /**
+     * A column of strings, stored as indexes to a dictionary of the distinct
+     * values in the column. Values no longer in use are only removed from the
+     * dictionary when all items are removed.
+     */
+    private static class StringColumn extends Column {
+
+        private static final int MAX_CACHED_FILTERS = 16;
+
+        private int[] codes = new int[0];
+
+        private ArrayList<String> dictionary = new ArrayList<String>();
+
+        private HashMap<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+
+        /**
+         * The sort rank of each dictionary entry, valid for the dictionary
+         * entries that existed when {@link #prepareSort()} was last called.
+         */
+        private transient int[] ranks;
+
+        /**
+         * The result of {@link SimpleStringFilter}s for each dictionary entry:
+         * 0 if not yet evaluated, 1 if passes and 2 if not.
+         */
+        private transient Map<SimpleStringFilter, byte[]> filterResults;
+
+        private StringColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        public Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        public void set(int row, Object value) {
+            if (value == null) {
+                codes[row] = -1;
+                return;
+            }
+            Integer code = dictionaryCodes.get(value);
+            if (code == null) {
+                code = Integer.valueOf(dictionary.size());
+                dictionary.add((String) value);
+                dictionaryCodes.put((String) value, code);
+            }
+            codes[row] = code.intValue();
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return codes[row] < 0;
+        }
+
+        @Override
+        public void move(int from, int to) {
+            codes[to] = codes[from];
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (codes.length < capacity) {
+                codes = Arrays.copyOf(codes, capacity);
+            }
+        }
+
+        @Override
+        public void clear() {
+            codes = new int[0];
+            dictionary = new ArrayList<String>();
+            dictionaryCodes = new HashMap<String, Integer>();
+            ranks = null;
+            filterResults = null;
+        }
+
+        @Override
+        public void prepareSort() {
+            // Sorting the distinct values once is cheaper than comparing the
+            // strings for each pair of rows
+            Integer[] sorted = new Integer[dictionary.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer code1, Integer code2) {
+                    return dictionary.get(code1.intValue()).compareTo(
+                            dictionary.get(code2.intValue()));
+                }
+            });
+            ranks = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                ranks[sorted[i].intValue()] = i;
+            }
+        }
+
+        @Override
+        public int compareRows(int row1, int row2) {
+            int code1 = codes[row1];
+            int code2 = codes[row2];
+            if (code1 < 0 || code2 < 0) {
+                return code1 < 0 == code2 < 0 ? 0 : (code1 < 0 ? -1 : 1);
+            }
+            if (ranks != null && code1 < ranks.length && code2 < ranks.length) {
+                return ranks[code1] - ranks[code2];
+            }
+            return dictionary.get(code1).compareTo(dictionary.get(code2));
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            return dictionary.get(codes[row]).compareTo((String) value);
+        }
+
+        /**
+         * Checks if a row passes a {@link SimpleStringFilter}, evaluating the
+         * filter only once for each distinct value.
+         */
+        public boolean matches(SimpleStringFilter filter, int row) {
+            int code = codes[row];
+            if (code < 0) {
+                return false;
+            }
+            if (filterResults == null) {
+                filterResults = new HashMap<SimpleStringFilter, byte[]>();
+            }
+            byte[] results = filterResults.get(filter);
+            if (results == null || results.length <= code) {
+                if (results == null && filterResults.size() >= MAX_CACHED_FILTERS) {
+                    filterResults.clear();
+                }
+                results = Arrays.copyOf(results == null ? new byte[0]
+                        : results, dictionary.size());
+                filterResults.put(filter, results);
+            }
+            if (results[code] == 0) {
+                results[code] = matches(filter, dictionary.get(code)) ? (byte) 1
+                        : (byte) 2;
+            }
+            return results[code] == 1;
+        }
+
+        /**
+         * Same as {@link SimpleStringFilter#passesFilter(Object, Item)} for a
+         * non-null value.
+         */
+        private static boolean matches(SimpleStringFilter filter, String value) {
+            if (filter.isIgnoreCase()) {
+                value = value.toLowerCase();
+            }
+            if (filter.isOnlyMatchPrefix()) {
+                return value.startsWith(filter.getFilterString());
+            } else {
+                return value.contains(filter.getFilterString());
+            }
+        }
+    }
+
+    /**
+     * A column of arbitrary objects.
+     */
+    private static class ObjectColumn extends Column {
+
+        private static final DefaultPropertyValueComparator comparator = new DefaultPropertyValueComparator();
+
+        private Object[] values = new Object[0];
+
+        private ObjectColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        public Class<?> getValueClass() {
+            // Compare filters are evaluated by the filter itself
+            return null;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        public void move(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        @Override
+        public void clear() {
+            values = new Object[0];
+        }
+
+        @Override
+        public int compareRows(int row1, int row2) {
+            return comparator.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        public int compareToValue(int row, Object value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A daemon thread pool shared by the in-memory containers for splitting large
+ * filtering and sorting passes between processors. The pool is created when
+ * first needed and shut down through
+ * {@link AbstractInMemoryContainer#shutdownWorkerThreads()} when a
+ * {@link com.vaadin.server.VaadinService} is destroyed.
+ *
+ * @since 7.2
+ */
+final class ContainerWorkerPool {
+
+    private static ExecutorService executor;
+
+    private static class WorkerThreadFactory implements ThreadFactory,
+            Serializable {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Vaadin container worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private ContainerWorkerPool() {
+    }
+
+    /**
+     * Gets the number of tasks that can usefully run at the same time.
+     *
+     * @return the number of available processors
+     */
+    static int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs the given tasks in the pool and waits for all of them to complete.
+     * An exception thrown by a task is rethrown as is if it is unchecked.
+     *
+     * @param tasks
+     *            the tasks to run
+     * @return the results of the tasks, in the same order as the tasks
+     * @throws InterruptedException
+     *             if interrupted while waiting, in which case unfinished tasks
+     *             are cancelled
+     */
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+            throws InterruptedException {
+        List<Future<T>> futures = getExecutor().invokeAll(tasks);
+        List<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Shuts down the worker threads so that they do not keep the web
+     * application class loader alive after the application has been
+     * undeployed. Passes that are already running are completed. New threads
+     * are started if a parallel pass is started after this. Passes submitting
+     * their tasks at the same time may get a
+     * {@link java.util.concurrent.RejectedExecutionException} and should then
+     * be completed in the calling thread.
+     */
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(getParallelism(),
+                    new WorkerThreadFactory());
+        }
+        return executor;
+    }
+}
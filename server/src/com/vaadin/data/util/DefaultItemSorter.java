@@ -17,9 +17,14 @@ package com.vaadin.data.util;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.Sortable;
@@ -36,6 +41,9 @@ import com.vaadin.data.Property;
  * A Comparator is used for comparing the individual <code>Property</code>
  * values. The comparator can be set using the constructor. If no comparator is
  * provided a default comparator is used.
+ * <p>
+ * When sorting a whole list with {@link #sort(List)}, the property values are
+ * read only once for each item instead of for every comparison.
  * 
  */
 public class DefaultItemSorter implements ItemSorter {
@@ -44,6 +52,7 @@ public class DefaultItemSorter implements ItemSorter {
     private boolean[] sortDirections;
     private Container container;
     private Comparator<Object> propertyValueComparator;
+    private int parallelSortThreshold = 0;
 
     /**
      * Constructs a DefaultItemSorter using the default <code>Comparator</code>
@@ -186,6 +195,263 @@ public class DefaultItemSorter implements ItemSorter {
 
     }
 
+    /**
+     * Sorts a list of item ids of the container given to
+     * {@link #setSortProperties(Sortable, Object[], boolean[])}. The result is
+     * the same as with <code>Collections.sort(itemIds, this)</code>, but the
+     * sort property values are read from each item only once.
+     * <p>
+     * Subclasses that override {@link #compare(Object, Object)} or
+     * {@link #compareProperty(Object, boolean, Item, Item)} are sorted using
+     * those methods instead, unless they override
+     * {@link #isSortKeyExtractionSupported()}.
+     * 
+     * @param itemIds
+     *            the item ids to sort, not null
+     * @since 7.2
+     */
+    public <T> void sort(List<T> itemIds) {
+        if (itemIds.size() < 2 || !isSortKeyExtractionSupported()) {
+            Collections.sort(itemIds, this);
+            return;
+        }
+
+        // Extract the sort keys of each item into one array
+        final Object[] ids = itemIds.toArray();
+        final int keyCount = sortPropertyIds.length;
+        final Object[] keys = new Object[ids.length * keyCount];
+        final BitSet missing = new BitSet(ids.length);
+        for (int row = 0; row < ids.length; row++) {
+            Item item = container.getItem(ids[row]);
+            if (item == null) {
+                missing.set(row);
+                continue;
+            }
+            for (int i = 0; i < keyCount; i++) {
+                Property<?> property = item.getItemProperty(sortPropertyIds[i]);
+                keys[row * keyCount + i] = property == null ? null : property
+                        .getValue();
+            }
+        }
+
+        RowComparator comparator = new RowComparator() {
+            @Override
+            public int compare(int row1, int row2) {
+                // Same order as compare(Object, Object)
+                boolean missing1 = missing.get(row1);
+                if (missing1 != missing.get(row2)) {
+                    return missing1 ? 1 : -1;
+                } else if (missing1) {
+                    return 0;
+                }
+                for (int i = 0; i < keyCount; i++) {
+                    Object value1 = keys[row1 * keyCount + i];
+                    Object value2 = keys[row2 * keyCount + i];
+                    int result = sortDirections[i] ? propertyValueComparator
+                            .compare(value1, value2) : propertyValueComparator
+                            .compare(value2, value1);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return 0;
+            }
+        };
+
+        int[] rows;
+        if (parallelSortThreshold > 0 && ids.length >= parallelSortThreshold
+                && ContainerWorkerPool.getParallelism() > 1) {
+            rows = sortRowsInParallel(ids.length, comparator);
+        } else {
+            rows = sortRows(ids.length, comparator);
+        }
+
+        // Apply the permutation
+        ListIterator<T> iterator = itemIds.listIterator();
+        for (int row : rows) {
+            iterator.next();
+            @SuppressWarnings("unchecked")
+            T itemId = (T) ids[row];
+            iterator.set(itemId);
+        }
+    }
+
+    /**
+     * Checks if {@link #sort(List)} can compare values read in advance instead
+     * of calling {@link #compare(Object, Object)}. By default this is only the
+     * case for this class itself, not for subclasses.
+     * 
+     * @return true if the sort keys can be extracted in advance, false to sort
+     *         using {@link #compare(Object, Object)}
+     * @since 7.2
+     */
+    protected boolean isSortKeyExtractionSupported() {
+        return getClass() == DefaultItemSorter.class;
+    }
+
+    /**
+     * Sets the minimum number of items to sort for {@link #sort(List)} to
+     * split the sort between several threads. The sort property values are
+     * still read in the calling thread, but the property value comparator is
+     * called from several threads. The result is the same as when sorting in
+     * a single thread.
+     * <p>
+     * Parallel sorting is disabled by default. It should only be enabled if the
+     * property value comparator can safely be called from several threads at
+     * the same time. The default comparator can.
+     * 
+     * @param parallelSortThreshold
+     *            the minimum number of items to sort in parallel, or 0 to
+     *            always sort in the calling thread
+     * @since 7.2
+     */
+    public void setParallelSortThreshold(int parallelSortThreshold) {
+        if (parallelSortThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "Parallel sort threshold cannot be negative");
+        }
+        this.parallelSortThreshold = parallelSortThreshold;
+    }
+
+    /**
+     * Gets the minimum number of items to sort for {@link #sort(List)} to
+     * split the sort between several threads.
+     * 
+     * @see #setParallelSortThreshold(int)
+     * 
+     * @return the minimum number of items to sort in parallel, or 0 if
+     *         parallel sorting is disabled
+     * @since 7.2
+     */
+    public int getParallelSortThreshold() {
+        return parallelSortThreshold;
+    }
+
+    private interface RowComparator extends Serializable {
+        public int compare(int row1, int row2);
+    }
+
+    /**
+     * Sorts one range of the rows.
+     */
+    private static class SortTask implements Callable<Void>, Serializable {
+        private final int[] rows;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final RowComparator comparator;
+
+        private SortTask(int[] rows, int[] buffer, int from, int to,
+                RowComparator comparator) {
+            this.rows = rows;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Void call() {
+            sortRows(rows, buffer, from, to, comparator);
+            return null;
+        }
+    }
+
+    /**
+     * Sorts the rows in the current thread.
+     * 
+     * @return the row indexes in sorted order
+     */
+    private static int[] sortRows(int rowCount, RowComparator comparator) {
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = row;
+        }
+        sortRows(rows, new int[rowCount], 0, rowCount, comparator);
+        return rows;
+    }
+
+    /**
+     * Sorts one chunk of the rows per thread and then merges the chunks. If
+     * the chunks cannot be sorted in the worker threads, the rows are sorted
+     * in the current thread instead, using new arrays since cancelled tasks
+     * might still be running.
+     * 
+     * @return the row indexes in sorted order
+     */
+    private static int[] sortRowsInParallel(int rowCount,
+            RowComparator comparator) {
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = row;
+        }
+        int[] buffer = new int[rows.length];
+        int chunks = ContainerWorkerPool.getParallelism();
+        int chunkSize = (rows.length + chunks - 1) / chunks;
+
+        List<SortTask> tasks = new ArrayList<SortTask>(chunks);
+        for (int start = 0; start < rows.length; start += chunkSize) {
+            tasks.add(new SortTask(rows, buffer, start, Math.min(start
+                    + chunkSize, rows.length), comparator));
+        }
+        try {
+            ContainerWorkerPool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            // Sort in this thread and leave the interrupt to the caller
+            Thread.currentThread().interrupt();
+            return sortRows(rowCount, comparator);
+        } catch (RejectedExecutionException e) {
+            // The pool was shut down while the tasks were being submitted
+            return sortRows(rowCount, comparator);
+        }
+
+        for (int width = chunkSize; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                merge(rows, buffer, start, Math.min(start + width, rows.length),
+                        Math.min(start + 2 * width, rows.length), comparator);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Stable bottom-up merge sort of a range of the rows.
+     */
+    private static void sortRows(int[] rows, int[] buffer, int from, int to,
+            RowComparator comparator) {
+        for (int width = 1; width < to - from; width *= 2) {
+            for (int start = from; start < to; start += 2 * width) {
+                merge(rows, buffer, start, Math.min(start + width, to),
+                        Math.min(start + 2 * width, to), comparator);
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted ranges [start, middle) and [middle, end) of the rows,
+     * keeping the order of equal rows.
+     */
+    private static void merge(int[] rows, int[] buffer, int start, int middle,
+            int end, RowComparator comparator) {
+        if (middle >= end
+                || comparator.compare(rows[middle - 1], rows[middle]) <= 0) {
+            // Already in order
+            return;
+        }
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+            if (left < middle
+                    && (right >= end || comparator.compare(rows[left],
+                            rows[right]) <= 0)) {
+                buffer[i] = rows[left++];
+            } else {
+                buffer[i] = rows[right++];
+            }
+        }
+        System.arraycopy(buffer, start, rows, start, end - start);
+    }
+
     /**
      * Provides a default comparator used for comparing {@link Property} values.
      * The <code>DefaultPropertyValueComparator</code> assumes all objects it
@@ -26,9 +26,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Item;
@@ -38,12 +39,18 @@ import com.vaadin.util.FileTypeResolver;
 
 /**
  * A hierarchical container wrapper for a filesystem.
+ * <p>
+ * By default the filesystem is read again whenever the container is accessed.
+ * With caching enabled, each directory is listed once and the attributes of
+ * the listed files are kept in memory until the cache is refreshed with
+ * {@link #refresh()}, {@link #refresh(File)} or {@link #checkForChanges()}.
  * 
  * @author Vaadin Ltd.
  * @since 3.0
  */
 @SuppressWarnings("serial")
-public class FilesystemContainer implements Container.Hierarchical {
+public class FilesystemContainer extends AbstractContainer implements
+        Container.Hierarchical, Container.ItemSetChangeNotifier {
 
     /**
      * String identifier of a file's "name" property.
@@ -104,6 +111,18 @@ public class FilesystemContainer implements Container.Hierarchical {
 
     private boolean recursive = true;
 
+    private boolean caching = false;
+
+    /**
+     * Cached listings by directory, created lazily when caching is enabled.
+     */
+    private transient Map<File, CachedDirectory> directoryCache;
+
+    /**
+     * Cached attributes of the files in the cached listings.
+     */
+    private transient Map<File, CachedAttributes> attributeCache;
+
     /**
      * Constructs a new <code>FileSystemContainer</code> with the specified file
      * as the root of the filesystem. The files are included recursively.
@@ -184,6 +203,7 @@ public class FilesystemContainer implements Container.Hierarchical {
             }
             newRoots[roots.length] = root;
             roots = newRoots;
+            clearCache();
         }
     }
 
@@ -199,8 +219,14 @@ public class FilesystemContainer implements Container.Hierarchical {
      */
     @Override
     public boolean areChildrenAllowed(Object itemId) {
-        return itemId instanceof File && ((File) itemId).canRead()
-                && ((File) itemId).isDirectory();
+        if (!(itemId instanceof File)) {
+            return false;
+        }
+        if (caching) {
+            CachedAttributes attributes = getAttributes((File) itemId);
+            return attributes.readable && attributes.directory;
+        }
+        return ((File) itemId).canRead() && ((File) itemId).isDirectory();
     }
 
     /*
@@ -212,23 +238,13 @@ public class FilesystemContainer implements Container.Hierarchical {
     public Collection<File> getChildren(Object itemId) {
 
         if (!(itemId instanceof File)) {
-            return Collections.unmodifiableCollection(new LinkedList<File>());
+            return Collections.emptyList();
         }
-        File[] f;
-        if (filter != null) {
-            f = ((File) itemId).listFiles(filter);
-        } else {
-            f = ((File) itemId).listFiles();
-        }
-
-        if (f == null) {
-            return Collections.unmodifiableCollection(new LinkedList<File>());
+        final List<File> l = listFiles((File) itemId);
+        if (l == null) {
+            return Collections.emptyList();
         }
-
-        final List<File> l = Arrays.asList(f);
-        Collections.sort(l);
-
-        return Collections.unmodifiableCollection(l);
+        return l;
     }
 
     /*
@@ -254,6 +270,10 @@ public class FilesystemContainer implements Container.Hierarchical {
         if (!(itemId instanceof File)) {
             return false;
         }
+        if (caching) {
+            final List<File> files = listFiles((File) itemId);
+            return files != null && !files.isEmpty();
+        }
         String[] l;
         if (filter != null) {
             l = ((File) itemId).list(filter);
@@ -289,28 +309,142 @@ public class FilesystemContainer implements Container.Hierarchical {
      */
     @Override
     public Collection<File> rootItemIds() {
+        final List<File> l = getRootFiles();
+        if (l == null) {
+            return Collections.emptyList();
+        }
+        return l;
+    }
 
-        File[] f;
-
+    /**
+     * Gets the files at the top level of the container, sorted.
+     * 
+     * @return the files, or null if the single root directory can not be
+     *         listed
+     */
+    private List<File> getRootFiles() {
         // in single root case we use children
         if (roots.length == 1) {
-            if (filter != null) {
-                f = roots[0].listFiles(filter);
-            } else {
-                f = roots[0].listFiles();
+            return listFiles(roots[0]);
+        }
+        final List<File> l = Arrays.asList(roots.clone());
+        Collections.sort(l);
+        return Collections.unmodifiableList(l);
+    }
+
+    /**
+     * Lists the files in a directory, sorted and filtered with the current
+     * filter. The listing is read from the cache if caching is enabled.
+     * 
+     * @param directory
+     *            the directory to list
+     * @return an unmodifiable list of the files, or null if the directory does
+     *         not exist or can not be read
+     */
+    private List<File> listFiles(File directory) {
+        if (!caching) {
+            return readFiles(directory);
+        }
+        CachedDirectory cached = getDirectoryCache().get(directory);
+        if (cached == null) {
+            // read the modification time first to not miss changes
+            final long lastModified = directory.lastModified();
+            final List<File> files = readFiles(directory);
+            if (files != null) {
+                for (File file : files) {
+                    getAttributeCache().put(file, new CachedAttributes(file));
+                }
             }
-        } else {
-            f = roots;
+            cached = new CachedDirectory(files, lastModified);
+            getDirectoryCache().put(directory, cached);
         }
+        return cached.files;
+    }
 
+    private List<File> readFiles(File directory) {
+        File[] f;
+        if (filter != null) {
+            f = directory.listFiles(filter);
+        } else {
+            f = directory.listFiles();
+        }
         if (f == null) {
-            return Collections.unmodifiableCollection(new LinkedList<File>());
+            // File.listFiles returns null if File does not exist or if there
+            // was an IO error (permission denied)
+            return null;
         }
-
         final List<File> l = Arrays.asList(f);
         Collections.sort(l);
+        return Collections.unmodifiableList(l);
+    }
+
+    private boolean isDirectory(File file) {
+        if (caching) {
+            return getAttributes(file).directory;
+        }
+        return file.isDirectory();
+    }
+
+    /**
+     * Gets the cached attributes of a file, reading them if the file is not in
+     * any cached listing.
+     */
+    private CachedAttributes getAttributes(File file) {
+        CachedAttributes attributes = getAttributeCache().get(file);
+        if (attributes == null) {
+            attributes = new CachedAttributes(file);
+            getAttributeCache().put(file, attributes);
+        }
+        return attributes;
+    }
+
+    private Map<File, CachedDirectory> getDirectoryCache() {
+        if (directoryCache == null) {
+            directoryCache = new HashMap<File, CachedDirectory>();
+        }
+        return directoryCache;
+    }
+
+    private Map<File, CachedAttributes> getAttributeCache() {
+        if (attributeCache == null) {
+            attributeCache = new HashMap<File, CachedAttributes>();
+        }
+        return attributeCache;
+    }
+
+    private void clearCache() {
+        directoryCache = null;
+        attributeCache = null;
+    }
+
+    /**
+     * A cached directory listing.
+     */
+    private static class CachedDirectory implements Serializable {
+        private final List<File> files;
+        private final long lastModified;
+
+        private CachedDirectory(List<File> files, long lastModified) {
+            this.files = files;
+            this.lastModified = lastModified;
+        }
+    }
 
-        return Collections.unmodifiableCollection(l);
+    /**
+     * The cached attributes of a file.
+     */
+    private static class CachedAttributes implements Serializable {
+        private final boolean directory;
+        private final boolean readable;
+        private final long length;
+        private final long lastModified;
+
+        private CachedAttributes(File file) {
+            directory = file.isDirectory();
+            readable = file.canRead();
+            length = directory ? 0 : file.length();
+            lastModified = file.lastModified();
+        }
     }
 
     /**
@@ -409,24 +543,15 @@ public class FilesystemContainer implements Container.Hierarchical {
      *            the root file where to start adding files
      */
     private void addItemIds(Collection<File> col, File f) {
-        File[] l;
-        if (filter != null) {
-            l = f.listFiles(filter);
-        } else {
-            l = f.listFiles();
-        }
-        if (l == null) {
-            // File.listFiles returns null if File does not exist or if there
-            // was an IO error (permission denied)
+        final List<File> ll = listFiles(f);
+        if (ll == null) {
             return;
         }
-        final List<File> ll = Arrays.asList(l);
-        Collections.sort(ll);
 
         for (final Iterator<File> i = ll.iterator(); i.hasNext();) {
             final File lf = i.next();
             col.add(lf);
-            if (lf.isDirectory()) {
+            if (isDirectory(lf)) {
                 addItemIds(col, lf);
             }
         }
@@ -446,25 +571,7 @@ public class FilesystemContainer implements Container.Hierarchical {
             }
             return Collections.unmodifiableCollection(col);
         } else {
-            File[] f;
-            if (roots.length == 1) {
-                if (filter != null) {
-                    f = roots[0].listFiles(filter);
-                } else {
-                    f = roots[0].listFiles();
-                }
-            } else {
-                f = roots;
-            }
-
-            if (f == null) {
-                return Collections
-                        .unmodifiableCollection(new LinkedList<File>());
-            }
-
-            final List<File> l = Arrays.asList(f);
-            Collections.sort(l);
-            return Collections.unmodifiableCollection(l);
+            return rootItemIds();
         }
 
     }
@@ -555,20 +662,15 @@ public class FilesystemContainer implements Container.Hierarchical {
      *            the root to start counting from.
      */
     private int getFileCounts(File f) {
-        File[] l;
-        if (filter != null) {
-            l = f.listFiles(filter);
-        } else {
-            l = f.listFiles();
-        }
+        final List<File> l = listFiles(f);
 
         if (l == null) {
             return 0;
         }
-        int ret = l.length;
-        for (int i = 0; i < l.length; i++) {
-            if (l[i].isDirectory()) {
-                ret += getFileCounts(l[i]);
+        int ret = l.size();
+        for (File file : l) {
+            if (isDirectory(file)) {
+                ret += getFileCounts(file);
             }
         }
         return ret;
@@ -590,21 +692,11 @@ public class FilesystemContainer implements Container.Hierarchical {
             }
             return counts;
         } else {
-            File[] f;
-            if (roots.length == 1) {
-                if (filter != null) {
-                    f = roots[0].listFiles(filter);
-                } else {
-                    f = roots[0].listFiles();
-                }
-            } else {
-                f = roots;
-            }
-
-            if (f == null) {
+            final List<File> l = getRootFiles();
+            if (l == null) {
                 return 0;
             }
-            return f.length;
+            return l.size();
         }
     }
 
@@ -692,6 +784,9 @@ public class FilesystemContainer implements Container.Hierarchical {
          * @return Date
          */
         public Date lastModified() {
+            if (caching) {
+                return new Date(getAttributes(file).lastModified);
+            }
             return new Date(file.lastModified());
         }
 
@@ -719,6 +814,9 @@ public class FilesystemContainer implements Container.Hierarchical {
          * @return size
          */
         public long getSize() {
+            if (caching) {
+                return getAttributes(file).length;
+            }
             if (file.isDirectory()) {
                 return 0;
             }
@@ -815,6 +913,7 @@ public class FilesystemContainer implements Container.Hierarchical {
      */
     public void setFilter(FilenameFilter filter) {
         this.filter = filter;
+        clearCache();
     }
 
     /**
@@ -825,7 +924,7 @@ public class FilesystemContainer implements Container.Hierarchical {
      *            container.
      */
     public void setFilter(String extension) {
-        filter = new FileExtensionFilter(extension);
+        setFilter(new FileExtensionFilter(extension));
     }
 
     /**
@@ -852,6 +951,228 @@ public class FilesystemContainer implements Container.Hierarchical {
         this.recursive = recursive;
     }
 
+    /**
+     * Enables or disables caching of directory listings and file attributes.
+     * With caching enabled, each directory is listed only once and the size,
+     * modification time and type of each listed file are read once. Changes
+     * in the filesystem are not seen until {@link #refresh()},
+     * {@link #refresh(File)} or {@link #checkForChanges()} is called.
+     * <p>
+     * Caching is disabled by default.
+     * 
+     * @param caching
+     *            true to cache the filesystem, false to read it on every access
+     * @since 7.2
+     */
+    public void setCaching(boolean caching) {
+        this.caching = caching;
+        clearCache();
+    }
+
+    /**
+     * Tells whether directory listings and file attributes are cached.
+     * 
+     * @see #setCaching(boolean)
+     * @return true if the filesystem is cached
+     * @since 7.2
+     */
+    public boolean isCaching() {
+        return caching;
+    }
+
+    /**
+     * Clears all cached listings and attributes and notifies listeners that
+     * the items may have changed.
+     * 
+     * @since 7.2
+     */
+    public void refresh() {
+        clearCache();
+        fireItemSetChange(new DirectoryChangeEvent(this, null));
+    }
+
+    /**
+     * Clears the cached listings and attributes of the given directory and
+     * everything below it, and notifies listeners that the items in that
+     * subtree may have changed.
+     * 
+     * @param directory
+     *            the directory whose contents have changed
+     * @since 7.2
+     */
+    public void refresh(File directory) {
+        invalidate(directory);
+        fireItemSetChange(new DirectoryChangeEvent(this, directory));
+    }
+
+    /**
+     * Checks the cached directories and files for changes in the filesystem.
+     * A directory is considered changed if its modification time has changed,
+     * which happens when files are added, removed or renamed in it. Each
+     * changed directory is refreshed as with {@link #refresh(File)}, and a
+     * separate event is fired for each of them. Files whose modification time
+     * has changed otherwise, e.g. because they have been written to, only
+     * have their cached attributes updated, and an event is fired for the
+     * directory containing them without listing it again.
+     * <p>
+     * This method only reads the modification times of the cached files. It
+     * can be called periodically, for instance from a poll or push update, to
+     * keep the container up to date. Does nothing if caching is disabled.
+     * 
+     * @since 7.2
+     */
+    public void checkForChanges() {
+        if (!caching || directoryCache == null) {
+            return;
+        }
+        final List<File> changed = new ArrayList<File>();
+        for (Map.Entry<File, CachedDirectory> entry : directoryCache
+                .entrySet()) {
+            final File directory = entry.getKey();
+            if (directory.lastModified() != entry.getValue().lastModified) {
+                changed.add(directory);
+            }
+        }
+        final List<File> containing = new ArrayList<File>();
+        for (Map.Entry<File, CachedAttributes> entry : getAttributeCache()
+                .entrySet()) {
+            final File file = entry.getKey();
+            if (file.lastModified() != entry.getValue().lastModified) {
+                entry.setValue(new CachedAttributes(file));
+                // a changed listing is reported for the directory itself
+                if (!changed.contains(file)) {
+                    final File parent = file.getParentFile();
+                    containing.add(parent != null ? parent : file);
+                }
+            }
+        }
+        // refresh parents first and skip directories already refreshed
+        Collections.sort(changed);
+        final List<File> refreshed = new ArrayList<File>();
+        for (File directory : changed) {
+            if (!isInRefreshed(directory, refreshed)) {
+                refreshed.add(directory);
+                refresh(directory);
+            }
+        }
+        Collections.sort(containing);
+        final List<File> notified = new ArrayList<File>();
+        for (File directory : containing) {
+            if (!isInRefreshed(directory, refreshed)
+                    && !notified.contains(directory)) {
+                notified.add(directory);
+                fireItemSetChange(new DirectoryChangeEvent(this, directory));
+            }
+        }
+    }
+
+    private static boolean isInRefreshed(File file, List<File> refreshed) {
+        for (File directory : refreshed) {
+            if (isInDirectory(file, directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the cached listings and attributes of a directory and the files
+     * below it.
+     */
+    private void invalidate(File directory) {
+        if (directoryCache != null) {
+            final Iterator<File> i = directoryCache.keySet().iterator();
+            while (i.hasNext()) {
+                if (isInDirectory(i.next(), directory)) {
+                    i.remove();
+                }
+            }
+        }
+        if (attributeCache != null) {
+            final Iterator<File> i = attributeCache.keySet().iterator();
+            while (i.hasNext()) {
+                final File file = i.next();
+                if (isInDirectory(file.getParentFile(), directory)) {
+                    i.remove();
+                }
+            }
+            // the attributes of the directory itself may have changed
+            attributeCache.remove(directory);
+        }
+    }
+
+    /**
+     * Tests if a file is the given directory or below it.
+     */
+    private static boolean isInDirectory(File file, File directory) {
+        for (File f = file; f != null; f = f.getParentFile()) {
+            if (f.equals(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An event telling that the contents of a directory, or of the whole
+     * container, may have changed.
+     * 
+     * @since 7.2
+     */
+    public static class DirectoryChangeEvent extends BaseItemSetChangeEvent {
+
+        private final File directory;
+
+        private DirectoryChangeEvent(FilesystemContainer source,
+                File directory) {
+            super(source);
+            this.directory = directory;
+        }
+
+        /**
+         * Gets the directory whose contents have changed, including everything
+         * below it.
+         * 
+         * @return the changed directory, or null if the whole container may
+         *         have changed
+         */
+        public File getDirectory() {
+            return directory;
+        }
+    }
+
+    @Override
+    public void addItemSetChangeListener(
+            Container.ItemSetChangeListener listener) {
+        super.addItemSetChangeListener(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #addItemSetChangeListener(Container.ItemSetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void addListener(Container.ItemSetChangeListener listener) {
+        addItemSetChangeListener(listener);
+    }
+
+    @Override
+    public void removeItemSetChangeListener(
+            Container.ItemSetChangeListener listener) {
+        super.removeItemSetChangeListener(listener);
+    }
+
+    /**
+     * @deprecated As of 7.0, replaced by
+     *             {@link #removeItemSetChangeListener(Container.ItemSetChangeListener)}
+     **/
+    @Deprecated
+    @Override
+    public void removeListener(Container.ItemSetChangeListener listener) {
+        removeItemSetChangeListener(listener);
+    }
+
     /*
      * (non-Javadoc)
      * 
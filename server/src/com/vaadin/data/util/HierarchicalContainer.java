@@ -656,9 +656,9 @@ public class HierarchicalContainer extends IndexedContainer implements
     protected void doSort() {
         super.doSort();
 
-        Collections.sort(roots, getItemSorter());
+        sortItemIds(roots);
         for (LinkedList<Object> childList : children.values()) {
-            Collections.sort(childList, getItemSorter());
+            sortItemIds(childList);
         }
     }
 
@@ -268,7 +268,9 @@ public class IndexedContainer extends
     public Item addItem(Object itemId) {
         Item item = internalAddItemAtEnd(itemId, new IndexedContainerItem(
                 itemId), false);
-        if (!isFiltered()) {
+        if (item == null) {
+            return null;
+        } else if (!isFiltered()) {
             // always the last item
             fireItemAdded(size() - 1, itemId, item);
         } else if (passesFilters(itemId) && !containsId(itemId)) {
@@ -279,6 +281,31 @@ public class IndexedContainer extends
         return item;
     }
 
+    /**
+     * Adds new items with the given identifiers at the end of the container,
+     * sending a single item set change event for all of them. Identifiers
+     * already in the container are ignored.
+     * 
+     * @param itemIds
+     *            the identifiers of the items to add
+     * @return true if at least one item was added
+     * @since 7.2
+     */
+    public boolean addItems(Collection<?> itemIds) {
+        boolean added = false;
+        beginBatch();
+        try {
+            for (Object itemId : itemIds) {
+                if (addItem(itemId) != null) {
+                    added = true;
+                }
+            }
+        } finally {
+            endBatch();
+        }
+        return added;
+    }
+
     /**
      * Helper method to add default values for items if available
      * 
@@ -945,6 +972,7 @@ public class IndexedContainer extends
             }
 
             // update the container filtering if this property is being filtered
+            discardPreviousFiltering();
             if (isPropertyFiltered(propertyId)) {
                 filterAll();
             }
@@ -25,15 +25,41 @@ import java.util.Iterator;
 /**
  * ListSet is an internal Vaadin class which implements a combination of a List
  * and a Set. The main purpose of this class is to provide a list with a fast
- * {@link #contains(Object)} method. Each inserted object must by unique (as
- * specified by {@link #equals(Object)}). The {@link #set(int, Object)} method
- * allows duplicates because of the way {@link Collections#sort(java.util.List)}
- * works.
+ * {@link #contains(Object)} and {@link #indexOf(Object)} methods. Each inserted
+ * object must by unique (as specified by {@link #equals(Object)}). The
+ * {@link #set(int, Object)} method allows duplicates because of the way
+ * {@link Collections#sort(java.util.List)} works.
+ * 
+ * The positions of the elements are kept in a map. A change in the middle of
+ * the list only invalidates the positions after it, and these are updated again
+ * when {@link #indexOf(Object)} needs them, up to the element looked up. Looking
+ * up positions is amortized constant time when elements are only appended
+ * between lookups. Each insertion or removal before a looked up element costs
+ * time linear in the distance between them, so alternating e.g.
+ * <code>add(0, e)</code> with lookups near the end of the list is linear per
+ * lookup, like the insertion itself.
  * 
  * This class is subject to change and should not be used outside Vaadin core.
  */
 public class ListSet<E> extends ArrayList<E> {
-    private HashSet<E> itemSet = null;
+    /**
+     * Maps each element in the list to its position. The elements before
+     * {@link #validPositions} are known to be at their stored positions.
+     */
+    private HashMap<E, Integer> positions = null;
+
+    /**
+     * The number of elements at the start of the list whose positions in
+     * {@link #positions} are known to be correct.
+     */
+    private int validPositions = 0;
+
+    /**
+     * The modification count of the list when {@link #positions} was last
+     * updated, used to detect changes made directly through
+     * {@link ArrayList}.
+     */
+    private int positionsModCount = 0;
 
     /**
      * Contains a map from an element to the number of duplicates it has. Used
@@ -43,29 +69,33 @@ public class ListSet<E> extends ArrayList<E> {
 
     public ListSet() {
         super();
-        itemSet = new HashSet<E>();
+        positions = new HashMap<E, Integer>();
     }
 
     public ListSet(Collection<? extends E> c) {
         super(c);
-        itemSet = new HashSet<E>(c.size());
-        itemSet.addAll(c);
+        positions = new HashMap<E, Integer>(c.size());
+        for (int i = 0; i < size(); i++) {
+            positions.put(get(i), Integer.valueOf(i));
+        }
+        validPositions = size();
+        positionsModCount = modCount;
     }
 
     public ListSet(int initialCapacity) {
         super(initialCapacity);
-        itemSet = new HashSet<E>(initialCapacity);
+        positions = new HashMap<E, Integer>(initialCapacity);
     }
 
     // Delegate contains operations to the set
     @Override
     public boolean contains(Object o) {
-        return itemSet.contains(o);
+        return positions.containsKey(o);
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return itemSet.containsAll(c);
+        return positions.keySet().containsAll(c);
     }
 
     // Methods for updating the set when the list is updated.
@@ -76,8 +106,9 @@ public class ListSet<E> extends ArrayList<E> {
             return false;
         }
 
+        checkPositions();
         if (super.add(e)) {
-            itemSet.add(e);
+            addPosition(e, size() - 1);
             return true;
         } else {
             return false;
@@ -95,8 +126,10 @@ public class ListSet<E> extends ArrayList<E> {
             return;
         }
 
+        checkPositions();
         super.add(index, element);
-        itemSet.add(element);
+        invalidatePositions(index);
+        addPosition(element, index);
     }
 
     @Override
@@ -110,7 +143,6 @@ public class ListSet<E> extends ArrayList<E> {
             }
 
             if (add(e)) {
-                itemSet.add(e);
                 modified = true;
             }
         }
@@ -130,7 +162,6 @@ public class ListSet<E> extends ArrayList<E> {
             }
 
             add(index++, e);
-            itemSet.add(e);
             modified = true;
         }
 
@@ -140,16 +171,47 @@ public class ListSet<E> extends ArrayList<E> {
     @Override
     public void clear() {
         super.clear();
-        itemSet.clear();
+        positions.clear();
+        invalidatePositions(0);
     }
 
     @Override
     public int indexOf(Object o) {
-        if (!contains(o)) {
+        Integer position = positions.get(o);
+        if (position == null) {
             return -1;
         }
+        checkPositions();
+        int index = position.intValue();
+        if (index < validPositions) {
+            // The stored position of an element moved after the valid
+            // positions might still point to another element before them
+            E e = get(index);
+            if (o == null ? e == null : o.equals(e)) {
+                return index;
+            }
+        }
 
-        return super.indexOf(o);
+        return updatePositions(o);
+    }
+
+    /**
+     * Updates the positions that may have changed, up to the given element.
+     * 
+     * @param o
+     *            the element to look for
+     * @return the index of the element, or -1 if it was not found
+     */
+    private int updatePositions(Object o) {
+        for (int i = validPositions; i < size(); i++) {
+            E e = get(i);
+            positions.put(e, Integer.valueOf(i));
+            validPositions = i + 1;
+            if (o == null ? e == null : o.equals(e)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     @Override
@@ -163,10 +225,12 @@ public class ListSet<E> extends ArrayList<E> {
 
     @Override
     public E remove(int index) {
+        checkPositions();
         E e = super.remove(index);
+        invalidatePositions(index);
 
         if (e != null) {
-            itemSet.remove(e);
+            removeFromSet(e);
         }
 
         return e;
@@ -174,12 +238,12 @@ public class ListSet<E> extends ArrayList<E> {
 
     @Override
     public boolean remove(Object o) {
-        if (super.remove(o)) {
-            itemSet.remove(o);
-            return true;
-        } else {
+        int index = indexOf(o);
+        if (index < 0) {
             return false;
         }
+        remove(index);
+        return true;
     }
 
     @Override
@@ -188,8 +252,10 @@ public class ListSet<E> extends ArrayList<E> {
         for (int idx = fromIndex; idx < toIndex; idx++) {
             toRemove.add(get(idx));
         }
+        checkPositions();
         super.removeRange(fromIndex, toIndex);
-        itemSet.removeAll(toRemove);
+        invalidatePositions(fromIndex);
+        positions.keySet().removeAll(toRemove);
     }
 
     @Override
@@ -211,13 +277,48 @@ public class ListSet<E> extends ArrayList<E> {
             }
         }
 
+        checkPositions();
         E old = super.set(index, element);
+        invalidatePositions(index);
         removeFromSet(old);
-        itemSet.add(element);
+        addPosition(element, index);
 
         return old;
     }
 
+    /**
+     * Records the position of an element that has been added to the list.
+     */
+    private void addPosition(E e, int index) {
+        positions.put(e, Integer.valueOf(index));
+        if (index == validPositions) {
+            validPositions++;
+        }
+        positionsModCount = modCount;
+    }
+
+    /**
+     * Invalidates all positions if the list has been modified without going
+     * through this class, e.g. by ArrayList.sort().
+     */
+    private void checkPositions() {
+        if (positionsModCount != modCount) {
+            validPositions = 0;
+            positionsModCount = modCount;
+        }
+    }
+
+    /**
+     * Marks the positions of all elements from the given index onwards as
+     * possibly changed.
+     */
+    private void invalidatePositions(int index) {
+        if (index < validPositions) {
+            validPositions = index;
+        }
+        positionsModCount = modCount;
+    }
+
     /**
      * Removes "e" from the set if it no longer exists in the list.
      * 
@@ -237,7 +338,7 @@ public class ListSet<E> extends ArrayList<E> {
             }
         } else {
             // The "old" value is no longer in the list.
-            itemSet.remove(e);
+            positions.remove(e);
         }
 
     }
@@ -269,7 +370,9 @@ public class ListSet<E> extends ArrayList<E> {
     @Override
     public Object clone() {
         ListSet<E> v = (ListSet<E>) super.clone();
-        v.itemSet = new HashSet<E>(itemSet);
+        v.positions = new HashMap<E, Integer>(positions);
+        v.duplicates = new HashMap<E, Integer>(duplicates);
+        v.positionsModCount = v.modCount;
         return v;
     }
 
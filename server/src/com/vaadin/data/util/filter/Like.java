@@ -95,6 +95,7 @@ public class Like implements Filter {
                 .equals(o.getPropertyId()) : null == o.getPropertyId();
         boolean valueEqual = (null != getValue()) ? getValue().equals(
                 o.getValue()) : null == o.getValue();
-        return propertyIdEqual && valueEqual;
+        return propertyIdEqual && valueEqual
+                && isCaseSensitive() == o.isCaseSensitive();
     }
 }
@@ -27,7 +27,9 @@ import com.vaadin.data.util.sqlcontainer.query.TableQuery;
 
 /**
  * CacheFlushNotifier is a simple static notification mechanism to inform other
- * SQLContainers that the contents of their caches may have become stale.
+ * SQLContainers that the contents of their caches may have become stale. It
+ * also invalidates the rows of modified tables in the {@link RowCache}
+ * instances used by the containers.
  */
 class CacheFlushNotifier implements Serializable {
     /*
@@ -37,6 +39,13 @@ class CacheFlushNotifier implements Serializable {
     private static List<WeakReference<SQLContainer>> allInstances = new ArrayList<WeakReference<SQLContainer>>();
     private static ReferenceQueue<SQLContainer> deadInstances = new ReferenceQueue<SQLContainer>();
 
+    /*
+     * Row caches used by SQLContainers, invalidated whenever a container
+     * modifies the rows of a table or query.
+     */
+    private static List<WeakReference<RowCache>> allCaches = new ArrayList<WeakReference<RowCache>>();
+    private static ReferenceQueue<RowCache> deadCaches = new ReferenceQueue<RowCache>();
+
     /**
      * Adds the given SQLContainer to the cache flush notification receiver list
      * 
@@ -50,6 +59,47 @@ class CacheFlushNotifier implements Serializable {
         }
     }
 
+    /**
+     * Adds the given row cache to the list of caches invalidated when rows are
+     * modified.
+     * 
+     * @param cache
+     *            Row cache to add
+     */
+    public static synchronized void addCache(RowCache cache) {
+        java.lang.ref.Reference<? extends RowCache> dead = deadCaches.poll();
+        while (dead != null) {
+            allCaches.remove(dead);
+            dead = deadCaches.poll();
+        }
+        for (WeakReference<RowCache> wr : allCaches) {
+            if (wr.get() == cache) {
+                return;
+            }
+        }
+        allCaches.add(new WeakReference<RowCache>(cache, deadCaches));
+    }
+
+    /**
+     * Removes the rows of the table or query of the given container from all
+     * registered row caches.
+     * 
+     * @param c
+     *            SQLContainer through which rows were modified
+     */
+    public static synchronized void invalidateRowCaches(SQLContainer c) {
+        String source = RowCacheKey.getSource(c.getQueryDelegate());
+        if (source == null) {
+            return;
+        }
+        for (WeakReference<RowCache> wr : allCaches) {
+            RowCache cache = wr.get();
+            if (cache != null) {
+                cache.invalidate(source);
+            }
+        }
+    }
+
     /**
      * Removes dead references from instance list
      */
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A block of rows fetched from the database with a single query, as stored in
+ * a {@link RowCache}. The values are kept apart from the {@link RowItem}
+ * instances of any container so that the same block can be used by several
+ * containers. Instances must not be modified after they are created.
+ * 
+ * @since 7.2
+ */
+public final class RowBlock implements Serializable {
+
+    private final List<String> columns;
+    private final List<RowId> rowIds;
+    private final List<Object[]> values;
+
+    /**
+     * Creates a block of rows.
+     * 
+     * @param columns
+     *            the names of the columns, in the order of the row values
+     * @param rowIds
+     *            the identifiers of the rows
+     * @param values
+     *            the column values of each row
+     */
+    RowBlock(List<String> columns, List<RowId> rowIds, List<Object[]> values) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.rowIds = Collections.unmodifiableList(rowIds);
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Gets the names of the columns in the block.
+     * 
+     * @return an unmodifiable list of column names
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of rows in the block.
+     * 
+     * @return the number of rows
+     */
+    public int size() {
+        return rowIds.size();
+    }
+
+    /**
+     * Gets the identifier of a row.
+     * 
+     * @param row
+     *            the index of the row in the block
+     * @return the row identifier
+     */
+    public RowId getRowId(int row) {
+        return rowIds.get(row);
+    }
+
+    /**
+     * Gets the value of a column in a row.
+     * 
+     * @param row
+     *            the index of the row in the block
+     * @param column
+     *            the index of the column in {@link #getColumns()}
+     * @return the value, may be null
+     */
+    public Object getValue(int row, int column) {
+        return values.get(row)[column];
+    }
+}
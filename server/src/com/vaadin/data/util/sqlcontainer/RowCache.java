@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+
+/**
+ * A cache of rows fetched from the database, which can be shared between
+ * several {@link SQLContainer} instances. Rows are stored in blocks, each
+ * identified by the query, filters, sorting and range used for fetching it.
+ * 
+ * Implementations shared between sessions must be thread safe.
+ * 
+ * @see SQLContainer#setRowCache(RowCache)
+ * @see SharedRowCache
+ * @since 7.2
+ */
+public interface RowCache extends Serializable {
+
+    /**
+     * Gets a block of rows from the cache.
+     * 
+     * @param key
+     *            the key identifying the block
+     * @return the cached rows or null if the block is not in the cache
+     */
+    public RowBlock get(RowCacheKey key);
+
+    /**
+     * Stores a block of rows in the cache.
+     * 
+     * @param key
+     *            the key identifying the block
+     * @param rows
+     *            the rows to store
+     */
+    public void put(RowCacheKey key, RowBlock rows);
+
+    /**
+     * Removes all blocks fetched from the given source from the cache. This is
+     * called when rows of the source are modified through a container.
+     * 
+     * @param source
+     *            the table name or query string of the modified source, see
+     *            {@link RowCacheKey#getSource()}
+     */
+    public void invalidate(String source);
+
+    /**
+     * Gets the number of calls to {@link #get(RowCacheKey)} that returned a
+     * cached block.
+     * 
+     * @return the number of cache hits
+     */
+    public long getHitCount();
+
+    /**
+     * Gets the number of calls to {@link #get(RowCacheKey)} that did not find
+     * the block in the cache.
+     * 
+     * @return the number of cache misses
+     */
+    public long getMissCount();
+}
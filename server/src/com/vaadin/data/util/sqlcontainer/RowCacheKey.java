@@ -0,0 +1,220 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.FreeformQuery;
+import com.vaadin.data.util.sqlcontainer.query.FreeformQueryDelegate;
+import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+
+/**
+ * Identifies a block of rows in a {@link RowCache}: the database and table or
+ * query the rows were fetched from, the filters and sorting applied, and the
+ * range of rows fetched.
+ * 
+ * Filters are compared using their <code>equals()</code> method, so blocks
+ * fetched with filters not implementing it are only found by the container
+ * that fetched them.
+ * 
+ * Rows fetched through a {@link FreeformQuery} with a
+ * {@link FreeformQuery#getDelegate() delegate} are only shared if the delegate
+ * implements {@link KeyProvider}, because the statements built by the
+ * delegate may depend on its state, e.g. on the current user.
+ * 
+ * @since 7.2
+ */
+public final class RowCacheKey implements Serializable {
+
+    /**
+     * Implemented by a {@link FreeformQueryDelegate} to allow sharing the rows
+     * fetched through it between containers.
+     */
+    public interface KeyProvider extends Serializable {
+        /**
+         * Gets a key identifying the state that the statements built by this
+         * delegate depend on in addition to the query string, filters and
+         * sorting, such as the values of additional parameters. Rows are only
+         * shared between delegates of the same class returning equal keys.
+         * 
+         * @return a key with a proper <code>equals()</code> and
+         *         <code>hashCode()</code> implementation, or null if the
+         *         statements only depend on the query string, filters and
+         *         sorting
+         */
+        public Object getRowCacheKey();
+    }
+
+    private final String source;
+    private final JDBCConnectionPool connectionPool;
+    private final Class<?> queryType;
+    private final Object delegateKey;
+    private final List<Filter> filters;
+    private final List<String> orderBy;
+    private final int offset;
+    private final int rowCount;
+
+    private RowCacheKey(String source, JDBCConnectionPool connectionPool,
+            Class<?> queryType, Object delegateKey, List<Filter> filters,
+            List<String> orderBy, int offset, int rowCount) {
+        this.source = source;
+        this.connectionPool = connectionPool;
+        this.queryType = queryType;
+        this.delegateKey = delegateKey;
+        this.filters = filters;
+        this.orderBy = orderBy;
+        this.offset = offset;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Creates a key for the rows fetched through a query delegate.
+     * 
+     * @param delegate
+     *            the query delegate used for fetching the rows
+     * @param filters
+     *            the filters set to the delegate
+     * @param orderBys
+     *            the sorting set to the delegate
+     * @param offset
+     *            the index of the first fetched row
+     * @param rowCount
+     *            the number of rows requested
+     * @return a key or null if rows fetched through the delegate cannot be
+     *         shared
+     */
+    static RowCacheKey create(QueryDelegate delegate, List<Filter> filters,
+            List<OrderBy> orderBys, int offset, int rowCount) {
+        String source = getSource(delegate);
+        if (source == null) {
+            return null;
+        }
+        List<String> orderBy = new ArrayList<String>(orderBys.size());
+        for (OrderBy o : orderBys) {
+            orderBy.add(o.getColumn() + (o.isAscending() ? " ASC" : " DESC"));
+        }
+        Class<?> queryType = delegate.getClass();
+        Object delegateKey = null;
+        if (delegate instanceof FreeformQuery
+                && ((FreeformQuery) delegate).getDelegate() != null) {
+            // the statements are generated by the freeform delegate
+            Object freeformDelegate = ((FreeformQuery) delegate).getDelegate();
+            if (!(freeformDelegate instanceof KeyProvider)) {
+                return null;
+            }
+            queryType = freeformDelegate.getClass();
+            delegateKey = ((KeyProvider) freeformDelegate).getRowCacheKey();
+        }
+        return new RowCacheKey(source, getConnectionPool(delegate),
+                queryType, delegateKey,
+                Collections.unmodifiableList(new ArrayList<Filter>(filters)),
+                Collections.unmodifiableList(orderBy), offset, rowCount);
+    }
+
+    /**
+     * Gets the table name or query string of a query delegate.
+     * 
+     * @param delegate
+     *            the query delegate
+     * @return the table name of a {@link TableQuery}, the query string of a
+     *         {@link FreeformQuery} or null for other delegates
+     */
+    static String getSource(QueryDelegate delegate) {
+        if (delegate instanceof TableQuery) {
+            return ((TableQuery) delegate).getTableName();
+        } else if (delegate instanceof FreeformQuery) {
+            return ((FreeformQuery) delegate).getQueryString();
+        }
+        return null;
+    }
+
+    private static JDBCConnectionPool getConnectionPool(
+            QueryDelegate delegate) {
+        if (delegate instanceof TableQuery) {
+            return ((TableQuery) delegate).getConnectionPool();
+        } else {
+            return ((FreeformQuery) delegate).getConnectionPool();
+        }
+    }
+
+    /**
+     * Gets the table name or query string the rows were fetched from.
+     * 
+     * @return the table name or query string
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the index of the first row of the block.
+     * 
+     * @return the offset of the block
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the number of rows requested for the block. The block itself may
+     * contain fewer rows.
+     * 
+     * @return the requested number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RowCacheKey)) {
+            return false;
+        }
+        RowCacheKey other = (RowCacheKey) obj;
+        // connection pools are compared by identity
+        return connectionPool == other.connectionPool
+                && offset == other.offset && rowCount == other.rowCount
+                && source.equals(other.source)
+                && queryType.equals(other.queryType)
+                && (delegateKey == null ? other.delegateKey == null
+                        : delegateKey.equals(other.delegateKey))
+                && filters.equals(other.filters)
+                && orderBy.equals(other.orderBy);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = source.hashCode();
+        result = 31 * result + System.identityHashCode(connectionPool);
+        result = 31 * result
+                + (delegateKey == null ? 0 : delegateKey.hashCode());
+        result = 31 * result + filters.hashCode();
+        result = 31 * result + orderBy.hashCode();
+        result = 31 * result + offset;
+        result = 31 * result + rowCount;
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
+
+/**
+ * Estimates the number of rows of a query without counting them, e.g. using
+ * the table statistics maintained by the database. Used by {@link SQLContainer}
+ * in the {@link SQLContainer.CountMode#ESTIMATED} and
+ * {@link SQLContainer.CountMode#BACKGROUND} count modes.
+ * 
+ * @see SQLContainer#setRowCountEstimator(RowCountEstimator)
+ * @since 7.2
+ */
+public interface RowCountEstimator extends Serializable {
+
+    /**
+     * Estimates the number of rows matching the given filters.
+     * 
+     * @param delegate
+     *            the query delegate of the container
+     * @param filters
+     *            the filters of the container
+     * @return the estimated number of rows, or a negative number if no
+     *         estimate is available
+     * @throws SQLException
+     *             if the database access fails
+     */
+    public int estimateRowCount(QueryDelegate delegate, List<Filter> filters)
+            throws SQLException;
+}
@@ -16,6 +16,7 @@
 package com.vaadin.data.util.sqlcontainer;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -26,9 +27,14 @@ import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.EventObject;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +51,9 @@ import com.vaadin.data.util.sqlcontainer.query.QueryDelegate.RowIdChangeListener
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
 import com.vaadin.data.util.sqlcontainer.query.generator.MSSQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.OracleGenerator;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 
 public class SQLContainer implements Container, Container.Filterable,
         Container.Indexed, Container.Sortable, Container.ItemSetChangeNotifier {
@@ -58,12 +67,56 @@ public class SQLContainer implements Container, Container.Filterable,
     private int pageLength = DEFAULT_PAGE_LENGTH;
     public static final int DEFAULT_PAGE_LENGTH = 100;
 
-    /** Number of items to cache = CACHE_RATIO x pageLength */
+    /**
+     * Default number of items to fetch with one query and to cache =
+     * CACHE_RATIO x pageLength
+     */
     public static final int CACHE_RATIO = 2;
 
+    /**
+     * The ways of determining the number of rows when the size of the
+     * container is needed and no valid cached row count exists.
+     * 
+     * @since 7.2
+     */
+    public enum CountMode {
+        /**
+         * The rows are counted with a query. This is the default.
+         */
+        EXACT,
+        /**
+         * The number of rows is estimated using the
+         * {@link RowCountEstimator}. The rows are counted with a query only if
+         * no estimate is available.
+         */
+        ESTIMATED,
+        /**
+         * The previous count, or an estimate if the rows have not been counted
+         * before, is used while the rows are counted in the background. The
+         * container is updated when the count finishes. Requires a query
+         * delegate implementing {@link QueryDelegate.RowCounter}, otherwise
+         * the rows are counted as in the {@link #EXACT} mode.
+         */
+        BACKGROUND
+    }
+
+    /** Number of items to fetch with one query, 0 = CACHE_RATIO x pageLength */
+    private int fetchSize = 0;
+    /** Maximum number of items to cache, 0 = CACHE_RATIO x pageLength */
+    private int cacheSize = 0;
+
     /** Item and index caches */
     private final Map<Integer, RowId> itemIndexes = new HashMap<Integer, RowId>();
-    private final CacheMap<RowId, RowItem> cachedItems = new CacheMap<RowId, RowItem>();
+    private final Map<RowId, RowItem> cachedItems = new HashMap<RowId, RowItem>();
+    /** Offsets of the cached pages, the oldest first */
+    private final LinkedList<Integer> cachedPageOffsets = new LinkedList<Integer>();
+
+    /** Row cache shared with other containers, null if not shared */
+    private RowCache rowCache;
+
+    /** Number of item lookups served from and missing from the item cache */
+    private long cacheHits;
+    private long cacheMisses;
 
     /** Container properties = column names, data types and statuses */
     private final List<String> propertyIds = new ArrayList<String>();
@@ -87,10 +140,30 @@ public class SQLContainer implements Container, Container.Filterable,
      * Size updating logic. Do not update size from data source if it has been
      * updated in the last sizeValidMilliSeconds milliseconds.
      */
-    private final int sizeValidMilliSeconds = 10000;
+    private int sizeValidMilliSeconds = 10000;
     private boolean sizeDirty = true;
     private Date sizeUpdated = new Date();
 
+    /**
+     * Row counts for the filters used recently. Counts are reused for
+     * sizeValidMilliSeconds milliseconds, or until the data is modified.
+     */
+    private final Map<List<Filter>, CachedCount> cachedCounts = new HashMap<List<Filter>, CachedCount>();
+    private static final int MAX_CACHED_COUNTS = 16;
+
+    /** How the row count is determined when no valid cached count exists */
+    private CountMode countMode = CountMode.EXACT;
+    private RowCountEstimator rowCountEstimator;
+    private Executor countExecutor;
+    private static Executor defaultCountExecutor;
+
+    /**
+     * Filters for which a count is running in the background, and the results
+     * of the finished counts not yet taken into use
+     */
+    private transient Set<List<Filter>> countsInProgress = new HashSet<List<Filter>>();
+    private transient Map<List<Filter>, Integer> finishedCounts = new HashMap<List<Filter>, Integer>();
+
     /** Starting row number of the currently fetched page */
     private int currentOffset;
 
@@ -129,7 +202,6 @@ public class SQLContainer implements Container, Container.Filterable,
         }
         this.delegate = delegate;
         getPropertyIds();
-        cachedItems.setCacheLimit(CACHE_RATIO * getPageLength());
     }
 
     /**************************************/
@@ -175,6 +247,7 @@ public class SQLContainer implements Container, Container.Filterable,
                     delegate.storeRow(newRowItem);
                     delegate.commit();
                 }
+                CacheFlushNotifier.invalidateRowCaches(this);
                 refresh();
                 if (notificationsEnabled) {
                     CacheFlushNotifier.notifyOfCacheFlush(this);
@@ -275,7 +348,9 @@ public class SQLContainer implements Container, Container.Filterable,
 
     @Override
     public Item getItem(Object itemId) {
-        if (!cachedItems.containsKey(itemId)) {
+        if (cachedItems.containsKey(itemId)) {
+            cacheHits++;
+        } else {
             int index = indexOfId(itemId);
             if (index >= size) {
                 // The index is in the added items
@@ -288,6 +363,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 }
             } else {
                 // load the item into cache
+                cacheMisses++;
                 updateOffsetAndCache(index);
             }
         }
@@ -429,6 +505,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 delegate.beginTransaction();
                 boolean success = delegate.removeRow((RowItem) i);
                 delegate.commit();
+                CacheFlushNotifier.invalidateRowCaches(this);
                 refresh();
                 if (notificationsEnabled) {
                     CacheFlushNotifier.notifyOfCacheFlush(this);
@@ -463,7 +540,7 @@ public class SQLContainer implements Container, Container.Filterable,
         } else {
             removedItems.put((RowId) itemId, (RowItem) getItem(itemId));
             cachedItems.remove(itemId);
-            refresh();
+            refresh(true);
             return true;
         }
     }
@@ -489,6 +566,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 if (success) {
                     delegate.commit();
                     getLogger().log(Level.FINER, "All rows removed from DB...");
+                    CacheFlushNotifier.invalidateRowCaches(this);
                     refresh();
                     if (notificationsEnabled) {
                         CacheFlushNotifier.notifyOfCacheFlush(this);
@@ -523,7 +601,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 removedItems.put((RowId) id, (RowItem) getItem(id));
                 cachedItems.remove(id);
             }
-            refresh();
+            refresh(true);
             return true;
         }
     }
@@ -542,7 +620,7 @@ public class SQLContainer implements Container, Container.Filterable,
         // filter.setCaseSensitive(!ignoreCase);
 
         filters.add(filter);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -552,7 +630,7 @@ public class SQLContainer implements Container, Container.Filterable,
     @Override
     public void removeContainerFilter(Filter filter) {
         filters.remove(filter);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -570,7 +648,7 @@ public class SQLContainer implements Container, Container.Filterable,
         Like like = new Like(propertyId.toString(), likeStr);
         like.setCaseSensitive(!ignoreCase);
         filters.add(like);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -584,7 +662,7 @@ public class SQLContainer implements Container, Container.Filterable,
             }
         }
         filters.removeAll(toRemove);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -593,7 +671,7 @@ public class SQLContainer implements Container, Container.Filterable,
     @Override
     public void removeAllContainerFilters() {
         filters.clear();
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -647,24 +725,33 @@ public class SQLContainer implements Container, Container.Filterable,
         if (cachedItems.isEmpty()) {
             getPage();
         }
+        for (Map.Entry<Integer, RowId> entry : itemIndexes.entrySet()) {
+            if (entry.getValue().equals(itemId)) {
+                return entry.getKey();
+            }
+        }
         int size = size();
+        int nextIndex = currentOffset;
         // this protects against infinite looping
-        int counter = 0;
-        while (counter < size) {
-            for (Integer i : itemIndexes.keySet()) {
-                if (itemIndexes.get(i).equals(itemId)) {
-                    return i;
-                }
-                counter++;
-            }
+        for (int counter = 0; counter < size; counter += getFetchSize()) {
             // load in the next page.
-            int nextIndex = (currentOffset / (pageLength * CACHE_RATIO) + 1)
-                    * (pageLength * CACHE_RATIO);
+            nextIndex = (nextIndex / getFetchSize() + 1) * getFetchSize();
             if (nextIndex >= size) {
                 // Container wrapped around, start from index 0.
                 nextIndex = 0;
             }
+            if (itemIndexes.containsKey(nextIndex)) {
+                // already searched
+                continue;
+            }
             updateOffsetAndCache(nextIndex);
+            int end = currentOffset + getFetchSize();
+            for (int i = currentOffset; i < end; i++) {
+                RowId id = itemIndexes.get(i);
+                if (id != null && id.equals(itemId)) {
+                    return i;
+                }
+            }
         }
         // safeguard in case item not found
         return -1;
@@ -686,8 +773,10 @@ public class SQLContainer implements Container, Container.Filterable,
         updateCount();
         if (index < size) {
             if (itemIndexes.keySet().contains(index)) {
+                cacheHits++;
                 return itemIndexes.get(index);
             }
+            cacheMisses++;
             updateOffsetAndCache(index);
             return itemIndexes.get(index);
         } else {
@@ -835,7 +924,7 @@ public class SQLContainer implements Container, Container.Filterable,
     public void sort(Object[] propertyId, boolean[] ascending) {
         sorters.clear();
         if (propertyId == null || propertyId.length == 0) {
-            refresh();
+            refresh(true);
             return;
         }
         /* Generate OrderBy -objects */
@@ -852,7 +941,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 sorters.add(new OrderBy((String) propertyId[i], asc));
             }
         }
-        refresh();
+        refresh(true);
     }
 
     /*
@@ -875,6 +964,12 @@ public class SQLContainer implements Container, Container.Filterable,
      * Does NOT remove sorting or filtering rules!
      */
     public void refresh() {
+        // the data may have changed, but a stale count can still be used
+        // while recounting in the background
+        for (Map.Entry<List<Filter>, CachedCount> entry : cachedCounts
+                .entrySet()) {
+            entry.setValue(new CachedCount(entry.getValue().count, 0));
+        }
         refresh(true);
     }
 
@@ -891,8 +986,7 @@ public class SQLContainer implements Container, Container.Filterable,
             sizeDirty = true;
         }
         currentOffset = 0;
-        cachedItems.clear();
-        itemIndexes.clear();
+        clearItemCache();
         fireContentsChange();
     }
 
@@ -947,7 +1041,7 @@ public class SQLContainer implements Container, Container.Filterable,
      */
     public void setPageLength(int pageLength) {
         setPageLengthInternal(pageLength);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -958,7 +1052,119 @@ public class SQLContainer implements Container, Container.Filterable,
      */
     private void setPageLengthInternal(int pageLength) {
         this.pageLength = pageLength > 0 ? pageLength : DEFAULT_PAGE_LENGTH;
-        cachedItems.setCacheLimit(CACHE_RATIO * getPageLength());
+    }
+
+    /**
+     * Returns the number of items fetched from the data source with one query.
+     * 
+     * @return the number of items fetched at a time
+     * @since 7.2
+     */
+    public int getFetchSize() {
+        return fetchSize > 0 ? fetchSize : CACHE_RATIO * getPageLength();
+    }
+
+    /**
+     * Sets the number of items fetched from the data source with one query.
+     * Fetching more items than displayed at once reads ahead the items likely
+     * to be needed next. By default CACHE_RATIO times the page length items are
+     * fetched.
+     * 
+     * As a side effect the container will be refreshed.
+     * 
+     * @param fetchSize
+     *            the number of items to fetch at a time, or 0 to use the
+     *            default
+     * @since 7.2
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(fetchSize, 0);
+        refresh(true);
+    }
+
+    /**
+     * Returns the maximum number of items kept in the cache of this container.
+     * The cache always holds at least the items of the last fetch.
+     * 
+     * @return the maximum number of cached items
+     * @since 7.2
+     */
+    public int getCacheSize() {
+        return Math.max(cacheSize > 0 ? cacheSize : CACHE_RATIO
+                * getPageLength(), getFetchSize());
+    }
+
+    /**
+     * Sets the maximum number of items kept in the cache of this container.
+     * When the limit would be exceeded, the items fetched first are dropped
+     * from the cache. A cache several times larger than the fetch size avoids
+     * repeated queries when a view is scrolled back and forth. By default
+     * CACHE_RATIO times the page length items are cached.
+     * 
+     * @param cacheSize
+     *            the maximum number of items to cache, or 0 to use the
+     *            default
+     * @since 7.2
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(cacheSize, 0);
+    }
+
+    /**
+     * Sets the cache used for sharing fetched rows with other containers. The
+     * rows are shared between containers using the same connection pool and
+     * table or query string with the same filters and sorting. Rows of a table
+     * are removed from the cache whenever they are modified through any
+     * container. Rows of a freeform query with a delegate are only shared if
+     * the delegate implements {@link RowCacheKey.KeyProvider}.
+     * 
+     * As a side effect the container will be refreshed.
+     * 
+     * @param rowCache
+     *            the shared row cache, e.g.
+     *            {@link SharedRowCache#getInstance()}, or null to not share
+     *            rows
+     * @since 7.2
+     */
+    public void setRowCache(RowCache rowCache) {
+        this.rowCache = rowCache;
+        if (rowCache != null) {
+            CacheFlushNotifier.addCache(rowCache);
+        }
+        refresh(true);
+    }
+
+    /**
+     * Returns the cache used for sharing fetched rows with other containers.
+     * 
+     * @return the shared row cache or null if rows are not shared
+     * @since 7.2
+     */
+    public RowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Returns the number of item lookups by index or identifier that were
+     * served from the item cache of this container.
+     * 
+     * @return the number of cache hits
+     * @since 7.2
+     */
+    public long getCacheHitCount() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of item lookups by index or identifier that required
+     * fetching items, either from the shared row cache or from the data
+     * source.
+     * 
+     * @return the number of cache misses
+     * @since 7.2
+     */
+    public long getCacheMissCount() {
+        return cacheMisses;
     }
 
     /**
@@ -980,7 +1186,7 @@ public class SQLContainer implements Container, Container.Filterable,
                     "The column given for sorting does not exist in this container.");
         }
         sorters.add(orderBy);
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -1026,6 +1232,7 @@ public class SQLContainer implements Container, Container.Filterable,
             removedItems.clear();
             addedItems.clear();
             modifiedItems.clear();
+            CacheFlushNotifier.invalidateRowCaches(this);
             refresh();
             if (notificationsEnabled) {
                 CacheFlushNotifier.notifyOfCacheFlush(this);
@@ -1051,7 +1258,7 @@ public class SQLContainer implements Container, Container.Filterable,
         removedItems.clear();
         addedItems.clear();
         modifiedItems.clear();
-        refresh();
+        refresh(true);
     }
 
     /**
@@ -1074,6 +1281,7 @@ public class SQLContainer implements Container, Container.Filterable,
                                     + "' has been externally modified.");
                 }
                 delegate.commit();
+                CacheFlushNotifier.invalidateRowCaches(this);
                 if (notificationsEnabled) {
                     CacheFlushNotifier.notifyOfCacheFlush(this);
                 }
@@ -1109,8 +1317,7 @@ public class SQLContainer implements Container, Container.Filterable,
         if (itemIndexes.containsKey(index)) {
             return;
         }
-        currentOffset = (index / (pageLength * CACHE_RATIO))
-                * (pageLength * CACHE_RATIO);
+        currentOffset = (index / getFetchSize()) * getFetchSize();
         if (currentOffset < 0) {
             currentOffset = 0;
         }
@@ -1121,6 +1328,7 @@ public class SQLContainer implements Container, Container.Filterable,
      * Fetches new count of rows from the data source, if needed.
      */
     private void updateCount() {
+        applyFinishedCounts();
         if (!sizeDirty
                 && new Date().getTime() < sizeUpdated.getTime()
                         + sizeValidMilliSeconds) {
@@ -1139,7 +1347,7 @@ public class SQLContainer implements Container, Container.Filterable,
                 getLogger().log(Level.FINE,
                         "The query delegate doesn't support sorting", e);
             }
-            int newSize = delegate.getCount();
+            int newSize = getCount();
             sizeUpdated = new Date();
             sizeDirty = false;
             if (newSize != size) {
@@ -1154,6 +1362,231 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * Determines the number of rows matching the current filters according to
+     * the count mode, using a cached count if one is valid. The filters must
+     * have been set to the query delegate.
+     * 
+     * @return the number of rows
+     * @throws SQLException
+     */
+    private int getCount() throws SQLException {
+        List<Filter> key = new ArrayList<Filter>(filters);
+        CachedCount cached = cachedCounts.get(key);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.time < sizeValidMilliSeconds) {
+            return cached.count;
+        }
+        if (countMode == CountMode.ESTIMATED) {
+            int estimate = estimateCount();
+            if (estimate >= 0) {
+                cacheCount(key, estimate);
+                return estimate;
+            }
+        } else if (countMode == CountMode.BACKGROUND
+                && delegate instanceof QueryDelegate.RowCounter) {
+            int current = cached != null ? cached.count : estimateCount();
+            if (current >= 0) {
+                startBackgroundCount(key);
+                return current;
+            }
+        }
+        int count = delegate.getCount();
+        cacheCount(key, count);
+        return count;
+    }
+
+    private int estimateCount() {
+        if (rowCountEstimator == null) {
+            return -1;
+        }
+        try {
+            return rowCountEstimator.estimateRowCount(delegate,
+                    Collections.unmodifiableList(filters));
+        } catch (SQLException e) {
+            getLogger().log(Level.WARNING, "Failed to estimate row count", e);
+            return -1;
+        }
+    }
+
+    private void cacheCount(List<Filter> key, int count) {
+        if (!cachedCounts.containsKey(key)
+                && cachedCounts.size() >= MAX_CACHED_COUNTS) {
+            cachedCounts.clear();
+        }
+        cachedCounts.put(key, new CachedCount(count,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Starts counting the rows matching the given filters in the background,
+     * unless already counting them.
+     * 
+     * @param key
+     *            the filters
+     */
+    private void startBackgroundCount(List<Filter> key) {
+        if (!countsInProgress.add(key)) {
+            return;
+        }
+        Executor executor = countExecutor != null ? countExecutor
+                : getDefaultCountExecutor();
+        executor.execute(new CountTask((QueryDelegate.RowCounter) delegate,
+                key, VaadinSession.getCurrent(), UI.getCurrent()));
+    }
+
+    private static synchronized Executor getDefaultCountExecutor() {
+        if (defaultCountExecutor == null) {
+            defaultCountExecutor = Executors
+                    .newSingleThreadExecutor(new CountThreadFactory());
+        }
+        return defaultCountExecutor;
+    }
+
+    /**
+     * Called from the background thread when a count has finished.
+     * 
+     * @param key
+     *            the filters used for counting
+     * @param count
+     *            the number of rows, or -1 if counting failed
+     */
+    private void countFinished(List<Filter> key, int count) {
+        synchronized (finishedCounts) {
+            finishedCounts.put(key, count);
+        }
+    }
+
+    /**
+     * Takes the results of the finished background counts into use. If the
+     * number of rows matching the current filters changed, the size of the
+     * container is updated and listeners are notified.
+     */
+    private void applyFinishedCounts() {
+        Map<List<Filter>, Integer> counts;
+        synchronized (finishedCounts) {
+            if (finishedCounts.isEmpty()) {
+                return;
+            }
+            counts = new HashMap<List<Filter>, Integer>(finishedCounts);
+            finishedCounts.clear();
+        }
+        for (Map.Entry<List<Filter>, Integer> entry : counts.entrySet()) {
+            countsInProgress.remove(entry.getKey());
+            if (entry.getValue() >= 0) {
+                cacheCount(entry.getKey(), entry.getValue());
+            }
+        }
+        Integer count = counts.get(filters);
+        if (count != null && count >= 0) {
+            sizeUpdated = new Date();
+            sizeDirty = false;
+            if (count != size) {
+                size = count;
+                getLogger().log(Level.FINER,
+                        "Updated row count in background. New count is: {0}",
+                        size);
+                // Size is up to date so don't set it back to dirty in refresh()
+                refresh(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the mode used for determining the number of rows when no valid
+     * cached row count exists.
+     * 
+     * @return the count mode
+     * @since 7.2
+     */
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * Sets the mode used for determining the number of rows when no valid
+     * cached row count exists.
+     * 
+     * @param countMode
+     *            the count mode, not null
+     * @since 7.2
+     */
+    public void setCountMode(CountMode countMode) {
+        if (countMode == null) {
+            throw new IllegalArgumentException("Count mode must not be null.");
+        }
+        this.countMode = countMode;
+    }
+
+    /**
+     * Returns the estimator used in the {@link CountMode#ESTIMATED} and
+     * {@link CountMode#BACKGROUND} count modes.
+     * 
+     * @return the row count estimator or null if none has been set
+     * @since 7.2
+     */
+    public RowCountEstimator getRowCountEstimator() {
+        return rowCountEstimator;
+    }
+
+    /**
+     * Sets the estimator used in the {@link CountMode#ESTIMATED} and
+     * {@link CountMode#BACKGROUND} count modes.
+     * 
+     * @param rowCountEstimator
+     *            the row count estimator or null to not estimate counts
+     * @since 7.2
+     */
+    public void setRowCountEstimator(RowCountEstimator rowCountEstimator) {
+        this.rowCountEstimator = rowCountEstimator;
+    }
+
+    /**
+     * Sets the executor running the counts in the
+     * {@link CountMode#BACKGROUND} count mode. By default the counts of all
+     * containers are run one at a time in a shared thread.
+     * 
+     * When a count finishes, the container is updated through
+     * {@link UI#access(Runnable)} of the UI that started the count, or
+     * {@link VaadinSession#access(Runnable)} if the count was started outside
+     * a UI. Without a session, or if the UI has been detached, the count is
+     * taken into use the next time the size of the container is needed.
+     * 
+     * @param countExecutor
+     *            the executor or null to use the default
+     * @since 7.2
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        this.countExecutor = countExecutor;
+    }
+
+    /**
+     * Returns the time in milliseconds for which a row count is used before
+     * counting the rows again.
+     * 
+     * @return the validity time of row counts in milliseconds
+     * @since 7.2
+     */
+    public int getSizeValidMilliSeconds() {
+        return sizeValidMilliSeconds;
+    }
+
+    /**
+     * Sets the time in milliseconds for which a row count is used before
+     * counting the rows again. Counts are kept for each set of filters used
+     * recently, so changing the filters back and forth or sorting does not
+     * cause the rows to be counted again. Modifying the data through the
+     * container or calling {@link #refresh()} invalidates the counts. The
+     * default is 10 seconds.
+     * 
+     * @param sizeValidMilliSeconds
+     *            the validity time of row counts in milliseconds
+     * @since 7.2
+     */
+    public void setSizeValidMilliSeconds(int sizeValidMilliSeconds) {
+        this.sizeValidMilliSeconds = sizeValidMilliSeconds;
+    }
+
     /**
      * Fetches property id's (column names and their types) from the data
      * source.
@@ -1250,16 +1683,53 @@ public class SQLContainer implements Container, Container.Filterable,
     }
 
     /**
-     * Fetches a page from the data source based on the values of pageLenght and
-     * currentOffset. Also updates the set of primary keys, used in
-     * identification of RowItems.
+     * Fetches a page from the data source or the shared row cache based on the
+     * values of the fetch size and currentOffset, and adds its items to the
+     * item cache. Also updates the set of primary keys, used in identification
+     * of RowItems.
      */
     private void getPage() {
         updateCount();
+        int fetchedRows = getFetchSize();
+        RowCacheKey key = null;
+        RowBlock rows = null;
+        if (rowCache != null) {
+            key = RowCacheKey.create(delegate, filters, sorters,
+                    currentOffset, fetchedRows);
+            if (key != null) {
+                rows = rowCache.get(key);
+            }
+        }
+        if (rows == null) {
+            rows = fetchRows(fetchedRows);
+            if (key != null) {
+                rowCache.put(key, rows);
+            }
+        } else {
+            getLogger().log(Level.FINER,
+                    "Found {0} shared rows starting from {1}",
+                    new Object[] { rows.size(), currentOffset });
+        }
+        if (!delegate.implementationRespectsPagingLimits()) {
+            // all rows were fetched
+            currentOffset = 0;
+            fetchSize = 0;
+            setPageLengthInternal(size);
+            clearItemCache();
+        }
+        cacheRows(rows);
+    }
+
+    /**
+     * Fetches rows from the data source starting from currentOffset.
+     * 
+     * @param fetchedRows
+     *            the number of rows to fetch
+     * @return the fetched rows
+     */
+    private RowBlock fetchRows(int fetchedRows) {
         ResultSet rs = null;
         ResultSetMetaData rsmd = null;
-        cachedItems.clear();
-        itemIndexes.clear();
         try {
             try {
                 delegate.setOrderBy(sorters);
@@ -1270,90 +1740,50 @@ public class SQLContainer implements Container, Container.Filterable,
                         "The query delegate doesn't support sorting", e);
             }
             delegate.beginTransaction();
-            int fetchedRows = pageLength * CACHE_RATIO;
             rs = delegate.getResults(currentOffset, fetchedRows);
             rsmd = rs.getMetaData();
             List<String> pKeys = delegate.getPrimaryKeyColumns();
-            // }
-            /* Create new items and column properties */
-            ColumnProperty cp = null;
-            int rowCount = currentOffset;
-            if (!delegate.implementationRespectsPagingLimits()) {
-                rowCount = currentOffset = 0;
-                setPageLengthInternal(size);
+            /*
+             * In case there are more than one column with the same name, use
+             * only the first one. This can easily happen if you join many
+             * tables where each table has an ID column.
+             */
+            List<String> columns = new ArrayList<String>();
+            List<Integer> columnIndexes = new ArrayList<Integer>();
+            for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+                String colName = rsmd.getColumnLabel(i);
+                if (isColumnIdentifierValid(colName)
+                        && propertyIds.contains(colName)
+                        && !columns.contains(colName)) {
+                    columns.add(colName);
+                    columnIndexes.add(i);
+                }
             }
+            List<RowId> rowIds = new ArrayList<RowId>();
+            List<Object[]> values = new ArrayList<Object[]>();
             while (rs.next()) {
-                List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>();
                 /* Generate row itemId based on primary key(s) */
                 Object[] itemId = new Object[pKeys.size()];
                 for (int i = 0; i < pKeys.size(); i++) {
                     itemId[i] = rs.getObject(pKeys.get(i));
                 }
-                RowId id = null;
                 if (pKeys.isEmpty()) {
-                    id = new ReadOnlyRowId(rs.getRow());
+                    rowIds.add(new ReadOnlyRowId(rs.getRow()));
                 } else {
-                    id = new RowId(itemId);
+                    rowIds.add(new RowId(itemId));
                 }
-                List<String> propertiesToAdd = new ArrayList<String>(
-                        propertyIds);
-                if (!removedItems.containsKey(id)) {
-                    for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                        if (!isColumnIdentifierValid(rsmd.getColumnLabel(i))) {
-                            continue;
-                        }
-                        String colName = rsmd.getColumnLabel(i);
-                        Object value = rs.getObject(i);
-                        Class<?> type = value != null ? value.getClass()
-                                : Object.class;
-                        if (value == null) {
-                            for (String propName : propertyTypes.keySet()) {
-                                if (propName.equals(rsmd.getColumnLabel(i))) {
-                                    type = propertyTypes.get(propName);
-                                    break;
-                                }
-                            }
-                        }
-                        /*
-                         * In case there are more than one column with the same
-                         * name, add only the first one. This can easily happen
-                         * if you join many tables where each table has an ID
-                         * column.
-                         */
-                        if (propertiesToAdd.contains(colName)) {
-
-                            cp = new ColumnProperty(colName,
-                                    propertyReadOnly.get(colName),
-                                    propertyPersistable.get(colName),
-                                    propertyNullable.get(colName),
-                                    propertyPrimaryKey.get(colName), value,
-                                    type);
-                            itemProperties.add(cp);
-                            propertiesToAdd.remove(colName);
-                        }
-                    }
-                    /* Cache item */
-                    itemIndexes.put(rowCount, id);
-
-                    // if an item with the id is contained in the modified
-                    // cache, then use this record and add it to the cached
-                    // items. Otherwise create a new item
-                    int modifiedIndex = indexInModifiedCache(id);
-                    if (modifiedIndex != -1) {
-                        cachedItems.put(id, modifiedItems.get(modifiedIndex));
-                    } else {
-                        cachedItems.put(id, new RowItem(this, id,
-                                itemProperties));
-                    }
-
-                    rowCount++;
+                Object[] rowValues = new Object[columns.size()];
+                for (int i = 0; i < rowValues.length; i++) {
+                    rowValues[i] = rs.getObject(columnIndexes.get(i));
                 }
+                values.add(rowValues);
             }
             rs.getStatement().close();
             rs.close();
             delegate.commit();
             getLogger().log(Level.FINER, "Fetched {0} rows starting from {1}",
                     new Object[] { fetchedRows, currentOffset });
+            return new RowBlock(columns, rowIds, values);
         } catch (SQLException e) {
             getLogger().log(Level.WARNING,
                     "Failed to fetch rows, rolling back", e);
@@ -1376,6 +1806,90 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * Creates items for the given rows and adds them to the item cache as the
+     * page starting from currentOffset. Pages fetched earlier are dropped from
+     * the cache as needed to keep it within the cache size.
+     * 
+     * @param rows
+     *            the rows of the page
+     */
+    private void cacheRows(RowBlock rows) {
+        if (cachedPageOffsets.remove(Integer.valueOf(currentOffset))) {
+            removeCachedPage(currentOffset);
+        }
+        while (!cachedPageOffsets.isEmpty()
+                && itemIndexes.size() + rows.size() > getCacheSize()) {
+            removeCachedPage(cachedPageOffsets.removeFirst());
+        }
+        cachedPageOffsets.add(currentOffset);
+
+        List<String> columns = rows.getColumns();
+        int rowCount = currentOffset;
+        for (int row = 0; row < rows.size(); row++) {
+            RowId id = rows.getRowId(row);
+            if (removedItems.containsKey(id)) {
+                continue;
+            }
+            /* Create new items and column properties */
+            List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>(
+                    columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                String colName = columns.get(i);
+                Object value = rows.getValue(row, i);
+                Class<?> type = Object.class;
+                if (value != null) {
+                    type = value.getClass();
+                } else if (propertyTypes.containsKey(colName)) {
+                    type = propertyTypes.get(colName);
+                }
+                itemProperties.add(new ColumnProperty(colName,
+                        propertyReadOnly.get(colName), propertyPersistable
+                                .get(colName), propertyNullable.get(colName),
+                        propertyPrimaryKey.get(colName), value, type));
+            }
+            /* Cache item */
+            itemIndexes.put(rowCount, id);
+
+            // if an item with the id is contained in the modified
+            // cache, then use this record and add it to the cached
+            // items. Otherwise create a new item
+            int modifiedIndex = indexInModifiedCache(id);
+            if (modifiedIndex != -1) {
+                cachedItems.put(id, modifiedItems.get(modifiedIndex));
+            } else {
+                cachedItems.put(id, new RowItem(this, id, itemProperties));
+            }
+
+            rowCount++;
+        }
+    }
+
+    /**
+     * Removes the items of the page starting from the given index from the
+     * item cache.
+     * 
+     * @param offset
+     *            the index of the first item of the page
+     */
+    private void removeCachedPage(int offset) {
+        for (int i = offset; i < offset + getFetchSize(); i++) {
+            RowId id = itemIndexes.remove(i);
+            if (id != null) {
+                cachedItems.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes all items from the item cache.
+     */
+    private void clearItemCache() {
+        cachedItems.clear();
+        itemIndexes.clear();
+        cachedPageOffsets.clear();
+    }
+
     /**
      * Returns the index of the item with the given itemId for the modified
      * cache.
@@ -1834,10 +2348,82 @@ public class SQLContainer implements Container, Container.Filterable,
              */
             CacheFlushNotifier.addInstance(this);
         }
+        if (rowCache != null) {
+            CacheFlushNotifier.addCache(rowCache);
+        }
+        countsInProgress = new HashSet<List<Filter>>();
+        finishedCounts = new HashMap<List<Filter>, Integer>();
     }
 
     private static final Logger getLogger() {
         return Logger.getLogger(SQLContainer.class.getName());
     }
 
+    private static class CachedCount implements Serializable {
+        private final int count;
+        private final long time;
+
+        private CachedCount(int count, long time) {
+            this.count = count;
+            this.time = time;
+        }
+    }
+
+    private static class CountThreadFactory implements ThreadFactory,
+            Serializable {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "SQLContainer row counter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Counts rows in the background and passes the result to the container.
+     */
+    private class CountTask implements Runnable {
+        private final QueryDelegate.RowCounter counter;
+        private final List<Filter> filters;
+        private final VaadinSession session;
+        private final UI ui;
+
+        private CountTask(QueryDelegate.RowCounter counter,
+                List<Filter> filters, VaadinSession session, UI ui) {
+            this.counter = counter;
+            this.filters = filters;
+            this.session = session;
+            this.ui = ui;
+        }
+
+        @Override
+        public void run() {
+            int count = -1;
+            try {
+                count = counter.countRows(filters);
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING,
+                        "Failed to count rows in the background", e);
+            }
+            countFinished(filters, count);
+            // Item set change listeners may update components, which requires
+            // the lock of their UI if per-UI locking is enabled
+            if (ui != null) {
+                try {
+                    ui.access(new ApplyCountsTask());
+                } catch (UIDetachedException e) {
+                    // The count is applied when it is next needed
+                }
+            } else if (session != null) {
+                session.access(new ApplyCountsTask());
+            }
+        }
+    }
+
+    private class ApplyCountsTask implements Runnable {
+        @Override
+        public void run() {
+            applyFinishedCounts();
+        }
+    }
 }
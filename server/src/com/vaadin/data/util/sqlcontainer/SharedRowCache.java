@@ -0,0 +1,190 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe {@link RowCache} holding a limited number of rows for a limited
+ * time. The least recently used blocks are removed when the limit is exceeded.
+ * 
+ * The rows are kept in memory until they expire, so changes made to the
+ * database other than through the {@link SQLContainer} instances using the
+ * cache become visible only after that. The contents of the cache are not
+ * serialized.
+ * 
+ * @since 7.2
+ */
+public class SharedRowCache implements RowCache {
+
+    /** The default maximum number of rows in the cache. */
+    public static final int DEFAULT_MAX_ROWS = 10000;
+
+    /** The default time in milliseconds after which rows expire. */
+    public static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+    private static final SharedRowCache instance = new SharedRowCache();
+    static {
+        instance.jvmInstance = true;
+    }
+
+    private static class Entry implements Serializable {
+        private final RowBlock rows;
+        private final long created;
+
+        private Entry(RowBlock rows, long created) {
+            this.rows = rows;
+            this.created = created;
+        }
+    }
+
+    private final int maxRows;
+    private final long timeToLive;
+    private boolean jvmInstance = false;
+
+    private transient LinkedHashMap<RowCacheKey, Entry> blocks;
+    private transient int rowCount;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache with the default limits.
+     */
+    public SharedRowCache() {
+        this(DEFAULT_MAX_ROWS, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates a cache.
+     * 
+     * @param maxRows
+     *            the maximum number of rows to keep in the cache
+     * @param timeToLive
+     *            the time in milliseconds after which cached rows expire
+     */
+    public SharedRowCache(int maxRows, long timeToLive) {
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of rows must be positive.");
+        }
+        this.maxRows = maxRows;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Gets the cache shared by all containers in the JVM, created with the
+     * default limits. A container referring to this cache still refers to it
+     * after deserialization.
+     * 
+     * @return the JVM wide row cache
+     */
+    public static SharedRowCache getInstance() {
+        return instance;
+    }
+
+    @Override
+    public synchronized RowBlock get(RowCacheKey key) {
+        Entry entry = getBlocks().get(key);
+        if (entry != null
+                && System.currentTimeMillis() - entry.created > timeToLive) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.rows;
+    }
+
+    @Override
+    public synchronized void put(RowCacheKey key, RowBlock rows) {
+        if (rows.size() > maxRows) {
+            return;
+        }
+        remove(key);
+        getBlocks().put(key, new Entry(rows, System.currentTimeMillis()));
+        rowCount += rows.size();
+        Iterator<Entry> eldest = getBlocks().values().iterator();
+        while (rowCount > maxRows) {
+            rowCount -= eldest.next().rows.size();
+            eldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String source) {
+        Iterator<Map.Entry<RowCacheKey, Entry>> i = getBlocks().entrySet()
+                .iterator();
+        while (i.hasNext()) {
+            Map.Entry<RowCacheKey, Entry> e = i.next();
+            if (e.getKey().getSource().equals(source)) {
+                rowCount -= e.getValue().rows.size();
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all rows from the cache.
+     */
+    public synchronized void clear() {
+        getBlocks().clear();
+        rowCount = 0;
+    }
+
+    /**
+     * Gets the number of rows currently in the cache.
+     * 
+     * @return the number of cached rows
+     */
+    public synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private void remove(RowCacheKey key) {
+        Entry entry = getBlocks().remove(key);
+        if (entry != null) {
+            rowCount -= entry.rows.size();
+        }
+    }
+
+    private LinkedHashMap<RowCacheKey, Entry> getBlocks() {
+        if (blocks == null) {
+            // access ordered to remove the least recently used blocks first
+            blocks = new LinkedHashMap<RowCacheKey, Entry>(16, 0.75f, true);
+        }
+        return blocks;
+    }
+
+    private Object readResolve() {
+        return jvmInstance ? instance : this;
+    }
+}
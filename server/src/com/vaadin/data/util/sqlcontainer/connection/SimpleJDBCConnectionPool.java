@@ -20,13 +20,26 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Simple implementation of the JDBCConnectionPool interface. Handles loading
  * the JDBC driver, setting up the connections and ensuring they are still
  * usable upon release.
+ * <p>
+ * By default, reserving a connection fails immediately when all connections
+ * are in use. A reserve timeout can be set to wait for a connection to be
+ * released instead. Idle connections can optionally be validated before they
+ * are handed out, and closed when they have been idle for too long.
+ * <p>
+ * If a statement cache size is set, each connection keeps up to that many of
+ * its prepared statements open after they have been closed, and reuses them
+ * when a statement with the same SQL text is prepared again.
  */
 @SuppressWarnings("serial")
 public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
@@ -34,16 +47,30 @@ public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
     private int initialConnections = 5;
     private int maxConnections = 20;
 
+    private long reserveTimeout = 0;
+    private int validationTimeout = 0;
+    private long maxIdleTime = 0;
+    private int statementCacheSize = 0;
+
     private String driverName;
     private String connectionUri;
     private String userName;
     private String password;
 
-    private transient Set<Connection> availableConnections;
+    /** Idle connections, the most recently released first. */
+    private transient LinkedList<Connection> availableConnections;
+    private transient Map<Connection, Long> releaseTimes;
     private transient Set<Connection> reservedConnections;
 
     private boolean initialized;
 
+    /* Statistics */
+    private long waitCount;
+    private long totalWaitTime;
+    private long timeoutCount;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
     public SimpleJDBCConnectionPool(String driverName, String connectionUri,
             String userName, String password) throws SQLException {
         if (driverName == null) {
@@ -85,10 +112,11 @@ public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
     }
 
     private void initializeConnections() throws SQLException {
-        availableConnections = new HashSet<Connection>(initialConnections);
+        availableConnections = new LinkedList<Connection>();
+        releaseTimes = new HashMap<Connection, Long>();
         reservedConnections = new HashSet<Connection>(initialConnections);
         for (int i = 0; i < initialConnections; i++) {
-            availableConnections.add(createConnection());
+            addAvailableConnection(createConnection());
         }
         initialized = true;
     }
@@ -98,26 +126,118 @@ public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
         if (!initialized) {
             initializeConnections();
         }
-        if (availableConnections.isEmpty()) {
-            if (reservedConnections.size() < maxConnections) {
-                availableConnections.add(createConnection());
-            } else {
-                throw new SQLException("Connection limit has been reached.");
-            }
+        evictIdleConnections();
+        Connection c = takeAvailableConnection();
+        if (c == null && reservedConnections.size() >= maxConnections) {
+            c = waitForConnection();
+        }
+        if (c == null) {
+            c = createConnection();
         }
-
-        Connection c = availableConnections.iterator().next();
-        availableConnections.remove(c);
         reservedConnections.add(c);
 
         return c;
     }
 
+    /**
+     * Waits at most the reserve timeout for a connection to be released.
+     * 
+     * @return an idle connection, or null if a new connection can be created
+     * @throws SQLException
+     *             if the timeout elapses before a connection is released
+     */
+    private Connection waitForConnection() throws SQLException {
+        long start = System.currentTimeMillis();
+        long deadline = start + reserveTimeout;
+        try {
+            Connection c = null;
+            while (c == null && reservedConnections.size() >= maxConnections) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    timeoutCount++;
+                    throw new SQLException(
+                            "Connection limit has been reached.");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(
+                            "Interrupted while waiting for a connection.");
+                }
+                c = takeAvailableConnection();
+            }
+            return c;
+        } finally {
+            if (reserveTimeout > 0) {
+                waitCount++;
+                totalWaitTime += System.currentTimeMillis() - start;
+            }
+        }
+    }
+
+    /**
+     * Takes the most recently released idle connection, discarding idle
+     * connections that fail validation.
+     */
+    private Connection takeAvailableConnection() {
+        while (!availableConnections.isEmpty()) {
+            Connection c = availableConnections.removeFirst();
+            releaseTimes.remove(c);
+            if (validationTimeout <= 0 || isValid(c)) {
+                return c;
+            }
+            closeConnection(c);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection c) {
+        try {
+            return c.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle longer than the maximum idle
+     * time, as long as more than the initial number of connections are open.
+     */
+    private void evictIdleConnections() {
+        if (maxIdleTime <= 0) {
+            return;
+        }
+        long oldestAllowed = System.currentTimeMillis() - maxIdleTime;
+        int openConnections = availableConnections.size()
+                + reservedConnections.size();
+        while (!availableConnections.isEmpty()
+                && openConnections > initialConnections) {
+            Connection c = availableConnections.getLast();
+            if (releaseTimes.get(c) > oldestAllowed) {
+                return;
+            }
+            availableConnections.removeLast();
+            releaseTimes.remove(c);
+            closeConnection(c);
+            openConnections--;
+        }
+    }
+
+    private void addAvailableConnection(Connection c) {
+        availableConnections.addFirst(c);
+        releaseTimes.put(c, System.currentTimeMillis());
+    }
+
     @Override
     public synchronized void releaseConnection(Connection conn) {
         if (conn == null || !initialized) {
             return;
         }
+        if (!reservedConnections.remove(conn)) {
+            /* Not reserved from this pool or already released */
+            return;
+        }
         /* Try to roll back if necessary */
         try {
             if (!conn.getAutoCommit()) {
@@ -125,16 +245,12 @@ public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
             }
         } catch (SQLException e) {
             /* Roll back failed, close and discard connection */
-            try {
-                conn.close();
-            } catch (SQLException e1) {
-                /* Nothing needs to be done */
-            }
-            reservedConnections.remove(conn);
+            closeConnection(conn);
+            notifyAll();
             return;
         }
-        reservedConnections.remove(conn);
-        availableConnections.add(conn);
+        addAvailableConnection(conn);
+        notifyAll();
     }
 
     private Connection createConnection() throws SQLException {
@@ -150,28 +266,195 @@ public class SimpleJDBCConnectionPool implements JDBCConnectionPool {
                 // Failed to set ansi mode; continue
             }
         }
+        if (statementCacheSize > 0) {
+            c = StatementCachingConnection.wrap(c, this, statementCacheSize);
+        }
         return c;
     }
 
+    private static void closeConnection(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // No need to do anything
+        }
+    }
+
     @Override
-    public void destroy() {
+    public synchronized void destroy() {
+        if (!initialized) {
+            return;
+        }
         for (Connection c : availableConnections) {
-            try {
-                c.close();
-            } catch (SQLException e) {
-                // No need to do anything
-            }
+            closeConnection(c);
         }
         for (Connection c : reservedConnections) {
-            try {
-                c.close();
-            } catch (SQLException e) {
-                // No need to do anything
-            }
+            closeConnection(c);
         }
 
     }
 
+    /**
+     * Sets how long {@link #reserveConnection()} waits for a connection to be
+     * released when the maximum number of connections are in use. By default
+     * the timeout is 0, and reserving fails immediately.
+     * 
+     * @param reserveTimeout
+     *            the maximum time to wait in milliseconds
+     * @since 7.2
+     */
+    public synchronized void setReserveTimeout(long reserveTimeout) {
+        this.reserveTimeout = reserveTimeout;
+    }
+
+    /**
+     * @return the maximum time to wait for a connection in milliseconds
+     * @since 7.2
+     */
+    public synchronized long getReserveTimeout() {
+        return reserveTimeout;
+    }
+
+    /**
+     * Sets the timeout used to validate idle connections with
+     * {@link Connection#isValid(int)} before they are reserved. Connections
+     * that fail validation are closed and discarded. By default the timeout is
+     * 0, and connections are not validated.
+     * 
+     * @param validationTimeout
+     *            the validation timeout in seconds, or 0 to not validate
+     * @since 7.2
+     */
+    public synchronized void setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    /**
+     * @return the validation timeout in seconds, or 0 if connections are not
+     *         validated
+     * @since 7.2
+     */
+    public synchronized int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * Sets how long a connection may stay idle before it is closed. The pool
+     * never closes idle connections to go below the initial number of
+     * connections. By default the time is 0, and idle connections are kept
+     * open.
+     * 
+     * @param maxIdleTime
+     *            the maximum idle time in milliseconds, or 0 to keep idle
+     *            connections open
+     * @since 7.2
+     */
+    public synchronized void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * @return the maximum idle time in milliseconds, or 0 if idle connections
+     *         are kept open
+     * @since 7.2
+     */
+    public synchronized long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Sets the number of closed prepared statements each connection keeps
+     * open for reuse. Only statements prepared with
+     * {@link Connection#prepareStatement(String)} are cached. The size only
+     * affects connections opened after it is set, so it should be set before
+     * the pool is first used. By default the size is 0, and statements are
+     * not cached.
+     * 
+     * @param statementCacheSize
+     *            the number of statements to cache per connection
+     * @since 7.2
+     */
+    public synchronized void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @return the number of statements cached per connection
+     * @since 7.2
+     */
+    public synchronized int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return the number of connections currently reserved
+     * @since 7.2
+     */
+    public synchronized int getActiveConnectionCount() {
+        return initialized ? reservedConnections.size() : 0;
+    }
+
+    /**
+     * @return the number of open connections currently not reserved
+     * @since 7.2
+     */
+    public synchronized int getIdleConnectionCount() {
+        return initialized ? availableConnections.size() : 0;
+    }
+
+    /**
+     * @return the number of times a reservation has had to wait for a
+     *         connection to be released
+     * @since 7.2
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return the total time in milliseconds spent waiting for connections to
+     *         be released
+     * @since 7.2
+     */
+    public synchronized long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return the number of reservations that have failed because the
+     *         connection limit was reached
+     * @since 7.2
+     */
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * @return the number of prepared statements reused from the statement
+     *         caches
+     * @since 7.2
+     */
+    public long getStatementCacheHitCount() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return the number of prepared statements created because they were not
+     *         found in the statement caches
+     * @since 7.2
+     */
+    public long getStatementCacheMissCount() {
+        return statementCacheMisses.get();
+    }
+
+    void statementCacheHit() {
+        statementCacheHits.incrementAndGet();
+    }
+
+    void statementCacheMiss() {
+        statementCacheMisses.incrementAndGet();
+    }
+
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
         initialized = false;
         out.defaultWriteObject();
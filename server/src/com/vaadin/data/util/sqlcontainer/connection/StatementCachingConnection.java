@@ -0,0 +1,239 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer.connection;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Wraps a connection to keep the prepared statements created with
+ * {@link Connection#prepareStatement(String)} open after they are closed, so
+ * that preparing a statement with the same SQL text again on the same
+ * connection reuses the statement. The least recently used statements are
+ * closed when more statements than the cache size are idle.
+ * 
+ * For internal use by {@link SimpleJDBCConnectionPool} only.
+ * 
+ * @since 7.2
+ */
+class StatementCachingConnection implements InvocationHandler, Serializable {
+
+    private final transient Connection connection;
+    private final SimpleJDBCConnectionPool pool;
+    private final int cacheSize;
+    private final LinkedHashMap<String, CachedStatement> idleStatements = new LinkedHashMap<String, CachedStatement>(
+            16, 0.75f, true);
+    private Connection proxy;
+
+    private StatementCachingConnection(Connection connection,
+            SimpleJDBCConnectionPool pool, int cacheSize) {
+        this.connection = connection;
+        this.pool = pool;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Wraps a connection to cache its prepared statements.
+     * 
+     * @param connection
+     *            the connection to wrap
+     * @param pool
+     *            the pool to report statement cache hits and misses to
+     * @param cacheSize
+     *            the maximum number of idle statements to keep open
+     * @return a connection caching its prepared statements
+     */
+    static Connection wrap(Connection connection,
+            SimpleJDBCConnectionPool pool, int cacheSize) {
+        StatementCachingConnection handler = new StatementCachingConnection(
+                connection, pool, cacheSize);
+        handler.proxy = (Connection) createProxy(Connection.class, handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public synchronized Object invoke(Object proxy, Method method,
+            Object[] args) throws Throwable {
+        String name = method.getName();
+        if (isIdentityMethod(method)) {
+            return invokeIdentityMethod(proxy, method, args);
+        } else if ("prepareStatement".equals(name) && args.length == 1) {
+            return prepareStatement((String) args[0]);
+        } else if ("close".equals(name)) {
+            closeIdleStatements();
+        }
+        return invokeOn(connection, method, args);
+    }
+
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        CachedStatement cached = idleStatements.remove(sql);
+        if (cached != null && !cached.statement.isClosed()) {
+            pool.statementCacheHit();
+            return cached.proxy;
+        }
+        pool.statementCacheMiss();
+        return new CachedStatement(sql, connection.prepareStatement(sql)).proxy;
+    }
+
+    /**
+     * Makes a statement closed by the user available for reuse, closing the
+     * least recently used idle statements if needed.
+     */
+    private synchronized void statementClosed(CachedStatement cached) {
+        if (idleStatements.containsKey(cached.sql)) {
+            // the same statement has been prepared again in the meantime
+            closeQuietly(cached.statement);
+            return;
+        }
+        idleStatements.put(cached.sql, cached);
+        Iterator<CachedStatement> eldest = idleStatements.values().iterator();
+        while (idleStatements.size() > cacheSize) {
+            closeQuietly(eldest.next().statement);
+            eldest.remove();
+        }
+    }
+
+    private void closeIdleStatements() {
+        for (CachedStatement cached : idleStatements.values()) {
+            closeQuietly(cached.statement);
+        }
+        idleStatements.clear();
+    }
+
+    /**
+     * A prepared statement that is returned to the cache instead of being
+     * closed.
+     */
+    private class CachedStatement implements InvocationHandler, Serializable {
+        private final String sql;
+        private final transient PreparedStatement statement;
+        private final PreparedStatement proxy;
+
+        private CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+            proxy = (PreparedStatement) createProxy(PreparedStatement.class,
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+            if (isIdentityMethod(method)) {
+                return invokeIdentityMethod(proxy, method, args);
+            } else if ("close".equals(name)) {
+                try {
+                    statement.clearParameters();
+                } catch (SQLException e) {
+                    closeQuietly(statement);
+                    return null;
+                }
+                statementClosed(this);
+                return null;
+            } else if ("getConnection".equals(name)) {
+                return StatementCachingConnection.this.proxy;
+            }
+            Object result = invokeOn(statement, method, args);
+            if (result instanceof ResultSet) {
+                // make ResultSet.getStatement() return the cached statement
+                result = createProxy(ResultSet.class, new CachedResultSet(
+                        (ResultSet) result, this.proxy));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A result set of a cached statement.
+     */
+    private static class CachedResultSet implements InvocationHandler,
+            Serializable {
+        private final transient ResultSet resultSet;
+        private final PreparedStatement statement;
+
+        private CachedResultSet(ResultSet resultSet,
+                PreparedStatement statement) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (isIdentityMethod(method)) {
+                return invokeIdentityMethod(proxy, method, args);
+            } else if ("getStatement".equals(method.getName())) {
+                return statement;
+            }
+            return invokeOn(resultSet, method, args);
+        }
+    }
+
+    private static Object createProxy(Class<?> type,
+            InvocationHandler handler) {
+        return Proxy.newProxyInstance(
+                StatementCachingConnection.class.getClassLoader(),
+                new Class<?>[] { type }, handler);
+    }
+
+    private static boolean isIdentityMethod(Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+
+    /**
+     * Proxies are compared by identity so that they can be used as keys in
+     * the pool.
+     */
+    private static Object invokeIdentityMethod(Object proxy, Method method,
+            Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else {
+            return proxy.getClass().getName() + "@"
+                    + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing needs to be done
+        }
+    }
+}
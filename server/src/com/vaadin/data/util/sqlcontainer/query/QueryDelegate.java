@@ -236,4 +236,27 @@ public interface QueryDelegate extends Serializable {
         @Deprecated
         public void removeListener(QueryDelegate.RowIdChangeListener listener);
     }
+
+    /**
+     * The interface for counting rows independently of the state and the
+     * active transaction of the query delegate. By implementing this interface
+     * a query delegate allows its rows to be counted in a background thread
+     * while it is being used by a container.
+     * 
+     * @since 7.2
+     */
+    public interface RowCounter extends Serializable {
+        /**
+         * Counts the rows matching the given filters using a connection of its
+         * own. This method may be called from any thread, also while other
+         * methods of the query delegate are being called.
+         * 
+         * @param filters
+         *            the filters the rows must match
+         * @return the number of matching rows
+         * @throws SQLException
+         *             if the database access fails.
+         */
+        public int countRows(List<Filter> filters) throws SQLException;
+    }
 }
@@ -48,7 +48,8 @@ import com.vaadin.data.util.sqlcontainer.query.generator.StatementHelper;
 
 @SuppressWarnings("serial")
 public class TableQuery extends AbstractTransactionalQuery implements
-        QueryDelegate, QueryDelegate.RowIdChangeNotifier {
+        QueryDelegate, QueryDelegate.RowIdChangeNotifier,
+        QueryDelegate.RowCounter {
 
     /**
      * Table name (without catalog or schema information).
@@ -225,6 +226,50 @@ public class TableQuery extends AbstractTransactionalQuery implements
         return count;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.vaadin.data.util.sqlcontainer.query.QueryDelegate.RowCounter#countRows
+     * (java.util.List)
+     */
+    @Override
+    public int countRows(List<Filter> filters) throws SQLException {
+        getLogger().log(Level.FINE, "Counting rows...");
+        StatementHelper sh = sqlGenerator.generateSelectQuery(
+                getFullTableName(), filters, null, 0, 0, "COUNT(*)");
+        JDBCConnectionPool connectionPool = getConnectionPool();
+        Connection connection = connectionPool.reserveConnection();
+        PreparedStatement pstmt = null;
+        ResultSet r = null;
+        try {
+            pstmt = connection.prepareStatement(sh.getQueryString());
+            sh.setParameterValuesToStatement(pstmt);
+            getLogger().log(Level.FINE, "DB -> {0}", sh.getQueryString());
+            r = pstmt.executeQuery();
+            r.next();
+            int count = r.getInt(1);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            return count;
+        } finally {
+            try {
+                try {
+                    if (r != null) {
+                        r.close();
+                    }
+                } finally {
+                    if (pstmt != null) {
+                        pstmt.close();
+                    }
+                }
+            } finally {
+                connectionPool.releaseConnection(connection);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
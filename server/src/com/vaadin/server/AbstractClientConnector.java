@@ -129,10 +129,27 @@ public abstract class AbstractClientConnector implements ClientConnector,
         markAsDirty();
     }
 
+    /**
+     * Checks whether the current thread may change this connector: it must
+     * hold the lock of the UI of this connector if per-UI locking is enabled,
+     * and the session lock otherwise. Used for assertions.
+     */
+    private boolean hasUILock() {
+        VaadinSession session = getSession();
+        if (session == null) {
+            return true;
+        }
+        UI ui = getUI();
+        if (ui != null && session.isPerUiLocking()) {
+            return ui.hasLock();
+        }
+        return session.hasLock();
+    }
+
     /* Documentation copied from interface */
     @Override
     public void markAsDirty() {
-        assert getSession() == null || getSession().hasLock() : "Session must be locked when markAsDirty() is called";
+        assert hasUILock() : "Session must be locked when markAsDirty() is called";
         UI uI = getUI();
         if (uI != null) {
             uI.getConnectorTracker().markDirty(this);
@@ -217,7 +234,7 @@ public abstract class AbstractClientConnector implements ClientConnector,
      * @see #getState()
      */
     protected SharedState getState(boolean markAsDirty) {
-        assert getSession() == null || getSession().hasLock() : "Session must be locked when getState() is called";
+        assert hasUILock() : "Session must be locked when getState() is called";
 
         if (null == sharedState) {
             sharedState = createState();
@@ -237,6 +254,27 @@ public abstract class AbstractClientConnector implements ClientConnector,
         return LegacyCommunicationManager.encodeState(this, getState());
     }
 
+    /**
+     * Writes the changes in the shared state of this connector to the given
+     * streaming writer. This is the streaming equivalent of
+     * {@link #encodeState()} and is used by the framework instead of it as
+     * long as {@link #encodeState()} has not been overridden.
+     * <p>
+     * For internal use only. May be removed or replaced in the future.
+     * 
+     * @param writer
+     *            the writer to write the changed state properties to
+     * @throws JSONException
+     *             if the state cannot be encoded
+     * @throws IOException
+     *             if writing fails
+     * @since 7.2
+     */
+    public void writeState(JsonStreamWriter writer) throws JSONException,
+            IOException {
+        LegacyCommunicationManager.writeState(this, getState(), writer);
+    }
+
     /**
      * Creates the shared state bean to be used in server to client
      * communication.
@@ -625,8 +663,8 @@ public abstract class AbstractClientConnector implements ClientConnector,
         String[] parts = path.split("/", 2);
         String key = parts[0];
 
-        VaadinSession session = getSession();
-        session.lock();
+        UI ui = getUI();
+        ui.lock();
         try {
             ConnectorResource resource = (ConnectorResource) getResource(key);
             if (resource == null) {
@@ -634,7 +672,7 @@ public abstract class AbstractClientConnector implements ClientConnector,
             }
             stream = resource.getStream();
         } finally {
-            session.unlock();
+            ui.unlock();
         }
         stream.writeResponse(request, response);
         return true;
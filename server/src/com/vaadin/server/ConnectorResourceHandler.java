@@ -57,7 +57,6 @@ public class ConnectorResourceHandler implements RequestHandler {
 
         session.lock();
         UI ui;
-        ClientConnector connector;
         try {
             ui = session.getUIById(Integer.parseInt(uiId));
             if (ui == null) {
@@ -65,16 +64,23 @@ public class ConnectorResourceHandler implements RequestHandler {
                         "Ignoring connector request for no-existent root "
                                 + uiId);
             }
+        } finally {
+            session.unlock();
+        }
 
+        // The connectors of the UI might be modified without holding the
+        // session lock if per-UI locking is enabled
+        ClientConnector connector;
+        ui.lock();
+        try {
             connector = ui.getConnectorTracker().getConnector(cid);
             if (connector == null) {
                 return error(request, response,
                         "Ignoring connector request for no-existent connector "
                                 + cid + " in root " + uiId);
             }
-
         } finally {
-            session.unlock();
+            ui.unlock();
         }
 
         Map<Class<?>, CurrentInstance> oldInstances = CurrentInstance
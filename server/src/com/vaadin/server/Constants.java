@@ -49,6 +49,28 @@ public interface Constants {
             + "in web.xml. The default of 5min will be used.\n"
             + "===========================================================";
 
+    static final String WARNING_ACCESS_QUEUE_CAPACITY_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: accessQueueCapacity has been set to a non integer value "
+            + "in web.xml. The access queue will not be bounded.\n"
+            + "===========================================================";
+
+    static final String WARNING_ACCESS_QUEUE_DRAIN_LIMIT_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: accessQueueDrainLimit has been set to a non integer value "
+            + "in web.xml. All pending tasks will be run at once.\n"
+            + "===========================================================";
+
+    static final String WARNING_STATIC_RESOURCE_CACHE_SIZE_NOT_NUMERIC = "\n"
+            + "===========================================================\n"
+            + "WARNING: staticResourceCacheSize has been set to a non integer value "
+            + "in web.xml. The default of 16MB will be used.\n"
+            + "===========================================================";
+
+    static final String WARNING_UNKNOWN_ACCESS_QUEUE_OVERFLOW_VALUE = "Unknown value '{0}' for parameter "
+            + Constants.SERVLET_PARAMETER_ACCESS_QUEUE_OVERFLOW
+            + ". Supported values are 'reject','discardOldest'";
+
     static final String WARNING_PUSH_MODE_NOT_RECOGNIZED = "\n"
             + "===========================================================\n"
             + "WARNING: pushMode has been set to an unrecognized value\n"
@@ -126,6 +148,11 @@ public interface Constants {
     static final String SERVLET_PARAMETER_PUSH_MODE = "pushMode";
     static final String SERVLET_PARAMETER_UI_PROVIDER = "UIProvider";
     static final String SERVLET_PARAMETER_LEGACY_PROPERTY_TOSTRING = "legacyPropertyToString";
+    static final String SERVLET_PARAMETER_PER_UI_LOCKING = "perUiLocking";
+    static final String SERVLET_PARAMETER_ACCESS_QUEUE_CAPACITY = "accessQueueCapacity";
+    static final String SERVLET_PARAMETER_ACCESS_QUEUE_DRAIN_LIMIT = "accessQueueDrainLimit";
+    static final String SERVLET_PARAMETER_ACCESS_QUEUE_OVERFLOW = "accessQueueOverflow";
+    static final String SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE = "staticResourceCacheSize";
 
     // Configurable parameter names
     static final String PARAMETER_VAADIN_RESOURCES = "Resources";
@@ -45,6 +45,32 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
      */
     public static final boolean DEFAULT_CLOSE_IDLE_SESSIONS = false;
 
+    /**
+     * Default value for {@link #isPerUiLocking()} = {@value} .
+     */
+    public static final boolean DEFAULT_PER_UI_LOCKING = false;
+
+    /**
+     * Default value for {@link #getAccessQueueCapacity()} = {@value} .
+     */
+    public static final int DEFAULT_ACCESS_QUEUE_CAPACITY = 0;
+
+    /**
+     * Default value for {@link #getAccessQueueDrainLimit()} = {@value} .
+     */
+    public static final int DEFAULT_ACCESS_QUEUE_DRAIN_LIMIT = 0;
+
+    /**
+     * Default value for {@link #getAccessQueueOverflowPolicy()} =
+     * {@link AccessQueueOverflowPolicy#REJECT}.
+     */
+    public static final AccessQueueOverflowPolicy DEFAULT_ACCESS_QUEUE_OVERFLOW = AccessQueueOverflowPolicy.REJECT;
+
+    /**
+     * Default value for {@link #getStaticResourceCacheSize()} = {@value} .
+     */
+    public static final int DEFAULT_STATIC_RESOURCE_CACHE_SIZE = 16 * 1024 * 1024;
+
     /**
      * Default value for {@link #getLegacyPropertyToStringMode()} =
      * {@link LegacyProperyToStringMode#WARNING}.
@@ -57,6 +83,11 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
     private int resourceCacheTime;
     private int heartbeatInterval;
     private boolean closeIdleSessions;
+    private boolean perUiLocking;
+    private int accessQueueCapacity;
+    private int accessQueueDrainLimit;
+    private AccessQueueOverflowPolicy accessQueueOverflowPolicy;
+    private int staticResourceCacheSize;
     private PushMode pushMode;
     private final Class<?> systemPropertyBaseClass;
     private LegacyProperyToStringMode legacyPropertyToStringMode;
@@ -81,6 +112,9 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
         checkResourceCacheTime();
         checkHeartbeatInterval();
         checkCloseIdleSessions();
+        checkPerUiLocking();
+        checkAccessQueue();
+        checkStaticResourceCacheSize();
         checkPushMode();
         checkLegacyPropertyToString();
     }
@@ -226,6 +260,56 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
         return closeIdleSessions;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is false.
+     */
+    @Override
+    public boolean isPerUiLocking() {
+        return perUiLocking;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is 0, i.e. the queue is not bounded.
+     */
+    @Override
+    public int getAccessQueueCapacity() {
+        return accessQueueCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is 0, i.e. all pending tasks are run at once.
+     */
+    @Override
+    public int getAccessQueueDrainLimit() {
+        return accessQueueDrainLimit;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default policy is {@link AccessQueueOverflowPolicy#REJECT}.
+     */
+    @Override
+    public AccessQueueOverflowPolicy getAccessQueueOverflowPolicy() {
+        return accessQueueOverflowPolicy;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default value is 16MB.
+     */
+    @Override
+    public int getStaticResourceCacheSize() {
+        return staticResourceCacheSize;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -300,6 +384,63 @@ public class DefaultDeploymentConfiguration implements DeploymentConfiguration {
                 Boolean.toString(DEFAULT_CLOSE_IDLE_SESSIONS)).equals("true");
     }
 
+    private void checkPerUiLocking() {
+        perUiLocking = getApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_PER_UI_LOCKING,
+                Boolean.toString(DEFAULT_PER_UI_LOCKING)).equals("true");
+    }
+
+    private void checkAccessQueue() {
+        try {
+            accessQueueCapacity = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_ACCESS_QUEUE_CAPACITY,
+                            Integer.toString(DEFAULT_ACCESS_QUEUE_CAPACITY)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_ACCESS_QUEUE_CAPACITY_NOT_NUMERIC);
+            accessQueueCapacity = DEFAULT_ACCESS_QUEUE_CAPACITY;
+        }
+
+        try {
+            accessQueueDrainLimit = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_ACCESS_QUEUE_DRAIN_LIMIT,
+                            Integer.toString(DEFAULT_ACCESS_QUEUE_DRAIN_LIMIT)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_ACCESS_QUEUE_DRAIN_LIMIT_NOT_NUMERIC);
+            accessQueueDrainLimit = DEFAULT_ACCESS_QUEUE_DRAIN_LIMIT;
+        }
+
+        String param = getApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_ACCESS_QUEUE_OVERFLOW,
+                DEFAULT_ACCESS_QUEUE_OVERFLOW.getPropertyString());
+        for (AccessQueueOverflowPolicy policy : AccessQueueOverflowPolicy
+                .values()) {
+            if (policy.getPropertyString().equals(param)) {
+                accessQueueOverflowPolicy = policy;
+                return;
+            }
+        }
+        getLogger().log(Level.WARNING,
+                Constants.WARNING_UNKNOWN_ACCESS_QUEUE_OVERFLOW_VALUE, param);
+        accessQueueOverflowPolicy = DEFAULT_ACCESS_QUEUE_OVERFLOW;
+    }
+
+    private void checkStaticResourceCacheSize() {
+        try {
+            staticResourceCacheSize = Integer
+                    .parseInt(getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE,
+                            Integer.toString(DEFAULT_STATIC_RESOURCE_CACHE_SIZE)));
+        } catch (NumberFormatException e) {
+            getLogger().warning(
+                    Constants.WARNING_STATIC_RESOURCE_CACHE_SIZE_NOT_NUMERIC);
+            staticResourceCacheSize = DEFAULT_STATIC_RESOURCE_CACHE_SIZE;
+        }
+    }
+
     private void checkPushMode() {
         String mode = getApplicationOrSystemProperty(
                 Constants.SERVLET_PARAMETER_PUSH_MODE,
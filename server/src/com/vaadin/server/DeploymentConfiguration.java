@@ -70,6 +70,55 @@ public interface DeploymentConfiguration extends Serializable {
 
     }
 
+    /**
+     * Determines what happens when a task is submitted using
+     * {@link VaadinSession#access(Runnable)} or
+     * {@link com.vaadin.ui.UI#access(Runnable)} while the queue of pending
+     * tasks is full.
+     * 
+     * @see DeploymentConfiguration#getAccessQueueCapacity()
+     * 
+     * @author Vaadin Ltd
+     * @since 7.2
+     */
+    public enum AccessQueueOverflowPolicy {
+        /**
+         * The new task is rejected by throwing a
+         * {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        REJECT("reject"),
+        /**
+         * The oldest pending task is cancelled to make room for the new task.
+         * This is suitable when each task supersedes the previous ones, e.g.
+         * when showing the latest value of a frequently updated source. The
+         * {@link java.util.concurrent.Future} returned for the cancelled task
+         * is cancelled, and a warning is logged.
+         */
+        DISCARD_OLDEST("discardOldest");
+
+        private final String propertyString;
+
+        private AccessQueueOverflowPolicy(String propertyString) {
+            this.propertyString = propertyString;
+        }
+
+        /**
+         * Gets the string that should be used in e.g. web.xml for selecting
+         * this policy.
+         * 
+         * @return the property value
+         */
+        public String getPropertyString() {
+            return propertyString;
+        }
+
+        @Override
+        public String toString() {
+            // Used by VaadinServlet.readConfigurationAnnotation()
+            return getPropertyString();
+        }
+    }
+
     /**
      * Returns whether Vaadin is in production mode.
      * 
@@ -119,6 +168,82 @@ public interface DeploymentConfiguration extends Serializable {
      */
     public boolean isCloseIdleSessions();
 
+    /**
+     * Returns whether each UI in a session should be protected by a lock of its
+     * own instead of all UIs sharing the session lock.
+     * <p>
+     * With per-UI locking enabled, requests related to a single UI (UIDL,
+     * heartbeat and push requests, connector resources and file uploads) as
+     * well as tasks submitted using {@link com.vaadin.ui.UI#access(Runnable)}
+     * only lock the UI they are related to, allowing several UIs in the same
+     * session to be used at the same time. The session lock is then only used
+     * for session-global operations.
+     * 
+     * @see com.vaadin.ui.UI#getLockInstance()
+     * 
+     * @since 7.2
+     * 
+     * @return true if UIs are locked separately, false if all UIs in a session
+     *         are protected by the session lock
+     */
+    public boolean isPerUiLocking();
+
+    /**
+     * Returns the maximum number of tasks that can be pending in the access
+     * queue of a session, or of a UI if per-UI locking is enabled. What happens
+     * when the queue is full is determined by
+     * {@link #getAccessQueueOverflowPolicy()}. A non-positive number means that
+     * the queue is not bounded.
+     * 
+     * @see VaadinSession#access(Runnable)
+     * @see com.vaadin.ui.UI#access(Runnable)
+     * 
+     * @since 7.2
+     * 
+     * @return the maximum number of pending access tasks
+     */
+    public int getAccessQueueCapacity();
+
+    /**
+     * Returns the maximum number of pending access tasks that are run in one
+     * batch before the lock is released, or a non-positive number to run all
+     * pending tasks at once. Pending changes are pushed once per batch. The
+     * remaining tasks are run in further batches, on the executor set using
+     * {@link VaadinService#setAccessExecutor(java.util.concurrent.Executor)}
+     * if there is one.
+     * 
+     * @since 7.2
+     * 
+     * @return the maximum number of tasks to run while holding the lock
+     */
+    public int getAccessQueueDrainLimit();
+
+    /**
+     * Returns what should happen when a task is submitted while the access
+     * queue is full.
+     * 
+     * @see #getAccessQueueCapacity()
+     * 
+     * @since 7.2
+     * 
+     * @return the overflow policy of the access queue
+     */
+    public AccessQueueOverflowPolicy getAccessQueueOverflowPolicy();
+
+    /**
+     * Returns the maximum number of bytes of static resources from the VAADIN
+     * directory that {@link VaadinServlet} keeps in memory in production mode.
+     * The least recently used resources are evicted when the limit is reached.
+     * A non-positive number disables the cache.
+     * 
+     * @see StaticResourceCache
+     * 
+     * @since 7.2
+     * 
+     * @return the maximum size of the static resource cache in bytes
+     */
+    public int getStaticResourceCacheSize();
+
     /**
      * Returns the mode of bidirectional ("push") client-server communication
      * that should be used.
@@ -19,6 +19,7 @@ package com.vaadin.server;
 import java.io.IOException;
 
 import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.UI;
 
 /**
  * Extension that starts a download when the extended component is clicked. This
@@ -129,9 +130,9 @@ public class FileDownloader extends AbstractExtension {
             // Ignore if it isn't for us
             return false;
         }
-        VaadinSession session = getSession();
+        UI ui = getUI();
 
-        session.lock();
+        ui.lock();
         DownloadStream stream;
 
         try {
@@ -153,7 +154,7 @@ public class FileDownloader extends AbstractExtension {
                 stream.setContentType("application/octet-stream;charset=UTF-8");
             }
         } finally {
-            session.unlock();
+            ui.unlock();
         }
         stream.writeResponse(request, response);
         return true;
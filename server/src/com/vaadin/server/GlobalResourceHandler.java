@@ -86,18 +86,27 @@ public class GlobalResourceHandler implements RequestHandler {
             return error(request, response, pathInfo
                     + " is not a valid global resource path");
         }
+        UI ui;
         session.lock();
+        try {
+            ui = session.getUIById(Integer.parseInt(uiid));
+        } finally {
+            session.unlock();
+        }
+        if (ui == null) {
+            return error(request, response, "No UI found for id  " + uiid);
+        }
+
+        ui.lock();
         Map<Class<?>, CurrentInstance> oldInstances = null;
         DownloadStream stream = null;
         try {
-            UI ui = session.getUIById(Integer.parseInt(uiid));
-            if (ui == null) {
-                return error(request, response, "No UI found for id  " + uiid);
-            }
             oldInstances = CurrentInstance.setCurrent(ui);
             ConnectorResource resource;
             if (LEGACY_TYPE.equals(type)) {
-                resource = legacyResources.get(key);
+                synchronized (this) {
+                    resource = legacyResources.get(key);
+                }
             } else {
                 return error(request, response, "Unknown global resource type "
                         + type + " in requested path " + pathInfo);
@@ -114,7 +123,7 @@ public class GlobalResourceHandler implements RequestHandler {
                         + " didn't produce any stream.");
             }
         } finally {
-            session.unlock();
+            ui.unlock();
             if (oldInstances != null) {
                 CurrentInstance.restoreInstances(oldInstances);
             }
@@ -136,7 +145,8 @@ public class GlobalResourceHandler implements RequestHandler {
      * @param ownerConnector
      *            the connector to which the resource belongs
      */
-    public void register(Resource resource, ClientConnector ownerConnector) {
+    public synchronized void register(Resource resource,
+            ClientConnector ownerConnector) {
         if (resource instanceof ConnectorResource) {
             if (!(ownerConnector instanceof LegacyComponent)) {
                 throw new IllegalArgumentException(
@@ -189,7 +199,8 @@ public class GlobalResourceHandler implements RequestHandler {
      * @return an URI string, or <code>null</code> if the resource is not
      *         registered.
      */
-    public String getUri(ClientConnector connector, ConnectorResource resource) {
+    public synchronized String getUri(ClientConnector connector,
+            ConnectorResource resource) {
         // app://APP/global/[ui]/[type]/[id]
         String uri = legacyResourceKeys.get(resource);
         if (uri != null && !uri.isEmpty()) {
@@ -210,7 +221,7 @@ public class GlobalResourceHandler implements RequestHandler {
      *            the connector for which any registered resources can be
      *            released.
      */
-    public void unregisterConnector(ClientConnector connector) {
+    public synchronized void unregisterConnector(ClientConnector connector) {
         Set<Resource> set = usedResources.remove(connector);
         if (set == null) {
             return;
@@ -19,6 +19,7 @@ package com.vaadin.server;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
@@ -168,6 +169,239 @@ public class JsonCodec implements Serializable {
      */
     private static ConcurrentMap<Class<?>, Collection<BeanProperty>> typePropertyCache = new ConcurrentHashMap<Class<?>, Collection<BeanProperty>>();
 
+    /**
+     * Types that are encoded as such and can be compared without converting
+     * them to strings.
+     */
+    private enum SimpleType {
+        STRING(String.class), BOOLEAN(Boolean.class), INTEGER(Integer.class), LONG(
+                Long.class), FLOAT(Float.class), DOUBLE(Double.class);
+
+        private final Class<?> jsonType;
+
+        private SimpleType(Class<?> jsonType) {
+            this.jsonType = jsonType;
+        }
+
+        /**
+         * Gets the simple type for the given property type.
+         * 
+         * @return the simple type, or <code>null</code> if the type must be
+         *         handled by the generic encoding and decoding logic
+         */
+        private static SimpleType forType(Type type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == boolean.class || type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == int.class || type == Integer.class) {
+                return INTEGER;
+            } else if (type == long.class || type == Long.class) {
+                return LONG;
+            } else if (type == float.class || type == Float.class) {
+                return FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return DOUBLE;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Encoder and decoder for a bean type, precomputed once per class so that
+     * encoding a bean does not need to look up its properties or dispatch on
+     * the type of each property value.
+     */
+    static class BeanCodec implements Serializable {
+        private final BeanProperty[] properties;
+        private final String[] names;
+        private final Type[] types;
+        /**
+         * The simple type of each property, or <code>null</code> for
+         * properties that need the generic encoding logic.
+         */
+        private final SimpleType[] simpleTypes;
+        /**
+         * The name of a property that is defined more than once, or
+         * <code>null</code> if all property names are unique.
+         */
+        private final String duplicateName;
+
+        public BeanCodec(Class<?> type) throws IntrospectionException {
+            Collection<BeanProperty> propertyCollection = getProperties(type);
+            int count = propertyCollection.size();
+            properties = propertyCollection.toArray(new BeanProperty[count]);
+            names = new String[count];
+            types = new Type[count];
+            simpleTypes = new SimpleType[count];
+
+            String duplicate = null;
+            Set<String> seenNames = new HashSet<String>();
+            for (int i = 0; i < count; i++) {
+                names[i] = properties[i].getName();
+                // We can't use PropertyDescriptor.getPropertyType() as it does
+                // not support generics
+                types[i] = properties[i].getType();
+                simpleTypes[i] = SimpleType.forType(types[i]);
+                if (!seenNames.add(names[i]) && duplicate == null) {
+                    duplicate = names[i];
+                }
+            }
+            duplicateName = duplicate;
+        }
+
+        public EncodeResult encode(Object value, Class<?> valueType,
+                JSONObject referenceValue, ConnectorTracker connectorTracker,
+                JsonStreamWriter diffWriter) throws Exception {
+            JSONObject diff = diffWriter == null ? new JSONObject() : null;
+            Object[] referenceValues = null;
+            if (referenceValue != null) {
+                referenceValues = new Object[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    referenceValues[i] = referenceValue.get(names[i]);
+                }
+            }
+            Object[] encodedValues = encodeValues(value, valueType,
+                    referenceValues, connectorTracker, diffWriter, diff);
+            return new EncodeResult(toJson(encodedValues), diff);
+        }
+
+        /**
+         * Encodes the properties of a bean into an array aligned with
+         * {@link #names}. Properties that differ from the corresponding
+         * reference value are written to the diff writer if one is given and
+         * otherwise put into the diff object.
+         * 
+         * @return the encoded property values, <code>null</code> for null
+         *         values
+         */
+        public Object[] encodeValues(Object value, Class<?> valueType,
+                Object[] referenceValues, ConnectorTracker connectorTracker,
+                JsonStreamWriter diffWriter, JSONObject diff) throws Exception {
+            if (duplicateName != null) {
+                throw new RuntimeException(
+                        "Can't encode "
+                                + valueType.getName()
+                                + " as it has multiple properties with the name "
+                                + duplicateName.toLowerCase()
+                                + ". This can happen if there are getters and setters for a public field (the framework can't know which to ignore) or if there are properties with only casing distinguishing between the names (e.g. getFoo() and getFOO())");
+            }
+
+            Object[] encodedValues = new Object[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                String fieldName = names[i];
+                Object fieldValue = properties[i].getValue(value);
+
+                Object fieldReference = null;
+                if (referenceValues != null) {
+                    fieldReference = referenceValues[i];
+                    if (JSONObject.NULL.equals(fieldReference)) {
+                        fieldReference = null;
+                    }
+                }
+
+                Object encodedValue;
+                Object diffValue;
+                boolean changed;
+                if (simpleTypes[i] != null) {
+                    // Simple values are encoded as such
+                    encodedValue = fieldValue;
+                    diffValue = encodedValue;
+                    changed = !simpleEquals(fieldValue, fieldReference);
+                } else {
+                    EncodeResult encodeResult = JsonCodec.encode(fieldValue,
+                            fieldReference, types[i], connectorTracker);
+                    encodedValue = encodeResult.getEncodedValue();
+                    if (encodedValue == JSONObject.NULL) {
+                        encodedValue = null;
+                    }
+                    diffValue = encodeResult.getDiffOrValue();
+                    changed = !jsonEquals(encodedValue, fieldReference);
+                }
+                encodedValues[i] = encodedValue;
+
+                if (changed) {
+                    if (diffWriter != null) {
+                        diffWriter.name(fieldName).value(diffValue);
+                    } else {
+                        diff.put(fieldName, diffValue == null ? JSONObject.NULL
+                                : diffValue);
+                    }
+                }
+            }
+            return encodedValues;
+        }
+
+        /**
+         * Converts property values from {@link #encodeValues} to a
+         * {@link JSONObject}.
+         */
+        public JSONObject toJson(Object[] values) throws JSONException {
+            JSONObject json = new JSONObject();
+            for (int i = 0; i < names.length; i++) {
+                json.put(names[i], values[i] == null ? JSONObject.NULL
+                        : values[i]);
+            }
+            return json;
+        }
+
+        /**
+         * Gets the names of the properties of the bean, in the order used by
+         * {@link #encodeValues}.
+         */
+        public String[] getNames() {
+            return names;
+        }
+
+        public Object decode(Class<?> targetClass, JSONObject serializedObject,
+                ConnectorTracker connectorTracker) throws Exception {
+            Object decodedObject = targetClass.newInstance();
+            for (int i = 0; i < properties.length; i++) {
+                Object encodedFieldValue = serializedObject.get(names[i]);
+                Object decodedFieldValue;
+                SimpleType simpleType = simpleTypes[i];
+                if (simpleType != null
+                        && encodedFieldValue.getClass() == simpleType.jsonType) {
+                    // Already of the right type, no conversion needed
+                    decodedFieldValue = encodedFieldValue;
+                } else {
+                    decodedFieldValue = decodeInternalOrCustomType(types[i],
+                            encodedFieldValue, connectorTracker);
+                }
+
+                properties[i].setValue(decodedObject, decodedFieldValue);
+            }
+            return decodedObject;
+        }
+
+        /**
+         * Compares a simple value to a reference value from an earlier
+         * encoding without converting them to strings when they are of the
+         * same type.
+         */
+        private static boolean simpleEquals(Object value, Object reference) {
+            if (value == reference) {
+                return true;
+            } else if (value == null || reference == null) {
+                return false;
+            } else if (value.getClass() == reference.getClass()) {
+                return value.equals(reference);
+            } else {
+                // The reference might have been parsed back from a string,
+                // e.g. after deserialization
+                return jsonEquals(value, reference);
+            }
+        }
+    }
+
+    /**
+     * Cache of bean codecs for bean types. Used from any thread that happens
+     * to process Vaadin requests, so it must be protected from corruption
+     * caused by concurrent access.
+     */
+    private static ConcurrentMap<Class<?>, BeanCodec> beanCodecCache = new ConcurrentHashMap<Class<?>, BeanCodec>();
+
     private static Map<Class<?>, String> typeToTransportType = new HashMap<Class<?>, String>();
 
     /**
@@ -592,19 +826,8 @@ public class JsonCodec implements Serializable {
         Class<?> targetClass = getClassForType(targetType);
 
         try {
-            Object decodedObject = targetClass.newInstance();
-            for (BeanProperty property : getProperties(targetClass)) {
-
-                String fieldName = property.getName();
-                Object encodedFieldValue = serializedObject.get(fieldName);
-                Type fieldType = property.getType();
-                Object decodedFieldValue = decodeInternalOrCustomType(
-                        fieldType, encodedFieldValue, connectorTracker);
-
-                property.setValue(decodedObject, decodedFieldValue);
-            }
-
-            return decodedObject;
+            return getBeanCodec(targetClass).decode(targetClass,
+                    serializedObject, connectorTracker);
         } catch (Exception e) {
             throw new JSONException(e);
         }
@@ -710,49 +933,193 @@ public class JsonCodec implements Serializable {
     private static EncodeResult encodeObject(Object value, Class<?> valueType,
             JSONObject referenceValue, ConnectorTracker connectorTracker)
             throws JSONException {
-        JSONObject encoded = new JSONObject();
-        JSONObject diff = new JSONObject();
+        try {
+            return encodeObject(value, valueType, referenceValue,
+                    connectorTracker, null);
+        } catch (IOException e) {
+            // Only thrown when writing the diff to a stream
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Encodes a bean and writes the properties that differ from the reference
+     * value directly to the given writer instead of collecting them into a
+     * diff {@link JSONObject}. The writer is expected to be positioned inside
+     * a JSON object; one member is written for each changed property.
+     * 
+     * @param value
+     *            the bean to encode, not <code>null</code>
+     * @param referenceValue
+     *            the previously encoded value to compare against, or
+     *            <code>null</code> to write all properties
+     * @param valueType
+     *            the type of the bean
+     * @param connectorTracker
+     *            the connector tracker of the UI
+     * @param diffWriter
+     *            the writer to write changed properties to
+     * @return the full encoded value of the bean
+     * @throws JSONException
+     *             if the bean cannot be encoded
+     * @throws IOException
+     *             if writing to the writer fails
+     * @since 7.2
+     */
+    public static JSONObject encodeAndWriteDiff(Object value,
+            JSONObject referenceValue, Class<?> valueType,
+            ConnectorTracker connectorTracker, JsonStreamWriter diffWriter)
+            throws JSONException, IOException {
+        if (diffWriter == null) {
+            throw new IllegalArgumentException("diffWriter cannot be null");
+        }
+        return (JSONObject) encodeObject(value, valueType, referenceValue,
+                connectorTracker, diffWriter).getEncodedValue();
+    }
 
+    private static EncodeResult encodeObject(Object value, Class<?> valueType,
+            JSONObject referenceValue, ConnectorTracker connectorTracker,
+            JsonStreamWriter diffWriter) throws JSONException, IOException {
         try {
-            for (BeanProperty property : getProperties(valueType)) {
-                String fieldName = property.getName();
-                // We can't use PropertyDescriptor.getPropertyType() as it does
-                // not support generics
-                Type fieldType = property.getType();
-                Object fieldValue = property.getValue(value);
-
-                if (encoded.has(fieldName)) {
-                    throw new RuntimeException(
-                            "Can't encode "
-                                    + valueType.getName()
-                                    + " as it has multiple properties with the name "
-                                    + fieldName.toLowerCase()
-                                    + ". This can happen if there are getters and setters for a public field (the framework can't know which to ignore) or if there are properties with only casing distinguishing between the names (e.g. getFoo() and getFOO())");
-                }
+            return getBeanCodec(valueType).encode(value, valueType,
+                    referenceValue, connectorTracker, diffWriter);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // TODO: Should exceptions be handled in a different way?
+            throw new JSONException(e);
+        }
+    }
 
-                Object fieldReference;
-                if (referenceValue != null) {
-                    fieldReference = referenceValue.get(fieldName);
-                    if (JSONObject.NULL.equals(fieldReference)) {
-                        fieldReference = null;
-                    }
-                } else {
-                    fieldReference = null;
-                }
+    /**
+     * Encodes a shared state bean into a {@link StateSnapshot}, comparing it to
+     * the snapshot of the previously sent state. Properties that differ from
+     * the reference are put into the given diff object.
+     * 
+     * @param state
+     *            the state bean to encode, not <code>null</code>
+     * @param reference
+     *            the snapshot of the previously sent state, or
+     *            <code>null</code> to include all non-null properties in the
+     *            diff
+     * @param stateType
+     *            the type of the state bean
+     * @param connectorTracker
+     *            the connector tracker of the UI
+     * @param diff
+     *            the object to put changed properties into
+     * @return a snapshot of the encoded state
+     * @throws JSONException
+     *             if the state cannot be encoded
+     * @since 7.2
+     */
+    public static StateSnapshot encodeState(Object state,
+            StateSnapshot reference, Class<?> stateType,
+            ConnectorTracker connectorTracker, JSONObject diff)
+            throws JSONException {
+        try {
+            return encodeState(state, reference, stateType, connectorTracker,
+                    null, diff);
+        } catch (IOException e) {
+            // Not thrown as no writer is used
+            throw new JSONException(e);
+        }
+    }
 
-                EncodeResult encodeResult = encode(fieldValue, fieldReference,
-                        fieldType, connectorTracker);
-                encoded.put(fieldName, encodeResult.getEncodedValue());
+    /**
+     * Encodes a shared state bean into a {@link StateSnapshot}, comparing it to
+     * the snapshot of the previously sent state. Properties that differ from
+     * the reference are written directly to the given writer, which is
+     * expected to be positioned inside a JSON object.
+     * 
+     * @param state
+     *            the state bean to encode, not <code>null</code>
+     * @param reference
+     *            the snapshot of the previously sent state, or
+     *            <code>null</code> to write all non-null properties
+     * @param stateType
+     *            the type of the state bean
+     * @param connectorTracker
+     *            the connector tracker of the UI
+     * @param diffWriter
+     *            the writer to write changed properties to
+     * @return a snapshot of the encoded state
+     * @throws JSONException
+     *             if the state cannot be encoded
+     * @throws IOException
+     *             if writing to the writer fails
+     * @since 7.2
+     */
+    public static StateSnapshot encodeAndWriteState(Object state,
+            StateSnapshot reference, Class<?> stateType,
+            ConnectorTracker connectorTracker, JsonStreamWriter diffWriter)
+            throws JSONException, IOException {
+        if (diffWriter == null) {
+            throw new IllegalArgumentException("diffWriter cannot be null");
+        }
+        return encodeState(state, reference, stateType, connectorTracker,
+                diffWriter, null);
+    }
 
-                if (!jsonEquals(encodeResult.getEncodedValue(), fieldReference)) {
-                    diff.put(fieldName, encodeResult.getDiffOrValue());
-                }
+    private static StateSnapshot encodeState(Object state,
+            StateSnapshot reference, Class<?> stateType,
+            ConnectorTracker connectorTracker, JsonStreamWriter diffWriter,
+            JSONObject diff) throws JSONException, IOException {
+        try {
+            BeanCodec codec = getBeanCodec(stateType);
+            Object[] referenceValues = null;
+            if (reference != null) {
+                referenceValues = reference.getValues(stateType,
+                        codec.getNames());
             }
+            Object[] values = codec.encodeValues(state, stateType,
+                    referenceValues, connectorTracker, diffWriter, diff);
+            return new StateSnapshot(stateType, codec.getNames(), values);
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            // TODO: Should exceptions be handled in a different way?
             throw new JSONException(e);
         }
-        return new EncodeResult(encoded, diff);
+    }
+
+    /**
+     * Creates a state snapshot from a state that has been encoded to a
+     * {@link JSONObject}.
+     * 
+     * @param encodedState
+     *            the encoded state, not <code>null</code>
+     * @param stateType
+     *            the type of the encoded state
+     * @return a snapshot containing the same values as the encoded state
+     * @throws JSONException
+     *             if the state type cannot be introspected
+     * @since 7.2
+     */
+    public static StateSnapshot createStateSnapshot(JSONObject encodedState,
+            Class<?> stateType) throws JSONException {
+        try {
+            String[] names = getBeanCodec(stateType).getNames();
+            Object[] values = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Object value = encodedState.opt(names[i]);
+                values[i] = value == JSONObject.NULL ? null : value;
+            }
+            return new StateSnapshot(stateType, names, values);
+        } catch (IntrospectionException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    static BeanCodec getBeanCodec(Class<?> type)
+            throws IntrospectionException {
+        BeanCodec codec = beanCodecCache.get(type);
+        if (codec == null) {
+            codec = new BeanCodec(type);
+            // Doesn't matter if the same calculation is done multiple times
+            // from different threads
+            beanCodecCache.put(type, codec);
+        }
+        return codec;
     }
 
     /**
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Streaming JSON generator that writes tokens directly to a {@link Writer}
+ * instead of first building an in-memory {@link JSONObject} tree and
+ * serializing it with {@link JSONObject#toString()}.
+ * <p>
+ * Separators are written automatically. Objects opened with
+ * {@link #beginOptionalObject(String)} are only written if at least one member
+ * is added to them, which makes it possible to stream e.g. a state diff
+ * without knowing beforehand whether it will be empty.
+ * </p>
+ * <p>
+ * {@link JSONObject} and {@link JSONArray} values are streamed recursively,
+ * which makes it possible to mix values produced by {@link JsonCodec} with
+ * tokens written directly.
+ * </p>
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class JsonStreamWriter implements Serializable {
+
+    private static final int SCOPE_OBJECT = 1;
+    private static final int SCOPE_ARRAY = 2;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    private int[] scopes = new int[16];
+    private boolean[] hasMembers = new boolean[16];
+    /**
+     * Member names of optional objects that have not yet been written, or
+     * <code>null</code> if the object at that depth has been written.
+     */
+    private String[] deferredNames = new String[16];
+    private int depth = 0;
+    /**
+     * The depth of the outermost optional object that has not yet been
+     * written, or -1 if there is none.
+     */
+    private int firstDeferred = -1;
+
+    /**
+     * Creates a new stream writer that writes JSON to the given writer.
+     * 
+     * @param writer
+     *            the writer to write to, not <code>null</code>
+     */
+    public JsonStreamWriter(Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer cannot be null");
+        }
+        this.writer = writer;
+    }
+
+    /**
+     * Begins a JSON object.
+     * 
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        writer.write('{');
+        push(SCOPE_OBJECT, null);
+        return this;
+    }
+
+    /**
+     * Begins a JSON object as a member of the current object. The member is
+     * only written if something is added to the object before it is closed
+     * using {@link #endObject()}; otherwise neither the name nor the object
+     * appear in the output.
+     * 
+     * @param name
+     *            the name of the member
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter beginOptionalObject(String name)
+            throws IOException {
+        if (depth == 0 || scopes[depth - 1] != SCOPE_OBJECT) {
+            throw new IllegalStateException(
+                    "Optional objects can only be members of an object");
+        }
+        push(SCOPE_OBJECT, name);
+        if (firstDeferred == -1) {
+            firstDeferred = depth - 1;
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current JSON object.
+     * 
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter endObject() throws IOException {
+        return end(SCOPE_OBJECT, '}');
+    }
+
+    /**
+     * Begins a JSON array.
+     * 
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        writer.write('[');
+        push(SCOPE_ARRAY, null);
+        return this;
+    }
+
+    /**
+     * Ends the current JSON array.
+     * 
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter endArray() throws IOException {
+        return end(SCOPE_ARRAY, ']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object. Must be
+     * followed by a value.
+     * 
+     * @param name
+     *            the member name, not <code>null</code>
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter name(String name) throws IOException {
+        if (depth == 0 || scopes[depth - 1] != SCOPE_OBJECT) {
+            throw new IllegalStateException(
+                    "Names can only be written inside an object");
+        }
+        writeDeferred();
+        if (hasMembers[depth - 1]) {
+            writer.write(',');
+        }
+        hasMembers[depth - 1] = true;
+        writeQuoted(name);
+        writer.write(':');
+        return this;
+    }
+
+    /**
+     * Writes a string value, or <code>null</code> if the value is
+     * <code>null</code>.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeQuoted(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a <code>null</code> value.
+     * 
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writer.write("null");
+        return this;
+    }
+
+    /**
+     * Writes an arbitrary value using the same rules as {@link JSONObject}.
+     * {@link JSONObject} and {@link JSONArray} instances are streamed
+     * recursively.
+     * 
+     * @param value
+     *            the value to write, <code>null</code> and
+     *            {@link JSONObject#NULL} are written as <code>null</code>
+     * @return this writer
+     * @throws IOException
+     *             if writing fails
+     * @throws JSONException
+     *             if the value is a non-finite number or cannot otherwise be
+     *             represented as JSON
+     */
+    public JsonStreamWriter value(Object value) throws IOException,
+            JSONException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            nullValue();
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            beforeValue();
+            writer.write(JSONObject.numberToString((Number) value));
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            beginObject();
+            for (Iterator<?> keys = object.keys(); keys.hasNext();) {
+                String key = keys.next().toString();
+                name(key);
+                value(object.get(key));
+            }
+            endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            beginArray();
+            int length = array.length();
+            for (int i = 0; i < length; i++) {
+                value(array.get(i));
+            }
+            endArray();
+        } else {
+            value(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Flushes the underlying writer.
+     * 
+     * @throws IOException
+     *             if flushing fails
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void beforeValue() throws IOException {
+        if (depth == 0) {
+            return;
+        }
+        writeDeferred();
+        if (scopes[depth - 1] == SCOPE_ARRAY) {
+            if (hasMembers[depth - 1]) {
+                writer.write(',');
+            }
+            hasMembers[depth - 1] = true;
+        }
+    }
+
+    /**
+     * Writes the opening tokens of all pending optional objects.
+     */
+    private void writeDeferred() throws IOException {
+        if (firstDeferred == -1) {
+            return;
+        }
+        for (int i = firstDeferred; i < depth; i++) {
+            String name = deferredNames[i];
+            if (name == null) {
+                continue;
+            }
+            // The parent of an optional object is always an object
+            if (hasMembers[i - 1]) {
+                writer.write(',');
+            }
+            hasMembers[i - 1] = true;
+            writeQuoted(name);
+            writer.write(":{");
+            deferredNames[i] = null;
+        }
+        firstDeferred = -1;
+    }
+
+    private void push(int scope, String deferredName) {
+        if (depth == scopes.length) {
+            int newLength = depth * 2;
+            int[] newScopes = new int[newLength];
+            System.arraycopy(scopes, 0, newScopes, 0, depth);
+            scopes = newScopes;
+            boolean[] newHasMembers = new boolean[newLength];
+            System.arraycopy(hasMembers, 0, newHasMembers, 0, depth);
+            hasMembers = newHasMembers;
+            String[] newDeferredNames = new String[newLength];
+            System.arraycopy(deferredNames, 0, newDeferredNames, 0, depth);
+            deferredNames = newDeferredNames;
+        }
+        scopes[depth] = scope;
+        hasMembers[depth] = false;
+        deferredNames[depth] = deferredName;
+        depth++;
+    }
+
+    private JsonStreamWriter end(int scope, char closing) throws IOException {
+        if (depth == 0 || scopes[depth - 1] != scope) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        depth--;
+        if (deferredNames[depth] != null) {
+            // Optional object without members, nothing has been written
+            deferredNames[depth] = null;
+            if (firstDeferred == depth) {
+                firstDeferred = -1;
+            }
+        } else {
+            writer.write(closing);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the given string as a quoted and escaped JSON string, using the
+     * same escaping rules as {@link JSONObject#quote(String)}.
+     */
+    private void writeQuoted(String string) throws IOException {
+        writer.write('"');
+        int length = string.length();
+        // Start of the run of characters that need no escaping
+        int runStart = 0;
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            String escape = null;
+            switch (c) {
+            case '\\':
+            case '"':
+                break;
+            case '/':
+                if (previous != '<') {
+                    previous = c;
+                    continue;
+                }
+                break;
+            case '\b':
+                escape = "\\b";
+                break;
+            case '\t':
+                escape = "\\t";
+                break;
+            case '\n':
+                escape = "\\n";
+                break;
+            case '\f':
+                escape = "\\f";
+                break;
+            case '\r':
+                escape = "\\r";
+                break;
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                        || (c >= '\u2000' && c < '\u2100')) {
+                    writer.write(string, runStart, i - runStart);
+                    runStart = i + 1;
+                    writer.write("\\u");
+                    writer.write(HEX_DIGITS[(c >> 12) & 0xf]);
+                    writer.write(HEX_DIGITS[(c >> 8) & 0xf]);
+                    writer.write(HEX_DIGITS[(c >> 4) & 0xf]);
+                    writer.write(HEX_DIGITS[c & 0xf]);
+                }
+                previous = c;
+                continue;
+            }
+            // Flush the pending run and write the escaped character
+            writer.write(string, runStart, i - runStart);
+            runStart = i + 1;
+            if (escape != null) {
+                writer.write(escape);
+            } else {
+                writer.write('\\');
+                writer.write(c);
+            }
+            previous = c;
+        }
+        writer.write(string, runStart, length - runStart);
+        writer.write('"');
+    }
+}
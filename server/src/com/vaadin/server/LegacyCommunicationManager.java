@@ -16,6 +16,7 @@
 
 package com.vaadin.server;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -24,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,7 +71,7 @@ public class LegacyCommunicationManager implements Serializable {
     private String requestThemeName;
 
     // TODO Refactor (#11413)
-    private Map<String, Class<?>> publishedFileContexts = new HashMap<String, Class<?>>();
+    private Map<String, Class<?>> publishedFileContexts = new ConcurrentHashMap<String, Class<?>>();
 
     /**
      * TODO New constructor - document me!
@@ -93,18 +95,76 @@ public class LegacyCommunicationManager implements Serializable {
         UI uI = connector.getUI();
         ConnectorTracker connectorTracker = uI.getConnectorTracker();
         Class<? extends SharedState> stateType = connector.getStateType();
-        Object diffState = connectorTracker.getDiffState(connector);
-        boolean supportsDiffState = !JavaScriptConnectorState.class
-                .isAssignableFrom(stateType);
-        if (diffState == null && supportsDiffState) {
+        if (!supportsDiffState(stateType)) {
+            return (JSONObject) JsonCodec.encode(state, null, stateType,
+                    connectorTracker).getDiff();
+        }
+        JSONObject diff = new JSONObject();
+        StateSnapshot snapshot = JsonCodec.encodeState(state,
+                getReferenceState(connector, stateType), stateType,
+                connectorTracker, diff);
+        connectorTracker.setDiffStateSnapshot(connector, snapshot);
+        return diff;
+    }
+
+    /**
+     * Writes the changes in the shared state of the given connector as members
+     * of the current object of the given writer. This is the streaming
+     * equivalent of {@link #encodeState(ClientConnector, SharedState)} and
+     * does not build an intermediate diff {@link JSONObject}.
+     * 
+     * @param connector
+     *            the connector whose state to write
+     * @param state
+     *            the shared state of the connector
+     * @param writer
+     *            the writer to write the changed state properties to
+     * @throws JSONException
+     *             if the state cannot be encoded
+     * @throws IOException
+     *             if writing fails
+     * @since 7.2
+     */
+    public static void writeState(ClientConnector connector,
+            SharedState state, JsonStreamWriter writer) throws JSONException,
+            IOException {
+        UI uI = connector.getUI();
+        ConnectorTracker connectorTracker = uI.getConnectorTracker();
+        Class<? extends SharedState> stateType = connector.getStateType();
+        if (!supportsDiffState(stateType)) {
+            JsonCodec.encodeAndWriteDiff(state, null, stateType,
+                    connectorTracker, writer);
+            return;
+        }
+        StateSnapshot snapshot = JsonCodec.encodeAndWriteState(state,
+                getReferenceState(connector, stateType), stateType,
+                connectorTracker, writer);
+        connectorTracker.setDiffStateSnapshot(connector, snapshot);
+    }
+
+    private static boolean supportsDiffState(
+            Class<? extends SharedState> stateType) {
+        return !JavaScriptConnectorState.class.isAssignableFrom(stateType);
+    }
+
+    /**
+     * Gets the state last sent to the client for the given connector, or the
+     * encoded default state if nothing has been sent yet.
+     */
+    private static StateSnapshot getReferenceState(ClientConnector connector,
+            Class<? extends SharedState> stateType) {
+        ConnectorTracker connectorTracker = connector.getUI()
+                .getConnectorTracker();
+        StateSnapshot diffState = connectorTracker
+                .getDiffStateSnapshot(connector);
+        if (diffState == null) {
             // Use an empty state object as reference for full
             // repaints
 
             try {
                 SharedState referenceState = stateType.newInstance();
-                EncodeResult encodeResult = JsonCodec.encode(referenceState,
-                        null, stateType, uI.getConnectorTracker());
-                diffState = encodeResult.getEncodedValue();
+                diffState = JsonCodec.encodeState(referenceState, null,
+                        stateType, connectorTracker, new JSONObject());
             } catch (Exception e) {
                 getLogger()
                         .log(Level.WARNING,
@@ -112,13 +172,7 @@ public class LegacyCommunicationManager implements Serializable {
                                 stateType.getName());
             }
         }
-        EncodeResult encodeResult = JsonCodec.encode(state, diffState,
-                stateType, uI.getConnectorTracker());
-        if (supportsDiffState) {
-            connectorTracker.setDiffState(connector,
-                    (JSONObject) encodeResult.getEncodedValue());
-        }
-        return (JSONObject) encodeResult.getDiff();
+        return diffState;
     }
 
     /**
@@ -161,7 +215,8 @@ public class LegacyCommunicationManager implements Serializable {
         return publishedFileContexts;
     }
 
-    private String registerPublishedFile(String name, Class<?> context) {
+    private synchronized String registerPublishedFile(String name,
+            Class<?> context) {
         // Add to map of names accepted by servePublishedFile
         if (publishedFileContexts.containsKey(name)) {
             Class<?> oldContext = publishedFileContexts.get(name);
@@ -182,7 +237,7 @@ public class LegacyCommunicationManager implements Serializable {
      * @deprecated As of 7.1. See #11410.
      */
     @Deprecated
-    public ClientCache getClientCache(UI uI) {
+    public synchronized ClientCache getClientCache(UI uI) {
         Integer uiId = Integer.valueOf(uI.getUIId());
         ClientCache cache = uiToClientCache.get(uiId);
         if (cache == null) {
@@ -294,7 +349,7 @@ public class LegacyCommunicationManager implements Serializable {
      * @deprecated As of 7.1. See #11409.
      */
     @Deprecated
-    public DragAndDropService getDragAndDropService() {
+    public synchronized DragAndDropService getDragAndDropService() {
         if (dragAndDropService == null) {
             dragAndDropService = new DragAndDropService(this);
         }
@@ -322,7 +377,8 @@ public class LegacyCommunicationManager implements Serializable {
      * @deprecated As of 7.1. Will be removed in the future.
      */
     @Deprecated
-    public String getTagForType(Class<? extends ClientConnector> class1) {
+    public synchronized String getTagForType(
+            Class<? extends ClientConnector> class1) {
         Integer id = typeToKey.get(class1);
         if (id == null) {
             id = nextTypeKey++;
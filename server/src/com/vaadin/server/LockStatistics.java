@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps track of how often threads have had to wait for a lock and for how
+ * long. Used for the session lock and for the UI locks to make it possible to
+ * monitor lock contention.
+ * 
+ * @see VaadinSession#getLockStatistics()
+ * @see com.vaadin.ui.UI#getLockStatistics()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class LockStatistics implements Serializable {
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Acquires the given lock, recording whether the current thread had to
+     * wait for it.
+     * <p>
+     * For internal use only. May be removed or replaced in the future.
+     * 
+     * @param lock
+     *            the lock to acquire
+     */
+    public void lock(Lock lock) {
+        acquireCount.incrementAndGet();
+        if (lock.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        contendedCount.incrementAndGet();
+        waitTime.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the number of times the lock has been acquired.
+     * 
+     * @return the number of lock acquisitions
+     */
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Gets the number of times a thread has had to wait for the lock because
+     * another thread was holding it.
+     * 
+     * @return the number of contended lock acquisitions
+     */
+    public long getContendedCount() {
+        return contendedCount.get();
+    }
+
+    /**
+     * Gets the total time threads have spent waiting for the lock.
+     * 
+     * @return the total wait time in milliseconds
+     */
+    public long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.beans.IntrospectionException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.vaadin.ui.ConnectorTracker;
+
+/**
+ * An immutable snapshot of an encoded shared state, used by
+ * {@link ConnectorTracker} to remember the state last sent to the client.
+ * <p>
+ * The snapshot holds one encoded value per state property in an array, with
+ * the property names shared by all snapshots of the same state type. Simple
+ * property values (strings, booleans and numbers) are kept as such and are
+ * shared with the state object; other values are kept in their encoded JSON
+ * form.
+ * </p>
+ * <p>
+ * Snapshots are serialized in a compact binary form instead of as JSON
+ * strings.
+ * </p>
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class StateSnapshot implements Serializable {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_TRUE = 2;
+    private static final byte TYPE_FALSE = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_LONG = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_JSON_OBJECT = 8;
+    private static final byte TYPE_JSON_ARRAY = 9;
+    private static final byte TYPE_OTHER = 10;
+
+    /**
+     * Rough size estimates in bytes, assuming a 64-bit JVM with compressed
+     * references.
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int MAP_ENTRY_SIZE = 32;
+
+    private transient Class<?> stateType;
+    private transient String[] names;
+    private transient Object[] values;
+
+    StateSnapshot(Class<?> stateType, String[] names, Object[] values) {
+        this.stateType = stateType;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Gets the type of the state this is a snapshot of.
+     * 
+     * @return the state type
+     */
+    public Class<?> getStateType() {
+        return stateType;
+    }
+
+    /**
+     * Gets the encoded property values aligned with the given property names.
+     * Values for properties not present in this snapshot are
+     * <code>null</code>, which causes them to be considered changed.
+     */
+    Object[] getValues(Class<?> type, String[] propertyNames) {
+        if (type == stateType
+                && (propertyNames == names || Arrays.equals(propertyNames,
+                        names))) {
+            return values;
+        }
+        Map<String, Object> valueMap = new HashMap<String, Object>();
+        for (int i = 0; i < names.length; i++) {
+            valueMap.put(names[i], values[i]);
+        }
+        Object[] mapped = new Object[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            mapped[i] = valueMap.get(propertyNames[i]);
+        }
+        return mapped;
+    }
+
+    /**
+     * Converts this snapshot to a {@link JSONObject} with one entry per state
+     * property. The returned object is a copy and modifying it does not affect
+     * this snapshot.
+     * 
+     * @return the snapshot as JSON
+     * @throws JSONException
+     *             if the conversion fails
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < names.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                value = JSONObject.NULL;
+            } else if (value instanceof JSONObject) {
+                value = new JSONObject(value.toString());
+            } else if (value instanceof JSONArray) {
+                value = new JSONArray(value.toString());
+            }
+            json.put(names[i], value);
+        }
+        return json;
+    }
+
+    /**
+     * Estimates the memory used by this snapshot in bytes. Strings and boxed
+     * values shared with the state object are only counted as references.
+     * 
+     * @return the estimated size in bytes
+     */
+    public long estimateSize() {
+        long size = OBJECT_OVERHEAD + 3 * REFERENCE_SIZE;
+        // The property names are shared by all snapshots of the same type
+        size += OBJECT_OVERHEAD + REFERENCE_SIZE * values.length;
+        for (Object value : values) {
+            size += estimateJsonSize(value);
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the memory used by a diff state in its JSON form, as held by
+     * {@link ConnectorTracker} while it may be modified through
+     * {@link ConnectorTracker#getDiffState(ClientConnector)}. Strings and
+     * boxed values are only counted as references.
+     * 
+     * @param json
+     *            the JSON diff state
+     * @return the estimated size in bytes
+     */
+    public static long estimateSize(JSONObject json) {
+        return estimateJsonSize(json);
+    }
+
+    private static long estimateJsonSize(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            long size = OBJECT_OVERHEAD * 3;
+            for (Iterator<?> keys = object.keys(); keys.hasNext();) {
+                String key = keys.next().toString();
+                size += MAP_ENTRY_SIZE + estimateStringSize(key)
+                        + estimateJsonSize(object.opt(key));
+            }
+            return size;
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            long size = OBJECT_OVERHEAD * 3;
+            for (int i = 0; i < array.length(); i++) {
+                size += REFERENCE_SIZE + estimateJsonSize(array.opt(i));
+            }
+            return size;
+        } else {
+            // Shared with the state object or cached by the JVM
+            return 0;
+        }
+    }
+
+    private static long estimateStringSize(String string) {
+        return OBJECT_OVERHEAD * 2 + 2 * string.length();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(stateType);
+        // The same names array instance is used by all snapshots of a type,
+        // so the stream only contains it once
+        out.writeObject(names);
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        stateType = (Class<?>) in.readObject();
+        names = (String[]) in.readObject();
+        values = new Object[names.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(in);
+        }
+
+        // Use the property layout of this JVM so that the names array is
+        // shared and the values need not be remapped for each encode
+        try {
+            String[] localNames = JsonCodec.getBeanCodec(stateType)
+                    .getNames();
+            values = getValues(stateType, localNames);
+            names = localNames;
+        } catch (IntrospectionException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeValue(ObjectOutputStream out, Object value)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeObject(value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? TYPE_TRUE
+                    : TYPE_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof JSONObject) {
+            // JSONObject is not serializable
+            out.writeByte(TYPE_JSON_OBJECT);
+            out.writeObject(value.toString());
+        } else if (value instanceof JSONArray) {
+            out.writeByte(TYPE_JSON_ARRAY);
+            out.writeObject(value.toString());
+        } else {
+            out.writeByte(TYPE_OTHER);
+            out.writeObject(value);
+        }
+    }
+
+    private static Object readValue(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        byte type = in.readByte();
+        try {
+            switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return in.readObject();
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_INTEGER:
+                return Integer.valueOf(in.readInt());
+            case TYPE_LONG:
+                return Long.valueOf(in.readLong());
+            case TYPE_FLOAT:
+                return Float.valueOf(in.readFloat());
+            case TYPE_DOUBLE:
+                return Double.valueOf(in.readDouble());
+            case TYPE_JSON_OBJECT:
+                return new JSONObject((String) in.readObject());
+            case TYPE_JSON_ARRAY:
+                return new JSONArray((String) in.readObject());
+            case TYPE_OTHER:
+                return in.readObject();
+            default:
+                throw new IOException("Unknown value type " + type);
+            }
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+}
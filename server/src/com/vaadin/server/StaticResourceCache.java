@@ -0,0 +1,552 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Keeps static resources from the VAADIN directory in memory so that they can
+ * be served without resolving and reading them again for each request. Used by
+ * {@link VaadinServlet} in production mode, when resources are not expected to
+ * change while the application is running.
+ * <p>
+ * Each resource is read once and served with a strong ETag computed from its
+ * contents. Compressible resources are also kept gzipped and the compressed
+ * version is sent to browsers that accept it. Resources larger than a fraction
+ * of the maximum size are not held in memory; if they are plain files, they
+ * are remembered and streamed directly from the file system. Other large
+ * resources are remembered as {@link CachedResource#isUncacheable()
+ * uncacheable} so that they are not read again for each request.
+ * <p>
+ * The cache is bounded by the total number of bytes held in memory. The least
+ * recently used resources are evicted when the limit is exceeded.
+ * 
+ * @see DeploymentConfiguration#getStaticResourceCacheSize()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class StaticResourceCache implements Serializable {
+
+    /**
+     * The largest part of the cache a single resource may use.
+     */
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    /**
+     * A static resource held by the cache.
+     */
+    public static class CachedResource implements Serializable {
+        private final String mimeType;
+        private final long lastModified;
+        private final String etag;
+        private final byte[] content;
+        private final byte[] gzippedContent;
+        private final File file;
+        private final long length;
+
+        private CachedResource(String mimeType, long lastModified,
+                String etag, byte[] content, byte[] gzippedContent, File file,
+                long length) {
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.content = content;
+            this.gzippedContent = gzippedContent;
+            this.file = file;
+            this.length = length;
+        }
+
+        /**
+         * Gets the mime type of the resource.
+         * 
+         * @return the mime type, or <code>null</code> if not known
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Gets the last modification time of the resource, without
+         * milliseconds.
+         * 
+         * @return the last modification time, or 0 if not known
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Gets the strong entity tag of the uncompressed resource.
+         * 
+         * @return the ETag, including the quotes
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * Gets the length of the uncompressed resource.
+         * 
+         * @return the length in bytes
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Checks whether this entry only records that the resource is too
+         * large to be cached and is not a file. Such a resource must be
+         * served without the cache and cannot be passed to
+         * {@link StaticResourceCache#write(HttpServletRequest, HttpServletResponse, CachedResource, int)}.
+         * 
+         * @return <code>true</code> if the resource must be served without
+         *         the cache, otherwise <code>false</code>
+         */
+        public boolean isUncacheable() {
+            return content == null && file == null;
+        }
+
+        /**
+         * Checks whether a gzipped version of this resource is available.
+         * 
+         * @return <code>true</code> if the resource can be sent gzipped,
+         *         otherwise <code>false</code>
+         */
+        public boolean isGzipped() {
+            return gzippedContent != null;
+        }
+
+        private String getGzippedETag() {
+            // Different representations need different strong ETags
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        private long getMemorySize() {
+            long size = 0;
+            if (content != null) {
+                size += content.length;
+            }
+            if (gzippedContent != null) {
+                size += gzippedContent.length;
+            }
+            return size;
+        }
+    }
+
+    private final int maxSize;
+    private long size = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    private final LinkedHashMap<String, CachedResource> resources = new LinkedHashMap<String, CachedResource>(
+            16, 0.75f, true);
+
+    /**
+     * Creates a new cache holding at most the given number of bytes in memory.
+     * 
+     * @param maxSize
+     *            the maximum size of the cached contents in bytes
+     */
+    public StaticResourceCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets a cached resource.
+     * 
+     * @param filename
+     *            the name of the resource, starting with /VAADIN/
+     * @return the cached resource, or <code>null</code> if the resource is
+     *         not in the cache. The returned resource is
+     *         {@link CachedResource#isUncacheable() uncacheable} if it has
+     *         been found to be too large to be cached.
+     */
+    public synchronized CachedResource get(String filename) {
+        CachedResource resource = resources.get(filename);
+        if (resource == null || resource.isUncacheable()) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return resource;
+    }
+
+    /**
+     * Reads a resource and adds it to the cache. The caller is responsible for
+     * checking that the resource may be served.
+     * 
+     * @param filename
+     *            the name of the resource, starting with /VAADIN/
+     * @param resourceUrl
+     *            the URL the resource was found at
+     * @param mimeType
+     *            the mime type of the resource, or <code>null</code> if not
+     *            known
+     * @return the cached resource, or <code>null</code> if the resource is too
+     *         large to be cached and is not a file. In that case the resource
+     *         is remembered as {@link CachedResource#isUncacheable()
+     *         uncacheable}.
+     * @throws IOException
+     *             if the resource could not be read
+     */
+    public CachedResource load(String filename, URL resourceUrl,
+            String mimeType) throws IOException {
+        int maxEntrySize = maxSize / MAX_ENTRY_FRACTION;
+
+        URLConnection connection = resourceUrl.openConnection();
+        InputStream is = connection.getInputStream();
+        long lastModified;
+        long length;
+        try {
+            lastModified = connection.getLastModified();
+            // Browsers do not send milliseconds in If-Modified-Since
+            lastModified -= lastModified % 1000;
+            length = connection.getContentLength();
+
+            File file = getFile(resourceUrl);
+            if (length > maxEntrySize && file != null) {
+                // Don't keep large files in memory, stream them directly
+                String etag = "\"" + Long.toHexString(lastModified) + "-"
+                        + Long.toHexString(length) + "\"";
+                CachedResource resource = new CachedResource(mimeType,
+                        lastModified, etag, null, null, file, length);
+                put(filename, resource);
+                return resource;
+            }
+
+            byte[] content = null;
+            if (length <= maxEntrySize) {
+                // Length is not always known, so check while reading as well
+                content = read(is, maxEntrySize);
+            }
+            if (content == null) {
+                put(filename, new CachedResource(mimeType, lastModified, null,
+                        null, null, null, length));
+                return null;
+            }
+            byte[] gzipped = null;
+            if (isCompressible(mimeType)) {
+                gzipped = gzip(content);
+                if (gzipped.length >= content.length) {
+                    gzipped = null;
+                }
+            }
+            CachedResource resource = new CachedResource(mimeType,
+                    lastModified, createETag(content), content, gzipped, null,
+                    content.length);
+            put(filename, resource);
+            return resource;
+        } finally {
+            is.close();
+        }
+    }
+
+    private synchronized void put(String filename, CachedResource resource) {
+        CachedResource old = resources.put(filename, resource);
+        if (old != null) {
+            size -= old.getMemorySize();
+        }
+        size += resource.getMemorySize();
+
+        Iterator<CachedResource> iterator = resources.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            CachedResource eldest = iterator.next();
+            if (eldest != resource) {
+                size -= eldest.getMemorySize();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes a cached resource to the response, or a 304 Not Modified status
+     * if the browser already has the current version. The compressed version
+     * is sent if there is one and the request accepts gzip encoding.
+     * 
+     * @param request
+     *            the request for the resource
+     * @param response
+     *            the response to write to
+     * @param resource
+     *            the resource to write
+     * @param cacheTime
+     *            the number of seconds the browser may cache the resource
+     *            without checking if it has changed
+     * @throws IOException
+     *             if writing the response fails
+     * @throws IllegalArgumentException
+     *             if the resource is {@link CachedResource#isUncacheable()
+     *             uncacheable}
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response,
+            CachedResource resource, int cacheTime) throws IOException {
+        if (resource.isUncacheable()) {
+            throw new IllegalArgumentException(
+                    "An uncacheable resource cannot be written from the cache");
+        }
+        boolean gzip = resource.isGzipped() && acceptsGzip(request);
+        String etag = gzip ? resource.getGzippedETag() : resource.getETag();
+
+        if (resource.getMimeType() != null) {
+            response.setContentType(resource.getMimeType());
+        }
+        response.setHeader("ETag", etag);
+        if (resource.isGzipped()) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (resource.getLastModified() > 0) {
+            response.setDateHeader("Last-Modified", resource.getLastModified());
+        }
+        if (cacheTime > 0) {
+            response.setHeader("Cache-Control", "max-age=" + cacheTime);
+        } else {
+            response.setHeader("Cache-Control",
+                    "public, max-age=0, must-revalidate");
+        }
+
+        if (isNotModified(request, resource, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (resource.file != null) {
+            writeFile(response, resource.file);
+            return;
+        }
+
+        byte[] content = resource.content;
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            content = resource.gzippedContent;
+        }
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+    }
+
+    private static void writeFile(HttpServletResponse response, File file)
+            throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long length = channel.size();
+            if (length <= Integer.MAX_VALUE) {
+                response.setContentLength((int) length);
+            }
+            WritableByteChannel out = Channels.newChannel(response
+                    .getOutputStream());
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position,
+                        out);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isNotModified(HttpServletRequest request,
+            CachedResource resource, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (resource.getLastModified() <= 0) {
+            return false;
+        }
+        try {
+            return request.getDateHeader("If-Modified-Since") >= resource
+                    .getLastModified();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the request accepts gzip content encoding.
+     * 
+     * @param request
+     *            the request to check
+     * @return <code>true</code> if a gzipped response may be sent, otherwise
+     *         <code>false</code>
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return mimeType.startsWith("text/") || mimeType.contains("javascript")
+                || mimeType.contains("json") || mimeType.contains("xml");
+    }
+
+    private static File getFile(URL resourceUrl) {
+        if (!"file".equals(resourceUrl.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(resourceUrl.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the stream fully, or returns <code>null</code> if there is more
+     * than maxLength bytes.
+     */
+    private static byte[] read(InputStream is, int maxLength)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[Constants.DEFAULT_BUFFER_SIZE];
+        int bytes;
+        while ((bytes = is.read(buffer)) >= 0) {
+            out.write(buffer, 0, bytes);
+            if (out.size() > maxLength) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                content.length / 2);
+        OutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(content);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static String createETag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder etag = new StringBuilder(2 + digest.length * 2);
+            etag.append('"');
+            for (byte b : digest) {
+                etag.append(Character.forDigit((b >> 4) & 0xf, 16));
+                etag.append(Character.forDigit(b & 0xf, 16));
+            }
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is required to be supported by all JVMs
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the number of bytes currently held in memory.
+     * 
+     * @return the size of the cached contents in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of resources in the cache.
+     * 
+     * @return the number of cached resources
+     */
+    public synchronized int getResourceCount() {
+        return resources.size();
+    }
+
+    /**
+     * Gets the number of requests for which the resource was found in the
+     * cache.
+     * 
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of requests for which the resource was not found in the
+     * cache.
+     * 
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Removes all resources from the cache.
+     */
+    public synchronized void clear() {
+        resources.clear();
+        size = 0;
+    }
+}
@@ -198,4 +198,27 @@ public abstract class UIProvider implements Serializable {
         }
     }
 
+    /**
+     * Finds the push coalescing interval to use for a specific UI, see
+     * {@link com.vaadin.ui.PushConfiguration#setCoalescingInterval(int)}.
+     * <p>
+     * The default implementation uses the @{@link Push} annotation if it's
+     * defined for the UI class.
+     * 
+     * @since 7.2
+     * @param event
+     *            the UI create event with information about the UI and the
+     *            current request.
+     * @return the coalescing interval in milliseconds, or 0 if changes should
+     *         be pushed right away
+     */
+    public int getPushCoalescingInterval(UICreateEvent event) {
+        Push push = getAnnotationFor(event.getUIClass(), Push.class);
+        if (push == null) {
+            return 0;
+        } else {
+            return push.coalescingInterval();
+        }
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.IOException;
+
+import com.vaadin.ui.UI;
+
+/**
+ * RequestHandler which takes care of locking and unlocking of the UI that the
+ * request is targeted to. If per-UI locking is enabled, the session is only
+ * locked for finding the UI and the UI is locked while
+ * {@link #synchronizedHandleRequest(VaadinSession, UI, VaadinRequest, VaadinResponse)}
+ * is run. Otherwise, the session is locked the same way as for other
+ * {@link SynchronizedRequestHandler}s.
+ * 
+ * @see DeploymentConfiguration#isPerUiLocking()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public abstract class UISynchronizedRequestHandler extends
+        SynchronizedRequestHandler {
+
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request,
+            VaadinResponse response) throws IOException {
+        if (!session.isPerUiLocking()) {
+            return super.handleRequest(session, request, response);
+        }
+
+        if (!canHandleRequest(request)) {
+            return false;
+        }
+
+        UI ui;
+        session.lock();
+        try {
+            ui = session.getService().findUI(request);
+        } finally {
+            session.unlock();
+        }
+
+        if (ui == null) {
+            return synchronizedHandleRequest(session, null, request, response);
+        }
+
+        ui.lock();
+        try {
+            if (ui.getSession() != session) {
+                // The UI was removed from the session while waiting for the
+                // lock
+                return synchronizedHandleRequest(session, null, request,
+                        response);
+            }
+            return synchronizedHandleRequest(session, ui, request, response);
+        } finally {
+            ui.unlock();
+        }
+    }
+
+    @Override
+    public boolean synchronizedHandleRequest(VaadinSession session,
+            VaadinRequest request, VaadinResponse response) throws IOException {
+        UI ui = session.getService().findUI(request);
+        return synchronizedHandleRequest(session, ui, request, response);
+    }
+
+    /**
+     * Identical to
+     * {@link #synchronizedHandleRequest(VaadinSession, VaadinRequest, VaadinResponse)}
+     * except the UI targeted by the request has already been looked up. Either
+     * the session or the UI is locked while this is run depending on whether
+     * per-UI locking is enabled.
+     * 
+     * @param session
+     *            The session for the request
+     * @param ui
+     *            The UI targeted by the request or <code>null</code> if no UI
+     *            was found, in which case no lock is held when per-UI locking
+     *            is enabled
+     * @param request
+     *            The request to handle
+     * @param response
+     *            The response object to which a response can be written.
+     * @return true if a response has been written and no further request
+     *         handlers should be called, otherwise false
+     * 
+     * @throws IOException
+     *             If an IO error occurred
+     */
+    public abstract boolean synchronizedHandleRequest(VaadinSession session,
+            UI ui, VaadinRequest request, VaadinResponse response)
+            throws IOException;
+
+}
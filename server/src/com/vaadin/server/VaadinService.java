@@ -34,7 +34,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -51,7 +54,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.vaadin.annotations.PreserveOnRefresh;
+import com.vaadin.data.util.AbstractInMemoryContainer;
 import com.vaadin.event.EventRouter;
+import com.vaadin.server.DeploymentConfiguration.AccessQueueOverflowPolicy;
 import com.vaadin.server.VaadinSession.FutureAccess;
 import com.vaadin.server.communication.FileUploadHandler;
 import com.vaadin.server.communication.HeartbeatHandler;
@@ -61,6 +66,7 @@ import com.vaadin.server.communication.UidlRequestHandler;
 import com.vaadin.shared.JsonConstants;
 import com.vaadin.shared.ui.ui.UIConstants;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.util.CurrentInstance;
 import com.vaadin.util.ReflectTools;
 
@@ -128,6 +134,15 @@ public abstract class VaadinService implements Serializable {
 
     private Iterable<RequestHandler> requestHandlers;
 
+    private transient volatile Executor accessExecutor;
+
+    /**
+     * The session or UI whose access queue is currently being purged by
+     * {@link #ensureAccessQueuePurged(Object, Queue, Lock, Runnable)}
+     * in the current thread.
+     */
+    private static final ThreadLocal<Object> purgingAccessQueue = new ThreadLocal<Object>();
+
     /**
      * Keeps track of whether a warning about missing push support has already
      * been logged. This is used to avoid spamming the log with the same message
@@ -289,6 +304,43 @@ public abstract class VaadinService implements Serializable {
         this.classLoader = classLoader;
     }
 
+    /**
+     * Gets the executor used for running pending access tasks, see
+     * {@link #setAccessExecutor(Executor)}.
+     * 
+     * @since 7.2
+     * 
+     * @return the access executor, or <code>null</code> if pending tasks are
+     *         run by the threads submitting them and releasing locks
+     */
+    public Executor getAccessExecutor() {
+        return accessExecutor;
+    }
+
+    /**
+     * Sets an executor used for running tasks submitted using
+     * {@link VaadinSession#access(Runnable)} and {@link UI#access(Runnable)}.
+     * <p>
+     * By default, a submitted task is run right away by the submitting thread
+     * if the session or UI is not locked, and otherwise by the thread that
+     * releases the lock. With an executor, the submitting threads never run
+     * tasks themselves and the pending tasks that are not run by the thread
+     * releasing the lock, e.g. because of
+     * {@link DeploymentConfiguration#getAccessQueueDrainLimit()}, are run in
+     * batches on the executor. The executor is not used for running tasks
+     * that are submitted while the current thread holds the lock.
+     * </p>
+     * 
+     * @since 7.2
+     * 
+     * @param accessExecutor
+     *            the executor to use, or <code>null</code> to run pending
+     *            tasks in the submitting and unlocking threads
+     */
+    public void setAccessExecutor(Executor accessExecutor) {
+        this.accessExecutor = accessExecutor;
+    }
+
     /**
      * Returns the MIME type of the specified file, or null if the MIME type is
      * not known. The MIME type is determined by the configuration of the
@@ -1141,7 +1193,7 @@ public abstract class VaadinService implements Serializable {
     private void removeClosedUIs(final VaadinSession session) {
         ArrayList<UI> uis = new ArrayList<UI>(session.getUIs());
         for (final UI ui : uis) {
-            ui.accessSynchronously(new Runnable() {
+            accessUIIfAvailable(ui, new Runnable() {
                 @Override
                 public void run() {
                     if (ui.isClosing()) {
@@ -1164,7 +1216,7 @@ public abstract class VaadinService implements Serializable {
         final String sessionId = session.getSession().getId();
         for (final UI ui : session.getUIs()) {
             if (!isUIActive(ui) && !ui.isClosing()) {
-                ui.accessSynchronously(new Runnable() {
+                accessUIIfAvailable(ui, new Runnable() {
                     @Override
                     public void run() {
                         getLogger().log(Level.FINE,
@@ -1177,6 +1229,29 @@ public abstract class VaadinService implements Serializable {
         }
     }
 
+    /**
+     * Runs the given task for a UI during session cleanup. With per-UI locking,
+     * a UI that is currently locked by some other thread is skipped instead of
+     * waiting for it to become available. Such a UI is in use and will be
+     * checked again at the end of some later request.
+     */
+    private void accessUIIfAvailable(UI ui, Runnable runnable) {
+        VaadinSession session = ui.getSession();
+        if (session == null || !session.isPerUiLocking()) {
+            ui.accessSynchronously(runnable);
+            return;
+        }
+
+        Lock lock = ui.getLockInstance();
+        if (lock.tryLock()) {
+            try {
+                ui.accessSynchronously(runnable);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     /**
      * Returns the number of seconds that must pass without a valid heartbeat or
      * UIDL request being received from a UI before that UI is removed from its
@@ -1678,7 +1753,7 @@ public abstract class VaadinService implements Serializable {
      */
     public Future<Void> accessSession(VaadinSession session, Runnable runnable) {
         FutureAccess future = new FutureAccess(session, runnable);
-        session.getPendingAccessQueue().add(future);
+        enqueueAccess(session.getPendingAccessQueue(), future);
 
         /*
          * If no thread is currently holding the lock, pending changes for UIs
@@ -1692,7 +1767,27 @@ public abstract class VaadinService implements Serializable {
          * the lock is ultimately released. If the lock is not held by any
          * thread and we acquire it, we just release it again to purge the queue
          * right away.
+         * 
+         * With per-UI locking, the tasks are not run right away if the current
+         * thread holds the lock of a UI but not the session lock as the tasks
+         * might try to lock some other UI. The queue is purged the next time
+         * the session is unlocked, at the latest at the end of the request.
          */
+        if (session.isPerUiLocking()
+                && session.hasLock()
+                && !((ReentrantLock) session.getLockInstance())
+                        .isHeldByCurrentThread()) {
+            return future;
+        }
+
+        if (getAccessExecutor() != null
+                && !((ReentrantLock) session.getLockInstance())
+                        .isHeldByCurrentThread()) {
+            // Leave running the tasks to the executor
+            ensureAccessQueuePurged(session);
+            return future;
+        }
+
         try {
             // tryLock() would be shorter, but it does not guarantee fairness
             if (session.getLockInstance().tryLock(0, TimeUnit.SECONDS)) {
@@ -1706,6 +1801,161 @@ public abstract class VaadinService implements Serializable {
         return future;
     }
 
+    /**
+     * Adds a task to an access queue, taking the capacity and the overflow
+     * policy of the queue into account.
+     */
+    private void enqueueAccess(Queue<FutureAccess> queue, FutureAccess future) {
+        DeploymentConfiguration configuration = getDeploymentConfiguration();
+        int capacity = configuration.getAccessQueueCapacity();
+        if (capacity <= 0) {
+            queue.add(future);
+            return;
+        }
+
+        FutureAccess discarded = null;
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                if (configuration.getAccessQueueOverflowPolicy() == AccessQueueOverflowPolicy.DISCARD_OLDEST) {
+                    discarded = queue.poll();
+                } else {
+                    throw new RejectedExecutionException(
+                            "The access queue is full (" + capacity
+                                    + " pending tasks)");
+                }
+            }
+            queue.add(future);
+        }
+        if (discarded != null) {
+            discarded.cancel(false);
+            getLogger().log(Level.WARNING,
+                    "The access queue is full ({0} pending tasks), "
+                            + "cancelled the oldest pending task",
+                    Integer.valueOf(capacity));
+        }
+    }
+
+    /**
+     * Makes sure that tasks left in the access queue of a session after its
+     * lock has been released get run. Tasks might be left in the queue if they
+     * were enqueued after the queue was purged but before the lock was
+     * released, or if there were more tasks than allowed by
+     * {@link DeploymentConfiguration#getAccessQueueDrainLimit()}.
+     * <p>
+     * If an {@link #setAccessExecutor(Executor) access executor} has been set,
+     * the remaining tasks are run on the executor. Otherwise, they are run in
+     * the current thread in batches, releasing the lock between the batches
+     * and stopping if some other thread acquires the lock.
+     * <p>
+     * This method is automatically run by the framework at appropriate
+     * situations and is not intended to be used by application developers.
+     * 
+     * @param session
+     *            the session whose access queue should be purged
+     * @since 7.2
+     */
+    public void ensureAccessQueuePurged(final VaadinSession session) {
+        ensureAccessQueuePurged(session, session.getPendingAccessQueue(),
+                session.getLockInstance(), new Runnable() {
+                    @Override
+                    public void run() {
+                        // unlock triggers runPendingAccessTasks
+                        session.unlock();
+                    }
+                });
+    }
+
+    /**
+     * Makes sure that tasks left in the access queue of a UI after its lock has
+     * been released get run when per-UI locking is enabled. See
+     * {@link #ensureAccessQueuePurged(VaadinSession)}.
+     * <p>
+     * This method is automatically run by the framework at appropriate
+     * situations and is not intended to be used by application developers.
+     * 
+     * @param ui
+     *            the UI whose access queue should be purged
+     * @since 7.2
+     */
+    public void ensureAccessQueuePurged(final UI ui) {
+        ensureAccessQueuePurged(ui, ui.getPendingAccessQueue(),
+                ui.getLockInstance(), new Runnable() {
+                    @Override
+                    public void run() {
+                        // unlock triggers runPendingAccessTasks
+                        ui.unlock();
+                    }
+                });
+    }
+
+    private void ensureAccessQueuePurged(final Object owner,
+            final Queue<FutureAccess> queue, final Lock lock,
+            final Runnable unlock) {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        Executor executor = accessExecutor;
+        if (executor != null) {
+            if (!tryScheduleAccessDrain(owner)) {
+                // The drain that is already pending also runs the new tasks
+                return;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Tasks enqueued from now on need a new drain if this
+                        // one does not get the lock or stops at the limit
+                        accessDrainStarted(owner);
+                        if (lock.tryLock()) {
+                            unlock.run();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                accessDrainStarted(owner);
+                throw e;
+            }
+            return;
+        }
+
+        if (purgingAccessQueue.get() == owner) {
+            // The loop further up in the call stack takes care of it
+            return;
+        }
+        Object previousOwner = purgingAccessQueue.get();
+        purgingAccessQueue.set(owner);
+        try {
+            while (!queue.isEmpty() && lock.tryLock(0, TimeUnit.SECONDS)) {
+                unlock.run();
+            }
+        } catch (InterruptedException e) {
+            // Just ignore
+        } finally {
+            if (previousOwner == null) {
+                purgingAccessQueue.remove();
+            } else {
+                purgingAccessQueue.set(previousOwner);
+            }
+        }
+    }
+
+    private static boolean tryScheduleAccessDrain(Object owner) {
+        if (owner instanceof UI) {
+            return ((UI) owner).tryScheduleAccessDrain();
+        }
+        return ((VaadinSession) owner).tryScheduleAccessDrain();
+    }
+
+    private static void accessDrainStarted(Object owner) {
+        if (owner instanceof UI) {
+            ((UI) owner).accessDrainStarted();
+        } else {
+            ((VaadinSession) owner).accessDrainStarted();
+        }
+    }
+
     /**
      * Purges the queue of pending access invocations enqueued with
      * {@link VaadinSession#access(Runnable)}.
@@ -1720,21 +1970,58 @@ public abstract class VaadinService implements Serializable {
     public void runPendingAccessTasks(VaadinSession session) {
         assert session.hasLock();
 
-        if (session.getPendingAccessQueue().isEmpty()) {
+        runPendingAccessTasks(session.getPendingAccessQueue(), session, null);
+    }
+
+    /**
+     * Purges the queue of pending access invocations that might affect the
+     * given UI. If per-UI locking is enabled, this runs the tasks enqueued with
+     * {@link UI#access(Runnable)} for the UI. Otherwise this is the same as
+     * {@link #runPendingAccessTasks(VaadinSession)} for the session of the UI.
+     * <p>
+     * This method is automatically run by the framework at appropriate
+     * situations and is not intended to be used by application developers.
+     * 
+     * @param ui
+     *            the UI to purge the queue for
+     * @since 7.2
+     */
+    public void runPendingAccessTasks(UI ui) {
+        VaadinSession session = ui.getSession();
+        if (!session.isPerUiLocking()) {
+            runPendingAccessTasks(session);
+            return;
+        }
+        assert ui.hasLock();
+
+        runPendingAccessTasks(ui.getPendingAccessQueue(), session, ui);
+    }
+
+    private void runPendingAccessTasks(Queue<FutureAccess> queue,
+            VaadinSession session, UI ui) {
+        if (queue.isEmpty()) {
             return;
         }
 
         Map<Class<?>, CurrentInstance> oldInstances = CurrentInstance
                 .getInstances(false);
 
+        int limit = getDeploymentConfiguration().getAccessQueueDrainLimit();
+        int count = 0;
+
         FutureAccess pendingAccess;
         try {
-            while ((pendingAccess = session.getPendingAccessQueue().poll()) != null) {
+            while ((limit <= 0 || count++ < limit)
+                    && (pendingAccess = queue.poll()) != null) {
                 if (!pendingAccess.isCancelled()) {
                     CurrentInstance.clearAll();
                     CurrentInstance.restoreInstances(pendingAccess
                             .getCurrentInstances());
-                    CurrentInstance.setCurrent(session);
+                    if (ui != null) {
+                        CurrentInstance.setCurrent(ui);
+                    } else {
+                        CurrentInstance.setCurrent(session);
+                    }
                     pendingAccess.run();
 
                     try {
@@ -1751,6 +2038,51 @@ public abstract class VaadinService implements Serializable {
         }
     }
 
+    /**
+     * Implementation for {@link UI#access(Runnable)} when per-UI locking is
+     * enabled. The task is run while holding the lock of the UI instead of the
+     * session lock.
+     * 
+     * @since 7.2
+     * @see UI#access(Runnable)
+     * 
+     * @param ui
+     *            the UI to access
+     * @param runnable
+     *            the runnable to run with the UI locked
+     * 
+     * @return a future that can be used to check for task completion and to
+     *         cancel the task
+     */
+    public Future<Void> accessUI(UI ui, Runnable runnable) {
+        VaadinSession session = ui.getSession();
+        if (session == null) {
+            throw new UIDetachedException();
+        }
+        FutureAccess future = new FutureAccess(session, runnable);
+        enqueueAccess(ui.getPendingAccessQueue(), future);
+
+        /*
+         * Run the queue right away if the UI is not locked, see
+         * accessSession(). The tasks are left for the next unlock if the
+         * current thread holds the lock of some other UI.
+         */
+        UI currentUI = UI.getCurrent();
+        if (currentUI != null && currentUI != ui && currentUI.hasLock()) {
+            return future;
+        }
+        if (getAccessExecutor() != null && !ui.hasLock()) {
+            ensureAccessQueuePurged(ui);
+            return future;
+        }
+        if (ui.getLockInstance().tryLock()) {
+            // unlock() runs the pending tasks
+            ui.unlock();
+        }
+
+        return future;
+    }
+
     /**
      * Adds a service destroy listener that gets notified when this service is
      * destroyed.
@@ -1794,6 +2126,7 @@ public abstract class VaadinService implements Serializable {
      */
     public void destroy() {
         eventRouter.fireEvent(new ServiceDestroyEvent(this));
+        AbstractInMemoryContainer.shutdownWorkerThreads();
     }
 
 }
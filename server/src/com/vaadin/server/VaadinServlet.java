@@ -42,7 +42,8 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.vaadin.annotations.VaadinServletConfiguration;
 import com.vaadin.annotations.VaadinServletConfiguration.InitParameterName;
-import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.sass.internal.ScssCompileCache;
+import com.vaadin.server.StaticResourceCache.CachedResource;
 import com.vaadin.server.communication.ServletUIInitHandler;
 import com.vaadin.shared.JsonConstants;
 import com.vaadin.ui.UI;
@@ -53,6 +54,10 @@ public class VaadinServlet extends HttpServlet implements Constants {
 
     private VaadinServletService servletService;
 
+    private StaticResourceCache staticResourceCache;
+
+    private final ScssCompileCache scssCompileCache = new ScssCompileCache();
+
     /**
      * Called by the servlet container to indicate to a servlet that the servlet
      * is being placed into service.
@@ -100,11 +105,40 @@ public class VaadinServlet extends HttpServlet implements Constants {
         // Sets current service even though there are no request and response
         servletService.setCurrentInstances(null, null);
 
+        DeploymentConfiguration configuration = servletService
+                .getDeploymentConfiguration();
+        if (configuration.isProductionMode()
+                && configuration.getStaticResourceCacheSize() > 0
+                && !isStaticResourceResponseCustomized()) {
+            staticResourceCache = new StaticResourceCache(
+                    configuration.getStaticResourceCacheSize());
+        }
+
         servletInitialized();
 
         CurrentInstance.clearAll();
     }
 
+    /**
+     * Checks whether a subclass overrides
+     * {@link #writeStaticResourceResponse(HttpServletRequest, HttpServletResponse, URL)}
+     * , in which case static resources are not served from the cache.
+     */
+    private boolean isStaticResourceResponseCustomized() {
+        for (Class<?> type = getClass(); type != VaadinServlet.class; type = type
+                .getSuperclass()) {
+            try {
+                type.getDeclaredMethod("writeStaticResourceResponse",
+                        HttpServletRequest.class, HttpServletResponse.class,
+                        URL.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not overridden in this class
+            }
+        }
+        return false;
+    }
+
     private void readUiFromEnclosingClass(Properties initParameters) {
         Class<?> enclosingClass = getClass().getEnclosingClass();
 
@@ -304,6 +338,22 @@ public class VaadinServlet extends HttpServlet implements Constants {
         return servletService;
     }
 
+    /**
+     * Gets the cache used for serving static resources from the VAADIN
+     * directory. The cache is only used in production mode and only if
+     * {@link #writeStaticResourceResponse(HttpServletRequest, HttpServletResponse, URL)}
+     * has not been overridden.
+     * 
+     * @see DeploymentConfiguration#getStaticResourceCacheSize()
+     * 
+     * @since 7.2
+     * @return the static resource cache, or <code>null</code> if static
+     *         resources are not cached
+     */
+    protected StaticResourceCache getStaticResourceCache() {
+        return staticResourceCache;
+    }
+
     /**
      * Check that cookie support is enabled in the browser. Only checks UIDL
      * requests.
@@ -489,13 +539,6 @@ public class VaadinServlet extends HttpServlet implements Constants {
             Arrays.asList(new Character[] { '&', '"', '\'', '<', '>', '(', ')',
                     ';' }));
 
-    /**
-     * Mutex for preventing to scss compilations to take place simultaneously.
-     * This is a workaround needed as the scss compiler currently is not thread
-     * safe (#10292).
-     */
-    private static final Object SCSS_MUTEX = new Object();
-
     /**
      * Returns the default theme. Must never return null.
      * 
@@ -591,6 +634,16 @@ public class VaadinServlet extends HttpServlet implements Constants {
             HttpServletRequest request, HttpServletResponse response)
             throws IOException, ServletException {
 
+        CachedResource cached = null;
+        if (staticResourceCache != null) {
+            cached = staticResourceCache.get(filename);
+            if (cached != null && !cached.isUncacheable()) {
+                staticResourceCache.write(request, response, cached,
+                        getCacheTime(filename));
+                return;
+            }
+        }
+
         final ServletContext sc = getServletContext();
         URL resourceUrl = findResourceURL(filename, sc);
 
@@ -622,6 +675,21 @@ public class VaadinServlet extends HttpServlet implements Constants {
             return;
         }
 
+        if (staticResourceCache != null && cached == null) {
+            try {
+                cached = staticResourceCache.load(filename, resourceUrl,
+                        sc.getMimeType(filename));
+            } catch (FileNotFoundException e) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (cached != null) {
+                staticResourceCache.write(request, response, cached,
+                        getCacheTime(filename));
+                return;
+            }
+        }
+
         // Find the modification timestamp
         long lastModifiedTime = 0;
         URLConnection connection = null;
@@ -817,45 +885,43 @@ public class VaadinServlet extends HttpServlet implements Constants {
             return true;
         }
 
-        synchronized (SCSS_MUTEX) {
-            String realFilename = sc.getRealPath(scssFilename);
-            ScssStylesheet scss = ScssStylesheet.get(realFilename);
-            if (scss == null) {
-                // Not a file in the file system (WebContent directory). Use the
-                // identifier directly (VAADIN/themes/.../styles.css) so
+        String realFilename = sc.getRealPath(scssFilename);
+        String css;
+        try {
+            getLogger().log(Level.FINE, "Compiling {0} for request to {1}",
+                    new Object[] { realFilename, filename });
+            // Only compiles again if the file or its imports have changed
+            css = scssCompileCache.compile(realFilename);
+            if (css == null) {
+                // Not a file in the file system (WebContent directory). Use
+                // the identifier directly (VAADIN/themes/.../styles.css) so
                 // ScssStylesheet will try using the class loader.
                 if (scssFilename.startsWith("/")) {
                     scssFilename = scssFilename.substring(1);
                 }
 
-                scss = ScssStylesheet.get(scssFilename);
+                css = scssCompileCache.compile(scssFilename);
             }
+        } catch (Exception e) {
+            getLogger().log(Level.WARNING, "Scss compilation failed", e);
+            return false;
+        }
 
-            if (scss == null) {
-                getLogger()
-                        .log(Level.WARNING,
-                                "Scss file {0} exists but ScssStylesheet was not able to find it",
-                                scssFilename);
-                return false;
-            }
-            try {
-                getLogger().log(Level.FINE, "Compiling {0} for request to {1}",
-                        new Object[] { realFilename, filename });
-                scss.compile();
-            } catch (Exception e) {
-                getLogger().log(Level.WARNING, "Scss compilation failed", e);
-                return false;
-            }
+        if (css == null) {
+            getLogger()
+                    .log(Level.WARNING,
+                            "Scss file {0} exists but ScssStylesheet was not able to find it",
+                            scssFilename);
+            return false;
+        }
 
-            // This is for development mode only so instruct the browser to
-            // never
-            // cache it
-            response.setHeader("Cache-Control", "no-cache");
-            final String mimetype = getService().getMimeType(filename);
-            writeResponse(response, mimetype, scss.toString());
+        // This is for development mode only so instruct the browser to
+        // never cache it
+        response.setHeader("Cache-Control", "no-cache");
+        final String mimetype = getService().getMimeType(filename);
+        writeResponse(response, mimetype, css);
 
-            return true;
-        }
+        return true;
     }
 
     /**
@@ -22,17 +22,20 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -199,16 +202,21 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      */
     private ConverterFactory converterFactory = new DefaultConverterFactory();
 
-    private LinkedList<RequestHandler> requestHandlers = new LinkedList<RequestHandler>();
+    /*
+     * The request handlers, UIs, UI providers and attributes might be accessed
+     * concurrently from the threads of different UIs if per-UI locking is
+     * enabled.
+     */
+    private final List<RequestHandler> requestHandlers = new CopyOnWriteArrayList<RequestHandler>();
 
-    private int nextUIId = 0;
-    private Map<Integer, UI> uIs = new HashMap<Integer, UI>();
+    private final AtomicInteger nextUIId = new AtomicInteger();
+    private Map<Integer, UI> uIs = new ConcurrentHashMap<Integer, UI>();
 
-    private final Map<String, Integer> embedIdMap = new HashMap<String, Integer>();
+    private final ConcurrentHashMap<String, Integer> embedIdMap = new ConcurrentHashMap<String, Integer>();
 
     private final EventRouter eventRouter = new EventRouter();
 
-    private GlobalResourceHandler globalResourceHandler;
+    private volatile GlobalResourceHandler globalResourceHandler;
 
     protected WebBrowser browser = new WebBrowser();
 
@@ -224,20 +232,24 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
 
     private transient WrappedSession session;
 
-    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
 
-    private LinkedList<UIProvider> uiProviders = new LinkedList<UIProvider>();
+    private final List<UIProvider> uiProviders = new CopyOnWriteArrayList<UIProvider>();
 
     private transient VaadinService service;
 
     private transient Lock lock;
 
+    private final LockStatistics lockStatistics = new LockStatistics();
+
     /*
      * Pending tasks can't be serialized and the queue should be empty when the
      * session is serialized as long as it doesn't happen while some other
      * thread has the lock.
      */
-    private transient ConcurrentLinkedQueue<FutureAccess> pendingAccessQueue = new ConcurrentLinkedQueue<FutureAccess>();
+    private transient LinkedBlockingQueue<FutureAccess> pendingAccessQueue = new LinkedBlockingQueue<FutureAccess>();
+
+    private transient AtomicBoolean accessDrainScheduled = new AtomicBoolean();
 
     /**
      * Creates a new VaadinSession tied to a VaadinService.
@@ -619,7 +631,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      */
     public void addRequestHandler(RequestHandler handler) {
         assert hasLock();
-        requestHandlers.addFirst(handler);
+        requestHandlers.add(0, handler);
     }
 
     /**
@@ -707,7 +719,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         return Collections.unmodifiableCollection(uIs.values());
     }
 
-    private int connectorIdSequence = 0;
+    private final AtomicInteger connectorIdSequence = new AtomicInteger();
 
     private final String csrfToken = UUID.randomUUID().toString();
 
@@ -725,7 +737,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
     @Deprecated
     public String createConnectorId(ClientConnector connector) {
         assert hasLock();
-        return String.valueOf(connectorIdSequence++);
+        return String.valueOf(connectorIdSequence.getAndIncrement());
     }
 
     /**
@@ -745,12 +757,57 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
 
     /**
      * Checks if the current thread has exclusive access to this VaadinSession
+     * <p>
+     * If per-UI locking is enabled, holding the lock of the current UI (see
+     * {@link UI#getCurrent()}) also gives access to the session.
      * 
      * @return true if the thread has exclusive access, false otherwise
      */
     public boolean hasLock() {
         ReentrantLock l = ((ReentrantLock) getLockInstance());
-        return l.isHeldByCurrentThread();
+        return l.isHeldByCurrentThread() || hasCurrentUILock();
+    }
+
+    /**
+     * Checks whether per-UI locking is enabled and the current thread holds
+     * the lock of the current UI of this session.
+     */
+    private boolean hasCurrentUILock() {
+        if (!isPerUiLocking()) {
+            return false;
+        }
+        UI ui = UI.getCurrent();
+        return ui != null && ui.getSession() == this && ui.hasLock();
+    }
+
+    /**
+     * Checks whether each UI in this session is protected by a lock of its
+     * own instead of the session lock.
+     * 
+     * @see DeploymentConfiguration#isPerUiLocking()
+     * @see UI#getLockInstance()
+     * 
+     * @since 7.2
+     * 
+     * @return true if UIs are locked separately, false if all UIs are
+     *         protected by the session lock
+     */
+    public boolean isPerUiLocking() {
+        DeploymentConfiguration configuration = this.configuration;
+        return configuration != null && configuration.isPerUiLocking();
+    }
+
+    /**
+     * Gets statistics about contention for the lock of this session. When
+     * per-UI locking is enabled, the statistics for the UI locks are available
+     * using {@link UI#getLockStatistics()}.
+     * 
+     * @since 7.2
+     * 
+     * @return the lock statistics of this session
+     */
+    public LockStatistics getLockStatistics() {
+        return lockStatistics;
     }
 
     /**
@@ -831,8 +888,8 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         ui.setSession(null);
         uIs.remove(id);
         String embedId = ui.getEmbedId();
-        if (embedId != null && id.equals(embedIdMap.get(embedId))) {
-            embedIdMap.remove(embedId);
+        if (embedId != null) {
+            embedIdMap.remove(embedId, id);
         }
     }
 
@@ -856,8 +913,15 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
     public GlobalResourceHandler getGlobalResourceHandler(boolean createOnDemand) {
         assert hasLock();
         if (globalResourceHandler == null && createOnDemand) {
-            globalResourceHandler = new GlobalResourceHandler();
-            addRequestHandler(globalResourceHandler);
+            // Threads of different UIs might get here at the same time if
+            // per-UI locking is enabled
+            synchronized (requestHandlers) {
+                if (globalResourceHandler == null) {
+                    GlobalResourceHandler handler = new GlobalResourceHandler();
+                    addRequestHandler(handler);
+                    globalResourceHandler = handler;
+                }
+            }
         }
 
         return globalResourceHandler;
@@ -918,13 +982,29 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      * <p>
      * {@link #getLockInstance()} can be used if more control over the locking
      * is required.
+     * <p>
+     * If per-UI locking is enabled, the session lock does not protect the UIs
+     * of the session. A UI can be locked while holding the session lock, but
+     * to avoid deadlocks the session can not be locked while only holding the
+     * lock of a UI.
+     * 
+     * @throws IllegalStateException
+     *             if per-UI locking is enabled and the current thread holds
+     *             the lock of a UI in this session but not the session lock
      * 
      * @see #unlock()
      * @see #getLockInstance()
      * @see #hasLock()
+     * @see UI#lock()
      */
     public void lock() {
-        getLockInstance().lock();
+        Lock lock = getLockInstance();
+        if (hasCurrentUILock()
+                && !((ReentrantLock) lock).isHeldByCurrentThread()) {
+            throw new IllegalStateException(
+                    "Can't lock the session while only holding the lock of a UI in the session. Use VaadinSession.access() instead.");
+        }
+        lockStatistics.lock(lock);
     }
 
     /**
@@ -933,29 +1013,36 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      * <p>
      * For UIs in this session that have its push mode set to
      * {@link PushMode#AUTOMATIC automatic}, pending changes will be pushed to
-     * their respective clients.
+     * their respective clients. With per-UI locking, changes are instead
+     * pushed when the lock of the UI is released.
      * 
      * @see #lock()
      * @see UI#push()
      */
     public void unlock() {
         assert hasLock();
+        boolean ultimateRelease = false;
         try {
             /*
              * Run pending tasks and push if the reentrant lock will actually be
              * released by this unlock() invocation.
              */
             if (((ReentrantLock) getLockInstance()).getHoldCount() == 1) {
+                ultimateRelease = true;
                 getService().runPendingAccessTasks(this);
 
-                for (UI ui : getUIs()) {
-                    if (ui.getPushConfiguration().getPushMode() == PushMode.AUTOMATIC) {
-                        Map<Class<?>, CurrentInstance> oldCurrent = CurrentInstance
-                                .setCurrent(ui);
-                        try {
-                            ui.push();
-                        } finally {
-                            CurrentInstance.restoreInstances(oldCurrent);
+                // With per-UI locking, each UI pushes its own changes when it
+                // is unlocked
+                if (!isPerUiLocking()) {
+                    for (UI ui : getUIs()) {
+                        if (ui.getPushConfiguration().getPushMode() == PushMode.AUTOMATIC) {
+                            Map<Class<?>, CurrentInstance> oldCurrent = CurrentInstance
+                                    .setCurrent(ui);
+                            try {
+                                ui.push();
+                            } finally {
+                                CurrentInstance.restoreInstances(oldCurrent);
+                            }
                         }
                     }
                 }
@@ -963,6 +1050,10 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         } finally {
             getLockInstance().unlock();
         }
+
+        if (ultimateRelease) {
+            getService().ensureAccessQueuePurged(this);
+        }
     }
 
     /**
@@ -1083,7 +1174,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      */
     public int getNextUIid() {
         assert hasLock();
-        return nextUIId++;
+        return nextUIId.getAndIncrement();
     }
 
     /**
@@ -1115,7 +1206,13 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
                         && embedId.equals(previousUi.getEmbedId()) : "UI id map and embed id map not in sync";
 
                 // Will fire cleanup events at the end of the request handling.
-                previousUi.close();
+                final UI closedUi = previousUi;
+                previousUi.accessSynchronously(new Runnable() {
+                    @Override
+                    public void run() {
+                        closedUi.close();
+                    }
+                });
             }
         }
     }
@@ -1128,7 +1225,7 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      */
     public void addUIProvider(UIProvider uiProvider) {
         assert hasLock();
-        uiProviders.addFirst(uiProvider);
+        uiProviders.add(0, uiProvider);
     }
 
     /**
@@ -1277,6 +1374,10 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      * an exception if it is detected that the current thread holds the lock for
      * some other session.
      * </p>
+     * <p>
+     * The number of pending tasks can be limited using
+     * {@link DeploymentConfiguration#getAccessQueueCapacity()}.
+     * </p>
      * 
      * @see #lock()
      * @see #getCurrent()
@@ -1289,6 +1390,9 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      *            the runnable which accesses the session
      * @return a future that can be used to check for task completion and to
      *         cancel the task
+     * @throws RejectedExecutionException
+     *             if the queue of pending tasks is full and the configured
+     *             overflow policy is to reject new tasks
      */
     public Future<Void> access(Runnable runnable) {
         return getService().accessSession(this, runnable);
@@ -1319,14 +1423,37 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         return csrfToken;
     }
 
+    /**
+     * Marks that a task that runs the pending access tasks of this session is
+     * about to be submitted to the {@link VaadinService#getAccessExecutor()
+     * access executor}, unless such a task has already been submitted but not
+     * yet started. Used to submit at most one such task at a time.
+     * 
+     * @return <code>true</code> if the task should be submitted,
+     *         <code>false</code> if a submitted task is still pending
+     */
+    boolean tryScheduleAccessDrain() {
+        return accessDrainScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks that the task submitted after {@link #tryScheduleAccessDrain()}
+     * has started or could not be submitted, so that tasks enqueued from now
+     * on need a new one.
+     */
+    void accessDrainStarted() {
+        accessDrainScheduled.set(false);
+    }
+
     /**
      * Override default deserialization logic to account for transient
-     * {@link #pendingAccessQueue}.
+     * {@link #pendingAccessQueue} and {@link #accessDrainScheduled}.
      */
     private void readObject(ObjectInputStream stream) throws IOException,
             ClassNotFoundException {
         stream.defaultReadObject();
-        pendingAccessQueue = new ConcurrentLinkedQueue<FutureAccess>();
+        pendingAccessQueue = new LinkedBlockingQueue<FutureAccess>();
+        accessDrainScheduled = new AtomicBoolean();
     }
 
     /**
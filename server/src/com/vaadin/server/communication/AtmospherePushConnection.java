@@ -22,9 +22,16 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,12 +39,19 @@ import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResource.TRANSPORT;
 import org.json.JSONException;
 
+import com.vaadin.server.VaadinService;
 import com.vaadin.shared.communication.PushConstants;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 
 /**
  * {@link PushConnection} implementation using the Atmosphere push support that
  * is by default included in Vaadin.
+ * <p>
+ * If the UI has a {@link com.vaadin.ui.PushConfiguration#getCoalescingInterval()
+ * coalescing interval}, server initiated pushes that happen within the interval
+ * after the previous message are delayed until the interval has passed, so
+ * that all changes made in the meantime are sent in a single message.
  * 
  * @author Vaadin Ltd
  * @since 7.1
@@ -92,11 +106,38 @@ public class AtmospherePushConnection implements PushConnection {
         }
     }
 
+    /**
+     * Schedulers for flushing coalesced pushes, one for each service. The
+     * scheduled tasks only hand the actual push over to
+     * {@link UI#access(Runnable)}. Shut down by
+     * {@link #shutdownFlushScheduler(VaadinService)} when the service is
+     * destroyed.
+     */
+    private static final Map<VaadinService, ScheduledExecutorService> flushSchedulers = new WeakHashMap<VaadinService, ScheduledExecutorService>();
+
+    private static class FlushThreadFactory implements ThreadFactory,
+            Serializable {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Vaadin push coalescing");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     private UI ui;
     private AtmosphereResource resource;
     private Future<String> outgoingMessage;
     private FragmentedMessage incomingMessage;
 
+    private long lastMessageTime;
+    private volatile boolean flushScheduled = false;
+
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong coalescedPushCount = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile long minMessageLength = -1;
+
     public AtmospherePushConnection(UI ui, AtmosphereResource resource) {
         this.ui = ui;
         this.resource = resource;
@@ -105,6 +146,20 @@ public class AtmospherePushConnection implements PushConnection {
     @Override
     public void push() {
         assert isConnected();
+        int interval = getUI().getPushConfiguration().getCoalescingInterval();
+        if (interval > 0 && !getUI().isClosing()
+                && getUI().getSession() != null) {
+            long delay = lastMessageTime + interval
+                    - System.currentTimeMillis();
+            if (delay > 0) {
+                // Let changes pile up until the interval has passed
+                coalescedPushCount.incrementAndGet();
+                if (!flushScheduled) {
+                    scheduleFlush(delay);
+                }
+                return;
+            }
+        }
         try {
             push(true);
         } catch (IOException e) {
@@ -122,13 +177,167 @@ public class AtmospherePushConnection implements PushConnection {
      * @throws IOException
      */
     protected void push(boolean async) throws IOException {
+        String message = createMessage(async);
+        sendMessage(message);
+
+        lastMessageTime = System.currentTimeMillis();
+        messageCount.incrementAndGet();
+        bytesSent.addAndGet(message.length());
+        if (minMessageLength < 0 || message.length() < minMessageLength) {
+            minMessageLength = message.length();
+        }
+    }
+
+    /**
+     * Writes the pending state changes and client RPC calls of the UI as a
+     * message to push.
+     * 
+     * @param async
+     *            True if this push asynchronously originates from the server,
+     *            false if it is a response to a client request.
+     * @return the message to send
+     * @throws IOException
+     */
+    String createMessage(boolean async) throws IOException {
         Writer writer = new StringWriter();
         try {
             new UidlWriter().write(getUI(), writer, false, async);
         } catch (JSONException e) {
             throw new IOException("Error writing UIDL", e);
         }
-        sendMessage("for(;;);[{" + writer.toString() + "}]");
+        return "for(;;);[{" + writer.toString() + "}]";
+    }
+
+    /**
+     * Schedules the changes that have been held back to be pushed after the
+     * given delay.
+     * 
+     * @param delay
+     *            the delay in milliseconds
+     */
+    private void scheduleFlush(long delay) {
+        flushScheduled = true;
+        try {
+            VaadinService service = getUI().getSession().getService();
+            getFlushScheduler(service).schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled = false;
+            getLogger().log(Level.WARNING,
+                    "Could not schedule a coalesced push", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            getUI().access(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled = false;
+                    if (getUI().getPushConnection() == AtmospherePushConnection.this
+                            && isConnected()) {
+                        getUI().push();
+                    }
+                }
+            });
+        } catch (UIDetachedException e) {
+            // Nothing to push anymore
+            flushScheduled = false;
+        } catch (RejectedExecutionException e) {
+            flushScheduled = false;
+            getLogger().log(Level.WARNING,
+                    "Could not push coalesced changes", e);
+        }
+    }
+
+    /**
+     * Gets the scheduler that flushes the coalesced pushes of the UIs of a
+     * service, starting it if needed.
+     * 
+     * @param service
+     *            the service of the pushing UI
+     * @return the flush scheduler of the service
+     */
+    static ScheduledExecutorService getFlushScheduler(VaadinService service) {
+        synchronized (flushSchedulers) {
+            ScheduledExecutorService scheduler = flushSchedulers.get(service);
+            if (scheduler == null) {
+                scheduler = Executors
+                        .newSingleThreadScheduledExecutor(new FlushThreadFactory());
+                flushSchedulers.put(service, scheduler);
+            }
+            return scheduler;
+        }
+    }
+
+    /**
+     * Shuts down the thread that flushes the coalesced pushes of the UIs of a
+     * service so that it does not keep the web application class loader alive
+     * after the service has been destroyed. Pending flushes of the service are
+     * discarded, the schedulers of other services are not affected.
+     * 
+     * @param service
+     *            the destroyed service
+     */
+    static void shutdownFlushScheduler(VaadinService service) {
+        ScheduledExecutorService scheduler;
+        synchronized (flushSchedulers) {
+            scheduler = flushSchedulers.remove(service);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the number of messages that have been pushed through this
+     * connection.
+     * 
+     * @since 7.2
+     * @return the number of messages sent
+     */
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    /**
+     * Gets the number of server initiated pushes that were not sent right away
+     * but combined with the next message because of the
+     * {@link com.vaadin.ui.PushConfiguration#getCoalescingInterval()
+     * coalescing interval}.
+     * 
+     * @since 7.2
+     * @return the number of coalesced pushes
+     */
+    public long getCoalescedPushCount() {
+        return coalescedPushCount.get();
+    }
+
+    /**
+     * Gets the total number of characters pushed through this connection.
+     * 
+     * @since 7.2
+     * @return the number of characters sent
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Gets an estimate of how many characters coalescing has saved. Each
+     * coalesced push is counted as the smallest message sent through this
+     * connection, so the actual saving is usually larger.
+     * 
+     * @since 7.2
+     * @return a lower bound estimate of the number of characters saved
+     */
+    public long getEstimatedBytesSaved() {
+        long min = minMessageLength;
+        return min < 0 ? 0 : coalescedPushCount.get() * min;
     }
 
     /**
@@ -24,13 +24,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.vaadin.server.ClientConnector;
 import com.vaadin.server.ClientMethodInvocation;
 import com.vaadin.server.EncodeResult;
 import com.vaadin.server.JsonCodec;
+import com.vaadin.server.JsonStreamWriter;
 import com.vaadin.server.PaintException;
 import com.vaadin.shared.communication.ClientRpc;
 import com.vaadin.ui.UI;
@@ -55,19 +55,34 @@ public class ClientRpcWriter implements Serializable {
      *             If the serialization fails.
      */
     public void write(UI ui, Writer writer) throws IOException {
+        write(ui, new JsonStreamWriter(writer));
+    }
+
+    /**
+     * Writes a JSON array containing all pending client RPC invocations in the
+     * given UI.
+     * 
+     * @param ui
+     *            The {@link UI} whose RPC calls to write.
+     * @param json
+     *            The streaming writer used to write the JSON.
+     * @throws IOException
+     *             If the serialization fails.
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
 
         Collection<ClientMethodInvocation> pendingInvocations = collectPendingRpcCalls(ui
                 .getConnectorTracker().getDirtyVisibleConnectors());
 
-        JSONArray rpcCalls = new JSONArray();
+        json.beginArray();
         for (ClientMethodInvocation invocation : pendingInvocations) {
             // add invocation to rpcCalls
             try {
-                JSONArray invocationJson = new JSONArray();
-                invocationJson.put(invocation.getConnector().getConnectorId());
-                invocationJson.put(invocation.getInterfaceName());
-                invocationJson.put(invocation.getMethodName());
-                JSONArray paramJson = new JSONArray();
+                json.beginArray();
+                json.value(invocation.getConnector().getConnectorId());
+                json.value(invocation.getInterfaceName());
+                json.value(invocation.getMethodName());
+                json.beginArray();
                 for (int i = 0; i < invocation.getParameterTypes().length; ++i) {
                     Type parameterType = invocation.getParameterTypes()[i];
                     Object referenceParameter = null;
@@ -84,10 +99,10 @@ public class ClientRpcWriter implements Serializable {
                     EncodeResult encodeResult = JsonCodec.encode(
                             invocation.getParameters()[i], referenceParameter,
                             parameterType, ui.getConnectorTracker());
-                    paramJson.put(encodeResult.getEncodedValue());
+                    json.value(encodeResult.getEncodedValue());
                 }
-                invocationJson.put(paramJson);
-                rpcCalls.put(invocationJson);
+                json.endArray();
+                json.endArray();
             } catch (JSONException e) {
                 throw new PaintException(
                         "Failed to serialize RPC method call parameters for connector "
@@ -97,7 +112,7 @@ public class ClientRpcWriter implements Serializable {
                                 + e.getMessage(), e);
             }
         }
-        writer.write(rpcCalls.toString());
+        json.endArray();
     }
 
     /**
@@ -19,16 +19,15 @@ package com.vaadin.server.communication;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.List;
 
 import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnector;
+import com.vaadin.server.JsonStreamWriter;
 import com.vaadin.server.LegacyCommunicationManager;
-import com.vaadin.server.PaintException;
+import com.vaadin.ui.ConnectorTracker;
 import com.vaadin.ui.UI;
 
 /**
@@ -41,7 +40,9 @@ public class ConnectorHierarchyWriter implements Serializable {
 
     /**
      * Writes a JSON object containing the connector hierarchy (parent-child
-     * mappings) of the dirty connectors in the given UI.
+     * mappings) of the dirty connectors in the given UI. The hierarchy of a
+     * connector is only written if it has changed since it was last sent to
+     * the client.
      * 
      * @param ui
      *            The {@link UI} whose hierarchy to write.
@@ -51,31 +52,54 @@ public class ConnectorHierarchyWriter implements Serializable {
      *             If the serialization fails.
      */
     public void write(UI ui, Writer writer) throws IOException {
+        write(ui, new JsonStreamWriter(writer));
+    }
 
-        Collection<ClientConnector> dirtyVisibleConnectors = ui
-                .getConnectorTracker().getDirtyVisibleConnectors();
+    /**
+     * Writes a JSON object containing the connector hierarchy (parent-child
+     * mappings) of the dirty connectors in the given UI. The hierarchy of a
+     * connector is only written if it has changed since it was last sent to
+     * the client.
+     * 
+     * @param ui
+     *            The {@link UI} whose hierarchy to write.
+     * @param json
+     *            The streaming writer used to write the JSON.
+     * @throws IOException
+     *             If the serialization fails.
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
 
-        JSONObject hierarchyInfo = new JSONObject();
-        for (ClientConnector connector : dirtyVisibleConnectors) {
-            String connectorId = connector.getConnectorId();
-            JSONArray children = new JSONArray();
+        ConnectorTracker connectorTracker = ui.getConnectorTracker();
+        Collection<ClientConnector> dirtyVisibleConnectors = connectorTracker
+                .getDirtyVisibleConnectors();
 
+        json.beginObject();
+        for (ClientConnector connector : dirtyVisibleConnectors) {
+            List<String> childIds = new ArrayList<String>();
             for (ClientConnector child : AbstractClientConnector
                     .getAllChildrenIterable(connector)) {
                 if (LegacyCommunicationManager
                         .isConnectorVisibleToClient(child)) {
-                    children.put(child.getConnectorId());
+                    childIds.add(child.getConnectorId());
                 }
             }
-            try {
-                hierarchyInfo.put(connectorId, children);
-            } catch (JSONException e) {
-                throw new PaintException(
-                        "Failed to send hierarchy information about "
-                                + connectorId + " to the client: "
-                                + e.getMessage(), e);
+
+            // An empty list is information as well (e.g. change from 1 child
+            // to 0 children), so a new connector always gets its hierarchy
+            // sent
+            if (childIds.equals(connectorTracker.getSentChildIds(connector))) {
+                continue;
+            }
+            connectorTracker.setSentChildIds(connector, childIds);
+
+            json.name(connector.getConnectorId());
+            json.beginArray();
+            for (String childId : childIds) {
+                json.value(childId);
             }
+            json.endArray();
         }
-        writer.write(hierarchyInfo.toString());
+        json.endObject();
     }
 }
@@ -21,12 +21,10 @@ import java.io.Serializable;
 import java.io.Writer;
 import java.util.Collection;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import com.vaadin.server.ClientConnector;
-import com.vaadin.server.PaintException;
+import com.vaadin.server.JsonStreamWriter;
 import com.vaadin.server.PaintTarget;
+import com.vaadin.ui.ConnectorTracker;
 import com.vaadin.ui.UI;
 
 /**
@@ -39,7 +37,8 @@ public class ConnectorTypeWriter implements Serializable {
 
     /**
      * Writes a JSON object containing connector-ID-to-type-ID mappings for each
-     * dirty Connector in the given UI.
+     * dirty Connector in the given UI that has not yet been initialized on the
+     * client side.
      * 
      * @param ui
      *            The {@link UI} containing dirty connectors
@@ -52,22 +51,41 @@ public class ConnectorTypeWriter implements Serializable {
      */
     public void write(UI ui, Writer writer, PaintTarget target)
             throws IOException {
+        write(ui, new JsonStreamWriter(writer), target);
+    }
+
+    /**
+     * Writes a JSON object containing connector-ID-to-type-ID mappings for each
+     * dirty Connector in the given UI that has not yet been initialized on the
+     * client side.
+     * 
+     * @param ui
+     *            The {@link UI} containing dirty connectors
+     * @param json
+     *            The streaming writer used to write the JSON.
+     * @param target
+     *            The paint target containing the connector type IDs.
+     * @throws IOException
+     *             If the serialization fails.
+     */
+    public void write(UI ui, JsonStreamWriter json, PaintTarget target)
+            throws IOException {
 
-        Collection<ClientConnector> dirtyVisibleConnectors = ui
-                .getConnectorTracker().getDirtyVisibleConnectors();
+        ConnectorTracker connectorTracker = ui.getConnectorTracker();
+        Collection<ClientConnector> dirtyVisibleConnectors = connectorTracker
+                .getDirtyVisibleConnectors();
 
-        JSONObject connectorTypes = new JSONObject();
+        json.beginObject();
         for (ClientConnector connector : dirtyVisibleConnectors) {
-            String connectorType = target.getTag(connector);
-            try {
-                connectorTypes.put(connector.getConnectorId(), connectorType);
-            } catch (JSONException e) {
-                throw new PaintException(
-                        "Failed to send connector type for connector "
-                                + connector.getConnectorId() + ": "
-                                + e.getMessage(), e);
+            if (connectorTracker.isClientSideInitialized(connector)) {
+                // The client already knows the type of the connector. The
+                // connector is marked uninitialized again on repaintAll and
+                // when it is removed from the client.
+                continue;
             }
+            String connectorType = target.getTag(connector);
+            json.name(connector.getConnectorId()).value(connectorType);
         }
-        writer.write(connectorTypes.toString());
+        json.endObject();
     }
 }
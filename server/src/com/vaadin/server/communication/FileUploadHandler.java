@@ -251,15 +251,21 @@ public class FileUploadHandler implements RequestHandler {
         String connectorId = parts[1];
         String variableName = parts[2];
 
-        // These are retrieved while session is locked
+        // These are retrieved while the UI is locked
         ClientConnector source;
         StreamVariable streamVariable;
 
+        UI uI;
         session.lock();
         try {
-            UI uI = session.getUIById(Integer.parseInt(uiId));
-            UI.setCurrent(uI);
+            uI = session.getUIById(Integer.parseInt(uiId));
+        } finally {
+            session.unlock();
+        }
+        UI.setCurrent(uI);
 
+        uI.lock();
+        try {
             streamVariable = uI.getConnectorTracker().getStreamVariable(
                     connectorId, variableName);
             String secKey = uI.getConnectorTracker().getSeckey(streamVariable);
@@ -271,7 +277,7 @@ public class FileUploadHandler implements RequestHandler {
             source = session.getCommunicationManager().getConnector(uI,
                     connectorId);
         } finally {
-            session.unlock();
+            uI.unlock();
         }
 
         String contentType = request.getContentType();
@@ -421,7 +427,7 @@ public class FileUploadHandler implements RequestHandler {
             String filename, String mimeType, long contentLength,
             ClientConnector connector, String variableName)
             throws UploadException {
-        session.lock();
+        lockUI(session);
         try {
             if (connector == null) {
                 throw new UploadException(
@@ -439,21 +445,21 @@ public class FileUploadHandler implements RequestHandler {
                         "File upload ignored because the component is read-only");
             }
         } finally {
-            session.unlock();
+            unlockUI(session);
         }
         try {
             boolean forgetVariable = streamToReceiver(session, inputStream,
                     streamVariable, filename, mimeType, contentLength);
             if (forgetVariable) {
-                cleanStreamVariable(session, connector, variableName);
+                cleanStreamVariable(connector, variableName);
             }
         } catch (Exception e) {
-            session.lock();
+            lockUI(session);
             try {
                 session.getCommunicationManager()
                         .handleConnectorRelatedException(connector, e);
             } finally {
-                session.unlock();
+                unlockUI(session);
             }
         }
     }
@@ -530,13 +536,13 @@ public class FileUploadHandler implements RequestHandler {
                 filename, type, contentLength);
         try {
             boolean listenProgress;
-            session.lock();
+            lockUI(session);
             try {
                 streamVariable.streamingStarted(startedEvent);
                 out = streamVariable.getOutputStream();
                 listenProgress = streamVariable.listenProgress();
             } finally {
-                session.unlock();
+                unlockUI(session);
             }
 
             // Gets the output target stream
@@ -557,13 +563,13 @@ public class FileUploadHandler implements RequestHandler {
                 if (listenProgress) {
                     // update progress if listener set and contentLength
                     // received
-                    session.lock();
+                    lockUI(session);
                     try {
                         StreamingProgressEventImpl progressEvent = new StreamingProgressEventImpl(
                                 filename, type, contentLength, totalBytes);
                         streamVariable.onProgress(progressEvent);
                     } finally {
-                        session.unlock();
+                        unlockUI(session);
                     }
                 }
                 if (streamVariable.isInterrupted()) {
@@ -575,11 +581,11 @@ public class FileUploadHandler implements RequestHandler {
             out.close();
             StreamingEndEvent event = new StreamingEndEventImpl(filename, type,
                     totalBytes);
-            session.lock();
+            lockUI(session);
             try {
                 streamVariable.streamingFinished(event);
             } finally {
-                session.unlock();
+                unlockUI(session);
             }
 
         } catch (UploadInterruptedException e) {
@@ -587,17 +593,17 @@ public class FileUploadHandler implements RequestHandler {
             tryToCloseStream(out);
             StreamingErrorEvent event = new StreamingErrorEventImpl(filename,
                     type, contentLength, totalBytes, e);
-            session.lock();
+            lockUI(session);
             try {
                 streamVariable.streamingFailed(event);
             } finally {
-                session.unlock();
+                unlockUI(session);
             }
             // Note, we are not throwing interrupted exception forward as it is
             // not a terminal level error like all other exception.
         } catch (final Exception e) {
             tryToCloseStream(out);
-            session.lock();
+            lockUI(session);
             try {
                 StreamingErrorEvent event = new StreamingErrorEventImpl(
                         filename, type, contentLength, totalBytes, e);
@@ -606,12 +612,34 @@ public class FileUploadHandler implements RequestHandler {
                 // terminalErrorHandler)
                 throw new UploadException(e);
             } finally {
-                session.unlock();
+                unlockUI(session);
             }
         }
         return startedEvent.isDisposed();
     }
 
+    /**
+     * Locks the UI that the upload is targeted to. The session is locked if
+     * there is no such UI or if per-UI locking is not enabled.
+     */
+    private static void lockUI(VaadinSession session) {
+        UI ui = UI.getCurrent();
+        if (ui != null && ui.getSession() == session) {
+            ui.lock();
+        } else {
+            session.lock();
+        }
+    }
+
+    private static void unlockUI(VaadinSession session) {
+        UI ui = UI.getCurrent();
+        if (ui != null && ui.getSession() == session) {
+            ui.unlock();
+        } else {
+            session.unlock();
+        }
+    }
+
     static void tryToCloseStream(OutputStream out) {
         try {
             // try to close output stream (e.g. file handle)
@@ -656,15 +684,16 @@ public class FileUploadHandler implements RequestHandler {
         out.close();
     }
 
-    private void cleanStreamVariable(VaadinSession session,
-            final ClientConnector owner, final String variableName) {
-        session.accessSynchronously(new Runnable() {
+    private void cleanStreamVariable(final ClientConnector owner,
+            final String variableName) {
+        final UI ui = owner.getUI();
+        // The connector tracker belongs to the UI, which is not protected by
+        // the session lock if per-UI locking is enabled
+        ui.accessSynchronously(new Runnable() {
             @Override
             public void run() {
-                owner.getUI()
-                        .getConnectorTracker()
-                        .cleanStreamVariable(owner.getConnectorId(),
-                                variableName);
+                ui.getConnectorTracker().cleanStreamVariable(
+                        owner.getConnectorId(), variableName);
             }
         });
     }
@@ -22,7 +22,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.SessionExpiredHandler;
-import com.vaadin.server.SynchronizedRequestHandler;
+import com.vaadin.server.UISynchronizedRequestHandler;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinResponse;
 import com.vaadin.server.VaadinSession;
@@ -40,7 +40,7 @@ import com.vaadin.ui.UI;
  * @author Vaadin Ltd
  * @since 7.1
  */
-public class HeartbeatHandler extends SynchronizedRequestHandler implements
+public class HeartbeatHandler extends UISynchronizedRequestHandler implements
         SessionExpiredHandler {
 
     @Override
@@ -49,16 +49,16 @@ public class HeartbeatHandler extends SynchronizedRequestHandler implements
     }
 
     /**
-     * Handles a heartbeat request for the given session. Reads the GET
-     * parameter named {@link UIConstants#UI_ID_PARAMETER} to identify the UI.
-     * If the UI is found in the session, sets it
+     * Handles a heartbeat request for the given session. The UI is identified
+     * by the GET parameter named {@link UIConstants#UI_ID_PARAMETER}. If the
+     * UI is found in the session, sets it
      * {@link UI#getLastHeartbeatTimestamp() heartbeat timestamp} to the current
      * time. Otherwise, writes a HTTP Not Found error to the response.
      */
     @Override
     public boolean synchronizedHandleRequest(VaadinSession session,
-            VaadinRequest request, VaadinResponse response) throws IOException {
-        UI ui = session.getService().findUI(request);
+            UI ui, VaadinRequest request, VaadinResponse response)
+            throws IOException {
         if (ui != null) {
             ui.setLastHeartbeatTimestamp(System.currentTimeMillis());
             // Ensure that the browser does not cache heartbeat responses.
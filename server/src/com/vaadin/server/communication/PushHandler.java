@@ -266,10 +266,23 @@ public class PushHandler extends AtmosphereResourceEventListenerAdapter
 
             UI ui = null;
             session.lock();
+            boolean sessionLocked = true;
+            UI lockedUi = null;
             try {
                 VaadinSession.setCurrent(session);
                 // Sets UI.currentInstance
                 ui = service.findUI(vaadinRequest);
+                if (ui != null && session.isPerUiLocking()) {
+                    // Only hold the lock of the UI while running the callback
+                    sessionLocked = false;
+                    session.unlock();
+                    ui.lock();
+                    lockedUi = ui;
+                    if (ui.getSession() != session) {
+                        // Removed while waiting for the lock
+                        ui = null;
+                    }
+                }
                 if (ui == null) {
                     sendNotificationAndDisconnect(resource,
                             UidlRequestHandler.getUINotFoundErrorJSON(service,
@@ -303,7 +316,11 @@ public class PushHandler extends AtmosphereResourceEventListenerAdapter
                 callErrorHandler(session, e);
             } finally {
                 try {
-                    session.unlock();
+                    if (lockedUi != null) {
+                        lockedUi.unlock();
+                    } else if (sessionLocked) {
+                        session.unlock();
+                    }
                 } catch (Exception e) {
                     getLogger().log(Level.WARNING,
                             "Error while unlocking session", e);
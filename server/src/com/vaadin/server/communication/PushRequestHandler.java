@@ -54,9 +54,11 @@ public class PushRequestHandler implements RequestHandler,
 
     private AtmosphereFramework atmosphere;
     private PushHandler pushHandler;
+    private VaadinServletService service;
 
     public PushRequestHandler(VaadinServletService service)
             throws ServiceException {
+        this.service = service;
 
         atmosphere = new AtmosphereFramework() {
             @Override
@@ -133,6 +135,7 @@ public class PushRequestHandler implements RequestHandler,
 
     public void destroy() {
         atmosphere.destroy();
+        AtmospherePushConnection.shutdownFlushScheduler(service);
     }
 
     /*
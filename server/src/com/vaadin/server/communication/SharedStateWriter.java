@@ -20,23 +20,39 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnector;
+import com.vaadin.server.JsonStreamWriter;
 import com.vaadin.server.PaintException;
 import com.vaadin.shared.communication.SharedState;
 import com.vaadin.ui.UI;
 
 /**
  * Serializes {@link SharedState shared state} changes to JSON.
+ * <p>
+ * The state of connectors that use the default
+ * {@link AbstractClientConnector#encodeState()} implementation is streamed
+ * directly to the writer. Connectors overriding
+ * {@link ClientConnector#encodeState()} are serialized through the
+ * {@link JSONObject} they return.
  * 
  * @author Vaadin Ltd
  * @since 7.1
  */
 public class SharedStateWriter implements Serializable {
 
+    /**
+     * Cache of whether a connector class can be streamed, i.e. whether it
+     * uses the default {@link AbstractClientConnector#encodeState()}.
+     */
+    private static final ConcurrentMap<Class<?>, Boolean> streamableTypes = new ConcurrentHashMap<Class<?>, Boolean>();
+
     /**
      * Writes a JSON object containing the pending state changes of the dirty
      * connectors of the given UI.
@@ -49,18 +65,39 @@ public class SharedStateWriter implements Serializable {
      *             If the serialization fails.
      */
     public void write(UI ui, Writer writer) throws IOException {
+        write(ui, new JsonStreamWriter(writer));
+    }
+
+    /**
+     * Writes a JSON object containing the pending state changes of the dirty
+     * connectors of the given UI.
+     * 
+     * @param ui
+     *            The UI whose state changes should be written.
+     * @param json
+     *            The streaming writer to use.
+     * @throws IOException
+     *             If the serialization fails.
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
 
         Collection<ClientConnector> dirtyVisibleConnectors = ui
                 .getConnectorTracker().getDirtyVisibleConnectors();
 
-        JSONObject sharedStates = new JSONObject();
+        json.beginObject();
         for (ClientConnector connector : dirtyVisibleConnectors) {
             // encode and send shared state
             try {
-                JSONObject stateJson = connector.encodeState();
+                if (isStreamable(connector)) {
+                    json.beginOptionalObject(connector.getConnectorId());
+                    ((AbstractClientConnector) connector).writeState(json);
+                    json.endObject();
+                } else {
+                    JSONObject stateJson = connector.encodeState();
 
-                if (stateJson != null && stateJson.length() != 0) {
-                    sharedStates.put(connector.getConnectorId(), stateJson);
+                    if (stateJson != null && stateJson.length() != 0) {
+                        json.name(connector.getConnectorId()).value(stateJson);
+                    }
                 }
             } catch (JSONException e) {
                 throw new PaintException(
@@ -70,6 +107,25 @@ public class SharedStateWriter implements Serializable {
                                 + e.getMessage(), e);
             }
         }
-        writer.write(sharedStates.toString());
+        json.endObject();
+    }
+
+    private static boolean isStreamable(ClientConnector connector) {
+        if (!(connector instanceof AbstractClientConnector)) {
+            return false;
+        }
+        Class<?> type = connector.getClass();
+        Boolean streamable = streamableTypes.get(type);
+        if (streamable == null) {
+            try {
+                streamable = Boolean.valueOf(type.getMethod("encodeState")
+                        .getDeclaringClass() == AbstractClientConnector.class);
+            } catch (NoSuchMethodException e) {
+                streamable = Boolean.FALSE;
+            }
+            // Same result regardless of which thread computes it
+            streamableTypes.put(type, streamable);
+        }
+        return streamable.booleanValue();
     }
 }
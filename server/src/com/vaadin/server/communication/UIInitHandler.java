@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -73,12 +74,19 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
 
             UI uI = getBrowserDetailsUI(request, session);
 
-            session.getCommunicationManager().repaintAll(uI);
-
             JSONObject params = new JSONObject();
-            params.put(UIConstants.UI_ID_PARAMETER, uI.getUIId());
-            String initialUIDL = getInitialUidl(request, uI);
-            params.put("uidl", initialUIDL);
+            // The session lock does not protect the UI from other threads if
+            // per-UI locking is enabled
+            uI.lock();
+            try {
+                session.getCommunicationManager().repaintAll(uI);
+
+                params.put(UIConstants.UI_ID_PARAMETER, uI.getUIId());
+                String initialUIDL = getInitialUidl(request, uI);
+                params.put("uidl", initialUIDL);
+            } finally {
+                uI.unlock();
+            }
 
             stringWriter.write(params.toString());
         } catch (JSONException e) {
@@ -204,22 +212,34 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
             ui.setSession(session);
         }
 
-        PushMode pushMode = provider.getPushMode(event);
-        if (pushMode == null) {
-            pushMode = session.getService().getDeploymentConfiguration()
-                    .getPushMode();
-        }
-        ui.getPushConfiguration().setPushMode(pushMode);
+        // The new UI is not yet available to other threads, but with per-UI
+        // locking it must be locked to be modified. UI.lock() is not used as
+        // the UI can not yet run pending tasks or push.
+        Lock uiLock = ui.getLockInstance();
+        uiLock.lock();
+        try {
+            PushMode pushMode = provider.getPushMode(event);
+            if (pushMode == null) {
+                pushMode = session.getService().getDeploymentConfiguration()
+                        .getPushMode();
+            }
+            ui.getPushConfiguration().setPushMode(pushMode);
 
-        Transport transport = provider.getPushTransport(event);
-        if (transport != null) {
-            ui.getPushConfiguration().setTransport(transport);
-        }
+            Transport transport = provider.getPushTransport(event);
+            if (transport != null) {
+                ui.getPushConfiguration().setTransport(transport);
+            }
 
-        // Set thread local here so it is available in init
-        UI.setCurrent(ui);
+            ui.getPushConfiguration().setCoalescingInterval(
+                    provider.getPushCoalescingInterval(event));
+
+            // Set thread local here so it is available in init
+            UI.setCurrent(ui);
 
-        ui.doInit(request, uiId.intValue(), embedId);
+            ui.doInit(request, uiId.intValue(), embedId);
+        } finally {
+            uiLock.unlock();
+        }
 
         session.addUI(ui);
 
@@ -270,7 +290,12 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
         // Fire fragment change if the fragment has changed
         String location = request.getParameter("v-loc");
         if (location != null) {
-            ui.getPage().updateLocation(location);
+            ui.lock();
+            try {
+                ui.getPage().updateLocation(location);
+            } finally {
+                ui.unlock();
+            }
         }
     }
 
@@ -28,7 +28,7 @@ import com.vaadin.server.Constants;
 import com.vaadin.server.LegacyCommunicationManager.InvalidUIDLSecurityKeyException;
 import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.SessionExpiredHandler;
-import com.vaadin.server.SynchronizedRequestHandler;
+import com.vaadin.server.UISynchronizedRequestHandler;
 import com.vaadin.server.SystemMessages;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinResponse;
@@ -49,7 +49,7 @@ import com.vaadin.ui.UI;
  * @author Vaadin Ltd
  * @since 7.1
  */
-public class UidlRequestHandler extends SynchronizedRequestHandler implements
+public class UidlRequestHandler extends UISynchronizedRequestHandler implements
         SessionExpiredHandler {
 
     public static final String UIDL_PATH = "UIDL/";
@@ -66,8 +66,8 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
 
     @Override
     public boolean synchronizedHandleRequest(VaadinSession session,
-            VaadinRequest request, VaadinResponse response) throws IOException {
-        UI uI = session.getService().findUI(request);
+            UI uI, VaadinRequest request, VaadinResponse response)
+            throws IOException {
         if (uI == null) {
             // This should not happen but it will if the UI has been closed. We
             // really don't want to see it in the server logs though
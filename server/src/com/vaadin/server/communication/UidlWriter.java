@@ -27,13 +27,13 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.server.ClientConnector;
 import com.vaadin.server.JsonPaintTarget;
+import com.vaadin.server.JsonStreamWriter;
 import com.vaadin.server.LegacyCommunicationManager;
 import com.vaadin.server.LegacyCommunicationManager.ClientCache;
 import com.vaadin.server.SystemMessages;
@@ -78,7 +78,7 @@ public class UidlWriter implements Serializable {
 
         // Purge pending access calls as they might produce additional changes
         // to write out
-        session.getService().runPendingAccessTasks(session);
+        session.getService().runPendingAccessTasks(ui);
 
         ArrayList<ClientConnector> dirtyVisibleConnectors = ui
                 .getConnectorTracker().getDirtyVisibleConnectors();
@@ -123,28 +123,27 @@ public class UidlWriter implements Serializable {
             // client after component creation but before legacy UIDL
             // processing.
 
+            // All JSON written by the writers below is streamed directly to
+            // the writer instead of going through org.json objects
+            JsonStreamWriter json = new JsonStreamWriter(writer);
+
             writer.write("\"state\":");
-            new SharedStateWriter().write(ui, writer);
+            new SharedStateWriter().write(ui, json);
             writer.write(", "); // close states
 
-            // TODO This should be optimized. The type only needs to be
-            // sent once for each connector id + on refresh. Use the same cache
-            // as
-            // widget mapping
+            // The type is only sent for connectors not yet initialized on the
+            // client side
 
             writer.write("\"types\":");
-            new ConnectorTypeWriter().write(ui, writer, paintTarget);
+            new ConnectorTypeWriter().write(ui, json, paintTarget);
             writer.write(", "); // close states
 
-            // Send update hierarchy information to the client.
-
-            // This could be optimized aswell to send only info if hierarchy has
-            // actually changed. Much like with the shared state. Note though
-            // that an empty hierarchy is information aswell (e.g. change from 1
-            // child to 0 children)
+            // Send update hierarchy information to the client. Only
+            // hierarchies that have changed since they were last sent are
+            // included.
 
             writer.write("\"hierarchy\":");
-            new ConnectorHierarchyWriter().write(ui, writer);
+            new ConnectorHierarchyWriter().write(ui, json);
             writer.write(", "); // close hierarchy
 
             // send server to client RPC calls for components in the UI, in call
@@ -154,7 +153,7 @@ public class UidlWriter implements Serializable {
             // which they were performed, remove the calls from components
 
             writer.write("\"rpc\" : ");
-            new ClientRpcWriter().write(ui, writer);
+            new ClientRpcWriter().write(ui, json);
             writer.write(", "); // close rpc
 
             uiConnectorTracker.markAllConnectorsClean();
@@ -275,14 +274,14 @@ public class UidlWriter implements Serializable {
 
             // Include script dependencies in output if there are any
             if (!scriptDependencies.isEmpty()) {
-                writer.write(", \"scriptDependencies\": "
-                        + new JSONArray(scriptDependencies).toString());
+                writer.write(", \"scriptDependencies\": ");
+                writeStringArray(json, scriptDependencies);
             }
 
             // Include style dependencies in output if there are any
             if (!styleDependencies.isEmpty()) {
-                writer.write(", \"styleDependencies\": "
-                        + new JSONArray(styleDependencies).toString());
+                writer.write(", \"styleDependencies\": ");
+                writeStringArray(json, styleDependencies);
             }
 
             if (manager.getDragAndDropService() != null) {
@@ -309,9 +308,21 @@ public class UidlWriter implements Serializable {
      * @throws IOException
      */
     private void writePerformanceData(UI ui, Writer writer) throws IOException {
-        writer.write(String.format(", \"timings\":[%d, %d]", ui.getSession()
-                .getCumulativeRequestDuration(), ui.getSession()
-                .getLastRequestDuration()));
+        writer.write(", \"timings\":[");
+        writer.write(Long.toString(ui.getSession()
+                .getCumulativeRequestDuration()));
+        writer.write(", ");
+        writer.write(Long.toString(ui.getSession().getLastRequestDuration()));
+        writer.write("]");
+    }
+
+    private static void writeStringArray(JsonStreamWriter json,
+            List<String> values) throws IOException {
+        json.beginArray();
+        for (String value : values) {
+            json.value(value);
+        }
+        json.endArray();
     }
 
     private static final Logger getLogger() {
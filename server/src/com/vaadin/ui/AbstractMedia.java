@@ -30,7 +30,6 @@ import com.vaadin.server.Resource;
 import com.vaadin.server.ResourceReference;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinResponse;
-import com.vaadin.server.VaadinSession;
 import com.vaadin.shared.communication.URLReference;
 import com.vaadin.shared.ui.AbstractMediaState;
 import com.vaadin.shared.ui.MediaControl;
@@ -91,8 +90,8 @@ public abstract class AbstractMedia extends AbstractComponent {
 
         DownloadStream stream;
 
-        VaadinSession session = getSession();
-        session.lock();
+        UI ui = getUI();
+        ui.lock();
         try {
             List<URLReference> sources = getState().sources;
 
@@ -110,7 +109,7 @@ public abstract class AbstractMedia extends AbstractComponent {
                     .getResource(reference);
             stream = resource.getStream();
         } finally {
-            session.unlock();
+            ui.unlock();
         }
 
         stream.writeResponse(request, response);
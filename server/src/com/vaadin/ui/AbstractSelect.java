@@ -47,6 +47,7 @@ import com.vaadin.server.PaintTarget;
 import com.vaadin.server.Resource;
 import com.vaadin.shared.ui.combobox.FilteringMode;
 import com.vaadin.shared.ui.dd.VerticalDropLocation;
+import com.vaadin.shared.ui.optiongroup.OptionGroupConstants;
 
 /**
  * <p>
@@ -268,6 +269,22 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
     // Caption (Item / Property) change listeners
     CaptionChangeListener captionChangeListener;
 
+    /**
+     * Number of options sent to the client at a time, 0 to send all options.
+     */
+    private int optionPageLength = 0;
+
+    /**
+     * Number of options the client has requested when options are paged.
+     */
+    private int optionLimit = 0;
+
+    /**
+     * Ids of the options painted in the last paint, or null if all options
+     * were painted.
+     */
+    private Set<Object> paintedOptionIds = null;
+
     /* Constructors */
 
     /**
@@ -361,6 +378,10 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
         getCaptionChangeListener().clear();
         // Paints the options and create array of selected id keys
 
+        // Only the first optionLimit options are painted when paging
+        final boolean paged = optionPageLength > 0;
+        paintedOptionIds = paged ? new HashSet<Object>() : null;
+
         target.startTag("options");
         int keyIndex = 0;
         // Support for external null selection item id
@@ -375,11 +396,15 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
                 selectedKeys[keyIndex++] = itemIdMapper.key(id);
             }
             target.endTag("so");
+            if (paged) {
+                paintedOptionIds.add(id);
+            }
         }
 
         final Iterator<?> i = getItemIds().iterator();
+        int paintedOptions = 0;
         // Paints the available selection options from data source
-        while (i.hasNext()) {
+        while (i.hasNext() && (!paged || paintedOptions < optionLimit)) {
             // Gets the option attribute values
             final Object id = i.next();
             if (!isNullSelectionAllowed() && id != null
@@ -397,6 +422,31 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
                 selectedKeys[keyIndex++] = key;
             }
             target.endTag("so");
+            if (paged) {
+                paintedOptionIds.add(id);
+            }
+            paintedOptions++;
+        }
+        if (paged) {
+            if (i.hasNext()) {
+                target.addAttribute(
+                        OptionGroupConstants.ATTRIBUTE_MORE_OPTIONS, true);
+            }
+            // Selected options are always painted so that the client can show
+            // and send back the whole selection
+            for (final Object id : getSelectedOptionIds()) {
+                if (paintedOptionIds.contains(id) || !containsId(id)) {
+                    continue;
+                }
+                getCaptionChangeListener().addNotifierForItem(id);
+                target.startTag("so");
+                paintItem(target, id);
+                if (keyIndex < selectedKeys.length) {
+                    selectedKeys[keyIndex++] = itemIdMapper.key(id);
+                }
+                target.endTag("so");
+                paintedOptionIds.add(id);
+            }
         }
         target.endTag("options");
         // ==
@@ -409,6 +459,22 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
 
     }
 
+    /**
+     * Gets the ids of the currently selected options.
+     * 
+     * @return the selected item ids, empty if nothing is selected
+     */
+    private Collection<?> getSelectedOptionIds() {
+        final Object value = getValue();
+        if (isMultiSelect()) {
+            return (Set<?>) value;
+        } else if (value == null) {
+            return Collections.emptySet();
+        } else {
+            return Collections.singleton(value);
+        }
+    }
+
     protected void paintItem(PaintTarget target, Object itemId)
             throws PaintException {
         final String key = itemIdMapper.key(itemId);
@@ -444,6 +510,14 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
             }
         }
 
+        // Sends the next page of options
+        if (variables
+                .containsKey(OptionGroupConstants.VARIABLE_LOAD_MORE_OPTIONS)
+                && optionPageLength > 0 && optionLimit < size()) {
+            optionLimit += optionPageLength;
+            markAsDirty();
+        }
+
         // Selection change
         if (variables.containsKey("selected")) {
             final String[] clientSideSelectedKeys = (String[]) variables
@@ -591,13 +665,60 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
 
     /**
      * Gets the visible item ids. In Select, this returns list of all item ids,
-     * but can be overriden in subclasses if they paint only part of the items
-     * to the terminal or null if no items is visible.
+     * or the ids of the painted options if options are paged, but can be
+     * overriden in subclasses if they paint only part of the items to the
+     * terminal or null if no items is visible.
      */
     public Collection<?> getVisibleItemIds() {
+        if (paintedOptionIds != null) {
+            return Collections.unmodifiableSet(paintedOptionIds);
+        }
         return getItemIds();
     }
 
+    /**
+     * Sets the number of options that are sent to the client at a time. The
+     * client requests the next page of options when the user scrolls to the
+     * end of the painted options or, in drop-down and option group selects,
+     * selects the placeholder shown after them. Selected options are always
+     * sent, and caption change listeners are registered only for the options
+     * that have been sent.
+     * <p>
+     * Paging is supported by the selects that paint their options with
+     * {@link #paintContent(PaintTarget)}, such as {@link ListSelect},
+     * {@link NativeSelect}, {@link OptionGroup} and {@link TwinColSelect}.
+     * <p>
+     * By default the page length is 0, and all options are sent at once.
+     * 
+     * @param optionPageLength
+     *            the number of options to send at a time, or 0 to send all
+     *            options
+     * @since 7.2
+     */
+    public void setOptionPageLength(int optionPageLength) {
+        if (optionPageLength < 0) {
+            throw new IllegalArgumentException(
+                    "Option page length can not be negative");
+        }
+        if (this.optionPageLength != optionPageLength) {
+            this.optionPageLength = optionPageLength;
+            optionLimit = optionPageLength;
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Gets the number of options sent to the client at a time.
+     * 
+     * @see #setOptionPageLength(int)
+     * @return the number of options to send at a time, or 0 if all options
+     *         are sent
+     * @since 7.2
+     */
+    public int getOptionPageLength() {
+        return optionPageLength;
+    }
+
     /* Property methods */
 
     /**
@@ -1670,8 +1791,11 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
      */
     @Override
     public void containerItemSetChange(Container.ItemSetChangeEvent event) {
-        // Clears the item id mapping table
-        itemIdMapper.removeAll();
+        // Clears the item id mapping table unless items were only added, in
+        // which case the keys of the existing items remain valid
+        if (!(event instanceof Container.Indexed.ItemAddEvent)) {
+            itemIdMapper.removeAll();
+        }
 
         // Notify all listeners
         fireItemSetChange();
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.ui;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the lower case item captions of a select, used by
+ * {@link ComboBox} to filter options in memory. Options starting with a
+ * prefix are found with a binary search in the captions sorted
+ * alphabetically, and options containing a string are found by checking only
+ * the items whose captions contain its least common trigram. The index holds
+ * one copy of each caption, so its size grows linearly with the total length
+ * of the captions.
+ * 
+ * Matching items are always returned in container order. The index is not
+ * updated when the items or their captions change, a new index must be built
+ * instead.
+ * 
+ * This class is subject to change and should not be used outside Vaadin core.
+ * 
+ * @since 7.2
+ */
+final class CaptionIndex implements Serializable {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final Object[] itemIds;
+
+    /**
+     * Lower case captions by item position, null for items without a caption.
+     */
+    private final String[] captions;
+
+    /**
+     * Positions of the captioned items, sorted by caption. Built when first
+     * needed.
+     */
+    private int[] sortedPositions;
+
+    /**
+     * Positions of the items whose captions contain each trigram, in
+     * ascending order. Built when first needed.
+     */
+    private Map<String, int[]> gramPositions;
+
+    /**
+     * Creates an index of the current item captions of a select.
+     * 
+     * @param select
+     *            the select whose items to index
+     */
+    CaptionIndex(AbstractSelect select) {
+        Collection<?> ids = select.getItemIds();
+        itemIds = ids.toArray();
+        captions = new String[itemIds.length];
+        for (int i = 0; i < itemIds.length; i++) {
+            String caption = select.getItemCaption(itemIds[i]);
+            if (caption != null && !caption.equals("")) {
+                captions[i] = caption.toLowerCase();
+            }
+        }
+    }
+
+    /**
+     * Finds the items whose captions start with the given string.
+     * 
+     * @param prefix
+     *            a non-empty lower case string
+     * @return the matching item ids in container order
+     */
+    List<Object> findStartingWith(String prefix) {
+        int[] sorted = getSortedPositions();
+        int first = 0;
+        int last = sorted.length;
+        // Find the first caption not before the prefix
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (captions[sorted[middle]].compareTo(prefix) < 0) {
+                first = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        // The captions starting with the prefix follow it consecutively
+        int end = sorted.length;
+        last = first;
+        while (last < end) {
+            int middle = (last + end) >>> 1;
+            if (captions[sorted[middle]].startsWith(prefix)) {
+                last = middle + 1;
+            } else {
+                end = middle;
+            }
+        }
+        int[] matches = Arrays.copyOfRange(sorted, first, last);
+        Arrays.sort(matches);
+        return toItemIds(matches, matches.length);
+    }
+
+    /**
+     * Finds the items whose captions contain the given string.
+     * 
+     * @param string
+     *            a non-empty lower case string
+     * @return the matching item ids in container order
+     */
+    List<Object> findContaining(String string) {
+        int[] candidates = null;
+        if (string.length() >= GRAM_LENGTH) {
+            Map<String, int[]> grams = getGramPositions();
+            for (int i = 0; i + GRAM_LENGTH <= string.length(); i++) {
+                int[] positions = grams.get(string.substring(i, i
+                        + GRAM_LENGTH));
+                if (positions == null) {
+                    return Collections.emptyList();
+                }
+                if (candidates == null || positions.length < candidates.length) {
+                    candidates = positions;
+                }
+            }
+        }
+
+        int[] matches;
+        int count = 0;
+        if (candidates != null) {
+            matches = new int[candidates.length];
+            for (int position : candidates) {
+                if (captions[position].indexOf(string) > -1) {
+                    matches[count++] = position;
+                }
+            }
+        } else {
+            // Too short to use the trigrams, check every caption
+            matches = new int[captions.length];
+            for (int position = 0; position < captions.length; position++) {
+                String caption = captions[position];
+                if (caption != null && caption.indexOf(string) > -1) {
+                    matches[count++] = position;
+                }
+            }
+        }
+        return toItemIds(matches, count);
+    }
+
+    private List<Object> toItemIds(int[] positions, int count) {
+        List<Object> ids = new ArrayList<Object>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(itemIds[positions[i]]);
+        }
+        return ids;
+    }
+
+    private int[] getSortedPositions() {
+        if (sortedPositions == null) {
+            List<Integer> positions = new ArrayList<Integer>(captions.length);
+            for (int i = 0; i < captions.length; i++) {
+                if (captions[i] != null) {
+                    positions.add(i);
+                }
+            }
+            Collections.sort(positions, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return captions[o1].compareTo(captions[o2]);
+                }
+            });
+            sortedPositions = new int[positions.size()];
+            for (int i = 0; i < sortedPositions.length; i++) {
+                sortedPositions[i] = positions.get(i);
+            }
+        }
+        return sortedPositions;
+    }
+
+    private Map<String, int[]> getGramPositions() {
+        if (gramPositions == null) {
+            Map<String, PositionList> lists = new HashMap<String, PositionList>();
+            for (int position = 0; position < captions.length; position++) {
+                String caption = captions[position];
+                if (caption == null) {
+                    continue;
+                }
+                for (int i = 0; i + GRAM_LENGTH <= caption.length(); i++) {
+                    String gram = caption.substring(i, i + GRAM_LENGTH);
+                    PositionList list = lists.get(gram);
+                    if (list == null) {
+                        list = new PositionList();
+                        lists.put(gram, list);
+                    }
+                    list.add(position);
+                }
+            }
+            gramPositions = new HashMap<String, int[]>(lists.size() * 4 / 3 + 1);
+            for (Map.Entry<String, PositionList> entry : lists.entrySet()) {
+                gramPositions.put(entry.getKey(), entry.getValue().toArray());
+            }
+        }
+        return gramPositions;
+    }
+
+    /**
+     * A growable list of ascending item positions that ignores repeated
+     * positions.
+     */
+    private static class PositionList implements Serializable {
+        private int[] positions = new int[4];
+        private int size = 0;
+
+        void add(int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(positions, size);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.vaadin.data.Container;
+import com.vaadin.data.Property;
 import com.vaadin.data.util.filter.SimpleStringFilter;
 import com.vaadin.event.FieldEvents;
 import com.vaadin.event.FieldEvents.BlurEvent;
@@ -76,6 +77,21 @@ public class ComboBox extends AbstractSelect implements
      */
     private List<Object> filteredOptions;
 
+    /**
+     * Index of the item captions, used only by the in-memory filtering system.
+     * Built when first needed and discarded when the items or their captions
+     * change, see {@link #getFilteredOptions()}.
+     */
+    private transient CaptionIndex captionIndex;
+
+    /**
+     * The container {@link #captionIndexListener} listens to while there is a
+     * caption index, or null if none.
+     */
+    private Property.ValueChangeNotifier observedCaptionContainer;
+
+    private final CaptionIndexListener captionIndexListener = new CaptionIndexListener();
+
     /**
      * Flag to indicate that request repaint is called by filter request only
      */
@@ -581,6 +597,15 @@ public class ComboBox extends AbstractSelect implements
      * This can be less efficient than using container filters, so use
      * {@link #getOptionsWithFilter(boolean)} if possible (filterable container
      * and suitable item caption mode etc.).
+     * <p>
+     * The options are matched against an index of the item captions that is
+     * rebuilt when the item set, the container, the caption mode or an
+     * explicit caption changes. Caption property changes are noticed when the
+     * container is a {@link Property.ValueChangeNotifier}, such as
+     * {@link com.vaadin.data.util.IndexedContainer}, or when the item has been
+     * painted. Otherwise the index is not updated until the item set changes,
+     * because listening to the properties of every item would be too costly
+     * for large containers.
      * 
      * @return
      */
@@ -595,43 +620,137 @@ public class ComboBox extends AbstractSelect implements
         if (filterstring.equals(prevfilterstring)) {
             return filteredOptions;
         }
-
-        Collection<?> items;
-        if (prevfilterstring != null
-                && filterstring.startsWith(prevfilterstring)) {
-            items = filteredOptions;
-        } else {
-            items = getItemIds();
-        }
         prevfilterstring = filterstring;
 
-        filteredOptions = new LinkedList<Object>();
-        for (final Iterator<?> it = items.iterator(); it.hasNext();) {
-            final Object itemId = it.next();
-            String caption = getItemCaption(itemId);
-            if (caption == null || caption.equals("")) {
-                continue;
-            } else {
-                caption = caption.toLowerCase();
-            }
-            switch (filteringMode) {
-            case CONTAINS:
-                if (caption.indexOf(filterstring) > -1) {
-                    filteredOptions.add(itemId);
-                }
-                break;
-            case STARTSWITH:
-            default:
-                if (caption.startsWith(filterstring)) {
-                    filteredOptions.add(itemId);
-                }
-                break;
-            }
+        if (captionIndex == null) {
+            captionIndex = new CaptionIndex(this);
+            observeIndexedCaptions();
+        }
+        switch (filteringMode) {
+        case CONTAINS:
+            filteredOptions = captionIndex.findContaining(filterstring);
+            break;
+        case STARTSWITH:
+        default:
+            filteredOptions = captionIndex.findStartingWith(filterstring);
+            break;
         }
 
         return filteredOptions;
     }
 
+    /**
+     * Discards the caption index and the cached filtered options after the
+     * items or their captions have changed.
+     */
+    private void resetCaptionIndex() {
+        stopObservingIndexedCaptions();
+        captionIndex = null;
+        prevfilterstring = null;
+    }
+
+    @Override
+    protected void fireItemSetChange() {
+        resetCaptionIndex();
+        super.fireItemSetChange();
+    }
+
+    @Override
+    public void setContainerDataSource(Container newDataSource) {
+        resetCaptionIndex();
+        super.setContainerDataSource(newDataSource);
+    }
+
+    @Override
+    public void setItemCaption(Object itemId, String caption) {
+        resetCaptionIndex();
+        super.setItemCaption(itemId, caption);
+    }
+
+    @Override
+    public void setItemCaptionMode(ItemCaptionMode mode) {
+        resetCaptionIndex();
+        super.setItemCaptionMode(mode);
+    }
+
+    @Override
+    public void setItemCaptionPropertyId(Object propertyId) {
+        resetCaptionIndex();
+        super.setItemCaptionPropertyId(propertyId);
+    }
+
+    @Override
+    protected void firePropertySetChange() {
+        resetCaptionIndex();
+        super.firePropertySetChange();
+    }
+
+    /**
+     * Starts listening to the property value changes of the container the
+     * indexed captions are read from, if the container notifies about them.
+     * Only needed in the caption modes that read the captions from the items.
+     */
+    private void observeIndexedCaptions() {
+        // The listener may remain from before serialization
+        stopObservingIndexedCaptions();
+        ItemCaptionMode mode = getItemCaptionMode();
+        Container container = getContainerDataSource();
+        if ((mode == ItemCaptionMode.PROPERTY || mode == ItemCaptionMode.ITEM)
+                && container instanceof Property.ValueChangeNotifier) {
+            observedCaptionContainer = (Property.ValueChangeNotifier) container;
+            observedCaptionContainer
+                    .addValueChangeListener(captionIndexListener);
+        }
+    }
+
+    private void stopObservingIndexedCaptions() {
+        if (observedCaptionContainer != null) {
+            observedCaptionContainer
+                    .removeValueChangeListener(captionIndexListener);
+            observedCaptionContainer = null;
+        }
+    }
+
+    @Override
+    protected CaptionChangeListener getCaptionChangeListener() {
+        if (captionChangeListener == null) {
+            captionChangeListener = new IndexedCaptionChangeListener();
+        }
+        return captionChangeListener;
+    }
+
+    /**
+     * Caption change listener that also discards the caption index when the
+     * caption of a painted item changes.
+     */
+    private class IndexedCaptionChangeListener extends CaptionChangeListener {
+
+        @Override
+        public void valueChange(com.vaadin.data.Property.ValueChangeEvent event) {
+            resetCaptionIndex();
+            super.valueChange(event);
+        }
+
+        @Override
+        public void itemPropertySetChange(
+                com.vaadin.data.Item.PropertySetChangeEvent event) {
+            resetCaptionIndex();
+            super.itemPropertySetChange(event);
+        }
+    }
+
+    /**
+     * Discards the caption index when a property value of the container
+     * changes.
+     */
+    private class CaptionIndexListener implements Property.ValueChangeListener {
+
+        @Override
+        public void valueChange(Property.ValueChangeEvent event) {
+            resetCaptionIndex();
+        }
+    }
+
     /**
      * Invoked when the value of a variable has changed.
      * 
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -36,7 +37,9 @@ import org.json.JSONObject;
 import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnector;
 import com.vaadin.server.GlobalResourceHandler;
+import com.vaadin.server.JsonCodec;
 import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.StateSnapshot;
 import com.vaadin.server.StreamVariable;
 
 /**
@@ -72,10 +75,34 @@ public class ConnectorTracker implements Serializable {
      */
     private final Set<ClientConnector> unregisteredConnectors = new HashSet<ClientConnector>();
 
+    /**
+     * Connectors that have been registered or marked dirty since the last
+     * time {@link #cleanConnectorMap()} was invoked. Changes that affect the
+     * visibility of a connector always mark the connector or one of its
+     * ancestors dirty, so only the hierarchies below these connectors need to
+     * be checked for connectors that are no longer visible.
+     */
+    private final Set<ClientConnector> changedConnectors = new HashSet<ClientConnector>();
+
     private boolean writingResponse = false;
 
     private UI uI;
-    private transient Map<ClientConnector, JSONObject> diffStates = new HashMap<ClientConnector, JSONObject>();
+    /**
+     * Snapshots of the state last sent to the client for each connector.
+     */
+    private HashMap<ClientConnector, StateSnapshot> diffStates = new HashMap<ClientConnector, StateSnapshot>();
+
+    /**
+     * Diff states that have been handed out as {@link JSONObject}s through
+     * {@link #getDiffState(ClientConnector)} and might have been modified.
+     * They are converted back to snapshots the next time they are needed.
+     */
+    private transient Map<ClientConnector, JSONObject> jsonDiffStates;
+
+    /**
+     * The ids of the children of each connector as last sent to the client.
+     */
+    private HashMap<ClientConnector, List<String>> sentChildIds = new HashMap<ClientConnector, List<String>>();
 
     /** Maps connectorIds to a map of named StreamVariables */
     private Map<String, Map<String, StreamVariable>> pidToNameToStreamVariable;
@@ -152,6 +179,7 @@ public class ConnectorTracker implements Serializable {
                                     connectorId });
         }
         dirtyConnectors.add(connector);
+        changedConnectors.add(connector);
     }
 
     /**
@@ -255,7 +283,10 @@ public class ConnectorTracker implements Serializable {
      */
     public void markAllClientSidesUninitialized() {
         uninitializedConnectors.addAll(connectorIdToConnector.values());
+        changedConnectors.clear();
         diffStates.clear();
+        jsonDiffStates = null;
+        sentChildIds.clear();
     }
 
     /**
@@ -288,7 +319,7 @@ public class ConnectorTracker implements Serializable {
 
             removeFromGlobalResourceHandler(connector);
             uninitializedConnectors.remove(connector);
-            diffStates.remove(connector);
+            removeClientSideState(connector);
         }
         unregisteredConnectors.clear();
 
@@ -298,48 +329,132 @@ public class ConnectorTracker implements Serializable {
                 + "and that all custom component containers call child.setParent(this) when a child is added and child.setParent(null) when the child is no longer used. "
                 + "See previous log messages for details.";
 
-        // remove detached components from paintableIdMap so they
-        // can be GC'ed
-        Iterator<String> iterator = connectorIdToConnector.keySet().iterator();
+        // Do this expensive check only with assertions enabled. Detached
+        // connectors are unregistered in detach() so this should never find
+        // anything.
+        assert removeDetachedConnectors();
 
-        while (iterator.hasNext()) {
-            String connectorId = iterator.next();
-            ClientConnector connector = connectorIdToConnector.get(connectorId);
-            if (getUIForConnector(connector) != uI) {
-                // If connector is no longer part of this uI,
-                // remove it from the map. If it is re-attached to the
-                // application at some point it will be re-added through
-                // registerConnector(connector)
-
-                // This code should never be called as cleanup should take place
-                // in detach()
-
-                getLogger()
-                        .log(Level.WARNING,
-                                "cleanConnectorMap unregistered connector {0}. This should have been done when the connector was detached.",
-                                getConnectorAndParentInfo(connector));
-
-                removeFromGlobalResourceHandler(connector);
-                uninitializedConnectors.remove(connector);
-                diffStates.remove(connector);
-                iterator.remove();
-            } else if (!uninitializedConnectors.contains(connector)
-                    && !LegacyCommunicationManager
-                            .isConnectorVisibleToClient(connector)) {
-                uninitializedConnectors.add(connector);
-                diffStates.remove(connector);
-                if (getLogger().isLoggable(Level.FINE)) {
-                    getLogger()
-                            .log(Level.FINE,
-                                    "cleanConnectorMap removed state for {0} as it is not visible",
-                                    getConnectorAndParentInfo(connector));
+        // Forget the client side state of connectors that are no longer
+        // visible. Only the hierarchies that have changed need to be checked.
+        Map<ClientConnector, Boolean> visibility = new HashMap<ClientConnector, Boolean>();
+        Set<ClientConnector> checked = new HashSet<ClientConnector>();
+        LinkedList<ClientConnector> stack = new LinkedList<ClientConnector>();
+        for (ClientConnector changed : changedConnectors) {
+            if (checked.contains(changed) || !isRegistered(changed)) {
+                continue;
+            }
+            if (getUIForConnector(changed) != uI) {
+                removeDetachedConnector(changed);
+                continue;
+            }
+            stack.add(changed);
+            while (!stack.isEmpty()) {
+                ClientConnector connector = stack.pop();
+                if (!checked.add(connector)) {
+                    continue;
+                }
+                if (!uninitializedConnectors.contains(connector)
+                        && isRegistered(connector)
+                        && !isVisibleToClient(connector, visibility)) {
+                    uninitializedConnectors.add(connector);
+                    removeClientSideState(connector);
+                    if (getLogger().isLoggable(Level.FINE)) {
+                        getLogger()
+                                .log(Level.FINE,
+                                        "cleanConnectorMap removed state for {0} as it is not visible",
+                                        getConnectorAndParentInfo(connector));
+                    }
+                }
+                for (ClientConnector child : AbstractClientConnector
+                        .getAllChildrenIterable(connector)) {
+                    stack.add(child);
                 }
             }
         }
+        changedConnectors.clear();
 
         cleanStreamVariables();
     }
 
+    /**
+     * Removes all connectors that are no longer attached to the UI from the
+     * connector map.
+     * 
+     * @return always <code>true</code>, to allow calling from an assertion
+     */
+    private boolean removeDetachedConnectors() {
+        for (ClientConnector connector : new ArrayList<ClientConnector>(
+                connectorIdToConnector.values())) {
+            if (getUIForConnector(connector) != uI) {
+                removeDetachedConnector(connector);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a connector that is no longer part of this UI from the connector
+     * map. If it is re-attached to the application at some point it will be
+     * re-added through {@link #registerConnector(ClientConnector)}.
+     */
+    private void removeDetachedConnector(ClientConnector connector) {
+        // This code should never be called as cleanup should take place in
+        // detach()
+        getLogger()
+                .log(Level.WARNING,
+                        "cleanConnectorMap unregistered connector {0}. This should have been done when the connector was detached.",
+                        getConnectorAndParentInfo(connector));
+
+        connectorIdToConnector.remove(connector.getConnectorId());
+        removeFromGlobalResourceHandler(connector);
+        uninitializedConnectors.remove(connector);
+        removeClientSideState(connector);
+    }
+
+    private boolean isRegistered(ClientConnector connector) {
+        return connectorIdToConnector.get(connector.getConnectorId()) == connector;
+    }
+
+    /**
+     * Checks if the connector is visible to the client in the same way as
+     * {@link LegacyCommunicationManager#isConnectorVisibleToClient(ClientConnector)}
+     * , but remembers the result for each ancestor so that checking many
+     * connectors in the same hierarchy does not walk up to the UI every time.
+     * 
+     * @param connector
+     *            the connector to check
+     * @param visibility
+     *            the already checked connectors mapped to their visibility
+     * @return <code>true</code> if the connector is visible to the client,
+     *         <code>false</code> otherwise
+     */
+    private static boolean isVisibleToClient(ClientConnector connector,
+            Map<ClientConnector, Boolean> visibility) {
+        Boolean visible = visibility.get(connector);
+        if (visible == null) {
+            ClientConnector parent = connector.getParent();
+            if (connector instanceof Component) {
+                Component component = (Component) connector;
+                if (!component.isVisible()) {
+                    visible = Boolean.FALSE;
+                } else if (parent instanceof SelectiveRenderer
+                        && !((SelectiveRenderer) parent).isRendered(component)) {
+                    visible = Boolean.FALSE;
+                } else if (parent == null) {
+                    // Only an UI is visible without a parent
+                    visible = Boolean.valueOf(component instanceof UI);
+                }
+            } else if (parent == null) {
+                visible = Boolean.FALSE;
+            }
+            if (visible == null) {
+                visible = Boolean.valueOf(isVisibleToClient(parent, visibility));
+            }
+            visibility.put(connector, visible);
+        }
+        return visible.booleanValue();
+    }
+
     private boolean isHierarchyComplete() {
         boolean noErrors = true;
 
@@ -426,6 +541,7 @@ public class ConnectorTracker implements Serializable {
         }
 
         dirtyConnectors.add(connector);
+        changedConnectors.add(connector);
     }
 
     /**
@@ -551,22 +667,175 @@ public class ConnectorTracker implements Serializable {
      */
     public ArrayList<ClientConnector> getDirtyVisibleConnectors() {
         ArrayList<ClientConnector> dirtyConnectors = new ArrayList<ClientConnector>();
+        Map<ClientConnector, Boolean> visibility = new HashMap<ClientConnector, Boolean>();
         for (ClientConnector c : getDirtyConnectors()) {
-            if (LegacyCommunicationManager.isConnectorVisibleToClient(c)) {
+            if (isVisibleToClient(c, visibility)) {
                 dirtyConnectors.add(c);
             }
         }
         return dirtyConnectors;
     }
 
+    /**
+     * Gets the state last sent to the client for the given connector as a
+     * {@link JSONObject}. Modifications to the returned object are taken into
+     * account the next time the state of the connector is encoded.
+     * <p>
+     * The diff state is internally stored as a {@link StateSnapshot} and
+     * converting it to JSON is relatively expensive. Use
+     * {@link #getDiffStateSnapshot(ClientConnector)} when the JSON form is not
+     * needed.
+     * 
+     * @param connector
+     *            the connector to get the diff state for
+     * @return the diff state, or <code>null</code> if no state has been sent
+     *         for the connector
+     */
     public JSONObject getDiffState(ClientConnector connector) {
         assert getConnector(connector.getConnectorId()) == connector;
-        return diffStates.get(connector);
+        if (jsonDiffStates != null && jsonDiffStates.containsKey(connector)) {
+            return jsonDiffStates.get(connector);
+        }
+        StateSnapshot snapshot = diffStates.get(connector);
+        if (snapshot == null) {
+            return null;
+        }
+        try {
+            JSONObject json = snapshot.toJson();
+            if (jsonDiffStates == null) {
+                jsonDiffStates = new HashMap<ClientConnector, JSONObject>();
+            }
+            jsonDiffStates.put(connector, json);
+            return json;
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+    /**
+     * Sets the state last sent to the client for the given connector.
+     * 
+     * @param connector
+     *            the connector to set the diff state for
+     * @param diffState
+     *            the encoded state of the connector
+     */
     public void setDiffState(ClientConnector connector, JSONObject diffState) {
         assert getConnector(connector.getConnectorId()) == connector;
-        diffStates.put(connector, diffState);
+        try {
+            setDiffStateSnapshot(connector, JsonCodec.createStateSnapshot(
+                    diffState, connector.getStateType()));
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the state last sent to the client for the given
+     * connector.
+     * 
+     * @param connector
+     *            the connector to get the diff state for
+     * @return the diff state snapshot, or <code>null</code> if no state has
+     *         been sent for the connector
+     * @since 7.2
+     */
+    public StateSnapshot getDiffStateSnapshot(ClientConnector connector) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        if (jsonDiffStates != null) {
+            JSONObject json = jsonDiffStates.remove(connector);
+            if (json != null) {
+                // Might have been modified through getDiffState()
+                setDiffState(connector, json);
+            }
+        }
+        return diffStates.get(connector);
+    }
+
+    /**
+     * Sets a snapshot of the state last sent to the client for the given
+     * connector.
+     * 
+     * @param connector
+     *            the connector to set the diff state for
+     * @param snapshot
+     *            the snapshot of the encoded state
+     * @since 7.2
+     */
+    public void setDiffStateSnapshot(ClientConnector connector,
+            StateSnapshot snapshot) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        if (jsonDiffStates != null) {
+            jsonDiffStates.remove(connector);
+        }
+        diffStates.put(connector, snapshot);
+    }
+
+    /**
+     * Forgets everything that has been sent to the client for the given
+     * connector.
+     */
+    private void removeClientSideState(ClientConnector connector) {
+        diffStates.remove(connector);
+        if (jsonDiffStates != null) {
+            jsonDiffStates.remove(connector);
+        }
+        sentChildIds.remove(connector);
+    }
+
+    /**
+     * Gets the ids of the children of the given connector as last sent to the
+     * client.
+     * 
+     * @param connector
+     *            the connector to get the child ids for
+     * @return a list of child connector ids, or <code>null</code> if the
+     *         hierarchy of the connector has not been sent since it was last
+     *         initialized on the client side
+     * @since 7.2
+     */
+    public List<String> getSentChildIds(ClientConnector connector) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        return sentChildIds.get(connector);
+    }
+
+    /**
+     * Records the ids of the children of the given connector that have been
+     * sent to the client. Used to avoid sending the hierarchy of a connector
+     * again if it has not changed.
+     * 
+     * @param connector
+     *            the connector to set the child ids for
+     * @param childIds
+     *            the list of child connector ids sent to the client
+     * @since 7.2
+     */
+    public void setSentChildIds(ClientConnector connector, List<String> childIds) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        sentChildIds.put(connector, childIds);
+    }
+
+    /**
+     * Estimates the memory used by the diff states of the connectors in this
+     * UI. The estimate is approximate and intended for monitoring. Diff states
+     * currently held in JSON form because they were requested through
+     * {@link #getDiffState(ClientConnector)} are included in addition to the
+     * snapshots they were created from.
+     * 
+     * @return the estimated size of the diff states in bytes
+     * @since 7.2
+     */
+    public long estimateDiffStateSize() {
+        long size = 0;
+        for (StateSnapshot snapshot : diffStates.values()) {
+            size += snapshot.estimateSize();
+        }
+        if (jsonDiffStates != null) {
+            for (JSONObject json : jsonDiffStates.values()) {
+                size += StateSnapshot.estimateSize(json);
+            }
+        }
+        return size;
     }
 
     public boolean isDirty(ClientConnector connector) {
@@ -624,39 +893,15 @@ public class ConnectorTracker implements Serializable {
         this.writingResponse = writingResponse;
     }
 
-    /* Special serialization to JSONObjects which are not serializable */
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-        // Convert JSONObjects in diff state to String representation as
-        // JSONObject is not serializable
-        HashMap<ClientConnector, String> stringDiffStates = new HashMap<ClientConnector, String>(
-                diffStates.size());
-        for (ClientConnector key : diffStates.keySet()) {
-            stringDiffStates.put(key, diffStates.get(key).toString());
-        }
-        out.writeObject(stringDiffStates);
-    };
-
-    /* Special serialization to JSONObjects which are not serializable */
-    private void readObject(java.io.ObjectInputStream in) throws IOException,
-            ClassNotFoundException {
-        in.defaultReadObject();
-
-        // Read String versions of JSONObjects and parse into JSONObjects as
-        // JSONObject is not serializable
-        diffStates = new HashMap<ClientConnector, JSONObject>();
-        @SuppressWarnings("unchecked")
-        HashMap<ClientConnector, String> stringDiffStates = (HashMap<ClientConnector, String>) in
-                .readObject();
-        diffStates = new HashMap<ClientConnector, JSONObject>();
-        for (ClientConnector key : stringDiffStates.keySet()) {
-            try {
-                diffStates.put(key, new JSONObject(stringDiffStates.get(key)));
-            } catch (JSONException e) {
-                throw new IOException(e);
+        // Include changes made through getDiffState()
+        if (jsonDiffStates != null) {
+            for (ClientConnector connector : new ArrayList<ClientConnector>(
+                    jsonDiffStates.keySet())) {
+                getDiffStateSnapshot(connector);
             }
         }
-
+        out.defaultWriteObject();
     }
 
     /**
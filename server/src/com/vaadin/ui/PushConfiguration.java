@@ -27,6 +27,11 @@ import com.vaadin.shared.ui.ui.UIState.PushConfigurationState;
 
 /**
  * Provides method for configuring the push channel.
+ * <p>
+ * This interface is not meant to be implemented outside the framework. New
+ * methods may be added to it in minor versions, e.g.
+ * {@link #setCoalescingInterval(int)} in Vaadin 7.2, so custom implementations
+ * must be updated when upgrading.
  * 
  * @since 7.1
  * @author Vaadin Ltd
@@ -138,10 +143,42 @@ public interface PushConfiguration extends Serializable {
      */
     public void setParameter(String parameter, String value);
 
+    /**
+     * Returns the push coalescing interval in milliseconds, see
+     * {@link #setCoalescingInterval(int)}.
+     * 
+     * @since 7.2
+     * @return the minimum time between pushed messages in milliseconds, or 0
+     *         if changes are pushed right away
+     */
+    public int getCoalescingInterval();
+
+    /**
+     * Sets the minimum time between two messages pushed to the client. If
+     * {@link UI#push()} is called, either explicitly or automatically, before
+     * the interval has elapsed since the previous message, the changes are not
+     * sent right away. Instead, changes keep accumulating and a single message
+     * containing all of them is pushed when the interval has elapsed. The
+     * interval is thus also the maximum additional latency caused by
+     * coalescing.
+     * <p>
+     * This is useful for UIs that are updated very frequently from background
+     * threads, as pushing each small update separately causes overhead both on
+     * the server and in the browser. Responses to requests from the client are
+     * never delayed.
+     * 
+     * @since 7.2
+     * @param coalescingInterval
+     *            the minimum time between pushed messages in milliseconds, or
+     *            0 to push changes right away
+     */
+    public void setCoalescingInterval(int coalescingInterval);
+
 }
 
 class PushConfigurationImpl implements PushConfiguration {
     private UI ui;
+    private int coalescingInterval = 0;
 
     public PushConfigurationImpl(UI ui) {
         this.ui = ui;
@@ -264,6 +301,20 @@ class PushConfigurationImpl implements PushConfiguration {
 
     }
 
+    @Override
+    public int getCoalescingInterval() {
+        return coalescingInterval;
+    }
+
+    @Override
+    public void setCoalescingInterval(int coalescingInterval) {
+        if (coalescingInterval < 0) {
+            throw new IllegalArgumentException(
+                    "Coalescing interval cannot be negative");
+        }
+        this.coalescingInterval = coalescingInterval;
+    }
+
     private PushConfigurationState getState() {
         return ui.getState().pushConfiguration;
     }
@@ -4435,9 +4435,11 @@ public class Table extends AbstractSelect implements Action.Container,
 
         super.containerItemSetChange(event);
 
-        // super method clears the key map, must inform client about this to
-        // avoid getting invalid keys back (#8584)
-        keyMapperReset = true;
+        // super method clears the key map unless items were only added, must
+        // inform client about this to avoid getting invalid keys back (#8584)
+        if (!(event instanceof Container.Indexed.ItemAddEvent)) {
+            keyMapperReset = true;
+        }
 
         // ensure that page still has first item in page, ignore buffer refresh
         // (forced in this method)
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -120,6 +121,29 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
      */
     private ItemDescriptionGenerator itemDescriptionGenerator;
 
+    /**
+     * The number of children painted at a time for an expanded item, 0 to
+     * paint all children.
+     */
+    private int childPageLength = 0;
+
+    /**
+     * The maximum number of items painted in one response, 0 for no limit.
+     */
+    private int maxPaintedItems = 0;
+
+    /**
+     * The number of children painted so far for each expanded item, with the
+     * root items stored using the null key. Only kept when paging.
+     */
+    private final HashMap<Object, Integer> paintedChildCounts = new HashMap<Object, Integer>();
+
+    /**
+     * Flag to indicate that the partial update appends the next page of
+     * children of expandedItemId, or of the root items if it is null.
+     */
+    private boolean childPageUpdate = false;
+
     /**
      * Supported drag modes for Tree.
      */
@@ -285,12 +309,12 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
         // Expands
         expanded.add(itemId);
 
-        expandedItemId = itemId;
         if (initialPaint) {
             markAsDirty();
         } else if (sendChildTree) {
             requestPartialRepaint();
         }
+        expandedItemId = itemId;
         fireExpandEvent(itemId);
 
         return true;
@@ -300,11 +324,75 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
     public void markAsDirty() {
         super.markAsDirty();
         partialUpdate = false;
+        childPageUpdate = false;
     }
 
+    /**
+     * Requests a partial repaint sending the children of the item that is
+     * about to be set as {@link #expandedItemId}.
+     */
     private void requestPartialRepaint() {
-        super.markAsDirty();
-        partialUpdate = true;
+        if (isRepaintPending()) {
+            // Only one subtree can be sent in a partial update
+            requestFullRepaint();
+        } else {
+            super.markAsDirty();
+            partialUpdate = true;
+            childPageUpdate = false;
+        }
+    }
+
+    /**
+     * Requests a partial repaint sending the next page of children of an
+     * item.
+     * 
+     * @param itemId
+     *            the id of the expanded item, or null for the root items
+     */
+    private void requestChildPage(Object itemId) {
+        if (isRepaintPending()) {
+            // Send the page as a part of the full repaint instead
+            requestFullRepaint();
+            addChildPageToFullRepaint(itemId);
+        } else {
+            super.markAsDirty();
+            partialUpdate = true;
+            childPageUpdate = true;
+        }
+        expandedItemId = itemId;
+    }
+
+    /**
+     * Checks whether the tree is going to be repainted anyway, in which case a
+     * partial update cannot be used.
+     */
+    private boolean isRepaintPending() {
+        UI ui = getUI();
+        return partialUpdate
+                || (ui != null && ui.getConnectorTracker().isDirty(this));
+    }
+
+    /**
+     * Replaces a pending partial update with a full repaint, keeping a pending
+     * page of children in the repaint.
+     */
+    private void requestFullRepaint() {
+        if (partialUpdate && childPageUpdate) {
+            addChildPageToFullRepaint(expandedItemId);
+        }
+        markAsDirty();
+    }
+
+    /**
+     * Makes the next full repaint include one more page of the children of an
+     * item than has been painted so far.
+     */
+    private void addChildPageToFullRepaint(Object itemId) {
+        Integer painted = paintedChildCounts.get(itemId);
+        if (painted != null && childPageLength > 0) {
+            paintedChildCounts.put(itemId,
+                    Integer.valueOf(painted.intValue() + childPageLength));
+        }
     }
 
     /**
@@ -493,6 +581,19 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
             }
         }
 
+        // Sends more children of a node
+        if (variables.containsKey(TreeConstants.VARIABLE_LOAD_MORE)) {
+            final String key = (String) variables
+                    .get(TreeConstants.VARIABLE_LOAD_MORE);
+            final Object id = "".equals(key) ? null : itemIdMapper.get(key);
+            if (isPaging() && (id == null ? "".equals(key) : isExpanded(id))) {
+                requestChildPage(id);
+            } else {
+                // Repaint to reset the placeholder the client shows as loading
+                markAsDirty();
+            }
+        }
+
         // Expands the nodes
         if (variables.containsKey("expand")) {
             boolean sendChildTree = false;
@@ -579,7 +680,14 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
 
         if (partialUpdate) {
             target.addAttribute("partialUpdate", true);
-            target.addAttribute("rootKey", itemIdMapper.key(expandedItemId));
+            if (childPageUpdate) {
+                target.addAttribute(TreeConstants.ATTRIBUTE_APPEND_CHILDREN,
+                        true);
+            }
+            if (expandedItemId != null) {
+                target.addAttribute("rootKey",
+                        itemIdMapper.key(expandedItemId));
+            }
         } else {
             getCaptionChangeListener().clear();
 
@@ -621,18 +729,36 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
 
         final LinkedList<String> expandedKeys = new LinkedList<String>();
 
-        // Iterates through hierarchical tree using a stack of iterators
-        final Stack<Iterator<?>> iteratorStack = new Stack<Iterator<?>>();
+        // Iterates through hierarchical tree using a stack of child pages
+        final Stack<ChildPage> pageStack = new Stack<ChildPage>();
+        final boolean paging = isPaging();
+        final Map<Object, Integer> previousChildCounts;
+        if (paging && !partialUpdate) {
+            // the client renders everything again
+            previousChildCounts = new HashMap<Object, Integer>(
+                    paintedChildCounts);
+            paintedChildCounts.clear();
+        } else {
+            previousChildCounts = Collections.emptyMap();
+        }
+        final Object parentId = partialUpdate ? expandedItemId : null;
         Collection<?> ids;
-        if (partialUpdate) {
-            ids = getChildren(expandedItemId);
+        if (parentId != null) {
+            ids = getChildren(parentId);
         } else {
             ids = rootItemIds();
         }
 
         if (ids != null) {
-            iteratorStack.push(ids.iterator());
+            int offset = 0;
+            if (childPageUpdate && paintedChildCounts.containsKey(parentId)) {
+                offset = paintedChildCounts.get(parentId);
+            }
+            pageStack.push(new ChildPage(parentId, ids.iterator(), offset,
+                    getChildPageLimit(parentId, partialUpdate,
+                            previousChildCounts)));
         }
+        int paintedItems = 0;
 
         /*
          * Body actions - Actions which has the target null and can be invoked
@@ -656,26 +782,40 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
             target.addAttribute("alb", keys.toArray());
         }
 
-        while (!iteratorStack.isEmpty()) {
+        while (!pageStack.isEmpty()) {
 
-            // Gets the iterator for current tree level
-            final Iterator<?> i = iteratorStack.peek();
+            // Gets the page for current tree level
+            final ChildPage page = pageStack.peek();
 
             // If the level is finished, back to previous tree level
-            if (!i.hasNext()) {
-
-                // Removes used iterator from the stack
-                iteratorStack.pop();
+            final boolean limitReached = maxPaintedItems > 0
+                    && paintedItems >= maxPaintedItems;
+            if (!page.iterator.hasNext() || page.painted >= page.limit
+                    || limitReached) {
+
+                // Removes used page from the stack
+                pageStack.pop();
+
+                if (paging) {
+                    paintedChildCounts.put(page.parentId, page.offset
+                            + page.painted);
+                    if (page.iterator.hasNext()) {
+                        target.addAttribute(
+                                TreeConstants.ATTRIBUTE_MORE_CHILDREN, true);
+                    }
+                }
 
                 // Closes node
-                if (!iteratorStack.isEmpty()) {
+                if (!pageStack.isEmpty()) {
                     target.endTag("node");
                 }
             }
 
             // Adds the item on current level
             else {
-                final Object itemId = i.next();
+                final Object itemId = page.iterator.next();
+                page.painted++;
+                paintedItems++;
 
                 // Starts the item / node
                 final boolean isNode = areChildrenAllowed(itemId);
@@ -745,9 +885,20 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
                 }
 
                 // Adds the children if expanded, or close the tag
-                if (isExpanded(itemId) && hasChildren(itemId)
+                Collection<?> children = null;
+                if (paging) {
+                    // avoid probing and listing the children separately
+                    if (isExpanded(itemId) && areChildrenAllowed(itemId)) {
+                        children = getChildren(itemId);
+                    }
+                } else if (isExpanded(itemId) && hasChildren(itemId)
                         && areChildrenAllowed(itemId)) {
-                    iteratorStack.push(getChildren(itemId).iterator());
+                    children = getChildren(itemId);
+                }
+                if (children != null && !children.isEmpty()) {
+                    pageStack.push(new ChildPage(itemId, children.iterator(),
+                            0, getChildPageLimit(itemId, false,
+                                    previousChildCounts)));
                 } else {
                     if (isNode) {
                         target.endTag("node");
@@ -782,6 +933,7 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
 
         if (partialUpdate) {
             partialUpdate = false;
+            childPageUpdate = false;
         } else {
             // Selected
             target.addVariable(this, "selected",
@@ -801,6 +953,121 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
         }
     }
 
+    private boolean isPaging() {
+        return childPageLength > 0 || maxPaintedItems > 0;
+    }
+
+    /**
+     * Gets the maximum number of children of an item to paint. In a full
+     * repaint, at least as many children as were painted before are painted
+     * again.
+     */
+    private int getChildPageLimit(Object itemId, boolean partial,
+            Map<Object, Integer> previousChildCounts) {
+        if (childPageLength <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        Integer previous = partial ? null : previousChildCounts.get(itemId);
+        return previous != null ? Math.max(childPageLength, previous)
+                : childPageLength;
+    }
+
+    /**
+     * The children of an item, or the root items, being painted.
+     */
+    private static class ChildPage implements Serializable {
+        private final Object parentId;
+        private final Iterator<?> iterator;
+        private final int offset;
+        private final int limit;
+        private int painted = 0;
+
+        private ChildPage(Object parentId, Iterator<?> iterator, int offset,
+                int limit) {
+            this.parentId = parentId;
+            this.iterator = iterator;
+            this.offset = offset;
+            this.limit = limit;
+            for (int i = 0; i < offset && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+        }
+    }
+
+    /**
+     * Sets the number of children of an expanded item, and of root items,
+     * that are sent to the client at a time. The client shows a placeholder
+     * after the painted children, and requests the next page of children when
+     * the placeholder is clicked. The children of expanded items are then
+     * fetched with {@link #getChildren(Object)} without calling
+     * {@link #hasChildren(Object)} first.
+     * <p>
+     * By default the page length is 0, and all children are sent at once.
+     * 
+     * @param childPageLength
+     *            the number of children to send at a time, or 0 to send all
+     *            children
+     * @since 7.2
+     */
+    public void setChildPageLength(int childPageLength) {
+        if (childPageLength < 0) {
+            throw new IllegalArgumentException(
+                    "Child page length can not be negative");
+        }
+        if (this.childPageLength != childPageLength) {
+            this.childPageLength = childPageLength;
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Gets the number of children sent to the client at a time.
+     * 
+     * @see #setChildPageLength(int)
+     * @return the number of children to send at a time, or 0 if all children
+     *         are sent
+     * @since 7.2
+     */
+    public int getChildPageLength() {
+        return childPageLength;
+    }
+
+    /**
+     * Sets the maximum number of items sent to the client in one response.
+     * When the limit is reached, the items that were not sent can be requested
+     * by the client like the next page of children, see
+     * {@link #setChildPageLength(int)}.
+     * <p>
+     * By default there is no limit.
+     * 
+     * @param maxPaintedItems
+     *            the maximum number of items to send at once, or 0 for no
+     *            limit
+     * @since 7.2
+     */
+    public void setMaxPaintedItems(int maxPaintedItems) {
+        if (maxPaintedItems < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum number of painted items can not be negative");
+        }
+        if (this.maxPaintedItems != maxPaintedItems) {
+            this.maxPaintedItems = maxPaintedItems;
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Gets the maximum number of items sent to the client in one response.
+     * 
+     * @see #setMaxPaintedItems(int)
+     * @return the maximum number of items to send at once, or 0 if there is
+     *         no limit
+     * @since 7.2
+     */
+    public int getMaxPaintedItems() {
+        return maxPaintedItems;
+    }
+
     /* Container.Hierarchical API */
 
     /**
@@ -938,6 +1205,10 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
     public void containerItemSetChange(
             com.vaadin.data.Container.ItemSetChangeEvent event) {
         super.containerItemSetChange(event);
+        if (event instanceof Container.Indexed.ItemAddEvent) {
+            // nothing was removed, the expanded items are still valid
+            return;
+        }
         if (getContainerDataSource() instanceof Filterable) {
             boolean hasFilters = !((Filterable) getContainerDataSource())
                     .getContainerFilters().isEmpty();
@@ -1802,5 +2073,6 @@ public class Tree extends AbstractSelect implements Container.Hierarchical,
             }
         }
         expanded.removeAll(removedItemIds);
+        paintedChildCounts.keySet().removeAll(removedItemIds);
     }
 }
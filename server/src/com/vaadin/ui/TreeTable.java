@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -195,14 +196,40 @@ public class TreeTable extends Table implements Hierarchical {
             return openItems.contains(itemId);
         }
 
+        /**
+         * The visible items as a tree mirroring the container hierarchy. Only
+         * expanded nodes have child nodes. Built lazily and updated
+         * incrementally when nodes are expanded or collapsed.
+         */
+        private VisibleNode root;
+
+        /** The nodes of the visible items by item id. */
+        private final HashMap<Object, VisibleNode> visibleNodes = new HashMap<Object, VisibleNode>();
+
+        /** Preorder of ids currently visible, built when requested. */
+        private List<Object> preOrder;
+
         @Override
         public int size() {
-            return getPreOrder().size();
+            return getRoot().size;
         }
 
         @Override
         public Collection<Object> getItemIds() {
-            return Collections.unmodifiableCollection(getPreOrder());
+            if (preOrder == null) {
+                preOrder = new ArrayList<Object>(size());
+                addVisibleChildTree(getRoot());
+            }
+            return Collections.unmodifiableCollection(preOrder);
+        }
+
+        private void addVisibleChildTree(VisibleNode node) {
+            if (node.children != null) {
+                for (VisibleNode child : node.children) {
+                    preOrder.add(child.itemId);
+                    addVisibleChildTree(child);
+                }
+            }
         }
 
         @Override
@@ -216,8 +243,9 @@ public class TreeTable extends Table implements Hierarchical {
 
         @Override
         public Object lastItemId() {
-            if (getPreOrder().size() > 0) {
-                return getPreOrder().get(getPreOrder().size() - 1);
+            int size = size();
+            if (size > 0) {
+                return getIdByIndex(size - 1);
             } else {
                 return null;
             }
@@ -225,26 +253,26 @@ public class TreeTable extends Table implements Hierarchical {
 
         @Override
         public Object nextItemId(Object itemId) {
-            int indexOf = getPreOrder().indexOf(itemId);
+            int indexOf = indexOfId(itemId);
             if (indexOf == -1) {
                 return null;
             }
             indexOf++;
-            if (indexOf == getPreOrder().size()) {
+            if (indexOf == size()) {
                 return null;
             } else {
-                return getPreOrder().get(indexOf);
+                return getIdByIndex(indexOf);
             }
         }
 
         @Override
         public Object prevItemId(Object itemId) {
-            int indexOf = getPreOrder().indexOf(itemId);
+            int indexOf = indexOfId(itemId);
             indexOf--;
             if (indexOf < 0) {
                 return null;
             } else {
-                return getPreOrder().get(indexOf);
+                return getIdByIndex(indexOf);
             }
         }
 
@@ -259,55 +287,114 @@ public class TreeTable extends Table implements Hierarchical {
                 getLogger().log(Level.FINEST, "Item {0} is now collapsed",
                         itemId);
             }
-            clearPreorderCache();
+            if (root == null) {
+                return;
+            }
+            VisibleNode node = visibleNodes.get(itemId);
+            if (node != null) {
+                // only the toggled subtree changes
+                int oldSize = node.size;
+                if (removed) {
+                    collapse(node);
+                } else {
+                    expand(node);
+                }
+                node.sizeChanged(node.size - oldSize);
+                preOrder = null;
+            }
         }
 
         private void clearPreorderCache() {
-            preOrder = null; // clear preorder cache
+            root = null;
+            visibleNodes.clear();
+            preOrder = null;
         }
 
-        List<Object> preOrder;
+        private VisibleNode getRoot() {
+            if (root == null) {
+                root = new VisibleNode(null, null, 0);
+                root.size = 0;
+                setChildren(root, getContainerDataSource().rootItemIds());
+            }
+            return root;
+        }
 
         /**
-         * Preorder of ids currently visible
-         * 
-         * @return
+         * Adds the children of a node, recursively expanding the open ones.
+         * Does not update the sizes of the ancestors of the node.
          */
-        private List<Object> getPreOrder() {
-            if (preOrder == null) {
-                preOrder = new ArrayList<Object>();
-                Collection<?> rootItemIds = getContainerDataSource()
-                        .rootItemIds();
-                for (Object id : rootItemIds) {
-                    preOrder.add(id);
-                    addVisibleChildTree(id);
+        private void expand(VisibleNode node) {
+            setChildren(node,
+                    getContainerDataSource().getChildren(node.itemId));
+        }
+
+        private void setChildren(VisibleNode node, Collection<?> childIds) {
+            if (childIds == null || childIds.isEmpty()) {
+                return;
+            }
+            VisibleNode[] children = new VisibleNode[childIds.size()];
+            int i = 0;
+            for (Object childId : childIds) {
+                VisibleNode child = new VisibleNode(childId, node, i);
+                visibleNodes.put(childId, child);
+                if (isNodeOpen(childId)) {
+                    expand(child);
                 }
+                children[i++] = child;
             }
-            return preOrder;
+            node.setChildren(children);
         }
 
-        private void addVisibleChildTree(Object id) {
-            if (isNodeOpen(id)) {
-                Collection<?> children = getContainerDataSource().getChildren(
-                        id);
-                if (children != null) {
-                    for (Object childId : children) {
-                        preOrder.add(childId);
-                        addVisibleChildTree(childId);
-                    }
+        /**
+         * Removes the descendants of a node. Does not update the sizes of the
+         * ancestors of the node.
+         */
+        private void collapse(VisibleNode node) {
+            if (node.children != null) {
+                for (VisibleNode child : node.children) {
+                    visibleNodes.remove(child.itemId);
+                    collapse(child);
                 }
+                node.setChildren(null);
             }
-
         }
 
         @Override
         public int indexOfId(Object id) {
-            return getPreOrder().indexOf(id);
+            getRoot();
+            VisibleNode node = visibleNodes.get(id);
+            if (node == null) {
+                return -1;
+            }
+            int index = 0;
+            while (node.parent != null) {
+                index += node.parent.sizeBefore(node.childIndex);
+                node = node.parent;
+                if (node != root) {
+                    index++;
+                }
+            }
+            return index;
         }
 
         @Override
         public Object getIdByIndex(int index) {
-            return getPreOrder().get(index);
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size());
+            }
+            VisibleNode node = root;
+            while (true) {
+                if (node != root) {
+                    if (index == 0) {
+                        return node.itemId;
+                    }
+                    index--;
+                }
+                int childIndex = node.findChild(index);
+                index -= node.sizeBefore(childIndex);
+                node = node.children[childIndex];
+            }
         }
 
         @Override
@@ -319,6 +406,97 @@ public class TreeTable extends Table implements Hierarchical {
 
     }
 
+    /**
+     * A visible item in {@link HierarchicalStrategy}. The sizes of the
+     * subtrees of the children are kept in a binary indexed tree, so that the
+     * position of an item and the item at a position can be found in
+     * logarithmic time per level of the hierarchy.
+     */
+    private static class VisibleNode implements Serializable {
+        private final Object itemId;
+        private final VisibleNode parent;
+        private final int childIndex;
+
+        /** The children if the node is expanded, otherwise null. */
+        private VisibleNode[] children;
+
+        /** Binary indexed tree of the subtree sizes of the children. */
+        private int[] childSizes;
+
+        /** The number of visible items in this subtree, including this one. */
+        private int size = 1;
+
+        private VisibleNode(Object itemId, VisibleNode parent, int childIndex) {
+            this.itemId = itemId;
+            this.parent = parent;
+            this.childIndex = childIndex;
+        }
+
+        private void setChildren(VisibleNode[] children) {
+            this.children = children;
+            size = parent == null ? 0 : 1;
+            if (children == null) {
+                childSizes = null;
+                return;
+            }
+            childSizes = new int[children.length + 1];
+            for (int i = 1; i < childSizes.length; i++) {
+                childSizes[i] += children[i - 1].size;
+                size += children[i - 1].size;
+                int next = i + (i & -i);
+                if (next < childSizes.length) {
+                    childSizes[next] += childSizes[i];
+                }
+            }
+        }
+
+        /**
+         * Updates the sizes of the ancestors after the size of this subtree
+         * has changed.
+         */
+        private void sizeChanged(int delta) {
+            VisibleNode node = this;
+            while (node.parent != null && delta != 0) {
+                int[] sizes = node.parent.childSizes;
+                int i = node.childIndex + 1;
+                for (; i < sizes.length; i += i & -i) {
+                    sizes[i] += delta;
+                }
+                node = node.parent;
+                node.size += delta;
+            }
+        }
+
+        /**
+         * @return the total size of the subtrees of the children before the
+         *         given child
+         */
+        private int sizeBefore(int childIndex) {
+            int sum = 0;
+            for (int i = childIndex; i > 0; i -= i & -i) {
+                sum += childSizes[i];
+            }
+            return sum;
+        }
+
+        /**
+         * @return the index of the child whose subtree contains the given
+         *         position within the subtrees of the children
+         */
+        private int findChild(int position) {
+            int childIndex = 0;
+            int step = Integer.highestOneBit(children.length);
+            for (; step > 0; step >>= 1) {
+                int next = childIndex + step;
+                if (next < childSizes.length && childSizes[next] <= position) {
+                    childIndex = next;
+                    position -= childSizes[next];
+                }
+            }
+            return childIndex;
+        }
+    }
+
     /**
      * Creates an empty TreeTable with a default container.
      */
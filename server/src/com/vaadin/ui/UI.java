@@ -16,6 +16,8 @@
 
 package com.vaadin.ui;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,7 +25,13 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,9 +48,11 @@ import com.vaadin.server.ClientConnector;
 import com.vaadin.server.ComponentSizeValidator;
 import com.vaadin.server.ComponentSizeValidator.InvalidLayout;
 import com.vaadin.server.DefaultErrorHandler;
+import com.vaadin.server.DeploymentConfiguration;
 import com.vaadin.server.ErrorHandler;
 import com.vaadin.server.ErrorHandlingRunnable;
 import com.vaadin.server.LocaleService;
+import com.vaadin.server.LockStatistics;
 import com.vaadin.server.Page;
 import com.vaadin.server.PaintException;
 import com.vaadin.server.PaintTarget;
@@ -51,10 +61,12 @@ import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.server.VaadinSession;
+import com.vaadin.server.VaadinSession.FutureAccess;
 import com.vaadin.server.communication.PushConnection;
 import com.vaadin.shared.Connector;
 import com.vaadin.shared.EventId;
 import com.vaadin.shared.MouseEventDetails;
+import com.vaadin.shared.communication.PushMode;
 import com.vaadin.shared.ui.ui.DebugWindowClientRpc;
 import com.vaadin.shared.ui.ui.DebugWindowServerRpc;
 import com.vaadin.shared.ui.ui.ScrollClientRpc;
@@ -218,6 +230,22 @@ public abstract class UI extends AbstractSingleComponentContainer implements
 
     private boolean closing = false;
 
+    /**
+     * The lock protecting this UI if per-UI locking is enabled.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LockStatistics lockStatistics = new LockStatistics();
+
+    /*
+     * Pending tasks can't be serialized and the queue should be empty when the
+     * UI is serialized as long as it doesn't happen while some other thread
+     * has the lock.
+     */
+    private transient LinkedBlockingQueue<FutureAccess> pendingAccessQueue = new LinkedBlockingQueue<FutureAccess>();
+
+    private transient AtomicBoolean accessDrainScheduled = new AtomicBoolean();
+
     private TooltipConfiguration tooltipConfiguration = new TooltipConfigurationImpl(
             this);
     private PushConfiguration pushConfiguration = new PushConfigurationImpl(
@@ -1105,8 +1133,10 @@ public abstract class UI extends AbstractSingleComponentContainer implements
             // the UI is detached and cleaned up.
 
             // Can't use UI.push() directly since it checks for a valid session
-            if (session != null) {
-                session.getService().runPendingAccessTasks(session);
+            if (session != null
+                    && (!session.isPerUiLocking() || lock
+                            .isHeldByCurrentThread())) {
+                session.getService().runPendingAccessTasks(this);
             }
             getPushConnection().push();
         }
@@ -1186,7 +1216,198 @@ public abstract class UI extends AbstractSingleComponentContainer implements
     }
 
     /**
-     * Locks the session of this UI and runs the provided Runnable right away.
+     * Gets the {@link Lock} instance that is used for protecting this UI from
+     * concurrent access. If per-UI locking is enabled (see
+     * {@link DeploymentConfiguration#isPerUiLocking()}), each UI has a lock of
+     * its own. Otherwise the lock of the session is used.
+     * 
+     * @since 7.2
+     * 
+     * @return the lock that is used for synchronization, never
+     *         <code>null</code>
+     * 
+     * @see #lock()
+     */
+    public Lock getLockInstance() {
+        VaadinSession session = getSession();
+        if (session != null && !session.isPerUiLocking()) {
+            return session.getLockInstance();
+        }
+        return lock;
+    }
+
+    /**
+     * Checks if the current thread has exclusive access to this UI.
+     * 
+     * @since 7.2
+     * 
+     * @return true if the thread has exclusive access, false otherwise
+     */
+    public boolean hasLock() {
+        VaadinSession session = getSession();
+        if (session != null && !session.isPerUiLocking()) {
+            return session.hasLock();
+        }
+        return lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Locks this UI to protect it from concurrent access. If per-UI locking is
+     * not enabled, this is the same as locking the session. The preferred way
+     * to ensure locking is done correctly is to use {@link #access(Runnable)}
+     * or {@link #accessSynchronously(Runnable)}. If locking is done manually,
+     * {@link #unlock()} should always be called in a finally block.
+     * <p>
+     * With per-UI locking, a UI may be locked while holding the session lock
+     * but not the other way around. To help avoid deadlocks, an exception is
+     * thrown if the current thread already holds the lock of another UI in the
+     * same session.
+     * 
+     * @since 7.2
+     * 
+     * @throws UIDetachedException
+     *             if the UI is not attached to a session
+     * @throws IllegalStateException
+     *             if the current thread holds the lock of another UI in the
+     *             same session
+     * 
+     * @see #unlock()
+     * @see VaadinSession#lock()
+     */
+    public void lock() {
+        VaadinSession session = getSession();
+        if (session == null) {
+            throw new UIDetachedException();
+        }
+        if (!session.isPerUiLocking()) {
+            session.lock();
+            return;
+        }
+
+        UI current = getCurrent();
+        if (current != null && current != this
+                && current.getSession() == session && current.hasLock()) {
+            throw new IllegalStateException(
+                    "Can't lock a UI while another UI in the same session is locked by the same thread. This restriction is intended to help avoid deadlocks.");
+        }
+        lockStatistics.lock(lock);
+    }
+
+    /**
+     * Unlocks this UI. This method should always be used in a finally block
+     * after {@link #lock()} to ensure that the lock is always released.
+     * <p>
+     * With per-UI locking, tasks submitted using {@link #access(Runnable)} are
+     * run and pending changes are pushed to the client if the push mode is
+     * {@link PushMode#AUTOMATIC automatic} before the lock is released.
+     * 
+     * @since 7.2
+     * 
+     * @throws IllegalMonitorStateException
+     *             if per-UI locking is enabled and the current thread does not
+     *             hold the lock of this UI
+     * 
+     * @see #lock()
+     * @see VaadinSession#unlock()
+     */
+    public void unlock() {
+        VaadinSession session = getSession();
+        if (!lock.isHeldByCurrentThread()) {
+            if (session == null) {
+                throw new UIDetachedException();
+            } else if (session.isPerUiLocking()) {
+                throw new IllegalMonitorStateException(
+                        "The current thread does not hold the lock of this UI");
+            }
+            // Without per-UI locking, lock() locks the session
+            session.unlock();
+            return;
+        }
+
+        boolean ultimateRelease = lock.getHoldCount() == 1;
+        try {
+            if (ultimateRelease && session != null) {
+                session.getService().runPendingAccessTasks(this);
+
+                if (getPushConfiguration().getPushMode() == PushMode.AUTOMATIC) {
+                    Map<Class<?>, CurrentInstance> oldCurrent = CurrentInstance
+                            .setCurrent(this);
+                    try {
+                        push();
+                    } finally {
+                        CurrentInstance.restoreInstances(oldCurrent);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (ultimateRelease && session != null) {
+            session.getService().ensureAccessQueuePurged(this);
+        }
+    }
+
+    /**
+     * Gets statistics about contention for the lock of this UI. The statistics
+     * are only collected when per-UI locking is enabled; otherwise see
+     * {@link VaadinSession#getLockStatistics()}.
+     * 
+     * @since 7.2
+     * 
+     * @return the lock statistics of this UI
+     */
+    public LockStatistics getLockStatistics() {
+        return lockStatistics;
+    }
+
+    /**
+     * Gets the queue of tasks submitted using {@link #access(Runnable)} when
+     * per-UI locking is enabled. It is safe to call this method and access the
+     * returned queue without holding the lock.
+     * 
+     * @since 7.2
+     * 
+     * @return the queue of pending access tasks
+     */
+    public Queue<FutureAccess> getPendingAccessQueue() {
+        return pendingAccessQueue;
+    }
+
+    /**
+     * Marks that a task that runs the pending access tasks of this UI is about
+     * to be submitted to the {@link VaadinService#getAccessExecutor() access
+     * executor}, unless such a task has already been submitted but not yet
+     * started. Used when per-UI locking is enabled.
+     * <p>
+     * This method is automatically run by the framework at appropriate
+     * situations and is not intended to be used by application developers.
+     * 
+     * @since 7.2
+     * 
+     * @return <code>true</code> if the task should be submitted,
+     *         <code>false</code> if a submitted task is still pending
+     */
+    public boolean tryScheduleAccessDrain() {
+        return accessDrainScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks that the task submitted after {@link #tryScheduleAccessDrain()}
+     * has started or could not be submitted, so that tasks enqueued from now
+     * on need a new one.
+     * <p>
+     * This method is automatically run by the framework at appropriate
+     * situations and is not intended to be used by application developers.
+     * 
+     * @since 7.2
+     */
+    public void accessDrainStarted() {
+        accessDrainScheduled.set(false);
+    }
+
+    /**
+     * Locks this UI and runs the provided Runnable right away.
      * <p>
      * It is generally recommended to use {@link #access(Runnable)} instead of
      * this method for accessing a session from a different thread as
@@ -1207,6 +1428,10 @@ public abstract class UI extends AbstractSingleComponentContainer implements
      * later point in time.</li>
      * </ul>
      * </p>
+     * <p>
+     * If per-UI locking is enabled, only the lock of this UI is acquired
+     * instead of the session lock.
+     * </p>
      * 
      * @since 7.1
      * 
@@ -1216,9 +1441,12 @@ public abstract class UI extends AbstractSingleComponentContainer implements
      *             if the UI is not attached to a session (and locking can
      *             therefore not be done)
      * @throws IllegalStateException
-     *             if the current thread holds the lock for another session
+     *             if the current thread holds the lock for another session, or
+     *             for another UI in the same session when per-UI locking is
+     *             enabled
      * 
      * @see #access(Runnable)
+     * @see #lock()
      * @see VaadinSession#accessSynchronously(Runnable)
      */
     public void accessSynchronously(Runnable runnable)
@@ -1233,7 +1461,12 @@ public abstract class UI extends AbstractSingleComponentContainer implements
 
         VaadinService.verifyNoOtherSessionLocked(session);
 
-        session.lock();
+        boolean perUiLocking = session.isPerUiLocking();
+        if (perUiLocking) {
+            lock();
+        } else {
+            session.lock();
+        }
         try {
             if (getSession() == null) {
                 // UI was detached after fetching the session but before we
@@ -1243,7 +1476,11 @@ public abstract class UI extends AbstractSingleComponentContainer implements
             old = CurrentInstance.setCurrent(this);
             runnable.run();
         } finally {
-            session.unlock();
+            if (perUiLocking) {
+                unlock();
+            } else {
+                session.unlock();
+            }
             if (old != null) {
                 CurrentInstance.restoreInstances(old);
             }
@@ -1259,6 +1496,8 @@ public abstract class UI extends AbstractSingleComponentContainer implements
      * exclusive access to this UI. If the session is not locked, the lock will
      * be acquired and the runnable is run right away. If the session is
      * currently locked, the runnable will be run before that lock is released.
+     * If per-UI locking is enabled, the lock of this UI is used instead of the
+     * session lock.
      * </p>
      * <p>
      * RPC handlers for components inside this UI do not need to use this method
@@ -1294,6 +1533,10 @@ public abstract class UI extends AbstractSingleComponentContainer implements
      * @throws UIDetachedException
      *             if the UI is not attached to a session (and locking can
      *             therefore not be done)
+     * @throws RejectedExecutionException
+     *             if the queue of pending tasks is full and the configured
+     *             overflow policy is to reject new tasks, see
+     *             {@link DeploymentConfiguration#getAccessQueueCapacity()}
      * @return a future that can be used to check for task completion and to
      *         cancel the task
      */
@@ -1304,7 +1547,7 @@ public abstract class UI extends AbstractSingleComponentContainer implements
             throw new UIDetachedException();
         }
 
-        return session.access(new ErrorHandlingRunnable() {
+        ErrorHandlingRunnable task = new ErrorHandlingRunnable() {
             @Override
             public void run() {
                 accessSynchronously(runnable);
@@ -1334,7 +1577,13 @@ public abstract class UI extends AbstractSingleComponentContainer implements
                     getLogger().log(Level.SEVERE, e.getMessage(), e);
                 }
             }
-        });
+        };
+
+        if (session.isPerUiLocking()) {
+            return session.getService().accessUI(this, task);
+        } else {
+            return session.access(task);
+        }
     }
 
     /**
@@ -1386,14 +1635,14 @@ public abstract class UI extends AbstractSingleComponentContainer implements
     public void push() {
         VaadinSession session = getSession();
         if (session != null) {
-            assert session.hasLock();
+            assert hasLock();
 
             /*
              * Purge the pending access queue as it might mark a connector as
              * dirty when the push would otherwise be ignored because there are
              * no changes to push.
              */
-            session.getService().runPendingAccessTasks(session);
+            session.getService().runPendingAccessTasks(this);
 
             if (!getConnectorTracker().hasDirtyConnectors()) {
                 // Do not push if there is nothing to push
@@ -1565,4 +1814,15 @@ public abstract class UI extends AbstractSingleComponentContainer implements
         return embedId;
     }
 
+    /**
+     * Override default deserialization logic to account for transient
+     * {@link #pendingAccessQueue} and {@link #accessDrainScheduled}.
+     */
+    private void readObject(ObjectInputStream stream) throws IOException,
+            ClassNotFoundException {
+        stream.defaultReadObject();
+        pendingAccessQueue = new LinkedBlockingQueue<FutureAccess>();
+        accessDrainScheduled = new AtomicBoolean();
+    }
+
 }
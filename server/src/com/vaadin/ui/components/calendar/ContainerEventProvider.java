@@ -15,10 +15,15 @@
  */
 package com.vaadin.ui.components.calendar;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.Indexed;
@@ -35,6 +40,7 @@ import com.vaadin.ui.components.calendar.CalendarComponentEvents.MoveEvent;
 import com.vaadin.ui.components.calendar.event.BasicEvent;
 import com.vaadin.ui.components.calendar.event.CalendarEditableEventProvider;
 import com.vaadin.ui.components.calendar.event.CalendarEvent;
+import com.vaadin.ui.components.calendar.event.CalendarEvent.EventChangeEvent;
 import com.vaadin.ui.components.calendar.event.CalendarEvent.EventChangeListener;
 import com.vaadin.ui.components.calendar.event.CalendarEvent.EventChangeNotifier;
 import com.vaadin.ui.components.calendar.event.CalendarEventProvider;
@@ -44,7 +50,14 @@ import com.vaadin.ui.components.calendar.event.CalendarEventProvider.EventSetCha
  * A event provider which uses a {@link Container} as a datasource. Container
  * used as data source.
  * 
- * NOTE: The data source must be sorted by date!
+ * The start and end dates of the events are indexed when events are first
+ * requested after the container has changed, so that finding the events of a
+ * date range does not need to go through the whole container. The index is
+ * rebuilt after item set and value change events from the container, after
+ * value change events from the date properties of the items, and when an event
+ * used as an item id notifies that it has changed. Changes made directly to
+ * beans, bypassing their item properties, are only noticed after the next item
+ * set change event.
  * 
  * @since 7.1.0
  * @author Vaadin Ltd.
@@ -97,6 +110,39 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     private Indexed container;
 
+    /**
+     * Index of the event dates in the container, or null if it needs to be
+     * rebuilt before the next query.
+     */
+    private EventIndex eventIndex;
+
+    /**
+     * The item ids of the container that notify about changes to their dates,
+     * and which {@link #eventChangeForwarder} listens to.
+     */
+    private Set<EventChangeNotifier> observedEvents = createIdentitySet();
+
+    /**
+     * The start and end date properties of the items that notify about
+     * changes, and which this provider listens to. Only used if the container
+     * does not forward value change events itself.
+     */
+    private Set<ValueChangeNotifier> observedProperties = createIdentitySet();
+
+    /**
+     * Updates the index and notifies the event change listeners when an event
+     * used as an item id changes.
+     */
+    private final EventChangeListener eventChangeForwarder = new EventChangeListener() {
+        @Override
+        public void eventChange(EventChangeEvent changeEvent) {
+            eventIndex = null;
+            for (EventChangeListener listener : eventChangeListeners) {
+                listener.eventChange(changeEvent);
+            }
+        }
+    };
+
     /**
      * Container properties. Defaults based on using the {@link BasicEvent}
      * helper class.
@@ -130,6 +176,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
         detachContainerDataSource();
 
         this.container = container;
+        eventIndex = null;
         listenToContainerEvents();
     }
 
@@ -174,17 +221,6 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      * @return
      */
     private CalendarEvent getEvent(int index) {
-
-        // Check the event cache first
-        for (CalendarEvent e : eventCache) {
-            if (e instanceof ContainerCalendarEvent
-                    && ((ContainerCalendarEvent) e).getContainerIndex() == index) {
-                return e;
-            } else if (container.getIdByIndex(index) == e) {
-                return e;
-            }
-        }
-
         final Object id = container.getIdByIndex(index);
         Item item = container.getItem(id);
         CalendarEvent event;
@@ -243,69 +279,231 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
     public List<CalendarEvent> getEvents(Date startDate, Date endDate) {
         eventCache.clear();
 
-        int[] rangeIndexes = getFirstAndLastEventIndex(startDate, endDate);
-        for (int i = rangeIndexes[0]; i <= rangeIndexes[1]
-                && i < container.size(); i++) {
-            eventCache.add(getEvent(i));
+        if (eventIndex == null) {
+            eventIndex = buildEventIndex();
+        }
+        for (int index : eventIndex.getIndexes(startDate, endDate)) {
+            eventCache.add(getEvent(index));
         }
         return Collections.unmodifiableList(eventCache);
     }
 
     /**
-     * Get the first event for a date
-     * 
-     * @param date
-     *            The date to search for, NUll returns first event in container
-     * @return Returns an array where the first item is the start index and the
-     *         second item is the end item
+     * Reads the start and end dates of all items in the container. Also starts
+     * listening to changes in the events that are used as item ids and in the
+     * date properties of the items.
      */
-    private int[] getFirstAndLastEventIndex(Date start, Date end) {
-        int startIndex = 0;
+    private EventIndex buildEventIndex() {
         int size = container.size();
-        int endIndex = size - 1;
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        int[] indexes = new int[size];
+        int count = 0;
+
+        Set<EventChangeNotifier> notifiers = createIdentitySet();
+        Set<ValueChangeNotifier> properties = createIdentitySet();
+        boolean observeProperties = !(container instanceof ValueChangeNotifier);
+        for (int i = 0; i < size; i++) {
+            Object id = container.getIdByIndex(i);
+            if (id instanceof EventChangeNotifier) {
+                notifiers.add((EventChangeNotifier) id);
+            }
 
-        if (start != null) {
-            /*
-             * Iterating from the start of the container, if range is in the end
-             * of the container then this will be slow TODO This could be
-             * improved by using some sort of divide and conquer algorithm
-             */
-            while (startIndex < size) {
-                Object id = container.getIdByIndex(startIndex);
-                Item item = container.getItem(id);
-                Date d = (Date) item.getItemProperty(startDateProperty)
-                        .getValue();
-                if (d.compareTo(start) >= 0) {
-                    break;
+            Item item = container.getItem(id);
+            Property<?> startProperty = item.getItemProperty(startDateProperty);
+            Property<?> endProperty = item.getItemProperty(endDateProperty);
+            if (observeProperties) {
+                // Also items without a start date, as they may get one
+                if (startProperty instanceof ValueChangeNotifier) {
+                    properties.add((ValueChangeNotifier) startProperty);
                 }
-                startIndex++;
+                if (endProperty instanceof ValueChangeNotifier) {
+                    properties.add((ValueChangeNotifier) endProperty);
+                }
+            }
+
+            Date start = startProperty == null ? null : (Date) startProperty
+                    .getValue();
+            if (start == null) {
+                // Cannot be shown
+                continue;
+            }
+            Date end = endProperty == null ? null : (Date) endProperty
+                    .getValue();
+            if (end == null) {
+                // No end date present, use start date
+                end = start;
             }
+
+            starts[count] = start.getTime();
+            ends[count] = end.getTime();
+            indexes[count] = i;
+            count++;
         }
 
-        if (end != null) {
-            /*
-             * Iterate from the start index until range ends
-             */
-            endIndex = startIndex;
-            while (endIndex < size - 1) {
-                Object id = container.getIdByIndex(endIndex);
-                Item item = container.getItem(id);
-                Date d = (Date) item.getItemProperty(endDateProperty)
-                        .getValue();
-                if (d == null) {
-                    // No end date present, use start date
-                    d = (Date) item.getItemProperty(startDateProperty)
-                            .getValue();
-                }
-                if (d.compareTo(end) >= 0) {
-                    endIndex--;
-                    break;
+        for (EventChangeNotifier notifier : observedEvents) {
+            if (!notifiers.contains(notifier)) {
+                notifier.removeEventChangeListener(eventChangeForwarder);
+            }
+        }
+        for (EventChangeNotifier notifier : notifiers) {
+            if (!observedEvents.contains(notifier)) {
+                notifier.addEventChangeListener(eventChangeForwarder);
+            }
+        }
+        observedEvents = notifiers;
+
+        for (ValueChangeNotifier property : observedProperties) {
+            if (!properties.contains(property)) {
+                property.removeValueChangeListener(this);
+            }
+        }
+        for (ValueChangeNotifier property : properties) {
+            if (!observedProperties.contains(property)) {
+                property.addValueChangeListener(this);
+            }
+        }
+        observedProperties = properties;
+
+        return new EventIndex(starts, ends, indexes, count);
+    }
+
+    private void stopObservingEvents() {
+        for (EventChangeNotifier notifier : observedEvents) {
+            notifier.removeEventChangeListener(eventChangeForwarder);
+        }
+        observedEvents = createIdentitySet();
+        for (ValueChangeNotifier property : observedProperties) {
+            property.removeValueChangeListener(this);
+        }
+        observedProperties = createIdentitySet();
+        eventIndex = null;
+    }
+
+    private static <T> Set<T> createIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    }
+
+    /**
+     * An interval index of the start and end dates of the events in a
+     * container. The events are ordered by their start dates, and a tree of
+     * the maximum end date of each range of events is used for skipping the
+     * events that end before the queried range.
+     */
+    private static class EventIndex implements Serializable {
+        private final int count;
+        private final long[] starts;
+        private final int[] indexes;
+
+        /**
+         * Number of leaves in {@link #maxEnds}, a power of two.
+         */
+        private final int leaves;
+
+        /**
+         * Binary tree stored in an array: node n has the children 2n and
+         * 2n+1, and the leaf of the i:th event is leaves+i. Each node holds
+         * the latest end date of the events below it.
+         */
+        private final long[] maxEnds;
+
+        public EventIndex(final long[] starts, long[] ends, int[] indexes,
+                int count) {
+            this.count = count;
+
+            // Order by start date, keeping the container order of equal dates
+            Integer[] order = new Integer[count];
+            boolean sorted = true;
+            for (int i = 0; i < count; i++) {
+                order[i] = Integer.valueOf(i);
+                sorted = sorted && (i == 0 || starts[i - 1] <= starts[i]);
+            }
+            if (!sorted) {
+                // Usually the container is already sorted by date
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer i1, Integer i2) {
+                        long s1 = starts[i1];
+                        long s2 = starts[i2];
+                        return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+                    }
+                });
+            }
+
+            int leaves = 1;
+            while (leaves < count) {
+                leaves *= 2;
+            }
+            this.leaves = leaves;
+            this.starts = new long[count];
+            this.indexes = new int[count];
+            maxEnds = new long[2 * leaves];
+            Arrays.fill(maxEnds, Long.MIN_VALUE);
+            for (int i = 0; i < count; i++) {
+                int event = order[i];
+                this.starts[i] = starts[event];
+                this.indexes[i] = indexes[event];
+                maxEnds[leaves + i] = ends[event];
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                maxEnds[node] = Math.max(maxEnds[2 * node],
+                        maxEnds[2 * node + 1]);
+            }
+        }
+
+        /**
+         * Finds the events that overlap the given range: events that start
+         * before the range end and end at or after the range start.
+         * 
+         * @param start
+         *            the start of the range, or null for no lower limit
+         * @param end
+         *            the end of the range, or null for no upper limit
+         * @return the container indexes of the events, in ascending order
+         */
+        public int[] getIndexes(Date start, Date end) {
+            // Events before this position start before the range end
+            int last = count;
+            if (end != null) {
+                long to = end.getTime();
+                int low = 0;
+                while (low < last) {
+                    int middle = (low + last) >>> 1;
+                    if (starts[middle] < to) {
+                        low = middle + 1;
+                    } else {
+                        last = middle;
+                    }
                 }
-                endIndex++;
             }
+
+            int[] result = new int[last];
+            long from = start == null ? Long.MIN_VALUE : start.getTime();
+            int found = collect(1, 0, leaves, last, from, result, 0);
+            result = Arrays.copyOf(result, found);
+            Arrays.sort(result);
+            return result;
         }
 
-        return new int[] { startIndex, endIndex };
+        /**
+         * Adds the container indexes of the events below a node that are
+         * before <code>last</code> and end at or after <code>from</code>.
+         */
+        private int collect(int node, int nodeStart, int nodeEnd, int last,
+                long from, int[] result, int found) {
+            if (nodeStart >= last || maxEnds[node] < from) {
+                return found;
+            }
+            if (node >= leaves) {
+                result[found++] = indexes[node - leaves];
+                return found;
+            }
+            int middle = (nodeStart + nodeEnd) >>> 1;
+            found = collect(2 * node, nodeStart, middle, last, from, result,
+                    found);
+            return collect(2 * node + 1, middle, nodeEnd, last, from, result,
+                    found);
+        }
     }
 
     /*
@@ -345,7 +543,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     @Override
     public void addEventChangeListener(EventChangeListener listener) {
-        if (eventChangeListeners.contains(listener)) {
+        if (!eventChangeListeners.contains(listener)) {
             eventChangeListeners.add(listener);
         }
     }
@@ -402,6 +600,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     public void setStartDateProperty(Object startDateProperty) {
         this.startDateProperty = startDateProperty;
+        eventIndex = null;
     }
 
     /**
@@ -416,6 +615,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     public void setEndDateProperty(Object endDateProperty) {
         this.endDateProperty = endDateProperty;
+        eventIndex = null;
     }
 
     /**
@@ -442,6 +642,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
     @Override
     public void containerItemSetChange(ItemSetChangeEvent event) {
         if (event.getContainer() == container) {
+            eventIndex = null;
             // Trigger an eventset change event when the itemset changes
             for (EventSetChangeListener listener : eventSetChangeListeners) {
                 listener.eventSetChange(new EventSetChangeEvent(this));
@@ -458,6 +659,9 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     @Override
     public void valueChange(ValueChangeEvent event) {
+        // The changed value may be a date of any event
+        eventIndex = null;
+
         /*
          * TODO Need to figure out how to get the item which triggered the the
          * valuechange event and then trigger a EventChange event to the
@@ -493,6 +697,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
                     event.getNewStart());
             item.getItemProperty(endDateProperty).setValue(newEnd);
             listenToContainerEvents();
+            eventIndex = null;
         }
     }
 
@@ -520,6 +725,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
                     event.getNewStart());
             item.getItemProperty(endDateProperty).setValue(event.getNewEnd());
             listenToContainerEvents();
+            eventIndex = null;
         }
     }
 
@@ -531,6 +737,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
      */
     public void detachContainerDataSource() {
         ignoreContainerEvents();
+        stopObservingEvents();
     }
 
     /*
@@ -561,6 +768,7 @@ public class ContainerEventProvider implements CalendarEditableEventProvider,
             item.getItemProperty(getDescriptionProperty()).setValue(
                     event.getDescription());
         }
+        eventIndex = null;
     }
 
     /*
@@ -0,0 +1,109 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.Container.Indexed;
+import com.vaadin.data.Container.Sortable;
+import com.vaadin.data.util.BeanItemContainer;
+import com.vaadin.data.util.IndexedContainer;
+
+/*
+ * Measures looking up item indexes and navigating item by item in in-memory
+ * containers: indexOfId(), nextItemId() and prevItemId() for every item, also
+ * after removing the first item and after sorting, which both change the index
+ * of every item. A plain linear ArrayList.indexOf() is timed for comparison.
+ * 
+ * Please run with -server. Your results will vary.
+ */
+public class ContainerNavigationPerformanceTester {
+
+    private static final int ITEMS = 100000;
+
+    private static final int LINEAR_LOOKUPS = 2000;
+
+    public static class Bean {
+        private final int id;
+
+        public Bean(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    public static void main(String[] args) {
+        IndexedContainer indexedContainer = new IndexedContainer();
+        indexedContainer.addContainerProperty("id", Integer.class, null);
+        BeanItemContainer<Bean> beanContainer = new BeanItemContainer<Bean>(
+                Bean.class);
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < ITEMS; i++) {
+            Object itemId = indexedContainer.addItem();
+            indexedContainer.getContainerProperty(itemId, "id").setValue(
+                    ITEMS - i);
+            beanContainer.addBean(new Bean(ITEMS - i));
+            list.add(itemId);
+        }
+
+        // warmup
+        navigate(indexedContainer);
+        navigate(beanContainer);
+
+        run("IndexedContainer", indexedContainer);
+        run("BeanItemContainer", beanContainer);
+
+        long start = System.currentTimeMillis();
+        int sum = 0;
+        for (int i = 0; i < LINEAR_LOOKUPS; i++) {
+            sum += list.indexOf(list.get(list.size() - 1 - i));
+        }
+        long time = System.currentTimeMillis() - start;
+        System.out.println("ArrayList.indexOf, " + LINEAR_LOOKUPS
+                + " lookups: " + time + " ms (" + ITEMS
+                * (time / (double) LINEAR_LOOKUPS) + " ms for " + ITEMS
+                + " lookups) " + sum);
+    }
+
+    private static void run(String name, Indexed container) {
+        long start = System.currentTimeMillis();
+        navigate(container);
+        System.out.println(name + ": " + (System.currentTimeMillis() - start)
+                + " ms");
+
+        container.removeItem(container.firstItemId());
+        start = System.currentTimeMillis();
+        navigate(container);
+        System.out.println(name + ", after removing first item: "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        ((Sortable) container).sort(
+                new Object[] { "id" }, new boolean[] { true });
+        start = System.currentTimeMillis();
+        navigate(container);
+        System.out.println(name + ", after sorting: "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Looks up the index of every item and walks the items forwards and
+     * backwards.
+     */
+    private static int navigate(Indexed container) {
+        int sum = 0;
+        for (int i = 0; i < container.size(); i++) {
+            sum += container.indexOfId(container.getIdByIndex(i));
+        }
+        Object itemId = container.firstItemId();
+        while (itemId != null) {
+            itemId = container.nextItemId(itemId);
+        }
+        itemId = container.lastItemId();
+        while (itemId != null) {
+            itemId = container.prevItemId(itemId);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,156 @@
+package com.vaadin.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+import org.json.JSONObject;
+
+import com.vaadin.server.JsonCodec;
+import com.vaadin.server.JsonCodec.BeanProperty;
+import com.vaadin.shared.AbstractComponentState;
+import com.vaadin.shared.ui.button.ButtonState;
+import com.vaadin.shared.ui.label.LabelState;
+import com.vaadin.shared.ui.textfield.AbstractTextFieldState;
+
+/*
+ * Compares encoding and decoding shared state using the per-class codecs in
+ * JsonCodec against the previous approach of iterating the bean properties
+ * and encoding and comparing each value through the generic code paths.
+ * 
+ * The states are AbstractComponentState subclasses with a few changed
+ * properties, encoded against the default state as a reference the same way
+ * LegacyCommunicationManager.encodeState does for a dirty connector.
+ * 
+ * Please run with -server. Your results will vary.
+ */
+public class JsonCodecPerformanceTester {
+
+    private static final int ROUNDS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        AbstractComponentState[] states = createStates();
+        JSONObject[] references = new JSONObject[states.length];
+        JSONObject[] encodedStates = new JSONObject[states.length];
+        for (int i = 0; i < states.length; i++) {
+            references[i] = (JSONObject) JsonCodec.encode(
+                    states[i].getClass().newInstance(), null,
+                    states[i].getClass(), null).getEncodedValue();
+            encodedStates[i] = (JSONObject) JsonCodec.encode(states[i], null,
+                    states[i].getClass(), null).getEncodedValue();
+        }
+
+        // warmup
+        runReflectiveEncode(states, references, ROUNDS / 10);
+        runCodecEncode(states, references, ROUNDS / 10);
+        runReflectiveDecode(states, encodedStates, ROUNDS / 10);
+        runCodecDecode(states, encodedStates, ROUNDS / 10);
+        System.gc();
+
+        long start = System.currentTimeMillis();
+        runReflectiveEncode(states, references, ROUNDS);
+        System.out.println("Encode, reflective properties: "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        start = System.currentTimeMillis();
+        runCodecEncode(states, references, ROUNDS);
+        System.out.println("Encode, per-class codec: "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        start = System.currentTimeMillis();
+        runReflectiveDecode(states, encodedStates, ROUNDS);
+        System.out.println("Decode, reflective properties: "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        start = System.currentTimeMillis();
+        runCodecDecode(states, encodedStates, ROUNDS);
+        System.out.println("Decode, per-class codec: "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static AbstractComponentState[] createStates() {
+        LabelState label = new LabelState();
+        label.text = "Updated value";
+        label.caption = "Label";
+
+        ButtonState button = new ButtonState();
+        button.caption = "Click me";
+        button.disableOnClick = true;
+        button.styles = Arrays.asList("primary", "small");
+
+        AbstractTextFieldState textField = new AbstractTextFieldState();
+        textField.text = "Some text";
+        textField.maxLength = 20;
+        textField.width = "200px";
+
+        return new AbstractComponentState[] { label, button, textField };
+    }
+
+    private static void runCodecEncode(AbstractComponentState[] states,
+            JSONObject[] references, int rounds) throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < states.length; i++) {
+                JsonCodec.encode(states[i], references[i],
+                        states[i].getClass(), null);
+            }
+        }
+    }
+
+    private static void runCodecDecode(AbstractComponentState[] states,
+            JSONObject[] encodedStates, int rounds) throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < states.length; i++) {
+                JsonCodec.decodeInternalOrCustomType(states[i].getClass(),
+                        encodedStates[i], null);
+            }
+        }
+    }
+
+    /*
+     * The approach used before the per-class codecs: look up the properties,
+     * encode each value through the generic path and compare as strings.
+     */
+    private static void runReflectiveEncode(AbstractComponentState[] states,
+            JSONObject[] references, int rounds) throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < states.length; i++) {
+                JSONObject encoded = new JSONObject();
+                JSONObject diff = new JSONObject();
+                for (BeanProperty property : JsonCodec.getProperties(states[i]
+                        .getClass())) {
+                    String name = property.getName();
+                    Type type = property.getType();
+                    Object reference = references[i].get(name);
+                    if (reference == JSONObject.NULL) {
+                        reference = null;
+                    }
+                    Object value = JsonCodec.encode(property.getValue(states[i]),
+                            reference, type, null).getEncodedValue();
+                    encoded.put(name, value);
+                    if (value == JSONObject.NULL ? reference != null
+                            : reference == null
+                                    || !value.toString().equals(
+                                            reference.toString())) {
+                        diff.put(name, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void runReflectiveDecode(AbstractComponentState[] states,
+            JSONObject[] encodedStates, int rounds) throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < states.length; i++) {
+                Class<?> type = states[i].getClass();
+                Object decoded = type.newInstance();
+                for (BeanProperty property : JsonCodec.getProperties(type)) {
+                    Object encodedValue = encodedStates[i].get(property
+                            .getName());
+                    property.setValue(decoded, JsonCodec
+                            .decodeInternalOrCustomType(property.getType(),
+                                    encodedValue, null));
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.vaadin.data.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -19,6 +20,7 @@ import com.vaadin.data.Container.Indexed.ItemRemoveEvent;
 import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
 import com.vaadin.data.util.filter.Compare;
+import com.vaadin.ui.ComboBox;
 
 /**
  * Test basic functionality of BeanItemContainer.
@@ -595,6 +597,103 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         assertEquals(3, container.size());
     }
 
+    public void testRefineFilterAfterUnmonitoredModification() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        Person matthew = new Person("Matthew");
+
+        container.addBean(john);
+        container.addBean(jane);
+        container.addBean(matthew);
+
+        container.addContainerFilter("name", "j", true, true);
+        assertEquals(2, container.size());
+        // john, jane, (matthew)
+
+        container.removeAllContainerFilters();
+        // Property changes are not listened to without filters
+        container.getItem(matthew).getItemProperty("name").setValue("Joe");
+
+        // Narrower than the previous filter, but matthew must be checked
+        container.addContainerFilter("name", "jo", true, true);
+        assertEquals(2, container.size());
+        assertTrue(container.containsId(john));
+        assertTrue(container.containsId(matthew));
+    }
+
+    private static class CountingContainer extends BeanItemContainer<Person> {
+        private int checkedItems = 0;
+
+        public CountingContainer() {
+            super(Person.class);
+        }
+
+        @Override
+        protected boolean passesFilters(Object itemId) {
+            checkedItems++;
+            return super.passesFilters(itemId);
+        }
+    }
+
+    private static class FilteringComboBox extends ComboBox {
+        public FilteringComboBox(Container container) {
+            super(null, container);
+            setItemCaptionPropertyId("name");
+        }
+
+        List<?> filter(String filter) {
+            Map<String, Object> variables = new HashMap<String, Object>();
+            variables.put("filter", filter);
+            variables.put("page", 0);
+            changeVariables(this, variables);
+            return getOptionsWithFilter(false);
+        }
+    }
+
+    private CountingContainer createComboBoxContainer() {
+        CountingContainer container = new CountingContainer();
+        container.addBean(new Person("John"));
+        container.addBean(new Person("Jane"));
+        container.addBean(new Person("Matthew"));
+        container.addBean(new Person("Joe"));
+        return container;
+    }
+
+    public void testComboBoxFilterRefinement() {
+        CountingContainer container = createComboBoxContainer();
+        container.setFilterRefinementEnabled(true);
+        FilteringComboBox comboBox = new FilteringComboBox(container);
+
+        container.checkedItems = 0;
+        assertEquals(3, comboBox.filter("j").size());
+        assertEquals(4, container.checkedItems);
+        // The combo box removes its filter after each request
+        assertEquals(4, container.size());
+
+        // Only john, jane and joe are checked
+        container.checkedItems = 0;
+        assertEquals(2, comboBox.filter("jo").size());
+        assertEquals(3, container.checkedItems);
+
+        container.checkedItems = 0;
+        assertEquals(1, comboBox.filter("joh").size());
+        assertEquals(2, container.checkedItems);
+    }
+
+    public void testComboBoxFilterRefinementDisabledByDefault() {
+        CountingContainer container = createComboBoxContainer();
+        assertFalse(container.isFilterRefinementEnabled());
+        FilteringComboBox comboBox = new FilteringComboBox(container);
+
+        assertEquals(3, comboBox.filter("j").size());
+        container.checkedItems = 0;
+        assertEquals(2, comboBox.filter("jo").size());
+        assertEquals(4, container.checkedItems);
+    }
+
     public void testAddAll() {
         BeanItemContainer<Person> container = new BeanItemContainer<Person>(
                 Person.class);
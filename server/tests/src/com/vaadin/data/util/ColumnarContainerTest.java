@@ -0,0 +1,191 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.util.Random;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Between;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.IsNull;
+import com.vaadin.data.util.filter.Not;
+import com.vaadin.data.util.filter.Or;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+public class ColumnarContainerTest extends AbstractInMemoryContainerTest {
+
+    public void testBasicOperations() {
+        testBasicContainerOperations(new ColumnarContainer());
+    }
+
+    public void testFiltering() {
+        testContainerFiltering(new ColumnarContainer());
+    }
+
+    public void testSorting() {
+        testContainerSorting(new ColumnarContainer());
+    }
+
+    public void testSortingAndFiltering() {
+        testContainerSortingAndFiltering(new ColumnarContainer());
+    }
+
+    public void testContainerOrdered() {
+        testContainerOrdered(new ColumnarContainer());
+    }
+
+    public void testContainerIndexed() {
+        testContainerIndexed(new ColumnarContainer(), sampleData[2], 2, true,
+                "newItemId", true);
+    }
+
+    public void testPrimitiveTypes() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("int", int.class, Integer.valueOf(1));
+        container.addContainerProperty("long", Long.class, null);
+        container.addContainerProperty("flag", boolean.class, Boolean.TRUE);
+        Item item = container.addItem("a");
+
+        assertEquals(int.class, container.getType("int"));
+        assertEquals(Integer.valueOf(1), item.getItemProperty("int").getValue());
+        assertNull(item.getItemProperty("long").getValue());
+        assertEquals(Boolean.TRUE, item.getItemProperty("flag").getValue());
+
+        item.getItemProperty("long").setValue(Long.valueOf(Long.MAX_VALUE));
+        item.getItemProperty("int").setValue(null);
+        assertEquals(Long.valueOf(Long.MAX_VALUE), item.getItemProperty("long")
+                .getValue());
+        assertNull(item.getItemProperty("int").getValue());
+
+        try {
+            item.getItemProperty("int").setValue("1");
+            fail("A value of the wrong type should not be accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRemovedItemValuesNotMixedUp() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("value", Integer.class, null);
+        container.addContainerProperty("name", String.class, null);
+        for (int i = 0; i < 100; i++) {
+            Item item = container.addItem(Integer.valueOf(i));
+            item.getItemProperty("value").setValue(Integer.valueOf(i * 10));
+            item.getItemProperty("name").setValue("name" + i % 7);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            assertTrue(container.removeItem(Integer.valueOf(i)));
+        }
+
+        assertEquals(66, container.size());
+        for (Object itemId : container.getItemIds()) {
+            int i = ((Integer) itemId).intValue();
+            assertEquals(Integer.valueOf(i * 10),
+                    container.getContainerProperty(itemId, "value").getValue());
+            assertEquals("name" + i % 7,
+                    container.getContainerProperty(itemId, "name").getValue());
+        }
+    }
+
+    public void testSortingMatchesIndexedContainer() {
+        ColumnarContainer columnar = new ColumnarContainer();
+        IndexedContainer indexed = new IndexedContainer();
+        fillRandomly(columnar, indexed);
+
+        Object[][] sorts = { { "int" }, { "double", "int" },
+                { "string", "long" }, { "flag", "string", "double" } };
+        for (Object[] sort : sorts) {
+            boolean[] ascending = new boolean[sort.length];
+            for (int i = 0; i < ascending.length; i++) {
+                ascending[i] = i % 2 == 0;
+            }
+            columnar.sort(sort, ascending);
+            indexed.sort(sort, ascending);
+            assertEquals(indexed.getItemIds(), columnar.getItemIds());
+        }
+
+        // Filtered out items are kept after the visible ones
+        columnar.addContainerFilter(new Compare.Less("int", 50));
+        indexed.addContainerFilter(new Compare.Less("int", 50));
+        columnar.sort(new Object[] { "string" }, new boolean[] { false });
+        indexed.sort(new Object[] { "string" }, new boolean[] { false });
+        columnar.removeAllContainerFilters();
+        indexed.removeAllContainerFilters();
+        assertEquals(indexed.getItemIds(), columnar.getItemIds());
+    }
+
+    public void testFilteringMatchesIndexedContainer() {
+        ColumnarContainer columnar = new ColumnarContainer();
+        IndexedContainer indexed = new IndexedContainer();
+        fillRandomly(columnar, indexed);
+
+        Filter[] filters = {
+                new Compare.Equal("int", 5),
+                new Compare.Greater("long", 40L),
+                new Compare.LessOrEqual("double", 0.5),
+                new Compare.GreaterOrEqual("string", "value5"),
+                new Compare.Equal("flag", Boolean.TRUE),
+                new Compare.Less("int", null),
+                new Compare.Equal("string", null),
+                new IsNull("double"),
+                new SimpleStringFilter("string", "UE1", true, false),
+                new SimpleStringFilter("string", "value", false, true),
+                new Or(new Compare.Equal("int", 3), new Not(new IsNull(
+                        "string"))),
+                new And(new Between("int", 10, 20), new Compare.Less("long",
+                        50L)) };
+        for (Filter filter : filters) {
+            columnar.addContainerFilter(filter);
+            indexed.addContainerFilter(filter);
+            assertEquals(filter.toString(), indexed.getItemIds(),
+                    columnar.getItemIds());
+            columnar.removeAllContainerFilters();
+            indexed.removeAllContainerFilters();
+        }
+    }
+
+    private void fillRandomly(Container... containers) {
+        for (Container container : containers) {
+            container.addContainerProperty("int", Integer.class, null);
+            container.addContainerProperty("long", Long.class, null);
+            container.addContainerProperty("double", Double.class, null);
+            container.addContainerProperty("string", String.class, null);
+            container.addContainerProperty("flag", Boolean.class, null);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Object[] values = {
+                    random.nextInt(10) == 0 ? null : random.nextInt(100),
+                    random.nextInt(10) == 0 ? null : (long) random.nextInt(100),
+                    random.nextInt(10) == 0 ? null : random.nextDouble(),
+                    random.nextInt(10) == 0 ? null : "value"
+                            + random.nextInt(20),
+                    random.nextInt(10) == 0 ? null : random.nextBoolean() };
+            for (Container container : containers) {
+                Item item = container.addItem(Integer.valueOf(i));
+                item.getItemProperty("int").setValue(values[0]);
+                item.getItemProperty("long").setValue(values[1]);
+                item.getItemProperty("double").setValue(values[2]);
+                item.getItemProperty("string").setValue(values[3]);
+                item.getItemProperty("flag").setValue(values[4]);
+            }
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.vaadin.data.util;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.util.FilesystemContainer.DirectoryChangeEvent;
+
 public class FileSystemContainerTest {
 
     @Test
@@ -13,4 +21,149 @@ public class FileSystemContainerTest {
                 "/non/existing"));
         Assert.assertTrue(fsc.getItemIds().isEmpty());
     }
+
+    @Test
+    public void caching_refreshDirectory_listsNewFiles() throws IOException {
+        File root = createDirectory();
+        File sub = new File(root, "sub");
+        Assert.assertTrue(sub.mkdir());
+        Assert.assertTrue(new File(sub, "a.txt").createNewFile());
+
+        FilesystemContainer fsc = new FilesystemContainer(root);
+        fsc.setCaching(true);
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        fsc.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        Assert.assertEquals(2, fsc.size());
+        Assert.assertEquals(1, fsc.getChildren(sub).size());
+
+        Assert.assertTrue(new File(sub, "b.txt").createNewFile());
+        Assert.assertEquals(1, fsc.getChildren(sub).size());
+
+        fsc.refresh(sub);
+        Assert.assertEquals(2, fsc.getChildren(sub).size());
+        Assert.assertEquals(3, fsc.size());
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(sub,
+                ((DirectoryChangeEvent) events.get(0)).getDirectory());
+    }
+
+    @Test
+    public void caching_checkForChanges_refreshesChangedDirectory()
+            throws IOException {
+        File root = createDirectory();
+        File sub = new File(root, "sub");
+        Assert.assertTrue(sub.mkdir());
+
+        FilesystemContainer fsc = new FilesystemContainer(root);
+        fsc.setCaching(true);
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        fsc.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        Assert.assertFalse(fsc.hasChildren(sub));
+
+        fsc.checkForChanges();
+        Assert.assertTrue(events.isEmpty());
+
+        Assert.assertTrue(new File(sub, "a.txt").createNewFile());
+        // do not depend on the timestamp resolution of the filesystem
+        Assert.assertTrue(sub.setLastModified(sub.lastModified() - 10000));
+        fsc.checkForChanges();
+
+        Assert.assertTrue(fsc.hasChildren(sub));
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(sub,
+                ((DirectoryChangeEvent) events.get(0)).getDirectory());
+    }
+
+    @Test
+    public void caching_checkForChanges_keepsListedParent() throws IOException {
+        File root = createDirectory();
+        File sub = new File(root, "sub");
+        Assert.assertTrue(sub.mkdir());
+
+        FilesystemContainer fsc = new FilesystemContainer(root);
+        fsc.setCaching(true);
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        fsc.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        Assert.assertEquals(1, fsc.rootItemIds().size());
+        Assert.assertFalse(fsc.hasChildren(sub));
+
+        // a new file in the root that only shows up if the root is listed
+        // again
+        long rootModified = root.lastModified();
+        Assert.assertTrue(new File(root, "b.txt").createNewFile());
+        Assert.assertTrue(root.setLastModified(rootModified));
+
+        Assert.assertTrue(new File(sub, "a.txt").createNewFile());
+        Assert.assertTrue(sub.setLastModified(sub.lastModified() - 10000));
+        fsc.checkForChanges();
+
+        Assert.assertTrue(fsc.hasChildren(sub));
+        Assert.assertEquals(1, fsc.rootItemIds().size());
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(sub,
+                ((DirectoryChangeEvent) events.get(0)).getDirectory());
+    }
+
+    @Test
+    public void caching_checkForChanges_updatesChangedFile() throws IOException {
+        File root = createDirectory();
+        File file = new File(root, "a.txt");
+        Assert.assertTrue(file.createNewFile());
+
+        FilesystemContainer fsc = new FilesystemContainer(root);
+        fsc.setCaching(true);
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        fsc.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        Assert.assertEquals(1, fsc.rootItemIds().size());
+        Assert.assertEquals(0L, fsc.getContainerProperty(file,
+                FilesystemContainer.PROPERTY_SIZE).getValue());
+
+        long rootModified = root.lastModified();
+        Assert.assertTrue(new File(root, "b.txt").createNewFile());
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("abc");
+        } finally {
+            writer.close();
+        }
+        Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+        Assert.assertTrue(root.setLastModified(rootModified));
+        fsc.checkForChanges();
+
+        Assert.assertEquals(3L, fsc.getContainerProperty(file,
+                FilesystemContainer.PROPERTY_SIZE).getValue());
+        // only the attributes of the file are read again
+        Assert.assertEquals(1, fsc.rootItemIds().size());
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(root,
+                ((DirectoryChangeEvent) events.get(0)).getDirectory());
+    }
+
+    private File createDirectory() throws IOException {
+        File directory = File.createTempFile("fsc", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        directory.deleteOnExit();
+        return directory;
+    }
 }
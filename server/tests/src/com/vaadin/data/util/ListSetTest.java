@@ -0,0 +1,105 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ListSetTest extends TestCase {
+
+    private void assertIndexes(List<Integer> expected, ListSet<Integer> list) {
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+            assertTrue(list.contains(expected.get(i)));
+        }
+    }
+
+    public void testIndexOfAfterInsertAndRemove() {
+        ListSet<Integer> list = new ListSet<Integer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            list.add(i);
+            expected.add(i);
+        }
+        assertIndexes(expected, list);
+
+        list.add(0, 100);
+        expected.add(0, 100);
+        assertEquals(1, list.indexOf(0));
+        list.add(5, 101);
+        expected.add(5, 101);
+        assertIndexes(expected, list);
+
+        list.remove(3);
+        expected.remove(3);
+        list.remove(Integer.valueOf(10));
+        expected.remove(Integer.valueOf(10));
+        assertEquals(-1, list.indexOf(10));
+        assertFalse(list.contains(10));
+        assertIndexes(expected, list);
+
+        list.subList(2, 6).clear();
+        expected.subList(2, 6).clear();
+        assertIndexes(expected, list);
+
+        assertFalse(list.add(100));
+        list.add(0, 100);
+        assertIndexes(expected, list);
+    }
+
+    public void testIndexOfAfterSort() {
+        ListSet<Integer> list = new ListSet<Integer>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            list.add(random.nextInt());
+        }
+        // Initialize the positions before sorting
+        assertEquals(99, list.indexOf(list.get(99)));
+
+        List<Integer> expected = new ArrayList<Integer>(list);
+        Collections.sort(expected);
+        Collections.sort(list);
+        assertIndexes(expected, list);
+
+        Collections.reverse(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            list.set(i, expected.get(i));
+        }
+        assertIndexes(expected, list);
+    }
+
+    public void testCloneAndCopy() {
+        ListSet<Integer> list = new ListSet<Integer>(Arrays.asList(3, 1, 2));
+        assertIndexes(Arrays.asList(3, 1, 2), list);
+
+        @SuppressWarnings("unchecked")
+        ListSet<Integer> clone = (ListSet<Integer>) list.clone();
+        clone.remove(0);
+        assertIndexes(Arrays.asList(1, 2), clone);
+        assertIndexes(Arrays.asList(3, 1, 2), list);
+
+        list.clear();
+        assertEquals(-1, list.indexOf(3));
+        list.add(3);
+        assertEquals(0, list.indexOf(3));
+    }
+}
@@ -1,5 +1,6 @@
 package com.vaadin.data.util;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -105,6 +106,43 @@ public class TestContainerSorting extends TestCase {
                         nameToId.get("Red Alert") });
     }
 
+    public void testSortKeysSameAsComparator() {
+        IndexedContainer expected = createNumberContainer(5000);
+        // Subclasses are sorted with Collections.sort() and compare()
+        expected.setItemSorter(new DefaultItemSorter() {
+        });
+        IndexedContainer extracted = createNumberContainer(5000);
+        DefaultItemSorter sorter = new DefaultItemSorter();
+        sorter.setParallelSortThreshold(0);
+        extracted.setItemSorter(sorter);
+        IndexedContainer parallel = createNumberContainer(5000);
+        sorter = new DefaultItemSorter();
+        sorter.setParallelSortThreshold(1);
+        parallel.setItemSorter(sorter);
+
+        Object[] propertyIds = new Object[] { PROPERTY_INTEGER_NULL2,
+                PROPERTY_INTEGER_NOT_NULL };
+        boolean[] ascending = new boolean[] { false, true };
+        expected.sort(propertyIds, ascending);
+        extracted.sort(propertyIds, ascending);
+        parallel.sort(propertyIds, ascending);
+
+        assertEquals(new ArrayList<Object>(expected.getItemIds()),
+                new ArrayList<Object>(extracted.getItemIds()));
+        assertEquals(new ArrayList<Object>(expected.getItemIds()),
+                new ArrayList<Object>(parallel.getItemIds()));
+    }
+
+    private IndexedContainer createNumberContainer(int size) {
+        IndexedContainer ic = new IndexedContainer();
+        addProperties(ic);
+        for (int i = 0; i < size; i++) {
+            // Many equal values to check that the sort is stable
+            addItem(ic, "Item " + i, null, i % 3, i % 5 == 0 ? null : i % 7);
+        }
+        return ic;
+    }
+
     private static void populateContainer(HierarchicalContainer container) {
         container.addContainerProperty("name", String.class, null);
 
@@ -1,5 +1,7 @@
 package com.vaadin.data.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Assert;
@@ -11,6 +13,8 @@ import com.vaadin.data.Container.Indexed.ItemAddEvent;
 import com.vaadin.data.Container.Indexed.ItemRemoveEvent;
 import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.SimpleStringFilter;
 
 public class TestIndexedContainer extends AbstractInMemoryContainerTest {
 
@@ -362,6 +366,88 @@ public class TestIndexedContainer extends AbstractInMemoryContainerTest {
         assertEquals(2, capturedEvent.getValue().getRemovedItemsCount());
     }
 
+    public void testAddItemsFiresSingleAddEvent() {
+        IndexedContainer container = new IndexedContainer();
+        container.addItem("a");
+        ItemSetChangeListener addListener = createListenerMockFor(container);
+        Capture<ItemAddEvent> capturedEvent = captureAddEvent(addListener);
+        EasyMock.replay(addListener);
+
+        container.addItems(Arrays.asList("b", "c", "a", "d"));
+
+        EasyMock.verify(addListener);
+        assertEquals("b", capturedEvent.getValue().getFirstItemId());
+        assertEquals(1, capturedEvent.getValue().getFirstIndex());
+        assertEquals(3, capturedEvent.getValue().getAddedItemsCount());
+        assertEquals(Arrays.asList("a", "b", "c", "d"),
+                container.getItemIds());
+    }
+
+    public void testRemoveItemsFiresSingleRemoveEvent() {
+        IndexedContainer container = new IndexedContainer();
+        container.addItems(Arrays.asList("a", "b", "c", "d"));
+        ItemSetChangeListener removeListener = createListenerMockFor(container);
+        Capture<ItemRemoveEvent> capturedEvent = captureRemoveEvent(removeListener);
+        EasyMock.replay(removeListener);
+
+        container.removeItems(Arrays.asList("c", "b"));
+
+        EasyMock.verify(removeListener);
+        assertEquals("b", capturedEvent.getValue().getFirstItemId());
+        assertEquals(1, capturedEvent.getValue().getFirstIndex());
+        assertEquals(2, capturedEvent.getValue().getRemovedItemsCount());
+    }
+
+    public void testBatchWithScatteredChangesFiresSingleEvent() {
+        IndexedContainer container = new IndexedContainer();
+        container.addItems(Arrays.asList("a", "b", "c", "d"));
+        ItemSetChangeCounter counter = new ItemSetChangeCounter();
+        container.addItemSetChangeListener(counter);
+
+        container.beginBatch();
+        try {
+            container.removeItem("a");
+            container.removeItem("d");
+            container.addItem("e");
+            counter.assertNone();
+        } finally {
+            container.endBatch();
+        }
+
+        counter.assertOnce();
+        assertEquals(Arrays.asList("b", "c", "e"), container.getItemIds());
+    }
+
+    public void testBatchFiltersOnceAtEnd() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        ItemSetChangeCounter counter = new ItemSetChangeCounter();
+        container.addItemSetChangeListener(counter);
+
+        container.beginBatch();
+        try {
+            container.addContainerFilter(SIMPLE_NAME, "a", true, false);
+            container.addContainerFilter(SIMPLE_NAME, "ab", true, false);
+            counter.assertNone();
+        } finally {
+            container.endBatch();
+        }
+
+        counter.assertOnce();
+        assertEquals(filterFully(new SimpleStringFilter(SIMPLE_NAME, "ab",
+                true, false)), container.getItemIds());
+    }
+
+    public void testEndBatchWithoutBeginBatch() {
+        IndexedContainer container = new IndexedContainer();
+        try {
+            container.endBatch();
+            fail("endBatch() without beginBatch() should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
     private Capture<ItemAddEvent> captureAddEvent(
             ItemSetChangeListener addListener) {
         Capture<ItemAddEvent> capturedEvent = new Capture<ItemAddEvent>();
@@ -489,6 +575,90 @@ public class TestIndexedContainer extends AbstractInMemoryContainerTest {
         }
     }
 
+    public void testNarrowingFilterSameAsFullFilter() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        container.addContainerFilter(SIMPLE_NAME, "a", true, false);
+        container.removeAllContainerFilters();
+        container.addContainerFilter(SIMPLE_NAME, "ab", true, false);
+        container.addContainerFilter(FULLY_QUALIFIED_NAME, "com.vaadin",
+                false, true);
+
+        assertEquals(filterFully(new SimpleStringFilter(SIMPLE_NAME, "ab",
+                true, false), new SimpleStringFilter(FULLY_QUALIFIED_NAME,
+                "com.vaadin", false, true)), container.getItemIds());
+    }
+
+    public void testNarrowingAndFilterSameAsFullFilter() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        SimpleStringFilter packageFilter = new SimpleStringFilter(
+                FULLY_QUALIFIED_NAME, "com.vaadin", false, true);
+        SimpleStringFilter nameFilter = new SimpleStringFilter(SIMPLE_NAME,
+                "e", true, false);
+        container.addContainerFilter(new And(packageFilter));
+        container.removeAllContainerFilters();
+        container.addContainerFilter(new And(packageFilter, nameFilter));
+
+        assertEquals(filterFully(packageFilter, nameFilter),
+                container.getItemIds());
+    }
+
+    public void testWideningFilterSameAsFullFilter() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        container.addContainerFilter(SIMPLE_NAME, "ab", true, false);
+        container.removeAllContainerFilters();
+        container.addContainerFilter(SIMPLE_NAME, "a", true, false);
+
+        assertEquals(
+                filterFully(new SimpleStringFilter(SIMPLE_NAME, "a", true,
+                        false)), container.getItemIds());
+    }
+
+    public void testNarrowingFilterAfterValueChange() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        container.addContainerFilter(SIMPLE_NAME, "a", true, false);
+        container.removeAllContainerFilters();
+
+        // Was filtered out by the previous filter
+        String itemId = sampleData[2];
+        container.getContainerProperty(itemId, SIMPLE_NAME).setValue("abc");
+        container.addContainerFilter(SIMPLE_NAME, "ab", true, false);
+
+        assertTrue(container.containsId(itemId));
+    }
+
+    public void testParallelFilteringKeepsOrder() {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        container.setParallelFilteringThreshold(1);
+        container.addContainerFilter(SIMPLE_NAME, "e", true, false);
+
+        assertEquals(
+                filterFully(new SimpleStringFilter(SIMPLE_NAME, "e", true,
+                        false)), container.getItemIds());
+    }
+
+    private List<Object> filterFully(SimpleStringFilter... filters) {
+        IndexedContainer container = new IndexedContainer();
+        initializeContainer(container);
+        List<Object> itemIds = new ArrayList<Object>();
+        for (Object itemId : container.getItemIds()) {
+            boolean passes = true;
+            for (SimpleStringFilter filter : filters) {
+                passes = passes
+                        && filter.passesFilter(itemId,
+                                container.getItem(itemId));
+            }
+            if (passes) {
+                itemIds.add(itemId);
+            }
+        }
+        return itemIds;
+    }
+
     // test getting non-existing property (#10445)
     public void testNonExistingProperty() {
         IndexedContainer ic = new IndexedContainer();
@@ -43,4 +43,13 @@ public class LikeFilterTest extends AbstractFilterTest<Like> {
 
     }
 
+    public void testEqualsChecksCaseSensitivity() {
+        Like caseSensitive = new Like("value", "a%", true);
+        Like caseInsensitive = new Like("value", "a%", false);
+
+        Assert.assertEquals(caseSensitive, new Like("value", "a%"));
+        Assert.assertFalse(caseSensitive.equals(caseInsensitive));
+        Assert.assertFalse(caseInsensitive.equals(caseSensitive));
+    }
+
 }
@@ -19,6 +19,7 @@ import com.vaadin.data.util.sqlcontainer.query.TableQueryTest;
         FreeformQueryTest.class, RowIdTest.class, SQLContainerTest.class,
         SQLContainerTableQueryTest.class, ColumnPropertyTest.class,
         TableQueryTest.class, SQLGeneratorsTest.class, UtilTest.class,
-        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class })
+        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class,
+        RowCacheKeyTest.class })
 public class AllTests {
 }
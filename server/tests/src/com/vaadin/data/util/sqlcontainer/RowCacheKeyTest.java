@@ -0,0 +1,80 @@
+package com.vaadin.data.util.sqlcontainer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.Like;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.FreeformQuery;
+import com.vaadin.data.util.sqlcontainer.query.FreeformStatementDelegate;
+import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+
+public class RowCacheKeyTest {
+
+    private interface KeyedDelegate extends FreeformStatementDelegate,
+            RowCacheKey.KeyProvider {
+    }
+
+    private static final String QUERY = "SELECT * FROM people";
+
+    private JDBCConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = EasyMock.createMock(JDBCConnectionPool.class);
+    }
+
+    private RowCacheKey createKey(FreeformQuery query, Filter... filters) {
+        return RowCacheKey.create(query, Arrays.asList(filters),
+                Collections.<OrderBy> emptyList(), 0, 100);
+    }
+
+    private FreeformQuery createQuery(String user) {
+        KeyedDelegate delegate = EasyMock.createMock(KeyedDelegate.class);
+        EasyMock.expect(delegate.getRowCacheKey()).andReturn(user).anyTimes();
+        EasyMock.replay(delegate);
+        FreeformQuery query = new FreeformQuery(QUERY, pool, "ID");
+        query.setDelegate(delegate);
+        return query;
+    }
+
+    @Test
+    public void create_sameQueryAndFilters_equalKeys() {
+        RowCacheKey key = createKey(new FreeformQuery(QUERY, pool, "ID"),
+                new Like("NAME", "A%", false));
+        RowCacheKey key2 = createKey(new FreeformQuery(QUERY, pool, "ID"),
+                new Like("NAME", "A%", false));
+        Assert.assertEquals(key, key2);
+        Assert.assertEquals(key.hashCode(), key2.hashCode());
+    }
+
+    @Test
+    public void create_differentLikeCaseSensitivity_differentKeys() {
+        RowCacheKey key = createKey(new FreeformQuery(QUERY, pool, "ID"),
+                new Like("NAME", "A%", true));
+        RowCacheKey key2 = createKey(new FreeformQuery(QUERY, pool, "ID"),
+                new Like("NAME", "A%", false));
+        Assert.assertFalse(key.equals(key2));
+    }
+
+    @Test
+    public void create_delegateWithoutKey_notShared() {
+        FreeformQuery query = new FreeformQuery(QUERY, pool, "ID");
+        query.setDelegate(EasyMock
+                .createMock(FreeformStatementDelegate.class));
+        Assert.assertNull(createKey(query));
+    }
+
+    @Test
+    public void create_delegatesWithDifferentKeys_differentKeys() {
+        RowCacheKey key = createKey(createQuery("alice"));
+        Assert.assertEquals(key, createKey(createQuery("alice")));
+        Assert.assertFalse(key.equals(createKey(createQuery("bob"))));
+    }
+}
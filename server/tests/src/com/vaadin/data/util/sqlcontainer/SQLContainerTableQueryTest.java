@@ -7,6 +7,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -14,6 +15,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vaadin.data.Container.Filter;
 import com.vaadin.data.Container.ItemSetChangeEvent;
 import com.vaadin.data.Container.ItemSetChangeListener;
 import com.vaadin.data.Item;
@@ -22,6 +24,7 @@ import com.vaadin.data.util.sqlcontainer.SQLTestsConstants.DB;
 import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
 import com.vaadin.data.util.sqlcontainer.query.OrderBy;
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
 
 public class SQLContainerTableQueryTest {
@@ -253,6 +256,49 @@ public class SQLContainerTableQueryTest {
         Assert.assertEquals(4, container.size());
     }
 
+    @Test
+    public void size_estimatedCountMode_returnsEstimate() throws SQLException {
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.setCountMode(SQLContainer.CountMode.ESTIMATED);
+        container.setRowCountEstimator(new RowCountEstimator() {
+            @Override
+            public int estimateRowCount(QueryDelegate delegate,
+                    List<Filter> filters) {
+                return 42;
+            }
+        });
+        Assert.assertEquals(42, container.size());
+    }
+
+    @Test
+    public void size_backgroundCountMode_returnsEstimateUntilCounted()
+            throws SQLException {
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.setCountMode(SQLContainer.CountMode.BACKGROUND);
+        container.setRowCountEstimator(new RowCountEstimator() {
+            @Override
+            public int estimateRowCount(QueryDelegate delegate,
+                    List<Filter> filters) {
+                return 2;
+            }
+        });
+        final List<Runnable> counts = new ArrayList<Runnable>();
+        container.setCountExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                counts.add(command);
+            }
+        });
+
+        Assert.assertEquals(2, container.size());
+        Assert.assertEquals(1, counts.size());
+
+        counts.get(0).run();
+        Assert.assertEquals(4, container.size());
+    }
+
     @Test
     public void size_tableOneAddedItem_returnsFive() throws SQLException {
         Connection conn = connectionPool.reserveConnection();
@@ -1525,4 +1571,62 @@ public class SQLContainerTableQueryTest {
                         .getValue());
     }
 
+    @Test
+    public void getIdByIndex_cacheSizeOfTwoPages_keepsFirstPageCached()
+            throws SQLException {
+        DataGenerator.addFiveThousandPeople(connectionPool);
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.setCacheSize(2 * container.getFetchSize());
+
+        Object firstId = container.getIdByIndex(0);
+        container.getIdByIndex(container.getFetchSize());
+        long misses = container.getCacheMissCount();
+
+        Assert.assertEquals(firstId, container.getIdByIndex(0));
+        Assert.assertEquals(misses, container.getCacheMissCount());
+    }
+
+    @Test
+    public void getItem_sharedRowCache_secondContainerUsesCachedRows()
+            throws SQLException {
+        SharedRowCache cache = new SharedRowCache();
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.setRowCache(cache);
+        SQLContainer container2 = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container2.setRowCache(cache);
+
+        Object id = container.getIdByIndex(0);
+        Assert.assertEquals(0, cache.getHitCount());
+
+        Assert.assertEquals(id, container2.getIdByIndex(0));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(
+                container.getContainerProperty(id, "NAME").getValue(),
+                container2.getContainerProperty(id, "NAME").getValue());
+        Assert.assertNotSame(container.getItem(id), container2.getItem(id));
+    }
+
+    @Test
+    public void commit_sharedRowCache_invalidatesRowsOfTable()
+            throws SQLException {
+        SharedRowCache cache = new SharedRowCache();
+        SQLContainer container = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.setRowCache(cache);
+        SQLContainer container2 = new SQLContainer(new TableQuery("people",
+                connectionPool, SQLTestsConstants.sqlGen));
+        container2.setRowCache(cache);
+        container2.getIdByIndex(0);
+        Assert.assertTrue(cache.getRowCount() > 0);
+
+        Object id = container.addItem();
+        container.getContainerProperty(id, "NAME").setValue("Shared");
+        container.commit();
+
+        Assert.assertEquals(0, cache.getRowCount());
+    }
+
 }
@@ -1,6 +1,8 @@
 package com.vaadin.data.util.sqlcontainer.connection;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import junit.framework.Assert;
@@ -9,6 +11,7 @@ import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vaadin.data.util.sqlcontainer.DataGenerator;
 import com.vaadin.data.util.sqlcontainer.SQLTestsConstants;
 
 public class SimpleJDBCConnectionPoolTest {
@@ -135,15 +138,23 @@ public class SimpleJDBCConnectionPoolTest {
     }
 
     @Test
-    public void releaseConnection_failingRollback_shouldCallClose()
+    public void releaseConnection_failingRollback_shouldDiscardConnection()
             throws SQLException {
-        Connection c = EasyMock.createMock(Connection.class);
-        c.getAutoCommit();
-        EasyMock.expectLastCall().andReturn(false);
-        c.rollback();
-        EasyMock.expectLastCall().andThrow(new SQLException("Rollback failed"));
+        SimpleJDBCConnectionPool pool = (SimpleJDBCConnectionPool) connectionPool;
+        Connection c = pool.reserveConnection();
+        // Rolling back a closed connection fails
         c.close();
-        EasyMock.expectLastCall().atLeastOnce();
+        pool.releaseConnection(c);
+        Assert.assertEquals(0, pool.getActiveConnectionCount());
+        Assert.assertEquals(1, pool.getIdleConnectionCount());
+        Assert.assertNotSame(c, pool.reserveConnection());
+        Assert.assertNotSame(c, pool.reserveConnection());
+    }
+
+    @Test
+    public void releaseConnection_notReserved_shouldDoNothing()
+            throws SQLException {
+        Connection c = EasyMock.createMock(Connection.class);
         EasyMock.replay(c);
         // make sure the connection pool is initialized
         connectionPool.reserveConnection();
@@ -151,6 +162,19 @@ public class SimpleJDBCConnectionPoolTest {
         EasyMock.verify(c);
     }
 
+    @Test
+    public void releaseConnection_releasedTwice_shouldBeAvailableOnce()
+            throws SQLException {
+        SimpleJDBCConnectionPool pool = (SimpleJDBCConnectionPool) connectionPool;
+        Connection c = pool.reserveConnection();
+        pool.releaseConnection(c);
+        pool.releaseConnection(c);
+        Assert.assertEquals(0, pool.getActiveConnectionCount());
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+        Assert.assertNotSame(pool.reserveConnection(),
+                pool.reserveConnection());
+    }
+
     @Test
     public void destroy_shouldCloseAllConnections() throws SQLException {
         Connection c1 = connectionPool.reserveConnection();
@@ -171,4 +195,110 @@ public class SimpleJDBCConnectionPoolTest {
         Assert.assertTrue(c2.isClosed());
     }
 
+    @Test
+    public void reserveConnection_timeoutElapses_shouldFailAfterWaiting()
+            throws SQLException {
+        SimpleJDBCConnectionPool pool = (SimpleJDBCConnectionPool) connectionPool;
+        pool.setReserveTimeout(50);
+        pool.reserveConnection();
+        pool.reserveConnection();
+        try {
+            pool.reserveConnection();
+            Assert.fail("Reserving connection didn't fail even though no connections are available!");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertEquals(1, pool.getWaitCount());
+        Assert.assertEquals(1, pool.getTimeoutCount());
+        Assert.assertTrue(pool.getTotalWaitTime() >= 40);
+    }
+
+    @Test
+    public void reserveConnection_connectionReleasedWhileWaiting_returnsConnection()
+            throws Exception {
+        final SimpleJDBCConnectionPool pool = (SimpleJDBCConnectionPool) connectionPool;
+        pool.setReserveTimeout(10000);
+        pool.reserveConnection();
+        final Connection c2 = pool.reserveConnection();
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // release right away
+                }
+                pool.releaseConnection(c2);
+            }
+        };
+        releaser.start();
+        Connection c3 = pool.reserveConnection();
+        releaser.join();
+        Assert.assertSame(c2, c3);
+        Assert.assertEquals(1, pool.getWaitCount());
+        Assert.assertEquals(0, pool.getTimeoutCount());
+    }
+
+    @Test
+    public void getConnectionCounts_reserveAndRelease_returnsCounts()
+            throws SQLException {
+        SimpleJDBCConnectionPool pool = (SimpleJDBCConnectionPool) connectionPool;
+        Assert.assertEquals(0, pool.getActiveConnectionCount());
+        Assert.assertEquals(0, pool.getIdleConnectionCount());
+        Connection c = pool.reserveConnection();
+        Assert.assertEquals(1, pool.getActiveConnectionCount());
+        Assert.assertEquals(1, pool.getIdleConnectionCount());
+        pool.releaseConnection(c);
+        Assert.assertEquals(0, pool.getActiveConnectionCount());
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void reserveConnection_maxIdleTimeElapsed_closesIdleConnection()
+            throws Exception {
+        SimpleJDBCConnectionPool pool = new SimpleJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 0, 2);
+        pool.setMaxIdleTime(10);
+        Connection c1 = pool.reserveConnection();
+        Connection c2 = pool.reserveConnection();
+        pool.releaseConnection(c1);
+        Thread.sleep(50);
+        pool.releaseConnection(c2);
+        Assert.assertSame(c2, pool.reserveConnection());
+        Assert.assertTrue(c1.isClosed());
+        Assert.assertEquals(0, pool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void prepareStatement_sameSqlAfterClose_reusesStatement()
+            throws SQLException {
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        SimpleJDBCConnectionPool pool = new SimpleJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 1, 1);
+        pool.setStatementCacheSize(2);
+        Connection c = pool.reserveConnection();
+        String sql = "SELECT COUNT(*) FROM PEOPLE";
+        PreparedStatement ps1 = c.prepareStatement(sql);
+        ResultSet rs = ps1.executeQuery();
+        Assert.assertSame(ps1, rs.getStatement());
+        Assert.assertSame(c, rs.getStatement().getConnection());
+        rs.close();
+        ps1.close();
+
+        PreparedStatement ps2 = c.prepareStatement(sql);
+        Assert.assertSame(ps1, ps2);
+        PreparedStatement ps3 = c.prepareStatement(sql);
+        Assert.assertNotSame(ps2, ps3);
+        ps2.close();
+        ps3.close();
+        Assert.assertEquals(1, pool.getStatementCacheHitCount());
+        Assert.assertEquals(2, pool.getStatementCacheMissCount());
+
+        pool.releaseConnection(c);
+        pool.destroy();
+        Assert.assertTrue(c.isClosed());
+    }
+
 }
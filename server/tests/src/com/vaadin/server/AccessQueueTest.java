@@ -0,0 +1,241 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.DeploymentConfiguration.AccessQueueOverflowPolicy;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * Tests for the capacity, overflow policy, drain limit and executor of the
+ * queue of tasks submitted using {@link VaadinSession#access(Runnable)}.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class AccessQueueTest extends TestCase {
+
+    private MockDeploymentConfiguration configuration;
+    private VaadinService service;
+    private VaadinSession session;
+    private List<Integer> ran;
+    private Queue<Runnable> executorQueue;
+
+    @Override
+    protected void setUp() throws Exception {
+        configuration = new MockDeploymentConfiguration();
+        service = new VaadinServletService(new VaadinServlet(), configuration);
+        session = new VaadinSession(service) {
+            private final ReentrantLock lock = new ReentrantLock();
+
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+        };
+        session.lock();
+        try {
+            session.setConfiguration(configuration);
+        } finally {
+            session.unlock();
+        }
+
+        ran = new ArrayList<Integer>();
+        executorQueue = new LinkedList<Runnable>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CurrentInstance.clearAll();
+    }
+
+    private Future<Void> access(final int id) {
+        return session.access(new Runnable() {
+            @Override
+            public void run() {
+                ran.add(Integer.valueOf(id));
+            }
+        });
+    }
+
+    private void useManualExecutor() {
+        service.setAccessExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executorQueue.add(command);
+            }
+        });
+    }
+
+    private void runExecutor() {
+        Runnable command = executorQueue.poll();
+        assertNotNull("No task was submitted to the executor", command);
+        command.run();
+    }
+
+    public void testUnboundedByDefault() {
+        session.lock();
+        try {
+            for (int i = 0; i < 100; i++) {
+                access(i);
+            }
+            assertEquals(100, session.getPendingAccessQueue().size());
+        } finally {
+            session.unlock();
+        }
+        assertEquals(100, ran.size());
+    }
+
+    public void testRejectWhenFull() {
+        configuration.setAccessQueueCapacity(2);
+
+        session.lock();
+        try {
+            access(1);
+            access(2);
+            try {
+                access(3);
+                fail("Task should be rejected when the queue is full");
+            } catch (RejectedExecutionException e) {
+                // Expected
+            }
+        } finally {
+            session.unlock();
+        }
+
+        assertEquals(2, ran.size());
+        assertEquals(Integer.valueOf(1), ran.get(0));
+        assertEquals(Integer.valueOf(2), ran.get(1));
+
+        // Space is available again after the queue has been purged
+        access(4);
+        assertEquals(Integer.valueOf(4), ran.get(2));
+    }
+
+    public void testDiscardOldestWhenFull() {
+        configuration.setAccessQueueCapacity(2);
+        configuration
+                .setAccessQueueOverflowPolicy(AccessQueueOverflowPolicy.DISCARD_OLDEST);
+
+        Future<Void> first;
+        session.lock();
+        try {
+            first = access(1);
+            access(2);
+            access(3);
+            assertTrue(first.isCancelled());
+        } finally {
+            session.unlock();
+        }
+
+        assertEquals(2, ran.size());
+        assertEquals(Integer.valueOf(2), ran.get(0));
+        assertEquals(Integer.valueOf(3), ran.get(1));
+    }
+
+    public void testDrainLimitWithoutExecutorRunsAllTasks() {
+        configuration.setAccessQueueDrainLimit(2);
+
+        session.lock();
+        try {
+            for (int i = 0; i < 5; i++) {
+                access(i);
+            }
+        } finally {
+            session.unlock();
+        }
+
+        assertEquals(5, ran.size());
+        assertTrue(session.getPendingAccessQueue().isEmpty());
+        assertFalse(session.hasLock());
+    }
+
+    public void testDrainLimitWithExecutorRunsBatches() {
+        configuration.setAccessQueueDrainLimit(2);
+        useManualExecutor();
+
+        session.lock();
+        try {
+            for (int i = 0; i < 5; i++) {
+                access(i);
+            }
+        } finally {
+            session.unlock();
+        }
+        assertEquals(2, ran.size());
+
+        runExecutor();
+        assertEquals(4, ran.size());
+
+        runExecutor();
+        assertEquals(5, ran.size());
+        assertTrue(executorQueue.isEmpty());
+    }
+
+    public void testExecutorRunsTasksSubmittedWithoutLock() {
+        useManualExecutor();
+
+        access(1);
+        assertTrue(ran.isEmpty());
+
+        runExecutor();
+        assertEquals(1, ran.size());
+        assertFalse(session.hasLock());
+    }
+
+    public void testOneDrainScheduledForManyTasks() {
+        useManualExecutor();
+
+        for (int i = 0; i < 5; i++) {
+            access(i);
+        }
+        assertEquals(1, executorQueue.size());
+
+        runExecutor();
+        assertEquals(5, ran.size());
+        assertTrue(executorQueue.isEmpty());
+
+        // A new drain is scheduled once the previous one has started
+        access(5);
+        assertEquals(1, executorQueue.size());
+    }
+
+    public void testExecutorNotUsedWhenHoldingLock() {
+        useManualExecutor();
+
+        session.lock();
+        try {
+            access(1);
+        } finally {
+            session.unlock();
+        }
+
+        assertEquals(1, ran.size());
+        assertTrue(executorQueue.isEmpty());
+    }
+}
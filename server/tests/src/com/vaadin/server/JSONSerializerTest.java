@@ -99,6 +99,50 @@ public class JSONSerializerTest extends TestCase {
         }
     }
 
+    public void testDiffContainsOnlyChangedProperties() throws Exception {
+        AbstractSplitPanelState reference = new AbstractSplitPanelState();
+        JSONObject referenceJson = (JSONObject) JsonCodec.encode(reference,
+                null, AbstractSplitPanelState.class, null).getEncodedValue();
+
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.enabled = false;
+        state.splitterState.position = 42;
+        JSONObject diff = (JSONObject) JsonCodec.encode(state, referenceJson,
+                AbstractSplitPanelState.class, null).getDiff();
+
+        assertEquals(3, diff.length());
+        assertEquals("Caption", diff.get("caption"));
+        assertEquals(Boolean.FALSE, diff.get("enabled"));
+        assertEquals(42f, ((Number) diff.getJSONObject("splitterState").get(
+                "position")).floatValue());
+    }
+
+    public void testDiffComparesNumbersParsedFromString() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.splitterState.position = 42.5f;
+        JSONObject encoded = (JSONObject) JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null).getEncodedValue();
+
+        // Diff states are parsed back from strings after deserialization
+        JSONObject parsed = new JSONObject(encoded.toString());
+        JSONObject diff = (JSONObject) JsonCodec.encode(state, parsed,
+                AbstractSplitPanelState.class, null).getDiff();
+
+        assertEquals(0, diff.length());
+    }
+
+    public void testBeanDecodedWithoutConversion() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.id = "foo";
+        state.splitterState.locked = true;
+        JSONObject encoded = (JSONObject) JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null).getEncodedValue();
+
+        ensureDecodedCorrectly(state, encoded, AbstractSplitPanelState.class);
+    }
+
     private void ensureDecodedCorrectly(Object original, Object encoded,
             Type type) throws Exception {
         Object serverSideDecoded = JsonCodec.decodeInternalOrCustomType(type,
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.vaadin.shared.ui.splitpanel.AbstractSplitPanelState;
+
+/**
+ * Tests for {@link JsonStreamWriter}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class JsonStreamWriterTest extends TestCase {
+
+    private StringWriter out;
+    private JsonStreamWriter json;
+
+    @Override
+    protected void setUp() throws Exception {
+        out = new StringWriter();
+        json = new JsonStreamWriter(out);
+    }
+
+    public void testNestedStructures() throws Exception {
+        json.beginObject();
+        json.name("a").value(1);
+        json.name("b").beginArray().value("x").value(true).nullValue()
+                .endArray();
+        json.name("c").beginObject().endObject();
+        json.endObject();
+
+        assertEquals("{\"a\":1,\"b\":[\"x\",true,null],\"c\":{}}",
+                out.toString());
+    }
+
+    public void testStringEscapingMatchesJSONObject() throws Exception {
+        String value = "quote\" backslash\\ </script> \n\t\r\b\f \u0001 \u0085 \u2028 \u00e4";
+        json.value(value);
+
+        assertEquals(JSONObject.quote(value), out.toString());
+    }
+
+    public void testOrgJsonValuesAreStreamed() throws Exception {
+        JSONObject object = new JSONObject();
+        object.put("number", 1.5);
+        object.put("array", new JSONArray().put("a").put(JSONObject.NULL));
+        json.value(object);
+
+        assertEquals(object.toString(), out.toString());
+    }
+
+    public void testEmptyOptionalObjectIsOmitted() throws Exception {
+        json.beginObject();
+        json.name("first").value(1);
+        json.beginOptionalObject("empty");
+        json.beginOptionalObject("nested");
+        json.endObject();
+        json.endObject();
+        json.name("last").value(2);
+        json.endObject();
+
+        assertEquals("{\"first\":1,\"last\":2}", out.toString());
+    }
+
+    public void testNonEmptyOptionalObjectIsWritten() throws Exception {
+        json.beginObject();
+        json.beginOptionalObject("outer");
+        json.beginOptionalObject("inner");
+        json.name("value").value("x");
+        json.endObject();
+        json.endObject();
+        json.beginOptionalObject("second");
+        json.name("value").value(false);
+        json.endObject();
+        json.endObject();
+
+        assertEquals(
+                "{\"outer\":{\"inner\":{\"value\":\"x\"}},\"second\":{\"value\":false}}",
+                out.toString());
+    }
+
+    public void testStreamedDiffMatchesEncodedDiff() throws Exception {
+        AbstractSplitPanelState reference = new AbstractSplitPanelState();
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.splitterState.position = 42;
+
+        JSONObject referenceJson = (JSONObject) JsonCodec.encode(reference,
+                null, AbstractSplitPanelState.class, null).getEncodedValue();
+        EncodeResult expected = JsonCodec.encode(state, referenceJson,
+                AbstractSplitPanelState.class, null);
+
+        json.beginObject();
+        JSONObject encoded = JsonCodec.encodeAndWriteDiff(state,
+                referenceJson, AbstractSplitPanelState.class, null, json);
+        json.endObject();
+
+        assertEquals(expected.getEncodedValue().toString(), encoded.toString());
+        assertEquals(expected.getDiff().toString(), out.toString());
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * Tests for locking UIs separately when
+ * {@link DeploymentConfiguration#isPerUiLocking()} is enabled.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class PerUiLockingTest extends TestCase {
+
+    private MockDeploymentConfiguration configuration;
+    private VaadinSession session;
+    private UI ui1;
+    private UI ui2;
+
+    @Override
+    protected void setUp() throws Exception {
+        configuration = new MockDeploymentConfiguration();
+        configuration.setPerUiLocking(true);
+        VaadinService service = new VaadinServletService(new VaadinServlet(),
+                configuration);
+
+        session = new VaadinSession(service) {
+            private final ReentrantLock lock = new ReentrantLock();
+
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+        };
+        session.lock();
+        try {
+            session.setConfiguration(configuration);
+            ui1 = createUI();
+            ui2 = createUI();
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CurrentInstance.clearAll();
+    }
+
+    private UI createUI() {
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        return ui;
+    }
+
+    public void testUIsHaveSeparateLocks() {
+        assertNotSame(session.getLockInstance(), ui1.getLockInstance());
+        assertNotSame(ui1.getLockInstance(), ui2.getLockInstance());
+    }
+
+    public void testSessionLockUsedWhenDisabled() {
+        configuration.setPerUiLocking(false);
+
+        assertSame(session.getLockInstance(), ui1.getLockInstance());
+
+        ui1.lock();
+        try {
+            assertTrue(session.hasLock());
+            assertTrue(ui2.hasLock());
+        } finally {
+            ui1.unlock();
+        }
+        assertFalse(session.hasLock());
+    }
+
+    public void testUIsLockedConcurrently() throws Exception {
+        final AtomicBoolean locked = new AtomicBoolean();
+        ui1.lock();
+        try {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    ui2.lock();
+                    try {
+                        locked.set(ui2.hasLock());
+                    } finally {
+                        ui2.unlock();
+                    }
+                }
+            };
+            thread.start();
+            thread.join(5000);
+            assertTrue(locked.get());
+        } finally {
+            ui1.unlock();
+        }
+    }
+
+    public void testUILockedWhileHoldingSessionLock() {
+        session.lock();
+        try {
+            ui1.lock();
+            try {
+                assertTrue(ui1.hasLock());
+                assertFalse(ui2.hasLock());
+            } finally {
+                ui1.unlock();
+            }
+        } finally {
+            session.unlock();
+        }
+    }
+
+    public void testSessionLockWhileHoldingUILockThrows() {
+        UI.setCurrent(ui1);
+        ui1.lock();
+        try {
+            assertTrue(session.hasLock());
+            session.lock();
+            fail("Locking the session while holding a UI lock should fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        } finally {
+            ui1.unlock();
+        }
+        assertFalse(session.hasLock());
+    }
+
+    public void testOtherUILockWhileHoldingUILockThrows() {
+        UI.setCurrent(ui1);
+        ui1.lock();
+        try {
+            ui2.lock();
+            fail("Locking a UI while holding the lock of another UI should fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        } finally {
+            ui1.unlock();
+        }
+    }
+
+    public void testUnlockWithoutUILockThrows() {
+        session.lock();
+        try {
+            ui1.unlock();
+            fail("Unlocking a UI that is not locked should fail");
+        } catch (IllegalMonitorStateException e) {
+            // Expected
+        } finally {
+            session.unlock();
+        }
+        assertFalse(session.hasLock());
+    }
+
+    public void testComponentChangeRequiresUILock() {
+        boolean rejected = false;
+        session.lock();
+        try {
+            ui1.setCaption("Changed");
+        } catch (AssertionError e) {
+            rejected = true;
+        } finally {
+            session.unlock();
+        }
+        assertTrue(
+                "Changing a UI while only holding the session lock should fail",
+                rejected);
+
+        ui1.lock();
+        try {
+            ui1.setCaption("Changed");
+        } finally {
+            ui1.unlock();
+        }
+    }
+
+    public void testAccessRunsWithUILock() throws Exception {
+        final AtomicBoolean ranWithLock = new AtomicBoolean();
+        ui1.access(new Runnable() {
+            @Override
+            public void run() {
+                ranWithLock.set(ui1.hasLock()
+                        && !((ReentrantLock) session.getLockInstance())
+                                .isHeldByCurrentThread()
+                        && UI.getCurrent() == ui1);
+            }
+        }).get();
+
+        assertTrue(ranWithLock.get());
+        assertFalse(ui1.hasLock());
+    }
+
+    public void testAccessRunOnUnlock() {
+        final AtomicBoolean ran = new AtomicBoolean();
+        ui1.lock();
+        try {
+            ui1.access(new Runnable() {
+                @Override
+                public void run() {
+                    ran.set(true);
+                }
+            });
+            assertFalse(ran.get());
+        } finally {
+            ui1.unlock();
+        }
+        assertTrue(ran.get());
+    }
+
+    public void testLockStatisticsCountContention() throws Exception {
+        LockStatistics statistics = ui1.getLockStatistics();
+        ui1.lock();
+        Thread thread;
+        try {
+            thread = new Thread() {
+                @Override
+                public void run() {
+                    ui1.lock();
+                    ui1.unlock();
+                }
+            };
+            thread.start();
+            ReentrantLock lock = (ReentrantLock) ui1.getLockInstance();
+            while (!lock.hasQueuedThread(thread)) {
+                Thread.sleep(1);
+            }
+        } finally {
+            ui1.unlock();
+        }
+        thread.join(5000);
+
+        assertEquals(2, statistics.getAcquireCount());
+        assertEquals(1, statistics.getContendedCount());
+        assertEquals(0, session.getLockStatistics().getContendedCount());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+import com.vaadin.shared.ui.splitpanel.AbstractSplitPanelState;
+
+/**
+ * Tests for {@link StateSnapshot}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class StateSnapshotTest extends TestCase {
+
+    private static final Class<AbstractSplitPanelState> TYPE = AbstractSplitPanelState.class;
+
+    public void testSnapshotDiffMatchesJsonDiff() throws Exception {
+        AbstractSplitPanelState reference = new AbstractSplitPanelState();
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.enabled = false;
+        state.splitterState.position = 42;
+
+        JSONObject referenceJson = (JSONObject) JsonCodec.encode(reference,
+                null, TYPE, null).getEncodedValue();
+        StateSnapshot referenceSnapshot = JsonCodec.encodeState(reference,
+                null, TYPE, null, new JSONObject());
+
+        JSONObject diff = new JSONObject();
+        StateSnapshot snapshot = JsonCodec.encodeState(state,
+                referenceSnapshot, TYPE, null, diff);
+
+        EncodeResult expected = JsonCodec.encode(state, referenceJson, TYPE,
+                null);
+        assertEquals(expected.getDiff().toString(), diff.toString());
+        assertEquals(expected.getEncodedValue().toString(), snapshot.toJson()
+                .toString());
+    }
+
+    public void testUnchangedStateGivesEmptyDiff() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.splitterState.position = 42.5f;
+
+        StateSnapshot snapshot = JsonCodec.encodeState(state, null, TYPE,
+                null, new JSONObject());
+        JSONObject diff = new JSONObject();
+        JsonCodec.encodeState(state, snapshot, TYPE, null, diff);
+
+        assertEquals(0, diff.length());
+    }
+
+    public void testSnapshotFromJson() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        JSONObject encoded = (JSONObject) JsonCodec.encode(state, null, TYPE,
+                null).getEncodedValue();
+
+        StateSnapshot snapshot = JsonCodec.createStateSnapshot(new JSONObject(
+                encoded.toString()), TYPE);
+        assertEquals(encoded.toString(), snapshot.toJson().toString());
+
+        JSONObject diff = new JSONObject();
+        JsonCodec.encodeState(state, snapshot, TYPE, null, diff);
+        assertEquals(0, diff.length());
+    }
+
+    public void testToJsonReturnsCopy() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        StateSnapshot snapshot = JsonCodec.encodeState(state, null, TYPE,
+                null, new JSONObject());
+
+        JSONObject json = snapshot.toJson();
+        json.put("caption", "Modified");
+        json.getJSONObject("splitterState").put("position", 1);
+
+        JSONObject diff = new JSONObject();
+        JsonCodec.encodeState(state, snapshot, TYPE, null, diff);
+        assertEquals(0, diff.length());
+    }
+
+    public void testSerialization() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "Caption";
+        state.height = "100px";
+        state.splitterState.position = 42.5f;
+        state.splitterState.locked = true;
+        StateSnapshot snapshot = JsonCodec.encodeState(state, null, TYPE,
+                null, new JSONObject());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(snapshot);
+        out.close();
+        StateSnapshot deserialized = (StateSnapshot) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertSame(TYPE, deserialized.getStateType());
+        assertEquals(snapshot.toJson().toString(), deserialized.toJson()
+                .toString());
+
+        JSONObject diff = new JSONObject();
+        JsonCodec.encodeState(state, deserialized, TYPE, null, diff);
+        assertEquals(0, diff.length());
+    }
+
+    public void testEstimateSize() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        StateSnapshot snapshot = JsonCodec.encodeState(state, null, TYPE,
+                null, new JSONObject());
+        long emptySize = snapshot.estimateSize();
+        assertTrue(emptySize > 0);
+
+        state.styles = Arrays.asList("style");
+        StateSnapshot larger = JsonCodec.encodeState(state, null, TYPE, null,
+                new JSONObject());
+        assertTrue(larger.estimateSize() > emptySize);
+    }
+
+    public void testEstimateJsonSize() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.styles = Arrays.asList("style");
+        StateSnapshot snapshot = JsonCodec.encodeState(state, null, TYPE,
+                null, new JSONObject());
+        JSONObject json = snapshot.toJson();
+        long size = StateSnapshot.estimateSize(json);
+        assertTrue(size > 0);
+
+        json.put("extra", new JSONObject().put("key", "value"));
+        assertTrue(StateSnapshot.estimateSize(json) > size);
+    }
+}
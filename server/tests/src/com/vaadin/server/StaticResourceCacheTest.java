@@ -0,0 +1,277 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.StaticResourceCache.CachedResource;
+
+/**
+ * Tests for {@link StaticResourceCache}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class StaticResourceCacheTest extends TestCase {
+
+    /**
+     * Records what is written to a response.
+     */
+    private static class ResponseRecorder implements InvocationHandler {
+        private final Map<String, String> headers = new HashMap<String, String>();
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private int status = HttpServletResponse.SC_OK;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+            if (name.equals("setHeader")) {
+                headers.put((String) args[0], (String) args[1]);
+            } else if (name.equals("setStatus")) {
+                status = ((Integer) args[0]).intValue();
+            } else if (name.equals("getOutputStream")) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        content.write(b);
+                    }
+                };
+            }
+            return null;
+        }
+    }
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("VAADIN", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testETagMatchGivesNotModified() throws Exception {
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024);
+        CachedResource resource = cache.load("/VAADIN/styles.css",
+                createResource("styles.css", repeat("a { }", 10)), "text/css");
+
+        ResponseRecorder first = write(cache, resource,
+                createRequest(new HashMap<String, String>()));
+        assertEquals(HttpServletResponse.SC_OK, first.status);
+        assertEquals(repeat("a { }", 10), first.content.toString("UTF-8"));
+        String etag = first.headers.get("ETag");
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", "\"other\", " + etag);
+        ResponseRecorder second = write(cache, resource,
+                createRequest(headers));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, second.status);
+        assertEquals(0, second.content.size());
+    }
+
+    public void testGzipSentOnlyWhenAccepted() throws Exception {
+        String css = repeat(".v-button { color: red; }\n", 100);
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024);
+        CachedResource resource = cache.load("/VAADIN/styles.css",
+                createResource("styles.css", css), "text/css");
+        assertTrue(resource.isGzipped());
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept-Encoding", "deflate, gzip");
+        ResponseRecorder gzipped = write(cache, resource,
+                createRequest(headers));
+        assertEquals("gzip", gzipped.headers.get("Content-Encoding"));
+        assertEquals(css, gunzip(gzipped.content.toByteArray()));
+
+        headers.put("Accept-Encoding", "gzip;q=0");
+        ResponseRecorder plain = write(cache, resource,
+                createRequest(headers));
+        assertNull(plain.headers.get("Content-Encoding"));
+        assertEquals(css, plain.content.toString("UTF-8"));
+        assertFalse(plain.headers.get("ETag").equals(
+                gzipped.headers.get("ETag")));
+    }
+
+    public void testLeastRecentlyUsedResourceEvicted() throws Exception {
+        // Each resource may use at most an eighth of the cache
+        StaticResourceCache cache = new StaticResourceCache(800);
+        for (int i = 0; i < 8; i++) {
+            cache.load("/VAADIN/" + i, createResource("r" + i, repeat("x", 90)),
+                    null);
+        }
+        assertEquals(8, cache.getResourceCount());
+        assertEquals(720, cache.getSize());
+
+        assertNotNull(cache.get("/VAADIN/0"));
+        cache.load("/VAADIN/8", createResource("r8", repeat("x", 90)), null);
+
+        assertEquals(8, cache.getResourceCount());
+        assertNotNull(cache.get("/VAADIN/0"));
+        assertNull(cache.get("/VAADIN/1"));
+        assertNotNull(cache.get("/VAADIN/8"));
+    }
+
+    public void testLargeFileStreamedFromFileSystem() throws Exception {
+        String content = repeat("0123456789", 50);
+        StaticResourceCache cache = new StaticResourceCache(800);
+        CachedResource resource = cache.load("/VAADIN/large.js",
+                createResource("large.js", content), "text/javascript");
+
+        assertNotNull(resource);
+        assertFalse(resource.isGzipped());
+        assertEquals(500, resource.getLength());
+        assertEquals(0, cache.getSize());
+
+        ResponseRecorder response = write(cache, resource,
+                createRequest(new HashMap<String, String>()));
+        assertEquals(content, response.content.toString("UTF-8"));
+    }
+
+    public void testLargeNonFileResourceNotReadAgain() throws Exception {
+        final int[] openCount = new int[1];
+        final int[] bytesRead = new int[1];
+        URLStreamHandler handler = new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) {
+                openCount[0]++;
+                return new URLConnection(u) {
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public int getContentLength() {
+                        return 500;
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new InputStream() {
+                            @Override
+                            public int read() {
+                                bytesRead[0]++;
+                                return 'x';
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        URL url = new URL(null, "test:/VAADIN/large.js", handler);
+        StaticResourceCache cache = new StaticResourceCache(800);
+
+        assertNull(cache.load("/VAADIN/large.js", url, "text/javascript"));
+        assertEquals(0, bytesRead[0]);
+
+        CachedResource resource = cache.get("/VAADIN/large.js");
+        assertNotNull(resource);
+        assertTrue(resource.isUncacheable());
+        assertEquals(1, openCount[0]);
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private URL createResource(String name, String content)
+            throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    private static HttpServletRequest createRequest(
+            final Map<String, String> headers) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                StaticResourceCacheTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) throws Throwable {
+                        if (method.getName().equals("getHeader")) {
+                            return headers.get(args[0]);
+                        } else if (method.getName().equals("getDateHeader")) {
+                            return Long.valueOf(-1);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static ResponseRecorder write(StaticResourceCache cache,
+            CachedResource resource, HttpServletRequest request)
+            throws IOException {
+        ResponseRecorder recorder = new ResponseRecorder();
+        HttpServletResponse response = (HttpServletResponse) Proxy
+                .newProxyInstance(
+                        StaticResourceCacheTest.class.getClassLoader(),
+                        new Class<?>[] { HttpServletResponse.class }, recorder);
+        cache.write(request, response, resource, 0);
+        return recorder;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String repeat(String string, int times) {
+        char[] chars = new char[string.length() * times];
+        for (int i = 0; i < times; i++) {
+            string.getChars(0, string.length(), chars, i * string.length());
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+
+import com.vaadin.annotations.Push;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.PushConfiguration;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests for the push settings read by {@link UIProvider}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class UIProviderTest extends TestCase {
+
+    public static class PlainUI extends UI {
+        @Override
+        protected void init(VaadinRequest request) {
+        }
+    }
+
+    @Push(coalescingInterval = 250)
+    public static class CoalescingUI extends PlainUI {
+    }
+
+    public static class CoalescingSubUI extends CoalescingUI {
+    }
+
+    private final UIProvider provider = new DefaultUIProvider();
+
+    private static UICreateEvent createEvent(Class<? extends UI> uiClass)
+            throws ServiceException {
+        VaadinService service = new VaadinServletService(new VaadinServlet(),
+                new MockDeploymentConfiguration());
+        VaadinRequest request = EasyMock.createMock(VaadinRequest.class);
+        EasyMock.expect(request.getService()).andStubReturn(service);
+        EasyMock.replay(request);
+        return new UICreateEvent(request, uiClass);
+    }
+
+    public void testNoAnnotationMeansNoCoalescing() throws Exception {
+        assertEquals(0, provider
+                .getPushCoalescingInterval(createEvent(PlainUI.class)));
+    }
+
+    public void testCoalescingIntervalFromAnnotation() throws Exception {
+        assertEquals(250, provider
+                .getPushCoalescingInterval(createEvent(CoalescingUI.class)));
+        assertEquals(250, provider
+                .getPushCoalescingInterval(createEvent(CoalescingSubUI.class)));
+    }
+
+    public void testNegativeCoalescingIntervalRejected() {
+        PushConfiguration pushConfiguration = new PlainUI()
+                .getPushConfiguration();
+        assertEquals(0, pushConfiguration.getCoalescingInterval());
+        pushConfiguration.setCoalescingInterval(100);
+        assertEquals(100, pushConfiguration.getCoalescingInterval());
+        try {
+            pushConfiguration.setCoalescingInterval(-1);
+            fail("Negative interval should not be accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
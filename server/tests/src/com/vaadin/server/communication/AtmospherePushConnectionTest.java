@@ -0,0 +1,167 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.ServiceException;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * Tests for push coalescing in {@link AtmospherePushConnection}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class AtmospherePushConnectionTest extends TestCase {
+
+    private static final String MESSAGE = "for(;;);[{}]";
+
+    private static class CountingPushConnection extends
+            AtmospherePushConnection {
+        private int messagesSent = 0;
+
+        public CountingPushConnection(UI ui) {
+            super(ui, null);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        String createMessage(boolean async) {
+            return MESSAGE;
+        }
+
+        @Override
+        void sendMessage(String message) {
+            messagesSent++;
+        }
+    }
+
+    private VaadinService service;
+    private UI ui;
+    private CountingPushConnection connection;
+
+    @Override
+    protected void setUp() throws Exception {
+        service = createService();
+        ui = createUI(service);
+        connection = new CountingPushConnection(ui);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AtmospherePushConnection.shutdownFlushScheduler(service);
+        CurrentInstance.clearAll();
+    }
+
+    private static VaadinService createService() throws ServiceException {
+        return new VaadinServletService(new VaadinServlet(),
+                new MockDeploymentConfiguration());
+    }
+
+    private static UI createUI(VaadinService service) {
+        VaadinSession session = new VaadinSession(service) {
+            private final ReentrantLock lock = new ReentrantLock();
+
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+        };
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        session.lock();
+        try {
+            ui.setSession(session);
+        } finally {
+            session.unlock();
+        }
+        return ui;
+    }
+
+    public void testPushesSentRightAwayByDefault() {
+        for (int i = 0; i < 3; i++) {
+            connection.push();
+        }
+
+        assertEquals(3, connection.messagesSent);
+        assertEquals(3, connection.getMessageCount());
+        assertEquals(0, connection.getCoalescedPushCount());
+    }
+
+    public void testPushesWithinIntervalWrittenOnce() {
+        ui.getPushConfiguration().setCoalescingInterval(60000);
+
+        for (int i = 0; i < 3; i++) {
+            connection.push();
+        }
+
+        assertEquals(1, connection.messagesSent);
+        assertEquals(1, connection.getMessageCount());
+        assertEquals(2, connection.getCoalescedPushCount());
+        assertEquals(MESSAGE.length(), connection.getBytesSent());
+        assertEquals(2 * MESSAGE.length(),
+                connection.getEstimatedBytesSaved());
+    }
+
+    public void testServiceDestroyKeepsOtherFlushSchedulers()
+            throws ServiceException {
+        VaadinService otherService = createService();
+        try {
+            UI otherUI = createUI(otherService);
+            otherUI.getPushConfiguration().setCoalescingInterval(60000);
+            CountingPushConnection otherConnection = new CountingPushConnection(
+                    otherUI);
+            otherConnection.push();
+            otherConnection.push();
+            ScheduledExecutorService otherScheduler = AtmospherePushConnection
+                    .getFlushScheduler(otherService);
+
+            ui.getPushConfiguration().setCoalescingInterval(60000);
+            connection.push();
+            connection.push();
+            ScheduledExecutorService scheduler = AtmospherePushConnection
+                    .getFlushScheduler(service);
+            assertNotSame(scheduler, otherScheduler);
+
+            AtmospherePushConnection.shutdownFlushScheduler(service);
+            assertTrue(scheduler.isShutdown());
+            assertFalse(otherScheduler.isShutdown());
+            assertSame(otherScheduler,
+                    AtmospherePushConnection.getFlushScheduler(otherService));
+        } finally {
+            AtmospherePushConnection.shutdownFlushScheduler(otherService);
+        }
+    }
+}
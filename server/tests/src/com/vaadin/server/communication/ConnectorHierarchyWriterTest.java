@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests for {@link ConnectorHierarchyWriter}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class ConnectorHierarchyWriterTest extends TestCase {
+
+    private UI ui;
+    private CssLayout layout;
+    private Label label;
+    private ConnectorTracker tracker;
+
+    @Override
+    protected void setUp() throws Exception {
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(new AlwaysLockedVaadinSession(null));
+        layout = new CssLayout();
+        label = new Label();
+        layout.addComponent(label);
+        ui.setContent(layout);
+        tracker = ui.getConnectorTracker();
+    }
+
+    public void testNewConnectorsHierarchyWritten() throws Exception {
+        JSONObject hierarchy = writeHierarchy();
+
+        assertEquals(label.getConnectorId(),
+                hierarchy.getJSONArray(layout.getConnectorId()).getString(0));
+        assertEquals(0, hierarchy.getJSONArray(label.getConnectorId())
+                .length());
+    }
+
+    public void testUnchangedHierarchyNotWritten() throws Exception {
+        writeHierarchy();
+
+        layout.markAsDirty();
+        label.markAsDirty();
+        assertEquals(0, writeHierarchy().length());
+    }
+
+    public void testChangedHierarchyWritten() throws Exception {
+        writeHierarchy();
+
+        Label label2 = new Label();
+        layout.addComponent(label2);
+        JSONObject hierarchy = writeHierarchy();
+
+        assertEquals(2, hierarchy.getJSONArray(layout.getConnectorId())
+                .length());
+        assertFalse(hierarchy.has(label.getConnectorId()));
+        assertTrue(hierarchy.has(label2.getConnectorId()));
+    }
+
+    public void testHiddenChildChangesHierarchy() throws Exception {
+        writeHierarchy();
+
+        label.setVisible(false);
+        JSONObject hierarchy = writeHierarchy();
+
+        assertEquals(0, hierarchy.getJSONArray(layout.getConnectorId())
+                .length());
+    }
+
+    public void testHierarchyWrittenAfterRepaintAll() throws Exception {
+        writeHierarchy();
+
+        tracker.markAllConnectorsDirty();
+        tracker.markAllClientSidesUninitialized();
+        JSONObject hierarchy = writeHierarchy();
+
+        assertTrue(hierarchy.has(layout.getConnectorId()));
+        assertTrue(hierarchy.has(label.getConnectorId()));
+    }
+
+    private JSONObject writeHierarchy() throws Exception {
+        StringWriter writer = new StringWriter();
+        new ConnectorHierarchyWriter().write(ui, writer);
+        tracker.markAllConnectorsClean();
+        return new JSONObject(writer.toString());
+    }
+}
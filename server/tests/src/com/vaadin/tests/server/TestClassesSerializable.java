@@ -52,6 +52,7 @@ public class TestClassesSerializable extends TestCase {
             "com\\.vaadin\\.server\\.communication\\.PushHandler.*", // PushHandler
             // and its inner classes do not need to be serializable
             "com\\.vaadin\\.util\\.SerializerHelper", // fully static
+            "com\\.vaadin\\.data\\.util\\.ContainerWorkerPool", // fully static
             // class level filtering, also affecting nested classes and
             // interfaces
             "com\\.vaadin\\.server\\.LegacyCommunicationManager.*", //
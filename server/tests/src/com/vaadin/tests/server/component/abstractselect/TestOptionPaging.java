@@ -0,0 +1,66 @@
+package com.vaadin.tests.server.component.abstractselect;
+
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.PaintException;
+import com.vaadin.shared.ui.optiongroup.OptionGroupConstants;
+import com.vaadin.tests.util.PaintCapture;
+import com.vaadin.ui.AbstractSelect;
+import com.vaadin.ui.ListSelect;
+
+public class TestOptionPaging extends TestCase {
+
+    private ListSelect select;
+
+    @Override
+    protected void setUp() throws Exception {
+        select = new ListSelect();
+        for (int i = 0; i < 5; i++) {
+            select.addItem("item" + i);
+        }
+        select.setOptionPageLength(2);
+    }
+
+    public void testOptionsArePaged() throws Exception {
+        paintAndVerify(select, 2, true);
+        assertEquals(2, select.getVisibleItemIds().size());
+
+        loadMoreOptions(select);
+        paintAndVerify(select, 4, true);
+
+        loadMoreOptions(select);
+        paintAndVerify(select, 5, false);
+        assertEquals(5, select.getVisibleItemIds().size());
+    }
+
+    public void testSelectedOptionIsAlwaysPainted() throws Exception {
+        select.setValue("item4");
+
+        paintAndVerify(select, 3, true);
+        assertTrue(select.getVisibleItemIds().contains("item4"));
+        assertFalse(select.getVisibleItemIds().contains("item3"));
+    }
+
+    public void testAllOptionsPaintedWithoutPaging() throws Exception {
+        select.setOptionPageLength(0);
+
+        paintAndVerify(select, 5, false);
+    }
+
+    private static void loadMoreOptions(AbstractSelect select) {
+        select.changeVariables(select, Collections
+                .<String, Object> singletonMap(
+                        OptionGroupConstants.VARIABLE_LOAD_MORE_OPTIONS,
+                        Boolean.TRUE));
+    }
+
+    private static void paintAndVerify(AbstractSelect select,
+            int optionCount, boolean more) throws PaintException {
+        PaintCapture paint = PaintCapture.paint(select);
+        assertEquals(optionCount, paint.getTagCount("so"));
+        assertEquals(more ? 1 : 0, paint
+                .getAttributeCount(OptionGroupConstants.ATTRIBUTE_MORE_OPTIONS));
+    }
+}
@@ -34,6 +34,35 @@ import com.vaadin.ui.components.calendar.event.CalendarEvent;
 
 public class ContainerDataSource extends TestCase {
 
+    /**
+     * A bean that does not notify about changes to its dates
+     */
+    public static class Meeting {
+        private Date start;
+        private Date end;
+
+        public Meeting(Date start, Date end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public Date getStart() {
+            return start;
+        }
+
+        public void setStart(Date start) {
+            this.start = start;
+        }
+
+        public Date getEnd() {
+            return end;
+        }
+
+        public void setEnd(Date end) {
+            this.end = end;
+        }
+    }
+
     private Calendar calendar;
 
     @Override
@@ -75,9 +104,9 @@ public class ContainerDataSource extends TestCase {
     /**
      * This tests tests that if you give the Calendar an unsorted (== not sorted
      * by starting date) container then the calendar should gracefully handle
-     * it. In this case the size of the container will be wrong. The test is
-     * exactly the same as {@link #testWithBeanItemContainer()} except that the
-     * beans has been intentionally sorted by caption instead of date.
+     * it. The test is exactly the same as {@link #testWithBeanItemContainer()}
+     * except that the beans has been intentionally sorted by caption instead of
+     * date.
      */
     @Test
     public void testWithUnsortedBeanItemContainer() {
@@ -108,8 +137,100 @@ public class ContainerDataSource extends TestCase {
         end = cal.getTime();
         events = calendar.getEventProvider().getEvents(start, end);
 
-        // The events size is 1 since the getEvents returns the wrong range
-        assertEquals(1, events.size());
+        // Index 6 is "Test 6" in caption order, so "Test 1" to "Test 5" start
+        // before the range end
+        assertEquals(5, events.size());
+    }
+
+    /**
+     * Tests that events that started before the range but end in it, or span
+     * the whole range, are returned
+     */
+    @Test
+    public void testOverlappingEvents() {
+        BeanItemContainer<BasicEvent> container = new BeanItemContainer<BasicEvent>(
+                BasicEvent.class);
+        java.util.Calendar cal = java.util.Calendar.getInstance();
+        Date start = cal.getTime();
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 7);
+        Date end = cal.getTime();
+
+        cal.setTime(start);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, -10);
+        Date longBefore = cal.getTime();
+        cal.setTime(start);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 1);
+        Date inRange = cal.getTime();
+        cal.setTime(end);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 10);
+        Date longAfter = cal.getTime();
+
+        BasicEvent spanning = new BasicEvent("Spanning", "", longBefore,
+                longAfter);
+        BasicEvent endingInRange = new BasicEvent("Ending", "", longBefore,
+                inRange);
+        BasicEvent endedBefore = new BasicEvent("Ended", "", longBefore,
+                longBefore);
+        BasicEvent startingInRange = new BasicEvent("Starting", "", inRange,
+                longAfter);
+        container.addBean(spanning);
+        container.addBean(endingInRange);
+        container.addBean(endedBefore);
+        container.addBean(startingInRange);
+        calendar.setContainerDataSource(container);
+
+        List<CalendarEvent> events = calendar.getEventProvider().getEvents(
+                start, end);
+        assertEquals(3, events.size());
+        assertSame(spanning, events.get(0));
+        assertSame(endingInRange, events.get(1));
+        assertSame(startingInRange, events.get(2));
+
+        // Moving an event is noticed without container events
+        endedBefore.setEnd(inRange);
+        events = calendar.getEventProvider().getEvents(start, end);
+        assertEquals(4, events.size());
+        assertSame(endedBefore, events.get(2));
+    }
+
+    /**
+     * Tests that changing the dates of plain beans through their item
+     * properties is noticed
+     */
+    @Test
+    public void testBeanDatePropertiesChanged() {
+        BeanItemContainer<Meeting> container = new BeanItemContainer<Meeting>(
+                Meeting.class);
+        java.util.Calendar cal = java.util.Calendar.getInstance();
+        Date start = cal.getTime();
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 7);
+        Date end = cal.getTime();
+
+        cal.setTime(start);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, -10);
+        Date before = cal.getTime();
+        cal.setTime(start);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 1);
+        Date inRange = cal.getTime();
+        cal.setTime(end);
+        cal.add(java.util.Calendar.DAY_OF_MONTH, 10);
+        Date after = cal.getTime();
+
+        Meeting meeting = new Meeting(before, before);
+        container.addBean(meeting);
+        calendar.setContainerDataSource(container);
+        assertEquals(0, calendar.getEventProvider().getEvents(start, end)
+                .size());
+
+        Item item = container.getItem(meeting);
+        item.getItemProperty("end").setValue(inRange);
+        assertEquals(1, calendar.getEventProvider().getEvents(start, end)
+                .size());
+
+        item.getItemProperty("start").setValue(after);
+        item.getItemProperty("end").setValue(after);
+        assertEquals(0, calendar.getEventProvider().getEvents(start, end)
+                .size());
     }
 
     /**
@@ -6,7 +6,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -14,6 +18,9 @@ import org.junit.Test;
 import com.vaadin.data.Container;
 import com.vaadin.data.util.HierarchicalContainer;
 import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.server.PaintException;
+import com.vaadin.shared.ui.tree.TreeConstants;
+import com.vaadin.tests.util.PaintCapture;
 import com.vaadin.ui.Tree;
 
 public class TreeTest {
@@ -142,4 +149,118 @@ public class TreeTest {
         assertNull(expandedItemId);
     }
 
+    /**
+     * Tree that exposes the keys of its items to the client
+     */
+    private static class KeyedTree extends Tree {
+        public String getKey(Object itemId) {
+            return itemIdMapper.key(itemId);
+        }
+    }
+
+    @Test
+    public void testRootItemPaging() throws Exception {
+        Tree pagedTree = new Tree();
+        for (int i = 0; i < 5; i++) {
+            pagedTree.addItem("item" + i);
+            pagedTree.setChildrenAllowed("item" + i, false);
+        }
+        pagedTree.setChildPageLength(2);
+
+        paintAndVerify(pagedTree, 0, 2, true);
+
+        pagedTree.changeVariables(pagedTree, Collections
+                .<String, Object> singletonMap(
+                        TreeConstants.VARIABLE_LOAD_MORE, ""));
+        paintAndVerify(pagedTree, 0, 2, true);
+
+        pagedTree.changeVariables(pagedTree, Collections
+                .<String, Object> singletonMap(
+                        TreeConstants.VARIABLE_LOAD_MORE, ""));
+        paintAndVerify(pagedTree, 0, 1, false);
+    }
+
+    @Test
+    public void testMaxPaintedItems() throws Exception {
+        Tree limitedTree = new Tree();
+        limitedTree.addItem("parent");
+        for (int i = 0; i < 5; i++) {
+            limitedTree.addItem("child" + i);
+            limitedTree.setChildrenAllowed("child" + i, false);
+            limitedTree.setParent("child" + i, "parent");
+        }
+        limitedTree.expandItem("parent");
+        limitedTree.setMaxPaintedItems(3);
+
+        paintAndVerify(limitedTree, 1, 2, true);
+    }
+
+    @Test
+    public void testLoadMoreAndExpandInSameRequest() throws Exception {
+        KeyedTree pagedTree = createPagedTree();
+        paintAndVerify(pagedTree, 1, 1, true);
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put(TreeConstants.VARIABLE_LOAD_MORE, "");
+        variables.put("expand", new String[] { pagedTree.getKey("item0") });
+        variables.put("requestChildTree", Boolean.TRUE);
+        pagedTree.changeVariables(pagedTree, variables);
+
+        // Both cannot be sent in one partial update, so everything is
+        // repainted: the next page of root items and the expanded children
+        List<String> attributes = paintAndVerify(pagedTree, 1, 5, true);
+        assertFalse(attributes.contains("partialUpdate"));
+    }
+
+    @Test
+    public void testIgnoredLoadMoreRepaints() throws Exception {
+        KeyedTree pagedTree = createPagedTree();
+        paintAndVerify(pagedTree, 1, 1, true);
+
+        // The children of a collapsed item cannot be loaded
+        pagedTree.changeVariables(pagedTree, Collections
+                .<String, Object> singletonMap(
+                        TreeConstants.VARIABLE_LOAD_MORE,
+                        pagedTree.getKey("item0")));
+
+        // The client is repainted to reset the placeholder
+        List<String> attributes = paintAndVerify(pagedTree, 1, 1, true);
+        assertFalse(attributes.contains("partialUpdate"));
+    }
+
+    /**
+     * Creates a tree with five root items, of which the first one has two
+     * children, showing two items at a time.
+     */
+    private KeyedTree createPagedTree() {
+        KeyedTree pagedTree = new KeyedTree();
+        for (int i = 0; i < 5; i++) {
+            pagedTree.addItem("item" + i);
+            pagedTree.setChildrenAllowed("item" + i, i == 0);
+        }
+        for (int i = 0; i < 2; i++) {
+            pagedTree.addItem("child" + i);
+            pagedTree.setChildrenAllowed("child" + i, false);
+            pagedTree.setParent("child" + i, "item0");
+        }
+        pagedTree.setChildPageLength(2);
+        return pagedTree;
+    }
+
+    /**
+     * Paints the tree and checks the exact number of painted nodes and leaves,
+     * and whether more children are available.
+     * 
+     * @return the names of the boolean attributes that were painted
+     */
+    private List<String> paintAndVerify(Tree tree, int nodeCount,
+            int leafCount, boolean more) throws PaintException {
+        PaintCapture paint = PaintCapture.paint(tree);
+        assertEquals(nodeCount, paint.getTagCount("node"));
+        assertEquals(leafCount, paint.getTagCount("leaf"));
+        assertEquals(more ? 1 : 0,
+                paint.getAttributeCount(TreeConstants.ATTRIBUTE_MORE_CHILDREN));
+        return paint.getAttributes();
+    }
+
 }
@@ -0,0 +1,89 @@
+package com.vaadin.tests.server.component.treetable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.util.HierarchicalContainer;
+import com.vaadin.ui.TreeTable;
+
+public class TreeTableVisibleItems extends TestCase {
+
+    private TreeTable treeTable;
+    private HierarchicalContainer container;
+
+    @Override
+    protected void setUp() {
+        container = new HierarchicalContainer();
+        for (String id : new String[] { "a", "a1", "a2", "a21", "a22", "b",
+                "b1", "c" }) {
+            container.addItem(id);
+        }
+        setParent("a1", "a");
+        setParent("a2", "a");
+        setParent("a21", "a2");
+        setParent("a22", "a2");
+        setParent("b1", "b");
+        treeTable = new TreeTable(null, container);
+    }
+
+    private void setParent(String itemId, String parentId) {
+        container.setParent(itemId, parentId);
+    }
+
+    public void testCollapsed() {
+        assertVisibleItems("a", "b", "c");
+    }
+
+    public void testExpandAndCollapse() {
+        treeTable.setCollapsed("a", false);
+        assertVisibleItems("a", "a1", "a2", "b", "c");
+        treeTable.setCollapsed("a2", false);
+        assertVisibleItems("a", "a1", "a2", "a21", "a22", "b", "c");
+        treeTable.setCollapsed("b", false);
+        assertVisibleItems("a", "a1", "a2", "a21", "a22", "b", "b1", "c");
+        treeTable.setCollapsed("a", true);
+        assertVisibleItems("a", "b", "b1", "c");
+        // a2 is still expanded
+        treeTable.setCollapsed("a", false);
+        assertVisibleItems("a", "a1", "a2", "a21", "a22", "b", "b1", "c");
+    }
+
+    public void testExpandHiddenItem() {
+        treeTable.setCollapsed("a2", false);
+        assertVisibleItems("a", "b", "c");
+        treeTable.setCollapsed("a", false);
+        assertVisibleItems("a", "a1", "a2", "a21", "a22", "b", "c");
+    }
+
+    public void testContainerChange() {
+        treeTable.setCollapsed("a", false);
+        assertVisibleItems("a", "a1", "a2", "b", "c");
+        container.removeItem("a1");
+        assertVisibleItems("a", "a2", "b", "c");
+    }
+
+    private void assertVisibleItems(Object... expected) {
+        List<Object> expectedIds = Arrays.asList(expected);
+        assertEquals(expectedIds.size(), treeTable.size());
+        assertEquals(expectedIds,
+                new ArrayList<Object>(treeTable.getItemIds()));
+        assertEquals(expected[expected.length - 1], treeTable.lastItemId());
+
+        List<Object> forward = new ArrayList<Object>();
+        for (Object id = expected[0]; id != null; id = treeTable
+                .nextItemId(id)) {
+            forward.add(id);
+        }
+        assertEquals(expectedIds, forward);
+
+        List<Object> backward = new ArrayList<Object>();
+        for (Object id = treeTable.lastItemId(); id != null; id = treeTable
+                .prevItemId(id)) {
+            backward.add(0, id);
+        }
+        assertEquals(expectedIds, backward);
+    }
+}
@@ -0,0 +1,164 @@
+package com.vaadin.tests.server.components;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.data.util.ContainerOrderedWrapper;
+import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.server.PaintException;
+import com.vaadin.server.PaintTarget;
+import com.vaadin.shared.ui.combobox.FilteringMode;
+import com.vaadin.ui.ComboBox;
+
+/**
+ * Check the in-memory filtering of combo box options, which is used when the
+ * container is not filterable.
+ */
+public class TestComboBoxFiltering extends TestCase {
+
+    private static class FilteringComboBox extends ComboBox {
+        List<?> filter(String filter) {
+            setFilter(filter);
+            return getFilteredOptions();
+        }
+
+        List<String> paintOptions(String filter) throws PaintException {
+            setFilter(filter);
+
+            Capture<String> captions = new Capture<String>(CaptureType.ALL);
+            PaintTarget target = EasyMock.createNiceMock(PaintTarget.class);
+            target.addAttribute(EasyMock.eq("caption"),
+                    EasyMock.capture(captions));
+            EasyMock.expectLastCall().anyTimes();
+            EasyMock.replay(target);
+            paintContent(target);
+            return captions.getValues();
+        }
+
+        private void setFilter(String filter) {
+            Map<String, Object> variables = new HashMap<String, Object>();
+            variables.put("filter", filter);
+            variables.put("page", 0);
+            changeVariables(this, variables);
+        }
+    }
+
+    /**
+     * A container that is not filterable, so that the combo box filters its
+     * options in memory, but notifies about property value changes.
+     */
+    private static class NotifyingContainer extends ContainerOrderedWrapper
+            implements Property.ValueChangeNotifier {
+        private final IndexedContainer container;
+
+        public NotifyingContainer(IndexedContainer container) {
+            super(container);
+            this.container = container;
+        }
+
+        @Override
+        public void addValueChangeListener(ValueChangeListener listener) {
+            container.addValueChangeListener(listener);
+        }
+
+        @Override
+        @Deprecated
+        public void addListener(ValueChangeListener listener) {
+            container.addValueChangeListener(listener);
+        }
+
+        @Override
+        public void removeValueChangeListener(ValueChangeListener listener) {
+            container.removeValueChangeListener(listener);
+        }
+
+        @Override
+        @Deprecated
+        public void removeListener(ValueChangeListener listener) {
+            container.removeValueChangeListener(listener);
+        }
+    }
+
+    private FilteringComboBox comboBox;
+
+    @Override
+    protected void setUp() throws Exception {
+        comboBox = new FilteringComboBox();
+        comboBox.addItem("Finland");
+        comboBox.addItem("France");
+        comboBox.addItem("Germany");
+        comboBox.addItem("Ireland");
+        comboBox.addItem("");
+    }
+
+    public void testStartsWith() {
+        assertEquals(Arrays.asList("Finland", "France"), comboBox.filter("f"));
+        assertEquals(Arrays.asList("Finland"), comboBox.filter("FIN"));
+        assertTrue(comboBox.filter("land").isEmpty());
+    }
+
+    public void testContains() {
+        comboBox.setFilteringMode(FilteringMode.CONTAINS);
+
+        assertEquals(Arrays.asList("Finland", "Ireland"),
+                comboBox.filter("land"));
+        assertEquals(Arrays.asList("Finland", "France", "Germany",
+                "Ireland"), comboBox.filter("n"));
+        assertTrue(comboBox.filter("lands").isEmpty());
+    }
+
+    public void testItemChangesAreFiltered() {
+        assertEquals(Arrays.asList("Finland", "France"), comboBox.filter("f"));
+
+        comboBox.removeItem("France");
+        comboBox.addItem("Faroe Islands");
+        assertEquals(Arrays.asList("Finland", "Faroe Islands"),
+                comboBox.filter("f"));
+
+        comboBox.setItemCaption("Germany", "Federal Republic of Germany");
+        assertEquals(Arrays.asList("Finland", "Germany", "Faroe Islands"),
+                comboBox.filter("f"));
+    }
+
+    public void testUnpaintedCaptionChangesArePainted() throws Exception {
+        IndexedContainer countries = createCountries();
+        comboBox.setContainerDataSource(new NotifyingContainer(countries));
+        comboBox.setItemCaptionPropertyId("name");
+        assertEquals(Arrays.asList("Finland"), comboBox.paintOptions("f"));
+
+        // Germany has not been painted, its caption is only in the index
+        countries.getContainerProperty("de", "name").setValue(
+                "Federal Republic of Germany");
+        assertEquals(Arrays.asList("Finland", "Federal Republic of Germany"),
+                comboBox.paintOptions("f"));
+    }
+
+    public void testPaintedCaptionChangesArePainted() throws Exception {
+        IndexedContainer countries = createCountries();
+        comboBox.setContainerDataSource(new ContainerOrderedWrapper(countries));
+        comboBox.setItemCaptionPropertyId("name");
+        assertEquals(Arrays.asList("Finland"), comboBox.paintOptions("f"));
+
+        countries.getContainerProperty("fi", "name").setValue("Suomi");
+        assertTrue(comboBox.paintOptions("f").isEmpty());
+        assertEquals(Arrays.asList("Suomi"), comboBox.paintOptions("s"));
+    }
+
+    private static IndexedContainer createCountries() {
+        IndexedContainer countries = new IndexedContainer();
+        countries.addContainerProperty("name", String.class, null);
+        countries.addItem("fi").getItemProperty("name").setValue("Finland");
+        countries.addItem("de").getItemProperty("name").setValue("Germany");
+        return countries;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import com.vaadin.server.DeploymentConfiguration;
+import com.vaadin.server.DeploymentConfiguration.AccessQueueOverflowPolicy;
 import com.vaadin.shared.communication.PushMode;
 
 public class MockDeploymentConfiguration implements DeploymentConfiguration {
@@ -15,6 +16,11 @@ public class MockDeploymentConfiguration implements DeploymentConfiguration {
     private int resourceCacheTime = 12;
     private int heartbeatInterval = 300;
     private boolean closeIdleSessions = false;
+    private boolean perUiLocking = false;
+    private int accessQueueCapacity = 0;
+    private int accessQueueDrainLimit = 0;
+    private AccessQueueOverflowPolicy accessQueueOverflowPolicy = AccessQueueOverflowPolicy.REJECT;
+    private int staticResourceCacheSize = 0;
     private PushMode pushMode = PushMode.DISABLED;
     private Properties initParameters = new Properties();
     private Map<String, String> applicationOrSystemProperty = new HashMap<String, String>();
@@ -65,6 +71,52 @@ public class MockDeploymentConfiguration implements DeploymentConfiguration {
         this.closeIdleSessions = closeIdleSessions;
     }
 
+    @Override
+    public boolean isPerUiLocking() {
+        return perUiLocking;
+    }
+
+    public void setPerUiLocking(boolean perUiLocking) {
+        this.perUiLocking = perUiLocking;
+    }
+
+    @Override
+    public int getAccessQueueCapacity() {
+        return accessQueueCapacity;
+    }
+
+    public void setAccessQueueCapacity(int accessQueueCapacity) {
+        this.accessQueueCapacity = accessQueueCapacity;
+    }
+
+    @Override
+    public int getAccessQueueDrainLimit() {
+        return accessQueueDrainLimit;
+    }
+
+    public void setAccessQueueDrainLimit(int accessQueueDrainLimit) {
+        this.accessQueueDrainLimit = accessQueueDrainLimit;
+    }
+
+    @Override
+    public AccessQueueOverflowPolicy getAccessQueueOverflowPolicy() {
+        return accessQueueOverflowPolicy;
+    }
+
+    public void setAccessQueueOverflowPolicy(
+            AccessQueueOverflowPolicy accessQueueOverflowPolicy) {
+        this.accessQueueOverflowPolicy = accessQueueOverflowPolicy;
+    }
+
+    @Override
+    public int getStaticResourceCacheSize() {
+        return staticResourceCacheSize;
+    }
+
+    public void setStaticResourceCacheSize(int staticResourceCacheSize) {
+        this.staticResourceCacheSize = staticResourceCacheSize;
+    }
+
     @Override
     public PushMode getPushMode() {
         return pushMode;
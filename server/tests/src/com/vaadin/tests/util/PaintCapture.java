@@ -0,0 +1,68 @@
+package com.vaadin.tests.util;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+
+import com.vaadin.server.LegacyComponent;
+import com.vaadin.server.PaintException;
+import com.vaadin.server.PaintTarget;
+
+/**
+ * Records the tags and boolean attributes a legacy component paints, for
+ * checking what was sent to the client.
+ */
+public class PaintCapture {
+
+    private final Capture<String> tags = new Capture<String>(CaptureType.ALL);
+    private final Capture<String> attributes = new Capture<String>(
+            CaptureType.ALL);
+
+    private PaintCapture() {
+    }
+
+    /**
+     * Paints the component into a mock paint target.
+     * 
+     * @param component
+     *            the component to paint
+     * @return the recorded tags and attributes
+     */
+    public static PaintCapture paint(LegacyComponent component)
+            throws PaintException {
+        PaintCapture capture = new PaintCapture();
+        PaintTarget target = EasyMock.createNiceMock(PaintTarget.class);
+        target.startTag(EasyMock.capture(capture.tags));
+        EasyMock.expectLastCall().anyTimes();
+        target.addAttribute(EasyMock.capture(capture.attributes),
+                EasyMock.eq(true));
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(target);
+        component.paintContent(target);
+        return capture;
+    }
+
+    /**
+     * Returns how many times a tag with the given name was started.
+     */
+    public int getTagCount(String tagName) {
+        return Collections.frequency(tags.getValues(), tagName);
+    }
+
+    /**
+     * Returns how many times the given attribute was painted as true.
+     */
+    public int getAttributeCount(String attributeName) {
+        return Collections.frequency(attributes.getValues(), attributeName);
+    }
+
+    /**
+     * Returns the names of all attributes that were painted as true.
+     */
+    public List<String> getAttributes() {
+        return attributes.getValues();
+    }
+}
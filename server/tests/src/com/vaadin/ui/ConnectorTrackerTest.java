@@ -0,0 +1,127 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.ui;
+
+import junit.framework.TestCase;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+
+/**
+ * Tests for {@link ConnectorTracker}
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class ConnectorTrackerTest extends TestCase {
+
+    /**
+     * A label that can be hidden without notifying the framework.
+     */
+    private static class SilentlyHiddenLabel extends Label {
+        private boolean hidden = false;
+
+        @Override
+        public boolean isVisible() {
+            return !hidden && super.isVisible();
+        }
+    }
+
+    private UI ui;
+    private CssLayout layout;
+    private SilentlyHiddenLabel label;
+    private ConnectorTracker tracker;
+
+    @Override
+    protected void setUp() throws Exception {
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(new AlwaysLockedVaadinSession(null));
+        layout = new CssLayout();
+        label = new SilentlyHiddenLabel();
+        layout.addComponent(label);
+        ui.setContent(layout);
+        tracker = ui.getConnectorTracker();
+        writeResponse();
+    }
+
+    public void testHiddenComponentStateRemoved() {
+        assertTrue(tracker.isClientSideInitialized(label));
+
+        label.setVisible(false);
+        writeResponse();
+
+        assertFalse(tracker.isClientSideInitialized(label));
+        assertTrue(tracker.isClientSideInitialized(layout));
+    }
+
+    public void testHiddenParentRemovesStateOfChildren() {
+        layout.setVisible(false);
+        writeResponse();
+
+        assertFalse(tracker.isClientSideInitialized(layout));
+        assertFalse(tracker.isClientSideInitialized(label));
+        assertTrue(tracker.isClientSideInitialized(ui));
+    }
+
+    public void testOnlyChangedHierarchiesChecked() {
+        label.hidden = true;
+        writeResponse();
+
+        // Nothing was marked dirty so the label was not checked
+        assertTrue(tracker.isClientSideInitialized(label));
+
+        layout.markAsDirty();
+        writeResponse();
+
+        assertFalse(tracker.isClientSideInitialized(label));
+    }
+
+    public void testDirtyVisibleConnectors() {
+        Label hiddenChild = new Label();
+        CssLayout hidden = new CssLayout(hiddenChild);
+        hidden.setVisible(false);
+        layout.addComponent(hidden);
+
+        assertTrue(tracker.isDirty(hiddenChild));
+        assertFalse(tracker.getDirtyVisibleConnectors().contains(hidden));
+        assertFalse(tracker.getDirtyVisibleConnectors().contains(hiddenChild));
+        assertTrue(tracker.getDirtyVisibleConnectors().contains(layout));
+    }
+
+    public void testRemovedComponentUnregistered() {
+        String id = label.getConnectorId();
+        layout.removeComponent(label);
+        writeResponse();
+
+        assertNull(tracker.getConnector(id));
+    }
+
+    /**
+     * Does the connector tracker book keeping of writing a response.
+     */
+    private void writeResponse() {
+        for (ClientConnector connector : tracker.getDirtyVisibleConnectors()) {
+            tracker.markClientSideInitialized(connector);
+        }
+        tracker.markAllConnectorsClean();
+        tracker.cleanConnectorMap();
+    }
+}
@@ -20,5 +20,7 @@ import java.io.Serializable;
 public class OptionGroupConstants implements Serializable {
     public static final String HTML_CONTENT_ALLOWED = "usehtml";
     public static final String ATTRIBUTE_OPTION_DISABLED = "disabled";
+    public static final String ATTRIBUTE_MORE_OPTIONS = "moreoptions";
+    public static final String VARIABLE_LOAD_MORE_OPTIONS = "loadmoreoptions";
 
 }
@@ -36,4 +36,28 @@ public class TreeConstants implements Serializable {
 
     public static final String ITEM_CLICK_EVENT_ID = "itemClick";
 
+    /**
+     * Attribute telling that not all children of a node, or not all root
+     * nodes, were painted.
+     * 
+     * @since 7.2
+     */
+    public static final String ATTRIBUTE_MORE_CHILDREN = "more";
+
+    /**
+     * Attribute telling that a partial update contains the next page of
+     * children to append to the already painted ones.
+     * 
+     * @since 7.2
+     */
+    public static final String ATTRIBUTE_APPEND_CHILDREN = "append";
+
+    /**
+     * Variable for requesting the next page of children of the node with the
+     * given key, or of the root nodes if the key is empty.
+     * 
+     * @since 7.2
+     */
+    public static final String VARIABLE_LOAD_MORE = "loadMore";
+
 }
@@ -17,8 +17,19 @@
 package com.vaadin.sass;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.vaadin.sass.internal.ScssStylesheet;
 
@@ -27,9 +38,21 @@ public class SassCompiler {
     public static void main(String[] args) throws Exception {
         String input = null;
         String output = null;
-        if (args.length < 1 || args.length > 2) {
+        if (args.length < 1 || (args.length > 2 && args.length % 2 != 0)) {
             System.out
                     .println("usage: SassCompile <scss file to compile> <css file to write>");
+            System.out
+                    .println("       SassCompile <scss file> <css file> [<scss file> <css file> ...]");
+            return;
+        }
+
+        if (args.length > 2) {
+            // Several themes, compile them in parallel
+            Map<String, String> files = new LinkedHashMap<String, String>();
+            for (int i = 0; i < args.length; i += 2) {
+                files.put(args[i], args[i + 1]);
+            }
+            compile(files, Runtime.getRuntime().availableProcessors());
             return;
         }
 
@@ -62,6 +85,78 @@ public class SassCompiler {
         }
     }
 
+    /**
+     * Compiles several SCSS files in parallel, writing each result to the
+     * given CSS file. Each file is compiled on its own thread with its own
+     * compilation state.
+     * 
+     * @since 7.2
+     * @param files
+     *            map from SCSS file to compile to the CSS file to write
+     * @param threads
+     *            the maximum number of files to compile at the same time
+     * @throws Exception
+     *             if compiling any of the files fails. All files are
+     *             processed before the first failure is thrown.
+     */
+    public static void compile(Map<String, String> files, int threads)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(threads, files.size())));
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final Entry<String, String> entry : files.entrySet()) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        compile(entry.getKey(), entry.getValue());
+                        return null;
+                    }
+                }));
+            }
+
+            Exception failure = null;
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (failure == null && e.getCause() instanceof Exception) {
+                        failure = (Exception) e.getCause();
+                    } else if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compiles a SCSS file and writes the result to a CSS file.
+     * 
+     * @since 7.2
+     * @param input
+     *            the SCSS file to compile
+     * @param output
+     *            the CSS file to write
+     * @throws Exception
+     *             if the SCSS file is not found or compiling it fails
+     */
+    public static void compile(String input, String output) throws Exception {
+        ScssStylesheet scss = ScssStylesheet.get(new File(input)
+                .getCanonicalPath());
+        if (scss == null) {
+            throw new FileNotFoundException("The scss file " + input
+                    + " could not be found.");
+        }
+        scss.compile();
+        writeFile(output, scss.toString());
+    }
+
     public static void writeFile(String filename, String output)
             throws IOException {
         File file = new File(filename);
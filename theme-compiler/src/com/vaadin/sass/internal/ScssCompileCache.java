@@ -0,0 +1,270 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.css.sac.CSSException;
+import org.w3c.css.sac.InputSource;
+
+import com.vaadin.sass.internal.handler.SCSSDocumentHandler;
+import com.vaadin.sass.internal.handler.SCSSErrorHandler;
+import com.vaadin.sass.internal.resolver.ScssStylesheetResolver;
+import com.vaadin.sass.internal.util.DeepCopy;
+
+/**
+ * Caches the results of compiling style sheets so that unchanged style sheets
+ * need not be compiled again.
+ * <p>
+ * Every file read while compiling a style sheet, including all files it
+ * imports, is recorded together with a hash of its contents. When the same
+ * style sheet is compiled again and none of the recorded files have changed,
+ * the previous CSS is returned right away. Otherwise the style sheet is
+ * compiled again, but the parse trees of the files that have not changed are
+ * copied from the cache instead of being parsed again.
+ * <p>
+ * The cache can be used from several threads at the same time.
+ * 
+ * @since 7.2
+ * @author Vaadin Ltd
+ */
+public class ScssCompileCache implements Serializable {
+
+    private static class ParsedStylesheet implements Serializable {
+        private final String hash;
+        private final ScssStylesheet stylesheet;
+
+        private ParsedStylesheet(String hash, ScssStylesheet stylesheet) {
+            this.hash = hash;
+            this.stylesheet = stylesheet;
+        }
+    }
+
+    private static class CompiledStylesheet implements Serializable {
+        private final String css;
+        private final Map<String, String> dependencies;
+
+        private CompiledStylesheet(String css, Map<String, String> dependencies) {
+            this.css = css;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Map<String, ParsedStylesheet> parsed = new ConcurrentHashMap<String, ParsedStylesheet>();
+
+    private final Map<String, CompiledStylesheet> compiled = new ConcurrentHashMap<String, CompiledStylesheet>();
+
+    private final AtomicLong compiledHitCount = new AtomicLong();
+
+    private final AtomicLong parsedHitCount = new AtomicLong();
+
+    /**
+     * Compiles the given style sheet, or returns the cached result if none of
+     * the files used by the previous compilation have changed.
+     * 
+     * @param identifier
+     *            the file path of the style sheet, as for
+     *            {@link ScssStylesheet#get(String)}
+     * @return the compiled CSS, or <code>null</code> if the style sheet was
+     *         not found
+     * @throws Exception
+     *             if the style sheet could not be compiled
+     */
+    public String compile(String identifier) throws Exception {
+        if (identifier == null) {
+            return null;
+        }
+
+        CompiledStylesheet cached = compiled.get(identifier);
+        if (cached != null && isUpToDate(cached.dependencies)) {
+            compiledHitCount.incrementAndGet();
+            return cached.css;
+        }
+
+        ScssContext context = new ScssContext(this);
+        ScssContext previous = ScssContext.setCurrent(context);
+        try {
+            ScssStylesheet stylesheet = ScssStylesheet.get(identifier);
+            if (stylesheet == null) {
+                return null;
+            }
+            stylesheet.compile();
+            String css = stylesheet.toString();
+            compiled.put(identifier, new CompiledStylesheet(css,
+                    new LinkedHashMap<String, String>(context
+                            .getDependencies())));
+            return css;
+        } finally {
+            ScssContext.setCurrent(previous);
+        }
+    }
+
+    /**
+     * Parses a resolved style sheet, reusing the previous parse tree if the
+     * contents have not changed. The source is recorded as a dependency of the
+     * current compilation.
+     */
+    ScssStylesheet parse(String identifier, InputSource source,
+            SCSSDocumentHandler documentHandler, SCSSErrorHandler errorHandler)
+            throws CSSException, IOException {
+        InputStream byteStream = source.getByteStream();
+        if (byteStream == null || source.getURI() == null) {
+            return ScssStylesheet.parse(identifier, source, documentHandler,
+                    errorHandler);
+        }
+
+        byte[] content;
+        try {
+            content = read(byteStream);
+        } finally {
+            byteStream.close();
+        }
+        String hash = hash(content);
+        ScssContext.getCurrent().getDependencies().put(source.getURI(), hash);
+
+        String key = source.getURI() + "#" + source.getEncoding();
+        ScssStylesheet stylesheet = documentHandler.getStyleSheet();
+        ParsedStylesheet cached = parsed.get(key);
+        if (cached != null && cached.hash.equals(hash)) {
+            ScssStylesheet copy = (ScssStylesheet) DeepCopy
+                    .copy(cached.stylesheet);
+            if (copy != null) {
+                parsedHitCount.incrementAndGet();
+                copy.setResolvers(stylesheet.getResolvers());
+                return copy;
+            }
+        }
+
+        source.setByteStream(new ByteArrayInputStream(content));
+        ScssStylesheet result = ScssStylesheet.parse(identifier, source,
+                documentHandler, errorHandler);
+
+        // Keep an untouched copy as the compilation modifies the tree. The
+        // resolvers are set again for each copy and need not be serializable.
+        List<ScssStylesheetResolver> resolvers = result.getResolvers();
+        result.setResolvers(Collections.<ScssStylesheetResolver> emptyList());
+        ScssStylesheet copy = (ScssStylesheet) DeepCopy.copy(result);
+        result.setResolvers(resolvers);
+        if (copy != null) {
+            parsed.put(key, new ParsedStylesheet(hash, copy));
+        }
+        return result;
+    }
+
+    private boolean isUpToDate(Map<String, String> dependencies) {
+        for (Entry<String, String> dependency : dependencies.entrySet()) {
+            try {
+                byte[] content = readDependency(dependency.getKey());
+                if (content == null
+                        || !hash(content).equals(dependency.getValue())) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a dependency the same way as the default resolvers find it: from
+     * the file system or through the class loader.
+     */
+    private byte[] readDependency(String uri) throws IOException {
+        InputStream is;
+        File file = new File(uri);
+        if (file.isFile()) {
+            is = new FileInputStream(file);
+        } else {
+            is = getClass().getClassLoader().getResourceAsStream(uri);
+            if (is == null) {
+                return null;
+            }
+        }
+        try {
+            return read(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder hash = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hash.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is required to be supported by all JVMs
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the number of times compiled CSS has been returned from the cache.
+     * 
+     * @return the number of compilations avoided
+     */
+    public long getCompiledHitCount() {
+        return compiledHitCount.get();
+    }
+
+    /**
+     * Gets the number of times a parse tree has been copied from the cache
+     * instead of parsing the file again.
+     * 
+     * @return the number of files not parsed again
+     */
+    public long getParsedHitCount() {
+        return parsedHitCount.get();
+    }
+
+    /**
+     * Removes everything from the cache.
+     */
+    public void clear() {
+        compiled.clear();
+        parsed.clear();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vaadin.sass.internal.tree.MixinDefNode;
+import com.vaadin.sass.internal.tree.Node;
+import com.vaadin.sass.internal.tree.VariableNode;
+import com.vaadin.sass.internal.tree.controldirective.IfElseDefNode;
+
+/**
+ * The state of a single compilation of a {@link ScssStylesheet}: the variables
+ * in scope, mixin definitions, collected @extend selectors and so on.
+ * <p>
+ * A new context is created for each call to {@link ScssStylesheet#compile()}
+ * and bound to the compiling thread for the duration of the compilation, so
+ * that different style sheets can be compiled concurrently on different
+ * threads. The static accessors in {@link ScssStylesheet} operate on the
+ * context of the current thread.
+ * 
+ * @since 7.2
+ * @author Vaadin Ltd
+ */
+public class ScssContext {
+
+    private static final ThreadLocal<ScssContext> current = new ThreadLocal<ScssContext>() {
+        @Override
+        protected ScssContext initialValue() {
+            ScssContext context = new ScssContext((ScssStylesheet) null);
+            context.initial = true;
+            return context;
+        }
+    };
+
+    /**
+     * Whether this is the context a thread has when no compilation is running.
+     */
+    private boolean initial = false;
+
+    private final ScssStylesheet mainStyleSheet;
+
+    private final ScssCompileCache compileCache;
+
+    private final Map<String, String> dependencies;
+
+    private final HashMap<String, VariableNode> variables = new HashMap<String, VariableNode>();
+
+    private final Map<String, MixinDefNode> mixinDefs = new HashMap<String, MixinDefNode>();
+
+    private final Set<IfElseDefNode> ifElseDefNodes = new HashSet<IfElseDefNode>();
+
+    private final HashMap<Node, Node> lastNodeAdded = new HashMap<Node, Node>();
+
+    private final Map<String, List<ArrayList<String>>> extendsMap = new HashMap<String, List<ArrayList<String>>>();
+
+    /**
+     * Creates a new context for compiling the given style sheet.
+     * 
+     * @param mainStyleSheet
+     *            the style sheet being compiled
+     */
+    public ScssContext(ScssStylesheet mainStyleSheet) {
+        this.mainStyleSheet = mainStyleSheet;
+        compileCache = null;
+        dependencies = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Creates a new context for compiling the given style sheet, using the
+     * compile cache and dependency tracking of an enclosing context.
+     * 
+     * @param mainStyleSheet
+     *            the style sheet being compiled
+     * @param enclosing
+     *            the context in which the style sheet was parsed
+     */
+    public ScssContext(ScssStylesheet mainStyleSheet, ScssContext enclosing) {
+        this.mainStyleSheet = mainStyleSheet;
+        compileCache = enclosing.compileCache;
+        dependencies = enclosing.dependencies;
+    }
+
+    /**
+     * Creates a context for parsing and compiling a style sheet using the given
+     * cache.
+     * 
+     * @param compileCache
+     *            the cache to use for parsed style sheets
+     */
+    ScssContext(ScssCompileCache compileCache) {
+        mainStyleSheet = null;
+        this.compileCache = compileCache;
+        dependencies = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Gets the context of the compilation running on the current thread.
+     * 
+     * @return the current context, never <code>null</code>
+     */
+    public static ScssContext getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Makes the given context the current one for this thread. Restoring the
+     * initial context of the thread clears the thread local value, so that no
+     * context is left behind on pooled threads.
+     * 
+     * @param context
+     *            the context to use, not <code>null</code>
+     * @return the previous context, to be restored with another call to this
+     *         method when the compilation ends
+     */
+    public static ScssContext setCurrent(ScssContext context) {
+        ScssContext previous = current.get();
+        if (context.initial) {
+            current.remove();
+        } else {
+            current.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the style sheet being compiled.
+     * 
+     * @return the main style sheet, or <code>null</code> if no compilation is
+     *         running
+     */
+    public ScssStylesheet getMainStyleSheet() {
+        return mainStyleSheet;
+    }
+
+    /**
+     * Gets the cache used for parsing style sheets in this context.
+     * 
+     * @return the compile cache, or <code>null</code> if style sheets are
+     *         always parsed
+     */
+    public ScssCompileCache getCompileCache() {
+        return compileCache;
+    }
+
+    /**
+     * Gets the style sheets read while parsing in this context, mapped to a
+     * hash of their contents. Only tracked when a compile cache is used.
+     * 
+     * @return map from style sheet URI to content hash
+     */
+    Map<String, String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Gets the variables currently in scope, by name.
+     * 
+     * @return the variables map
+     */
+    public HashMap<String, VariableNode> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Gets the mixin definitions by name.
+     * 
+     * @return the mixin definitions map
+     */
+    public Map<String, MixinDefNode> getMixinDefinitions() {
+        return mixinDefs;
+    }
+
+    /**
+     * Gets the @if-@else definitions of the style sheet.
+     * 
+     * @return the @if-@else definitions
+     */
+    public Set<IfElseDefNode> getIfElseDefNodes() {
+        return ifElseDefNodes;
+    }
+
+    /**
+     * Gets the last node inserted into each parent while un-nesting blocks.
+     * 
+     * @return map from parent node to the last node added to it
+     */
+    public HashMap<Node, Node> getLastNodeAdded() {
+        return lastNodeAdded;
+    }
+
+    /**
+     * Gets the selectors extending each extended selector.
+     * 
+     * @return map from extended selector to extending selector lists
+     */
+    public Map<String, List<ArrayList<String>>> getExtendsMap() {
+        return extendsMap;
+    }
+}
@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -43,23 +42,12 @@ import com.vaadin.sass.internal.tree.MixinDefNode;
 import com.vaadin.sass.internal.tree.Node;
 import com.vaadin.sass.internal.tree.VariableNode;
 import com.vaadin.sass.internal.tree.controldirective.IfElseDefNode;
-import com.vaadin.sass.internal.visitor.ExtendNodeHandler;
 import com.vaadin.sass.internal.visitor.ImportNodeHandler;
 
 public class ScssStylesheet extends Node {
 
     private static final long serialVersionUID = 3849790204404961608L;
 
-    private static ScssStylesheet mainStyleSheet = null;
-
-    private static final HashMap<String, VariableNode> variables = new HashMap<String, VariableNode>();
-
-    private static final Map<String, MixinDefNode> mixinDefs = new HashMap<String, MixinDefNode>();
-
-    private static final HashSet<IfElseDefNode> ifElseDefNodes = new HashSet<IfElseDefNode>();
-
-    private static HashMap<Node, Node> lastNodeAdded = new HashMap<Node, Node>();
-
     private File file;
 
     private String charset;
@@ -171,6 +159,24 @@ public class ScssStylesheet extends Node {
             source.setEncoding(parentStylesheet.getCharset());
         }
 
+        ScssCompileCache cache = ScssContext.getCurrent().getCompileCache();
+        if (cache != null
+                && documentHandler.getClass() == SCSSDocumentHandlerImpl.class) {
+            return cache.parse(identifier, source, documentHandler,
+                    errorHandler);
+        }
+        return parse(identifier, source, documentHandler, errorHandler);
+    }
+
+    /**
+     * Parses the resolved source of a style sheet into the style sheet of the
+     * given document handler.
+     */
+    static ScssStylesheet parse(String identifier, InputSource source,
+            SCSSDocumentHandler documentHandler, SCSSErrorHandler errorHandler)
+            throws CSSException, IOException {
+        ScssStylesheet stylesheet = documentHandler.getStyleSheet();
+
         Parser parser = new Parser();
         parser.setErrorHandler(errorHandler);
         parser.setDocumentHandler(documentHandler);
@@ -235,20 +241,24 @@ public class ScssStylesheet extends Node {
 
     /**
      * Applies all the visitors and compiles SCSS into Css.
+     * <p>
+     * The compilation state is kept in a new {@link ScssContext} bound to the
+     * current thread, so different style sheets can be compiled concurrently
+     * on different threads.
      * 
      * @throws Exception
      */
     public void compile() throws Exception {
-        mainStyleSheet = this;
-        mixinDefs.clear();
-        variables.clear();
-        ifElseDefNodes.clear();
-        lastNodeAdded.clear();
-        ExtendNodeHandler.clear();
-        importOtherFiles(this);
-        populateDefinitions(this);
-        traverse(this);
-        removeEmptyBlocks(this);
+        ScssContext previous = ScssContext.setCurrent(new ScssContext(this,
+                ScssContext.getCurrent()));
+        try {
+            importOtherFiles(this);
+            populateDefinitions(this);
+            traverse(this);
+            removeEmptyBlocks(this);
+        } finally {
+            ScssContext.setCurrent(previous);
+        }
     }
 
     private void importOtherFiles(ScssStylesheet node) {
@@ -256,11 +266,13 @@ public class ScssStylesheet extends Node {
     }
 
     private void populateDefinitions(Node node) {
+        ScssContext context = ScssContext.getCurrent();
         if (node instanceof MixinDefNode) {
-            mixinDefs.put(((MixinDefNode) node).getName(), (MixinDefNode) node);
+            context.getMixinDefinitions().put(((MixinDefNode) node).getName(),
+                    (MixinDefNode) node);
             node.getParentNode().removeChild(node);
         } else if (node instanceof IfElseDefNode) {
-            ifElseDefNodes.add((IfElseDefNode) node);
+            context.getIfElseDefNodes().add((IfElseDefNode) node);
         }
 
         for (final Node child : new ArrayList<Node>(node.getChildren())) {
@@ -306,8 +318,13 @@ public class ScssStylesheet extends Node {
         }
     }
 
+    /**
+     * Returns the style sheet being compiled on the current thread.
+     * 
+     * @return the main style sheet, or null if no compilation is running
+     */
     public static ScssStylesheet get() {
-        return mainStyleSheet;
+        return ScssContext.getCurrent().getMainStyleSheet();
     }
 
     @Override
@@ -350,7 +367,7 @@ public class ScssStylesheet extends Node {
 
         // clean up insert point so that processing of the next block will
         // insert after that block
-        lastNodeAdded.remove(originalParent);
+        ScssContext.getCurrent().getLastNodeAdded().remove(originalParent);
 
         // has the node been removed from its parent?
         if (originalParent != null) {
@@ -371,8 +388,8 @@ public class ScssStylesheet extends Node {
      */
     public static Map<String, VariableNode> openVariableScope() {
         @SuppressWarnings("unchecked")
-        HashMap<String, VariableNode> variableScope = (HashMap<String, VariableNode>) variables
-                .clone();
+        HashMap<String, VariableNode> variableScope = (HashMap<String, VariableNode>) ScssContext
+                .getCurrent().getVariables().clone();
         return Collections.unmodifiableMap(variableScope);
     }
 
@@ -385,6 +402,8 @@ public class ScssStylesheet extends Node {
      */
     public static void closeVariableScope(
             Map<String, VariableNode> originalScope) {
+        HashMap<String, VariableNode> variables = ScssContext.getCurrent()
+                .getVariables();
         variables.clear();
         variables.putAll(originalScope);
     }
@@ -403,19 +422,20 @@ public class ScssStylesheet extends Node {
     }
 
     public static void addVariable(VariableNode node) {
-        variables.put(node.getName(), node);
+        ScssContext.getCurrent().getVariables().put(node.getName(), node);
     }
 
     public static VariableNode getVariable(String string) {
-        return variables.get(string);
+        return ScssContext.getCurrent().getVariables().get(string);
     }
 
     public static ArrayList<VariableNode> getVariables() {
-        return new ArrayList<VariableNode>(variables.values());
+        return new ArrayList<VariableNode>(ScssContext.getCurrent()
+                .getVariables().values());
     }
 
     public static MixinDefNode getMixinDefinition(String name) {
-        return mixinDefs.get(name);
+        return ScssContext.getCurrent().getMixinDefinitions().get(name);
     }
 
     public void setFile(File file) {
@@ -443,7 +463,7 @@ public class ScssStylesheet extends Node {
     }
 
     public static HashMap<Node, Node> getLastNodeAdded() {
-        return lastNodeAdded;
+        return ScssContext.getCurrent().getLastNodeAdded();
     }
 
     public static final void warning(String msg) {
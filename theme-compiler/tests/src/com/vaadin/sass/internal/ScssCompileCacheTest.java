@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScssCompileCacheTest {
+
+    private File directory;
+    private File main;
+    private File colors;
+    private File layout;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("scss", "");
+        directory.delete();
+        directory.mkdir();
+
+        main = new File(directory, "main.scss");
+        colors = new File(directory, "_colors.scss");
+        layout = new File(directory, "_layout.scss");
+        FileUtils.writeStringToFile(main,
+                "@import \"colors\";\n@import \"layout\";\n"
+                        + ".v-app { color: $text; }\n");
+        FileUtils.writeStringToFile(colors, "$text: red;\n");
+        FileUtils.writeStringToFile(layout,
+                ".v-panel { margin: 2px; }\n.v-button { @extend .v-panel; }\n");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private String compileUncached() throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.get(main.getAbsolutePath());
+        sheet.compile();
+        return sheet.toString();
+    }
+
+    @Test
+    public void testCachedCompilationMatchesUncached() throws Exception {
+        ScssCompileCache cache = new ScssCompileCache();
+        String css = cache.compile(main.getAbsolutePath());
+
+        Assert.assertEquals(compileUncached(), css);
+        Assert.assertTrue(css.contains("red"));
+        Assert.assertEquals(0, cache.getCompiledHitCount());
+    }
+
+    @Test
+    public void testUnchangedStylesheetNotCompiledAgain() throws Exception {
+        ScssCompileCache cache = new ScssCompileCache();
+        String css = cache.compile(main.getAbsolutePath());
+
+        Assert.assertEquals(css, cache.compile(main.getAbsolutePath()));
+        Assert.assertEquals(1, cache.getCompiledHitCount());
+        Assert.assertEquals(0, cache.getParsedHitCount());
+    }
+
+    @Test
+    public void testChangedImportCompiledAgain() throws Exception {
+        ScssCompileCache cache = new ScssCompileCache();
+        cache.compile(main.getAbsolutePath());
+
+        FileUtils.writeStringToFile(colors, "$text: blue;\n");
+        String css = cache.compile(main.getAbsolutePath());
+
+        Assert.assertEquals(compileUncached(), css);
+        Assert.assertTrue(css.contains("blue"));
+        Assert.assertEquals(0, cache.getCompiledHitCount());
+        // main.scss and _layout.scss were not parsed again
+        Assert.assertEquals(2, cache.getParsedHitCount());
+
+        // The reused parse trees must not have been modified by compiling
+        Assert.assertEquals(css, new ScssCompileCache().compile(main
+                .getAbsolutePath()));
+    }
+
+    @Test
+    public void testMissingStylesheet() throws Exception {
+        ScssCompileCache cache = new ScssCompileCache();
+        Assert.assertNull(cache.compile(new File(directory, "missing.scss")
+                .getAbsolutePath()));
+        Assert.assertNull(cache.compile(null));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.sass.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.sass.SassCompiler;
+
+public class ScssStylesheetConcurrencyTest {
+
+    private static final String[] FILES = { "/scss/variables.scss",
+            "/scss/mixins.scss", "/scss/extends.scss", "/scss/nesting.scss",
+            "/scss/control-directives.scss", "/scss/functions.scss" };
+
+    private String compile(String file) throws Exception {
+        ScssStylesheet sheet = ScssStylesheet.get(getFile(file)
+                .getAbsolutePath());
+        sheet.compile();
+        return sheet.toString();
+    }
+
+    private File getFile(String file) throws Exception {
+        return new File(getClass().getResource(file).toURI());
+    }
+
+    @Test
+    public void testConcurrentCompilationsMatchSequential() throws Exception {
+        final Map<String, String> expected = new LinkedHashMap<String, String>();
+        for (String file : FILES) {
+            expected.put(file, compile(file));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(FILES.length);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int round = 0; round < 5; round++) {
+                for (final String file : FILES) {
+                    results.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            Assert.assertEquals(file, expected.get(file),
+                                    compile(file));
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompilationStateNotLeftOnThread() throws Exception {
+        compile("/scss/variables.scss");
+        Assert.assertNull(ScssStylesheet.get());
+        Assert.assertTrue(ScssStylesheet.getVariables().isEmpty());
+    }
+
+    @Test
+    public void testSassCompilerCompilesInParallel() throws Exception {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        List<File> outputs = new ArrayList<File>();
+        for (String file : FILES) {
+            File output = File.createTempFile("compiled", ".css");
+            output.deleteOnExit();
+            outputs.add(output);
+            files.put(getFile(file).getAbsolutePath(), output.getPath());
+        }
+
+        SassCompiler.compile(files, 3);
+
+        for (int i = 0; i < FILES.length; i++) {
+            Assert.assertEquals(compile(FILES[i]),
+                    FileUtils.readFileToString(outputs.get(i)));
+        }
+    }
+}